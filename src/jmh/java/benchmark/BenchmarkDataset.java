@@ -0,0 +1,194 @@
+package benchmark;
+
+import contactmanager.Contact;
+import contactmanager.ContactManagerImpl;
+import contactmanager.DBUtils;
+import contactmanager.PhoneNumber;
+import contactmanager.PhoneNumberManagerImpl;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import javax.sql.DataSource;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Embedded Derby database from db.properties filled with size contacts,
+ * each of them having one phone. Names and numbers are random but generated
+ * from a fixed seed, so every run works with the same data.
+ *
+ * @author David Frankl
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDataset {
+
+    private static final int CHUNK_SIZE = 10_000;
+    private static final int SAMPLE_SIZE = 1024;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private DataSource dataSource;
+    private ContactManagerImpl contactManager;
+    private PhoneNumberManagerImpl phoneManager;
+
+    private final Random random = new Random(42);
+    private final List<Contact> sample = new ArrayList<>(SAMPLE_SIZE);
+    private final List<String> numbers = new ArrayList<>(SAMPLE_SIZE);
+    private long minID;
+    private long maxID;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        dataSource = createDataSource();
+        contactManager = new ContactManagerImpl(Clock.systemDefaultZone());
+        contactManager.setDataSource(dataSource);
+        phoneManager = new PhoneNumberManagerImpl();
+        phoneManager.setDataSource(dataSource);
+
+        minID = Long.MAX_VALUE;
+        for (int stored = 0; stored < size; stored += CHUNK_SIZE) {
+            List<Contact> contacts = new ArrayList<>();
+            for (int i = stored; i < Math.min(size, stored + CHUNK_SIZE); i++) {
+                contacts.add(newContact(random));
+            }
+            contactManager.createContacts(contacts);
+
+            Map<Contact, List<PhoneNumber>> phones = new LinkedHashMap<>();
+            for (Contact contact : contacts) {
+                List<PhoneNumber> contactPhones = new ArrayList<>(1);
+                contactPhones.add(newPhone(random));
+                phones.put(contact, contactPhones);
+                minID = Math.min(minID, contact.getID());
+                maxID = Math.max(maxID, contact.getID());
+            }
+            phoneManager.addPhones(phones);
+
+            for (Map.Entry<Contact, List<PhoneNumber>> entry : phones.entrySet()) {
+                if (sample.size() < SAMPLE_SIZE) {
+                    sample.add(entry.getKey());
+                    numbers.add(entry.getValue().get(0).getNumber());
+                } else {
+                    // reservoir sampling keeps the sample uniform over the whole dataset
+                    int index = random.nextInt(sample.size() + 1);
+                    if (index < SAMPLE_SIZE) {
+                        sample.set(index, entry.getKey());
+                        numbers.set(index, entry.getValue().get(0).getNumber());
+                    }
+                }
+            }
+        }
+
+        updateStatistics("CONTACT");
+        updateStatistics("PHONENUMBER");
+
+        // Derby reports contention of its identity generator when the first IDs are
+        // requested while other threads compile the same insert, so compile it here
+        Contact contact = newContact(random);
+        contactManager.createContact(contact);
+        phoneManager.addPhone(contact, newPhone(random));
+        contactManager.deleteContact(contact);
+    }
+
+    /**
+     * @return connection pool with created tables, configured by db.properties.
+     */
+    protected DataSource createDataSource() {
+        return DBUtils.createDatabaseWithTables(false);
+    }
+
+    /**
+     * Computes index statistics of the loaded table. Forks run with automatic
+     * statistics disabled (derby.storage.indexStats.auto), because the daemon
+     * recomputing them invalidates compiled statements in the middle of a
+     * measurement.
+     */
+    private void updateStatistics(String table) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             CallableStatement st = connection.prepareCall("CALL SYSCS_UTIL.SYSCS_UPDATE_STATISTICS(?, ?, NULL)")) {
+            st.setString(1, "APP");
+            st.setString(2, table);
+            st.execute();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        DBUtils.executeSqlScript(dataSource, DBUtils.class.getResource("/sql_commands/dropTables.sql"));
+    }
+
+    public ContactManagerImpl getContactManager() {
+        return contactManager;
+    }
+
+    public PhoneNumberManagerImpl getPhoneManager() {
+        return phoneManager;
+    }
+
+    /**
+     * @return ID of a random contact of the initial dataset.
+     */
+    public long randomID() {
+        return ThreadLocalRandom.current().nextLong(minID, maxID + 1);
+    }
+
+    /**
+     * @return random contact of the initial dataset.
+     */
+    public Contact randomContact() {
+        return sample.get(ThreadLocalRandom.current().nextInt(sample.size()));
+    }
+
+    /**
+     * @return first three letters of a name of a random contact, as typed into the search field.
+     */
+    public String randomNamePrefix() {
+        return randomContact().getSurname().substring(0, 3);
+    }
+
+    /**
+     * @return first four digits of a number of a random contact, as typed into the search field.
+     */
+    public String randomNumberPrefix() {
+        return numbers.get(ThreadLocalRandom.current().nextInt(numbers.size())).substring(0, 4);
+    }
+
+    public static Contact newContact(Random random) {
+        return new Contact.Builder()
+                .firstName(randomName(random))
+                .surname(randomName(random))
+                .primaryEmail(randomName(random).toLowerCase() + "@example.com")
+                .birthday(LocalDate.of(1950, 1, 1).plusDays(random.nextInt(20_000)))
+                .build();
+    }
+
+    public static PhoneNumber newPhone(Random random) {
+        return new PhoneNumber.Builder()
+                .countryCode("+420")
+                .number(String.valueOf(100_000_000 + random.nextInt(900_000_000)))
+                .phoneType("Mobile")
+                .build();
+    }
+
+    private static String randomName(Random random) {
+        char[] name = new char[8];
+        name[0] = (char) ('A' + random.nextInt(26));
+        for (int i = 1; i < name.length; i++) {
+            name[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(name);
+    }
+}
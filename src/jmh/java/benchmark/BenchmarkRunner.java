@@ -0,0 +1,47 @@
+package benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Runs the benchmarks once for each thread count and stores results of each
+ * run as JSON, so numbers of different releases can be compared.
+ *
+ * System properties:
+ * benchmark.include - regular expression selecting benchmarks, all by default,
+ * benchmark.sizes - comma separated dataset sizes, those of {@link BenchmarkDataset} by default,
+ * benchmark.threads - comma separated thread counts, 1 by default,
+ * benchmark.output - directory for the results, target/jmh by default.
+ *
+ * @author David Frankl
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = System.getProperty("benchmark.include", "benchmark\\..*Benchmark");
+        String sizes = System.getProperty("benchmark.sizes", "");
+        String threads = System.getProperty("benchmark.threads", "1");
+        File output = new File(System.getProperty("benchmark.output", "target/jmh"));
+        if (!output.isDirectory() && !output.mkdirs()) {
+            throw new IllegalStateException("Cannot create benchmark output directory " + output);
+        }
+
+        for (String threadCount : threads.split(",")) {
+            int count = Integer.parseInt(threadCount.trim());
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .threads(count)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(output, "result-" + count + "-threads.json").getPath());
+            if (!sizes.trim().isEmpty()) {
+                options.param("size", sizes.trim().split("\\s*,\\s*"));
+            }
+            new Runner(options.build()).run();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package benchmark;
+
+import contactmanager.Contact;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency of {@link contactmanager.ContactManagerImpl} operations.
+ *
+ * @author David Frankl
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dlogback.configurationFile=logback-benchmark.xml",
+        "-Dderby.storage.indexStats.auto=false"})
+public class ContactManagerBenchmark {
+
+    @Benchmark
+    public Contact createContact(BenchmarkDataset dataset) {
+        Contact contact = BenchmarkDataset.newContact(ThreadLocalRandom.current());
+        dataset.getContactManager().createContact(contact);
+        return contact;
+    }
+
+    @Benchmark
+    public Contact getContact(BenchmarkDataset dataset) {
+        return dataset.getContactManager().getContact(dataset.randomID());
+    }
+
+    @Benchmark
+    public List<Contact> findAllContacts(BenchmarkDataset dataset) {
+        return dataset.getContactManager().findAllContacts();
+    }
+
+    @Benchmark
+    public List<Contact> findContactsByName(BenchmarkDataset dataset) {
+        return dataset.getContactManager().findContactsByName(dataset.randomNamePrefix());
+    }
+
+    @Benchmark
+    public List<Contact> findContactsByNumber(BenchmarkDataset dataset) {
+        return dataset.getContactManager().findContactsByNumber(dataset.randomNumberPrefix());
+    }
+}
@@ -0,0 +1,86 @@
+package benchmark;
+
+import contactmanager.ContactManager;
+import contactmanager.DBUtils;
+import contactmanager.DbExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency of 1,000 lookups submitted at once to {@link DbExecutor}, as when
+ * the servlets or the Swing workers get a burst of requests, with platform
+ * and virtual threads. Each sample is the time until the last lookup
+ * finished. The virtual mode falls back to platform threads before Java 21,
+ * so run the forks on Java 21 to compare the modes.
+ *
+ * @author David Frankl
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dlogback.configurationFile=logback-benchmark.xml",
+        "-Dderby.storage.indexStats.auto=false"})
+public class DbExecutorBenchmark {
+
+    private static final int LOOKUPS = 1000;
+
+    @State(Scope.Benchmark)
+    public static class ExecutorDataset extends BenchmarkDataset {
+
+        @Param({"PLATFORM", "VIRTUAL"})
+        public DbExecutor.Mode mode;
+
+        private DbExecutor executor;
+
+        @Setup(Level.Trial)
+        public void setUpExecutor() {
+            // threads sized by POOL_MAX_TOTAL as in the application, all lookups fit into the queue
+            Properties dbProperties = DBUtils.loadDbProperties();
+            dbProperties.setProperty("DB_EXECUTOR_MODE", mode.name());
+            dbProperties.setProperty("DB_EXECUTOR_QUEUE_CAPACITY", String.valueOf(LOOKUPS));
+            executor = DBUtils.createDbExecutor(dbProperties);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDownExecutor() {
+            executor.shutdown(1, TimeUnit.MINUTES);
+        }
+    }
+
+    @Benchmark
+    public int concurrentLookups(ExecutorDataset dataset) throws InterruptedException {
+        ContactManager contactManager = dataset.getContactManager();
+        CountDownLatch done = new CountDownLatch(LOOKUPS);
+        AtomicInteger found = new AtomicInteger();
+        for (int i = 0; i < LOOKUPS; i++) {
+            dataset.executor.execute(() -> {
+                try {
+                    if (contactManager.getContact(dataset.randomID()) != null) {
+                        found.incrementAndGet();
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        return found.get();
+    }
+}
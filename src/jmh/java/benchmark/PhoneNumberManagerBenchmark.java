@@ -0,0 +1,40 @@
+package benchmark;
+
+import contactmanager.PhoneNumber;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency of {@link contactmanager.PhoneNumberManagerImpl} operations.
+ *
+ * @author David Frankl
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dlogback.configurationFile=logback-benchmark.xml",
+        "-Dderby.storage.indexStats.auto=false"})
+public class PhoneNumberManagerBenchmark {
+
+    @Benchmark
+    public List<PhoneNumber> getPhoneNumbers(BenchmarkDataset dataset) {
+        return dataset.getPhoneManager().getPhoneNumbers(dataset.randomContact());
+    }
+
+    @Benchmark
+    public PhoneNumber addPhone(BenchmarkDataset dataset) {
+        PhoneNumber phone = BenchmarkDataset.newPhone(ThreadLocalRandom.current());
+        dataset.getPhoneManager().addPhone(dataset.randomContact(), phone);
+        return phone;
+    }
+}
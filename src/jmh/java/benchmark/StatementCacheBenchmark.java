@@ -0,0 +1,60 @@
+package benchmark;
+
+import contactmanager.Contact;
+import contactmanager.DBUtils;
+import contactmanager.PhoneNumber;
+import contactmanager.PoolMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the simplest lookups with and without pooling of prepared
+ * statements (POOL_PREPARED_STATEMENTS in db.properties).
+ *
+ * @author David Frankl
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dlogback.configurationFile=logback-benchmark.xml",
+        "-Dderby.storage.indexStats.auto=false"})
+public class StatementCacheBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class StatementPoolingDataset extends BenchmarkDataset {
+
+        @Param({"false", "true"})
+        public boolean poolPreparedStatements;
+
+        @Override
+        protected DataSource createDataSource() {
+            Properties dbProperties = DBUtils.loadDbProperties();
+            dbProperties.setProperty("POOL_PREPARED_STATEMENTS", String.valueOf(poolPreparedStatements));
+            return DBUtils.createDatabaseWithTables(dbProperties, false, PoolMetrics.NONE);
+        }
+    }
+
+    @Benchmark
+    public Contact getContact(StatementPoolingDataset dataset) {
+        return dataset.getContactManager().getContact(dataset.randomID());
+    }
+
+    @Benchmark
+    public List<PhoneNumber> getPhoneNumbers(StatementPoolingDataset dataset) {
+        return dataset.getPhoneManager().getPhoneNumbers(dataset.randomContact());
+    }
+}
@@ -0,0 +1,174 @@
+package contactmanager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Decorator of {@link ContactManager} caching contacts by their IDs.
+ * The cache is populated by getContact and createContact(s) and invalidated
+ * by updateContact and deleteContact. A contact read or created while
+ * another one is written is not cached, see {@link EntityCache}. All other
+ * operations are passed to the decorated manager.
+ *
+ * @author David Frankl
+ */
+public class CachingContactManager implements ContactManager {
+
+    private final ContactManager delegate;
+    private final EntityCache<Contact> contacts;
+    private final CachingPhoneNumberManager phones;
+
+    /**
+     * @param delegate: decorated manager.
+     * @param contacts: cache of contacts.
+     * @param phones: manager caching phones, invalidated when a contact (and so its phones)
+     * is deleted, null if phones are not cached.
+     */
+    public CachingContactManager(ContactManager delegate, EntityCache<Contact> contacts,
+                                 CachingPhoneNumberManager phones) {
+        this.delegate = delegate;
+        this.contacts = contacts;
+        this.phones = phones;
+    }
+
+    public EntityCache<Contact> getCache() {
+        return contacts;
+    }
+
+    @Override
+    public void createContact(Contact contact) {
+        // the ID is assigned by the write, so any invalidation meanwhile skips caching
+        long generation = contacts.getCacheGeneration();
+        delegate.createContact(contact);
+        contacts.putIfCacheGeneration(contact.getID(), contact, generation);
+    }
+
+    @Override
+    public void createContacts(Collection<Contact> newContacts) {
+        long generation = contacts.getCacheGeneration();
+        delegate.createContacts(newContacts);
+        for (Contact contact : newContacts) {
+            contacts.putIfCacheGeneration(contact.getID(), contact, generation);
+        }
+    }
+
+    @Override
+    public void createContactsWithPhones(List<Map.Entry<Contact, List<PhoneNumber>>> newContacts) {
+        long generation = contacts.getCacheGeneration();
+        delegate.createContactsWithPhones(newContacts);
+        for (Map.Entry<Contact, List<PhoneNumber>> entry : newContacts) {
+            contacts.putIfCacheGeneration(entry.getKey().getID(), entry.getKey(), generation);
+        }
+    }
+
+    @Override
+    public Contact getContact(Long ID) {
+        if (ID == null) {
+            return delegate.getContact(null);
+        }
+        Contact contact = contacts.get(ID);
+        if (contact == null) {
+            // taken before the read: an update committed after the read invalidates the generation
+            long generation = contacts.getGeneration(ID);
+            contact = delegate.getContact(ID);
+            if (contact != null) {
+                contacts.putIfGeneration(ID, contact, generation);
+            }
+        }
+        return contact;
+    }
+
+    @Override
+    public void updateContact(Contact contact) {
+        try {
+            delegate.updateContact(contact);
+        } finally {
+            invalidate(contact);
+        }
+    }
+
+    @Override
+    public void deleteContact(Contact contact) {
+        try {
+            delegate.deleteContact(contact);
+        } finally {
+            invalidate(contact);
+            if (phones != null) {
+                phones.contactDeleted(contact);
+            }
+        }
+    }
+
+    @Override
+    public List<Contact> findAllContacts() {
+        return delegate.findAllContacts();
+    }
+
+    @Override
+    public List<Contact> findContactsPage(Long afterID, int limit) {
+        return delegate.findContactsPage(afterID, limit);
+    }
+
+    @Override
+    public List<Contact> findContactsAt(long offset, int limit) {
+        return delegate.findContactsAt(offset, limit);
+    }
+
+    @Override
+    public long countContacts() {
+        return delegate.countContacts();
+    }
+
+    @Override
+    public List<Contact> findContactsPageOrderedByName(Contact after, int limit) {
+        return delegate.findContactsPageOrderedByName(after, limit);
+    }
+
+    @Override
+    public Map<Contact, List<PhoneNumber>> findAllContactsWithPhones() {
+        return delegate.findAllContactsWithPhones();
+    }
+
+    @Override
+    public Stream<Contact> streamAllContacts() {
+        return delegate.streamAllContacts();
+    }
+
+    @Override
+    public Stream<Map.Entry<Contact, List<PhoneNumber>>> streamAllContactsWithPhones() {
+        return delegate.streamAllContactsWithPhones();
+    }
+
+    @Override
+    public List<Contact> findContactsByName(String name) {
+        return delegate.findContactsByName(name);
+    }
+
+    @Override
+    public List<Contact> findContactsByNumber(String number) {
+        return delegate.findContactsByNumber(number);
+    }
+
+    @Override
+    public List<Contact> findContactsByNumberSuffix(String suffix) {
+        return delegate.findContactsByNumberSuffix(suffix);
+    }
+
+    @Override
+    public Stream<Contact> streamContactsByName(String name) {
+        return delegate.streamContactsByName(name);
+    }
+
+    @Override
+    public Stream<Contact> streamContactsByNumber(String number) {
+        return delegate.streamContactsByNumber(number);
+    }
+
+    private void invalidate(Contact contact) {
+        if (contact != null && contact.getID() != null) {
+            contacts.invalidate(contact.getID());
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package contactmanager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decorator of {@link PhoneNumberManager} caching phones by their IDs and
+ * optionally the phones of each contact by contact IDs. The phone cache is
+ * populated by getPhoneNumber and addPhone(s) and invalidated by updatePhone
+ * and removePhone, also when they fail, as the phone in the DB is unknown
+ * then. Phones of a contact are cached by getPhoneNumbers and invalidated
+ * by addPhone(s) of the contact; updatePhone and removePhone invalidate
+ * phones of all contacts, as a phone does not know its contact. A phone
+ * read while it is written is not cached, see
+ * {@link EntityCache#putIfGeneration}.
+ *
+ * @author David Frankl
+ */
+public class CachingPhoneNumberManager implements PhoneNumberManager {
+
+    private final PhoneNumberManager delegate;
+    private final EntityCache<PhoneNumber> phones;
+    private final EntityCache<List<PhoneNumber>> contactPhones;
+
+    /**
+     * @param delegate: decorated manager.
+     * @param phones: cache of phones.
+     */
+    public CachingPhoneNumberManager(PhoneNumberManager delegate, EntityCache<PhoneNumber> phones) {
+        this(delegate, phones, null);
+    }
+
+    /**
+     * @param delegate: decorated manager.
+     * @param phones: cache of phones.
+     * @param contactPhones: cache of phones of contacts keyed by contact IDs, created
+     * with {@link #copyOf(List)} as its copier, null if they are not cached.
+     */
+    public CachingPhoneNumberManager(PhoneNumberManager delegate, EntityCache<PhoneNumber> phones,
+                                     EntityCache<List<PhoneNumber>> contactPhones) {
+        this.delegate = delegate;
+        this.phones = phones;
+        this.contactPhones = contactPhones;
+    }
+
+    public EntityCache<PhoneNumber> getCache() {
+        return phones;
+    }
+
+    /**
+     * @return cache of phones of contacts, null if they are not cached.
+     */
+    public EntityCache<List<PhoneNumber>> getContactPhonesCache() {
+        return contactPhones;
+    }
+
+    /**
+     * Returns list of copies of the phones, the copier of the cache of phones of contacts.
+     *
+     * @param phones: phones to be copied.
+     * @return copies of the phones.
+     */
+    public static List<PhoneNumber> copyOf(List<PhoneNumber> phones) {
+        List<PhoneNumber> copies = new ArrayList<>(phones.size());
+        for (PhoneNumber phone : phones) {
+            copies.add(PhoneNumber.copyOf(phone));
+        }
+        return copies;
+    }
+
+    @Override
+    public List<PhoneNumber> getPhoneNumbers(Contact contact) {
+        if (contactPhones == null || contact == null || contact.getID() == null) {
+            return delegate.getPhoneNumbers(contact);
+        }
+        List<PhoneNumber> result = contactPhones.get(contact.getID());
+        if (result == null) {
+            long generation = contactPhones.getGeneration(contact.getID());
+            result = delegate.getPhoneNumbers(contact);
+            contactPhones.putIfGeneration(contact.getID(), result, generation);
+        }
+        return result;
+    }
+
+    @Override
+    public PhoneNumber getPhoneNumber(Long ID) {
+        if (ID == null) {
+            return delegate.getPhoneNumber(null);
+        }
+        PhoneNumber phone = phones.get(ID);
+        if (phone == null) {
+            long generation = phones.getGeneration(ID);
+            phone = delegate.getPhoneNumber(ID);
+            if (phone != null) {
+                phones.putIfGeneration(ID, phone, generation);
+            }
+        }
+        return phone;
+    }
+
+    @Override
+    public void addPhone(Contact contact, PhoneNumber phone) {
+        // the ID is assigned by the write, so any invalidation meanwhile skips caching
+        long generation = phones.getCacheGeneration();
+        try {
+            delegate.addPhone(contact, phone);
+        } finally {
+            invalidatePhonesOf(contact);
+        }
+        phones.putIfCacheGeneration(phone.getID(), phone, generation);
+    }
+
+    @Override
+    public void addPhones(Map<Contact, List<PhoneNumber>> newPhones) {
+        long generation = phones.getCacheGeneration();
+        try {
+            delegate.addPhones(newPhones);
+        } finally {
+            if (newPhones != null) {
+                newPhones.keySet().forEach(this::invalidatePhonesOf);
+            }
+        }
+        for (List<PhoneNumber> added : newPhones.values()) {
+            for (PhoneNumber phone : added) {
+                phones.putIfCacheGeneration(phone.getID(), phone, generation);
+            }
+        }
+    }
+
+    @Override
+    public void removePhone(PhoneNumber phone) {
+        try {
+            delegate.removePhone(phone);
+        } finally {
+            invalidate(phone);
+        }
+    }
+
+    @Override
+    public void updatePhone(PhoneNumber phone) {
+        try {
+            delegate.updatePhone(phone);
+        } finally {
+            invalidate(phone);
+        }
+    }
+
+    /**
+     * Invalidates phones of the contact deleted together with its phones.
+     *
+     * @param contact: deleted contact.
+     */
+    void contactDeleted(Contact contact) {
+        phones.invalidateAll();
+        invalidatePhonesOf(contact);
+    }
+
+    private void invalidate(PhoneNumber phone) {
+        if (phone != null && phone.getID() != null) {
+            phones.invalidate(phone.getID());
+            if (contactPhones != null) {
+                contactPhones.invalidateAll();
+            }
+        }
+    }
+
+    private void invalidatePhonesOf(Contact contact) {
+        if (contactPhones != null && contact != null && contact.getID() != null) {
+            contactPhones.invalidate(contact.getID());
+        }
+    }
+}
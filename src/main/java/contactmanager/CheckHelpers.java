@@ -1,10 +1,14 @@
 package contactmanager;
 
 import common.IllegalEntityException;
+import common.ValidationException;
 import gui.DetailsFrame;
 import org.slf4j.Logger;
 import javax.sql.DataSource;
 import javax.swing.*;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ResourceBundle;
 
 /**
  * Helper methods for checking various objects are not null
@@ -42,6 +46,47 @@ public class CheckHelpers {
         }
     }
 
+    /**
+     * Validates contact, shared by all storage engines.
+     *
+     * @param contact: Contact to be validated
+     * @param clock: clock giving current date
+     * @param logger: logger of the caller
+     * @throws IllegalArgumentException if contact is null
+     * @throws ValidationException if both first name and surname are null or
+     * when birthday is after current LocalDate
+     */
+    public static void validateContact(Contact contact, Clock clock, Logger logger) {
+        checkContactNotNull(contact, logger);
+
+        ResourceBundle bundle = ResourceBundle.getBundle("messages");
+
+        if (contact.getFirstName() == null && contact.getSurname() == null) {
+            throw new ValidationException(bundle.getString("EMPTY_NAMES"));
+        }
+
+        LocalDate today = LocalDate.now(clock);
+        if (contact.getBirthday() != null && contact.getBirthday().isAfter(today)) {
+            throw new ValidationException(bundle.getString("BIRTHDAY_PAST_TODAY"));
+        }
+    }
+
+    /**
+     * Validates phone, shared by all storage engines.
+     *
+     * @param phone: Phone to be validated.
+     * @param logger: logger of the caller
+     * @throws IllegalArgumentException if phone is null.
+     * @throws ValidationException if either phone number or country code is null.
+     */
+    public static void validatePhone(PhoneNumber phone, Logger logger) {
+        checkPhoneNotNull(phone, logger);
+
+        if (phone.getNumber() == null || phone.getCountryCode() == null) {
+            throw new ValidationException(ResourceBundle.getBundle("messages").getString("CODE_NUMBER_EMPTY"));
+        }
+    }
+
     public static void checkMainFrameNotNull(JFrame frame, Logger logger) throws IllegalArgumentException {
         if(frame == null) {
             String msg = "Main frame is null";
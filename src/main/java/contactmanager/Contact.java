@@ -29,6 +29,22 @@ public class Contact {
         this.birthday = builder.birthday;
     }
 
+    /**
+     * Returns new instance with the same attributes as given contact.
+     *
+     * @param contact: contact to be copied.
+     * @return copy of the contact.
+     */
+    public static Contact copyOf(Contact contact) {
+        return new Builder()
+                .ID(contact.ID)
+                .firstName(contact.firstName)
+                .surname(contact.surname)
+                .primaryEmail(contact.primaryEmail)
+                .birthday(contact.birthday)
+                .build();
+    }
+
     public Long getID() {
         return ID;
     }
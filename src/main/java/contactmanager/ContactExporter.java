@@ -0,0 +1,320 @@
+package contactmanager;
+
+import common.ServiceFailureException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports all contacts with their phones, streamed by
+ * {@link ContactManager#streamAllContactsWithPhones()}, so only one contact
+ * is held in memory whatever the number of contacts is.
+ *
+ * @author David Frankl
+ */
+public class ContactExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContactExporter.class.getName());
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Supported file formats, all written as UTF-8.
+     */
+    public enum Format {
+        /**
+         * CSV with header row and columns ID, FIRST_NAME, SURNAME,
+         * PRIMARY_EMAIL, BIRTHDAY, NUMBER, COUNTRY_CODE and PHONE_TYPE. Each
+         * phone is one row, contacts without phones have one row with empty
+         * phone columns. Read back by {@link ContactImporter.Format#CSV}.
+         */
+        CSV,
+        /**
+         * vCard 3.0, one card per contact. Read back by
+         * {@link ContactImporter.Format#VCARD}.
+         */
+        VCARD,
+        /**
+         * One JSON object per line as written by {@link ContactJson}.
+         */
+        JSON_LINES
+    }
+
+    private final ContactManager contactManager;
+
+    /**
+     * @param contactManager: manager streaming the exported contacts with their phones.
+     */
+    public ContactExporter(ContactManager contactManager) {
+        this.contactManager = contactManager;
+    }
+
+    /**
+     * Writes all contacts with their phones to the stream. The stream is
+     * flushed but not closed.
+     *
+     * @param out: stream to write to.
+     * @param format: format of the output.
+     * @param gzip: whether the output is compressed by gzip.
+     * @return number of exported contacts.
+     * @throws ServiceFailureException when the contacts cannot be read or written.
+     */
+    public long export(OutputStream out, Format format, boolean gzip) {
+        if (out == null || format == null) {
+            String msg = "Output stream or format is null.";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+        long start = System.nanoTime();
+        long contacts = 0;
+        try (Stream<Map.Entry<Contact, List<PhoneNumber>>> stream = contactManager.streamAllContactsWithPhones()) {
+            // neither the writer nor the gzip stream is closed, which would close the caller's stream
+            GZIPOutputStream compressed = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+            Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    compressed != null ? compressed : out, StandardCharsets.UTF_8), BUFFER_SIZE);
+            FormatWriter formatWriter = writerOf(format, writer);
+            formatWriter.start();
+            Iterator<Map.Entry<Contact, List<PhoneNumber>>> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Contact, List<PhoneNumber>> entry = iterator.next();
+                formatWriter.write(entry.getKey(), entry.getValue());
+                contacts++;
+            }
+            writer.flush();
+            if (compressed != null) {
+                compressed.finish();
+            }
+            out.flush();
+        } catch (IOException ex) {
+            String msg = String.format("Error when exporting contacts after %d contacts.", contacts);
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+        logger.info(String.format("Exported %d contacts as %s in %d ms", contacts, format,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        return contacts;
+    }
+
+    /**
+     * Writes all contacts with their phones to the file. The export is
+     * written next to the file and then moved over it, so the file is either
+     * complete or not changed.
+     *
+     * @param file: file to write to.
+     * @param format: format of the file.
+     * @param gzip: whether the file is compressed by gzip.
+     * @return number of exported contacts.
+     * @throws ServiceFailureException when the contacts cannot be read or written.
+     */
+    public long export(Path file, Format format, boolean gzip) {
+        Path written = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            long contacts;
+            try (OutputStream out = Files.newOutputStream(written)) {
+                contacts = export(out, format, gzip);
+            }
+            Files.move(written, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return contacts;
+        } catch (IOException ex) {
+            String msg = String.format("Error when writing export %s.", file);
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        } finally {
+            try {
+                Files.deleteIfExists(written);
+            } catch (IOException ex) {
+                logger.error("Error when deleting " + written, ex);
+            }
+        }
+    }
+
+    private static FormatWriter writerOf(Format format, Writer out) {
+        switch (format) {
+            case CSV:
+                return new CsvWriter(out);
+            case VCARD:
+                return new VCardWriter(out);
+            case JSON_LINES:
+                return new JsonLinesWriter(out);
+            default:
+                throw new IllegalArgumentException("Unknown format " + format);
+        }
+    }
+
+    private interface FormatWriter {
+
+        default void start() throws IOException {
+        }
+
+        void write(Contact contact, List<PhoneNumber> phones) throws IOException;
+    }
+
+    private static class CsvWriter implements FormatWriter {
+        private final Writer out;
+
+        CsvWriter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void start() throws IOException {
+            out.write("ID,FIRST_NAME,SURNAME,PRIMARY_EMAIL,BIRTHDAY,NUMBER,COUNTRY_CODE,PHONE_TYPE\r\n");
+        }
+
+        @Override
+        public void write(Contact contact, List<PhoneNumber> phones) throws IOException {
+            if (phones.isEmpty()) {
+                writeRow(contact, null);
+            }
+            for (PhoneNumber phone : phones) {
+                writeRow(contact, phone);
+            }
+        }
+
+        private void writeRow(Contact contact, PhoneNumber phone) throws IOException {
+            out.write(String.valueOf(contact.getID()));
+            writeField(contact.getFirstName());
+            writeField(contact.getSurname());
+            writeField(contact.getPrimaryEmail());
+            writeField(contact.getBirthday() == null ? null : contact.getBirthday().toString());
+            writeField(phone == null ? null : phone.getNumber());
+            writeField(phone == null ? null : phone.getCountryCode());
+            writeField(phone == null ? null : phone.getPhoneType());
+            out.write("\r\n");
+        }
+
+        private void writeField(String value) throws IOException {
+            out.write(',');
+            if (value == null) {
+                return;
+            }
+            boolean quoted = false;
+            for (int i = 0; i < value.length() && !quoted; i++) {
+                char c = value.charAt(i);
+                quoted = c == ',' || c == '"' || c == '\r' || c == '\n';
+            }
+            if (quoted) {
+                out.write('"');
+                out.write(value.replace("\"", "\"\""));
+                out.write('"');
+            } else {
+                out.write(value);
+            }
+        }
+    }
+
+    private static class VCardWriter implements FormatWriter {
+        private static final int MAX_LINE_LENGTH = 75;
+
+        private final Writer out;
+
+        VCardWriter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(Contact contact, List<PhoneNumber> phones) throws IOException {
+            writeLine("BEGIN:VCARD");
+            writeLine("VERSION:3.0");
+            writeLine("N:" + escape(contact.getSurname()) + ";" + escape(contact.getFirstName()) + ";;;");
+            String formattedName = (nullToEmpty(contact.getFirstName()) + " " + nullToEmpty(contact.getSurname())).trim();
+            writeLine("FN:" + escape(formattedName));
+            if (contact.getPrimaryEmail() != null) {
+                writeLine("EMAIL;TYPE=INTERNET:" + escape(contact.getPrimaryEmail()));
+            }
+            if (contact.getBirthday() != null) {
+                writeLine("BDAY:" + contact.getBirthday());
+            }
+            for (PhoneNumber phone : phones) {
+                String type = phone.getPhoneType() == null || phone.getPhoneType().trim().isEmpty()
+                        ? "" : ";TYPE=" + parameter(phone.getPhoneType());
+                String number = phone.getCountryCode() == null
+                        ? phone.getNumber() : phone.getCountryCode() + " " + phone.getNumber();
+                writeLine("TEL" + type + ":" + escape(number));
+            }
+            writeLine("END:VCARD");
+        }
+
+        private static String nullToEmpty(String value) {
+            return value == null ? "" : value;
+        }
+
+        private static String escape(String value) {
+            if (value == null) {
+                return "";
+            }
+            StringBuilder escaped = new StringBuilder(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '\\':
+                    case ',':
+                    case ';':
+                        escaped.append('\\').append(c);
+                        break;
+                    case '\n':
+                        escaped.append("\\n");
+                        break;
+                    case '\r':
+                        break;
+                    default:
+                        escaped.append(c);
+                        break;
+                }
+            }
+            return escaped.toString();
+        }
+
+        private static String parameter(String value) {
+            String single = value.replaceAll("[\\r\\n\"]", " ").trim();
+            return single.matches(".*[;:,].*") ? "\"" + single + "\"" : single;
+        }
+
+        /**
+         * Writes content line folded after each 75 characters.
+         */
+        private void writeLine(String line) throws IOException {
+            int start = 0;
+            while (line.length() - start > MAX_LINE_LENGTH) {
+                int end = start + MAX_LINE_LENGTH;
+                if (Character.isHighSurrogate(line.charAt(end - 1))) {
+                    end--;
+                }
+                out.write(line, start, end - start);
+                out.write("\r\n ");
+                start = end;
+            }
+            out.write(line, start, line.length() - start);
+            out.write("\r\n");
+        }
+    }
+
+    private static class JsonLinesWriter implements FormatWriter {
+        private final Writer out;
+
+        JsonLinesWriter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(Contact contact, List<PhoneNumber> phones) throws IOException {
+            ContactJson.writeContact(out, contact, phones);
+            out.write('\n');
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package contactmanager;
+
+import common.ServiceFailureException;
+import common.ValidationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Imports contacts with their phones from CSV and vCard files.
+ *
+ * The file is read by one thread which splits it into records, one record
+ * per contact, and groups them into batches. Batches are parsed and
+ * validated in parallel by a pool of parser threads, while the calling
+ * thread stores them in the order of the file, each batch in one transaction
+ * by {@link ContactManager#createContactsWithPhones}. At most
+ * maxPendingBatches parsed or parsing batches wait for being stored, the
+ * reader is blocked until the store catches up, so memory used by the import
+ * does not depend on the size of the file.
+ *
+ * Malformed or invalid records are rejected and the import continues. After
+ * each stored batch the number of processed records is written to the
+ * checkpoint file, if set, and an import of the same file started later
+ * skips them. A crash between a commit and the checkpoint write imports that
+ * one batch again.
+ *
+ * @author David Frankl
+ */
+public class ContactImporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContactImporter.class.getName());
+
+    private static final int MAX_ERRORS = 100;
+
+    /**
+     * Supported file formats, both read as UTF-8.
+     */
+    public enum Format {
+        /**
+         * CSV with a header row naming the columns ID, FIRST_NAME, SURNAME,
+         * PRIMARY_EMAIL, BIRTHDAY (yyyy-MM-dd), NUMBER, COUNTRY_CODE and
+         * PHONE_TYPE in any order and case, other columns are ignored. Each
+         * row holds at most one phone, consecutive rows with the same ID are
+         * one contact with more phones. Without ID column each row is one
+         * contact.
+         */
+        CSV,
+        /**
+         * vCard 2.1, 3.0 or 4.0 with any number of cards. N (or FN when N is
+         * missing), the first EMAIL, BDAY and all TEL properties are imported.
+         */
+        VCARD
+    }
+
+    private final ContactManager contactManager;
+    private final Clock clock;
+
+    private int batchSize = ContactManagerImpl.BATCH_SIZE;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int maxPendingBatches;
+    private String defaultCountryCode;
+    private Path checkpointFile;
+    private Consumer<ImportProgress> progressListener = progress -> { };
+
+    /**
+     * @param contactManager: manager storing the imported contacts with their phones.
+     * @param clock: clock used for validation of birthdays.
+     */
+    public ContactImporter(ContactManager contactManager, Clock clock) {
+        this.contactManager = contactManager;
+        this.clock = clock;
+    }
+
+    /**
+     * Sets number of records parsed and stored together, i.e. size of the
+     * import transactions. Defaults to the JDBC batch size.
+     *
+     * @param batchSize: positive number of records.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = checkPositive("Batch size", batchSize);
+    }
+
+    /**
+     * Sets number of parser threads. Defaults to the number of processors.
+     *
+     * @param parallelism: positive number of threads.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = checkPositive("Parallelism", parallelism);
+    }
+
+    /**
+     * Sets number of batches which may wait for being stored before the
+     * reading stops. Defaults to twice the parallelism.
+     *
+     * @param maxPendingBatches: positive number of batches.
+     */
+    public void setMaxPendingBatches(int maxPendingBatches) {
+        this.maxPendingBatches = checkPositive("Number of pending batches", maxPendingBatches);
+    }
+
+    /**
+     * Sets country code of phones without one, e.g. vCard numbers not
+     * starting with + or 00 followed by the code and a separator. Phones
+     * without country code are rejected when it is not set.
+     *
+     * @param defaultCountryCode: country code like +420, null for none.
+     */
+    public void setDefaultCountryCode(String defaultCountryCode) {
+        this.defaultCountryCode = defaultCountryCode;
+    }
+
+    /**
+     * Sets file recording how far the import got, so that it can be
+     * resumed. The file is deleted when the import finishes.
+     *
+     * @param checkpointFile: path of the checkpoint, null for none.
+     */
+    public void setCheckpointFile(Path checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Sets listener called by the importing thread after each stored batch.
+     *
+     * @param progressListener: listener of the progress.
+     */
+    public void setProgressListener(Consumer<ImportProgress> progressListener) {
+        this.progressListener = progressListener == null ? progress -> { } : progressListener;
+    }
+
+    /**
+     * Imports all records of the file, resuming from the checkpoint when it
+     * was written by an unfinished import of the same file.
+     *
+     * @param file: file to be imported.
+     * @param format: format of the file.
+     * @return final progress of the import.
+     * @throws ServiceFailureException when the file cannot be read, the
+     * contacts cannot be stored or the import is interrupted; the checkpoint
+     * is kept then, so the import can be resumed.
+     */
+    public ImportProgress importFile(Path file, Format format) {
+        long start = System.nanoTime();
+        Properties checkpoint = checkpointOf(file);
+        long resumed = readCheckpoint(checkpoint);
+        Run run = new Run(resumed);
+
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService parsers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "contact-import-parser-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        BlockingQueue<Future<Batch>> pending = new ArrayBlockingQueue<>(
+                maxPendingBatches > 0 ? maxPendingBatches : 2 * parallelism);
+        Thread reader = new Thread(() -> readBatches(file, format, resumed, parsers, pending),
+                "contact-import-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        try {
+            for (Batch batch = pending.take().get(); batch != Batch.END; batch = pending.take().get()) {
+                if (!batch.contacts.isEmpty()) {
+                    contactManager.createContactsWithPhones(batch.contacts);
+                }
+                run.add(batch);
+                if (checkpointFile != null) {
+                    checkpoint.setProperty("records", Long.toString(run.processed));
+                    writeCheckpoint(checkpoint);
+                }
+                progressListener.accept(run.toProgress());
+            }
+            if (checkpointFile != null) {
+                Files.deleteIfExists(checkpointFile);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            String msg = String.format("Import of %s interrupted after %d records.", file, run.processed);
+            logger.error(msg);
+            throw new ServiceFailureException(msg, ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            String msg = String.format("Error when reading %s after %d records.", file, run.processed);
+            logger.error(msg, ex.getCause());
+            throw new ServiceFailureException(msg, ex.getCause());
+        } catch (IOException ex) {
+            String msg = String.format("Error when deleting checkpoint %s.", checkpointFile);
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        } finally {
+            reader.interrupt();
+            parsers.shutdownNow();
+        }
+
+        ImportProgress progress = run.toProgress();
+        logger.info(String.format("Imported %s in %d ms: %s", file,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), progress));
+        return progress;
+    }
+
+    /**
+     * Body of the reader thread. Ends with {@link Batch#END} or a failed
+     * future, or silently when interrupted by the failed import.
+     */
+    private void readBatches(Path file, Format format, long skip, ExecutorService parsers,
+                             BlockingQueue<Future<Batch>> pending) {
+        try {
+            try (RecordReader records = open(file, format)) {
+                for (long i = 0; i < skip; i++) {
+                    if (records.next() == null) {
+                        break;
+                    }
+                }
+                List<Record> chunk = new ArrayList<>(batchSize);
+                for (Record record = records.next(); record != null; record = records.next()) {
+                    chunk.add(record);
+                    if (chunk.size() == batchSize) {
+                        List<Record> parsed = chunk;
+                        pending.put(parsers.submit(() -> parse(parsed)));
+                        chunk = new ArrayList<>(batchSize);
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    List<Record> parsed = chunk;
+                    pending.put(parsers.submit(() -> parse(parsed)));
+                }
+            }
+            pending.put(CompletableFuture.completedFuture(Batch.END));
+        } catch (IOException | RuntimeException ex) {
+            CompletableFuture<Batch> failed = new CompletableFuture<>();
+            failed.completeExceptionally(ex);
+            try {
+                pending.put(failed);
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private RecordReader open(Path file, Format format) throws IOException {
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8), 1 << 16);
+        switch (format) {
+            case CSV:
+                return new CsvRecordReader(reader);
+            case VCARD:
+                return new VCardRecordReader(reader);
+            default:
+                reader.close();
+                throw new IllegalArgumentException("Unknown format " + format);
+        }
+    }
+
+    /**
+     * Parses and validates records of one batch, run by parser threads.
+     */
+    private Batch parse(List<Record> records) {
+        Batch batch = new Batch(records.size());
+        for (Record record : records) {
+            try {
+                List<PhoneNumber> phones = new ArrayList<>();
+                Contact contact = record.parse(phones, defaultCountryCode);
+                CheckHelpers.validateContact(contact, clock, logger);
+                for (PhoneNumber phone : phones) {
+                    CheckHelpers.validatePhone(phone, logger);
+                }
+                batch.contacts.add(new AbstractMap.SimpleImmutableEntry<>(contact, phones));
+                batch.phones += phones.size();
+            } catch (ValidationException ex) {
+                String msg = String.format("Record at line %d rejected: %s", record.getLine(), ex.getMessage());
+                logger.warn(msg);
+                batch.errors.add(msg);
+            }
+        }
+        return batch;
+    }
+
+    private Properties checkpointOf(Path file) {
+        Properties checkpoint = new Properties();
+        try {
+            checkpoint.setProperty("file", file.toAbsolutePath().toString());
+            checkpoint.setProperty("size", Long.toString(Files.size(file)));
+            checkpoint.setProperty("lastModified", Long.toString(Files.getLastModifiedTime(file).toMillis()));
+        } catch (IOException ex) {
+            String msg = String.format("Error when reading attributes of %s.", file);
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+        return checkpoint;
+    }
+
+    /**
+     * @return number of records processed by unfinished import of the file
+     * described by the checkpoint, 0 when there is none.
+     */
+    private long readCheckpoint(Properties checkpoint) {
+        if (checkpointFile == null || !Files.exists(checkpointFile)) {
+            return 0;
+        }
+        Properties written = new Properties();
+        try (InputStream in = Files.newInputStream(checkpointFile)) {
+            written.load(in);
+        } catch (IOException ex) {
+            String msg = String.format("Error when reading checkpoint %s.", checkpointFile);
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+        for (String name : checkpoint.stringPropertyNames()) {
+            if (!checkpoint.getProperty(name).equals(written.getProperty(name))) {
+                logger.warn(String.format("Checkpoint %s belongs to another file, importing from the beginning",
+                        checkpointFile));
+                return 0;
+            }
+        }
+        long records = Long.parseLong(written.getProperty("records", "0"));
+        logger.info(String.format("Resuming import of %s after %d records", checkpoint.getProperty("file"), records));
+        return records;
+    }
+
+    private void writeCheckpoint(Properties checkpoint) {
+        Path written = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(written)) {
+                checkpoint.store(out, "Contact import checkpoint");
+            }
+            Files.move(written, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            String msg = String.format("Error when writing checkpoint %s.", checkpointFile);
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+    }
+
+    private static int checkPositive(String name, int value) {
+        if (value <= 0) {
+            String msg = name + " must be positive.";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+        return value;
+    }
+
+    /**
+     * Splits the file into records, called by the reader thread only.
+     */
+    interface RecordReader extends Closeable {
+
+        /**
+         * @return next record or null at the end of the file.
+         * @throws IOException when the file cannot be read or its structure is broken.
+         */
+        Record next() throws IOException;
+    }
+
+    /**
+     * Unparsed record of one contact, parsed by a parser thread.
+     */
+    interface Record {
+
+        /**
+         * @return number of the line the record starts at.
+         */
+        long getLine();
+
+        /**
+         * @param phones: list to add parsed phones of the contact to.
+         * @param defaultCountryCode: country code of phones without one, may be null.
+         * @return parsed contact.
+         * @throws ValidationException when the record is malformed.
+         */
+        Contact parse(List<PhoneNumber> phones, String defaultCountryCode);
+    }
+
+    private static class Batch {
+        static final Batch END = new Batch(0);
+
+        final List<Map.Entry<Contact, List<PhoneNumber>>> contacts = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+        final int records;
+        int phones;
+
+        Batch(int records) {
+            this.records = records;
+        }
+    }
+
+    /**
+     * Counters of one import, used by the importing thread only.
+     */
+    private static class Run {
+        final long resumed;
+        final List<String> errors = new ArrayList<>();
+        long processed;
+        long contacts;
+        long phones;
+        long rejected;
+
+        Run(long resumed) {
+            this.resumed = resumed;
+            this.processed = resumed;
+        }
+
+        void add(Batch batch) {
+            processed += batch.records;
+            contacts += batch.contacts.size();
+            phones += batch.phones;
+            rejected += batch.errors.size();
+            for (String error : batch.errors) {
+                if (errors.size() < MAX_ERRORS) {
+                    errors.add(error);
+                }
+            }
+        }
+
+        ImportProgress toProgress() {
+            return new ImportProgress(processed, contacts, phones, rejected, resumed, new ArrayList<>(errors));
+        }
+    }
+}
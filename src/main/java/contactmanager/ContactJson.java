@@ -0,0 +1,382 @@
+package contactmanager;
+
+import common.ValidationException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes contacts and phones as JSON objects with the names of their fields,
+ * e.g. {"id":1,"firstName":"Gregory",...,"phones":[{"id":2,...}]}, and reads
+ * them back. Null fields are written as null, birthdays as yyyy-MM-dd
+ * strings.
+ *
+ * @author David Frankl
+ */
+public final class ContactJson {
+
+    private ContactJson() {
+    }
+
+    /**
+     * @param out: output the object is appended to.
+     * @param contact: contact to be written.
+     * @param phones: phones of the contact written as its phones array, null for none.
+     * @throws IOException when the output fails.
+     */
+    public static void writeContact(Appendable out, Contact contact, List<PhoneNumber> phones) throws IOException {
+        out.append("{\"id\":").append(String.valueOf(contact.getID()));
+        out.append(",\"firstName\":");
+        writeString(out, contact.getFirstName());
+        out.append(",\"surname\":");
+        writeString(out, contact.getSurname());
+        out.append(",\"primaryEmail\":");
+        writeString(out, contact.getPrimaryEmail());
+        out.append(",\"birthday\":");
+        writeString(out, contact.getBirthday() == null ? null : contact.getBirthday().toString());
+        if (phones != null) {
+            out.append(",\"phones\":[");
+            for (int i = 0; i < phones.size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                writePhone(out, phones.get(i));
+            }
+            out.append(']');
+        }
+        out.append('}');
+    }
+
+    /**
+     * @param out: output the object is appended to.
+     * @param phone: phone to be written.
+     * @throws IOException when the output fails.
+     */
+    public static void writePhone(Appendable out, PhoneNumber phone) throws IOException {
+        out.append("{\"id\":").append(String.valueOf(phone.getID()));
+        out.append(",\"number\":");
+        writeString(out, phone.getNumber());
+        out.append(",\"countryCode\":");
+        writeString(out, phone.getCountryCode());
+        out.append(",\"phoneType\":");
+        writeString(out, phone.getPhoneType());
+        out.append('}');
+    }
+
+    /**
+     * Writes JSON string literal with escaped quotes, backslashes and
+     * control characters, or null.
+     *
+     * @param out: output the string is appended to.
+     * @param value: string to be written, may be null.
+     * @throws IOException when the output fails.
+     */
+    public static void writeString(Appendable out, String value) throws IOException {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\' || c < 0x20 || c == 0x2028 || c == 0x2029) {
+                out.append(value, start, i);
+                switch (c) {
+                    case '"':
+                        out.append("\\\"");
+                        break;
+                    case '\\':
+                        out.append("\\\\");
+                        break;
+                    case '\n':
+                        out.append("\\n");
+                        break;
+                    case '\r':
+                        out.append("\\r");
+                        break;
+                    case '\t':
+                        out.append("\\t");
+                        break;
+                    default:
+                        out.append(String.format("\\u%04x", (int) c));
+                        break;
+                }
+                start = i + 1;
+            }
+        }
+        out.append(value, start, value.length());
+        out.append('"');
+    }
+
+    /**
+     * Reads contact written by {@link #writeContact}. Fields missing in the
+     * object are null, IDs and unknown fields are ignored.
+     *
+     * @param in: reader of one JSON object.
+     * @param phones: list to add phones of the phones array to, null to ignore them.
+     * @return contact without ID.
+     * @throws ValidationException when the input is not a JSON object of a contact.
+     * @throws IOException when the input cannot be read.
+     */
+    public static Contact readContact(Reader in, List<PhoneNumber> phones) throws IOException {
+        Parser parser = new Parser(in);
+        Map<String, Object> object = asObject(parser.readValue(), "contact");
+        parser.expectEnd();
+
+        Contact contact = new Contact();
+        contact.setFirstName(asString(object.get("firstName"), "firstName"));
+        contact.setSurname(asString(object.get("surname"), "surname"));
+        contact.setPrimaryEmail(asString(object.get("primaryEmail"), "primaryEmail"));
+        String birthday = asString(object.get("birthday"), "birthday");
+        if (birthday != null) {
+            try {
+                contact.setBirthday(LocalDate.parse(birthday));
+            } catch (DateTimeParseException ex) {
+                throw new ValidationException("Birthday " + birthday + " is not a date like 1990-12-31.");
+            }
+        }
+        Object phoneArray = object.get("phones");
+        if (phones != null && phoneArray != null) {
+            if (!(phoneArray instanceof List)) {
+                throw new ValidationException("JSON field phones must be an array.");
+            }
+            for (Object element : (List<?>) phoneArray) {
+                Map<String, Object> phoneObject = asObject(element, "phone");
+                PhoneNumber phone = new PhoneNumber();
+                phone.setNumber(asString(phoneObject.get("number"), "number"));
+                phone.setCountryCode(asString(phoneObject.get("countryCode"), "countryCode"));
+                phone.setPhoneType(asString(phoneObject.get("phoneType"), "phoneType"));
+                phones.add(phone);
+            }
+        }
+        return contact;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asObject(Object value, String name) {
+        if (!(value instanceof Map)) {
+            throw new ValidationException("JSON " + name + " must be an object.");
+        }
+        return (Map<String, Object>) value;
+    }
+
+    private static String asString(Object value, String name) {
+        if (value != null && !(value instanceof String)) {
+            throw new ValidationException("JSON field " + name + " must be a string or null.");
+        }
+        return (String) value;
+    }
+
+    /**
+     * Parser of JSON values into maps, lists, strings, big decimals,
+     * booleans and nulls.
+     */
+    private static class Parser {
+        private static final int MAX_DEPTH = 16;
+
+        private final Reader in;
+        private int next;
+        private int depth;
+
+        Parser(Reader in) throws IOException {
+            this.in = in;
+            this.next = in.read();
+        }
+
+        void expectEnd() throws IOException {
+            skipWhitespace();
+            if (next >= 0) {
+                throw malformed();
+            }
+        }
+
+        Object readValue() throws IOException {
+            skipWhitespace();
+            switch (next) {
+                case '{':
+                    return readObject();
+                case '[':
+                    return readArray();
+                case '"':
+                    return readString();
+                case 't':
+                    readWord("true");
+                    return Boolean.TRUE;
+                case 'f':
+                    readWord("false");
+                    return Boolean.FALSE;
+                case 'n':
+                    readWord("null");
+                    return null;
+                default:
+                    if (next == '-' || (next >= '0' && next <= '9')) {
+                        return readNumber();
+                    }
+                    throw malformed();
+            }
+        }
+
+        private Map<String, Object> readObject() throws IOException {
+            enter();
+            Map<String, Object> object = new LinkedHashMap<>();
+            advance();
+            skipWhitespace();
+            if (next == '}') {
+                advance();
+                depth--;
+                return object;
+            }
+            while (true) {
+                skipWhitespace();
+                if (next != '"') {
+                    throw malformed();
+                }
+                String name = readString();
+                skipWhitespace();
+                expect(':');
+                object.put(name, readValue());
+                skipWhitespace();
+                if (next == '}') {
+                    advance();
+                    depth--;
+                    return object;
+                }
+                expect(',');
+            }
+        }
+
+        private List<Object> readArray() throws IOException {
+            enter();
+            List<Object> array = new ArrayList<>();
+            advance();
+            skipWhitespace();
+            if (next == ']') {
+                advance();
+                depth--;
+                return array;
+            }
+            while (true) {
+                array.add(readValue());
+                skipWhitespace();
+                if (next == ']') {
+                    advance();
+                    depth--;
+                    return array;
+                }
+                expect(',');
+            }
+        }
+
+        private String readString() throws IOException {
+            StringBuilder value = new StringBuilder();
+            advance();
+            while (next != '"') {
+                if (next < 0x20) {
+                    throw malformed();
+                }
+                if (next == '\\') {
+                    advance();
+                    switch (next) {
+                        case '"':
+                        case '\\':
+                        case '/':
+                            value.append((char) next);
+                            break;
+                        case 'b':
+                            value.append('\b');
+                            break;
+                        case 'f':
+                            value.append('\f');
+                            break;
+                        case 'n':
+                            value.append('\n');
+                            break;
+                        case 'r':
+                            value.append('\r');
+                            break;
+                        case 't':
+                            value.append('\t');
+                            break;
+                        case 'u':
+                            int code = 0;
+                            for (int i = 0; i < 4; i++) {
+                                advance();
+                                int digit = Character.digit(next, 16);
+                                if (digit < 0) {
+                                    throw malformed();
+                                }
+                                code = code * 16 + digit;
+                            }
+                            value.append((char) code);
+                            break;
+                        default:
+                            throw malformed();
+                    }
+                } else {
+                    value.append((char) next);
+                }
+                advance();
+            }
+            advance();
+            return value.toString();
+        }
+
+        private BigDecimal readNumber() throws IOException {
+            StringBuilder value = new StringBuilder();
+            while (next == '-' || next == '+' || next == '.' || next == 'e' || next == 'E'
+                    || (next >= '0' && next <= '9')) {
+                value.append((char) next);
+                advance();
+            }
+            try {
+                return new BigDecimal(value.toString());
+            } catch (NumberFormatException ex) {
+                throw new ValidationException("Malformed JSON number " + value + ".");
+            }
+        }
+
+        private void readWord(String word) throws IOException {
+            for (int i = 0; i < word.length(); i++) {
+                if (next != word.charAt(i)) {
+                    throw malformed();
+                }
+                advance();
+            }
+        }
+
+        private void enter() {
+            if (++depth > MAX_DEPTH) {
+                throw new ValidationException("JSON is nested too deeply.");
+            }
+        }
+
+        private void expect(char c) throws IOException {
+            if (next != c) {
+                throw malformed();
+            }
+            advance();
+        }
+
+        private void skipWhitespace() throws IOException {
+            while (next == ' ' || next == '\t' || next == '\n' || next == '\r') {
+                advance();
+            }
+        }
+
+        private void advance() throws IOException {
+            next = in.read();
+        }
+
+        private ValidationException malformed() {
+            return new ValidationException(next < 0 ? "JSON ends unexpectedly." : "Malformed JSON at '" + (char) next + "'.");
+        }
+    }
+}
@@ -0,0 +1,497 @@
+package contactmanager;
+
+import common.ServiceFailureException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log file of {@link LogStorageEngine} recording writes of an
+ * {@link InMemoryStore}. The file is memory-mapped, so appending a write is
+ * a copy into the mapping and replaying the log after restart reads the
+ * mapping without system calls.
+ *
+ * The file starts with a header followed by frames. Each frame is one
+ * atomic write: payload length, CRC32 of the payload and the payload
+ * holding one or more records. Replay stops at the first frame with zero
+ * length or wrong checksum, so a frame torn by a crash is ignored together
+ * with the write it recorded. Compaction replaces the log by a new file
+ * holding only the current contents of the store.
+ *
+ * The mapping is limited to 2 GiB by {@link MappedByteBuffer}.
+ *
+ * @author David Frankl
+ */
+class ContactLog implements InMemoryStore.Journal, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContactLog.class.getName());
+
+    private static final int MAGIC = 0x434C4F47;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int FRAME_HEADER_SIZE = 8;
+
+    static final int INITIAL_CAPACITY = 1 << 20;
+    // the log is compacted when it grows over twice its size after the last compaction
+    static final int COMPACTION_MIN_SIZE = 1 << 20;
+    private static final int COMPACTION_FRAME_SIZE = 1 << 16;
+
+    private static final byte CONTACT = 1;
+    private static final byte CONTACT_DELETED = 2;
+    private static final byte PHONE = 3;
+    private static final byte PHONE_DELETED = 4;
+    private static final byte SEQUENCES = 5;
+
+    private final Path file;
+    private final boolean sync;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer frame = ByteBuffer.allocate(4096);
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int position;
+    private int compactedSize;
+    private boolean closed;
+
+    /**
+     * Opens the log file, creating it if it does not exist.
+     *
+     * @param file: path of the log file.
+     * @param sync: whether to force each write to the storage device before
+     * it is applied; otherwise written data are left to the operating system,
+     * so they survive crash of the application but not of the system.
+     * @throws ServiceFailureException when the file cannot be opened or is not a log file.
+     */
+    ContactLog(Path file, boolean sync) {
+        this.file = file;
+        this.sync = sync;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                channel.close();
+                throw new IOException("Log file is larger than 2 GiB.");
+            }
+            if (size > 0) {
+                // checked before mapping, which would extend the file
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                channel.read(header, 0);
+                if (header.position() < HEADER_SIZE || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                    channel.close();
+                    throw new IOException("File is not a contact log.");
+                }
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_CAPACITY));
+            if (size == 0) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+            }
+            position = HEADER_SIZE;
+        } catch (IOException ex) {
+            String msg = String.format("Error when opening log file %s.", file);
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+    }
+
+    /**
+     * Loads contents of the log into the store. Must be called once, before
+     * any write of the store.
+     *
+     * @param store: empty store to be loaded.
+     */
+    synchronized void replay(InMemoryStore store) {
+        long start = System.nanoTime();
+        Replayed replayed = new Replayed();
+        int frames = 0;
+        int pos = HEADER_SIZE;
+        while (pos + FRAME_HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(pos);
+            if (length <= 0 || length > buffer.capacity() - pos - FRAME_HEADER_SIZE) {
+                break;
+            }
+            ByteBuffer payload = slice(pos + FRAME_HEADER_SIZE, length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(pos + 4)) {
+                break;
+            }
+            while (payload.hasRemaining()) {
+                replayed.apply(payload);
+            }
+            pos += FRAME_HEADER_SIZE + length;
+            frames++;
+        }
+        if (pos + 4 <= buffer.capacity() && buffer.getInt(pos) != 0) {
+            logger.warn(String.format("Ignoring damaged end of log file %s after %d bytes", file, pos));
+            for (int i = pos; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+            buffer.force();
+        }
+        position = pos;
+        compactedSize = pos;
+
+        store.load(replayed.toContacts());
+        store.reserveIDs(replayed.lastContactID, replayed.lastPhoneID);
+        logger.info(String.format("Replayed %d frames of log file %s in %d ms", frames, file,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    }
+
+    @Override
+    public synchronized void contactsStored(List<Contact> contacts) {
+        beginFrame();
+        for (Contact contact : contacts) {
+            putContact(contact);
+        }
+        append(endFrame());
+    }
+
+    @Override
+    public synchronized void contactDeleted(Long ID) {
+        beginFrame();
+        putByte(CONTACT_DELETED);
+        putLong(ID);
+        append(endFrame());
+    }
+
+    @Override
+    public synchronized void contactsWithPhonesStored(List<Contact> contacts, Map<Long, List<PhoneNumber>> phones) {
+        beginFrame();
+        for (Contact contact : contacts) {
+            putContact(contact);
+            for (PhoneNumber phone : phones.get(contact.getID())) {
+                putPhone(contact.getID(), phone);
+            }
+        }
+        append(endFrame());
+    }
+
+    @Override
+    public synchronized void phonesStored(Map<Long, List<PhoneNumber>> phones) {
+        beginFrame();
+        for (Map.Entry<Long, List<PhoneNumber>> entry : phones.entrySet()) {
+            for (PhoneNumber phone : entry.getValue()) {
+                putPhone(entry.getKey(), phone);
+            }
+        }
+        append(endFrame());
+    }
+
+    @Override
+    public synchronized void phoneRemoved(Long ID) {
+        beginFrame();
+        putByte(PHONE_DELETED);
+        putLong(ID);
+        append(endFrame());
+    }
+
+    /**
+     * @return number of bytes of the log holding frames.
+     */
+    synchronized int size() {
+        return position;
+    }
+
+    /**
+     * @return true when the log grew enough since the last compaction.
+     */
+    synchronized boolean needsCompaction() {
+        return position > Math.max(COMPACTION_MIN_SIZE, 2 * compactedSize);
+    }
+
+    /**
+     * Replaces the log by a new file holding only the given contents. The
+     * new file is written next to the log and then moved over it, so a crash
+     * during compaction leaves the previous log in place.
+     *
+     * @param contacts: all contacts of the store, each mapped to its phones.
+     * @param lastContactID: highest contact ID assigned so far.
+     * @param lastPhoneID: highest phone ID assigned so far.
+     * @throws ServiceFailureException when the new file cannot be written.
+     */
+    synchronized void compact(Map<Contact, List<PhoneNumber>> contacts, long lastContactID, long lastPhoneID) {
+        checkNotClosed();
+        long start = System.nanoTime();
+        int before = position;
+        Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+        try {
+            try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).flip();
+                writeFully(out, header);
+
+                beginFrame();
+                putByte(SEQUENCES);
+                putLong(lastContactID);
+                putLong(lastPhoneID);
+                for (Map.Entry<Contact, List<PhoneNumber>> entry : contacts.entrySet()) {
+                    if (frame.position() > COMPACTION_FRAME_SIZE) {
+                        writeFully(out, endFrame());
+                        beginFrame();
+                    }
+                    putContact(entry.getKey());
+                    for (PhoneNumber phone : entry.getValue()) {
+                        putPhone(entry.getKey().getID(), phone);
+                    }
+                }
+                writeFully(out, endFrame());
+                out.force(true);
+            }
+            long size = Files.size(compacted);
+            if (size >= Integer.MAX_VALUE) {
+                throw new IOException("Compacted log is larger than 2 GiB.");
+            }
+
+            buffer.force();
+            Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel.close();
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    Math.min(Math.max(2 * size, INITIAL_CAPACITY), Integer.MAX_VALUE));
+            position = (int) size;
+            compactedSize = position;
+        } catch (IOException ex) {
+            try {
+                Files.deleteIfExists(compacted);
+            } catch (IOException deleteEx) {
+                logger.error("Error when deleting " + compacted, deleteEx);
+            }
+            String msg = String.format("Error when compacting log file %s.", file);
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+        logger.info(String.format("Compacted log file %s from %d to %d bytes in %d ms", file, before, position,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            buffer.force();
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                logger.error("Error when closing log file " + file, ex);
+            }
+        }
+    }
+
+    private void append(ByteBuffer bytes) {
+        checkNotClosed();
+        int length = bytes.remaining();
+        if (length > buffer.capacity() - position) {
+            grow(length);
+        }
+        ByteBuffer target = buffer.duplicate();
+        target.position(position);
+        target.put(bytes);
+        position += length;
+        if (sync) {
+            buffer.force();
+        }
+    }
+
+    private void grow(int length) {
+        long required = (long) position + length;
+        long capacity = Math.min(Math.max(2L * buffer.capacity(), required), Integer.MAX_VALUE);
+        if (required > capacity) {
+            String msg = String.format("Log file %s would grow over 2 GiB.", file);
+            logger.error(msg);
+            throw new ServiceFailureException(msg);
+        }
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException ex) {
+            String msg = String.format("Error when extending log file %s.", file);
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+    }
+
+    private void checkNotClosed() {
+        if (closed) {
+            String msg = String.format("Log file %s is closed.", file);
+            logger.error(msg);
+            throw new ServiceFailureException(msg);
+        }
+    }
+
+    private ByteBuffer slice(int offset, int length) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(offset);
+        slice.limit(offset + length);
+        return slice.slice();
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+    }
+
+    private void beginFrame() {
+        frame.clear();
+        frame.position(FRAME_HEADER_SIZE);
+    }
+
+    private ByteBuffer endFrame() {
+        int length = frame.position() - FRAME_HEADER_SIZE;
+        crc.reset();
+        crc.update(frame.array(), FRAME_HEADER_SIZE, length);
+        frame.putInt(0, length);
+        frame.putInt(4, (int) crc.getValue());
+        frame.flip();
+        return frame;
+    }
+
+    private void putContact(Contact contact) {
+        putByte(CONTACT);
+        putLong(contact.getID());
+        putString(contact.getFirstName());
+        putString(contact.getSurname());
+        putString(contact.getPrimaryEmail());
+        putLong(contact.getBirthday() == null ? Long.MIN_VALUE : contact.getBirthday().toEpochDay());
+    }
+
+    private void putPhone(Long contactID, PhoneNumber phone) {
+        putByte(PHONE);
+        putLong(phone.getID());
+        putLong(contactID);
+        putString(phone.getNumber());
+        putString(phone.getCountryCode());
+        putString(phone.getPhoneType());
+    }
+
+    private void putByte(byte value) {
+        ensureFrameCapacity(1);
+        frame.put(value);
+    }
+
+    private void putLong(long value) {
+        ensureFrameCapacity(8);
+        frame.putLong(value);
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            ensureFrameCapacity(4);
+            frame.putInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensureFrameCapacity(4 + bytes.length);
+            frame.putInt(bytes.length);
+            frame.put(bytes);
+        }
+    }
+
+    private void ensureFrameCapacity(int length) {
+        if (frame.remaining() < length) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * frame.capacity(), frame.position() + length));
+            frame.flip();
+            larger.put(frame);
+            frame = larger;
+        }
+    }
+
+    private static String getString(ByteBuffer payload) {
+        int length = payload.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * State of the store rebuilt from the records.
+     */
+    private static class Replayed {
+        private final Map<Long, Contact> contacts = new TreeMap<>();
+        private final Map<Long, PhoneNumber> phones = new TreeMap<>();
+        private final Map<Long, Long> phoneContacts = new TreeMap<>();
+        private long lastContactID;
+        private long lastPhoneID;
+
+        void apply(ByteBuffer payload) {
+            byte type = payload.get();
+            switch (type) {
+                case CONTACT:
+                    Contact contact = new Contact();
+                    contact.setID(payload.getLong());
+                    contact.setFirstName(getString(payload));
+                    contact.setSurname(getString(payload));
+                    contact.setPrimaryEmail(getString(payload));
+                    long birthday = payload.getLong();
+                    contact.setBirthday(birthday == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(birthday));
+                    contacts.put(contact.getID(), contact);
+                    lastContactID = Math.max(lastContactID, contact.getID());
+                    break;
+                case CONTACT_DELETED:
+                    contacts.remove(payload.getLong());
+                    break;
+                case PHONE:
+                    PhoneNumber phone = new PhoneNumber();
+                    phone.setID(payload.getLong());
+                    Long contactID = payload.getLong();
+                    phone.setNumber(getString(payload));
+                    phone.setCountryCode(getString(payload));
+                    phone.setPhoneType(getString(payload));
+                    phones.put(phone.getID(), phone);
+                    phoneContacts.put(phone.getID(), contactID);
+                    lastPhoneID = Math.max(lastPhoneID, phone.getID());
+                    break;
+                case PHONE_DELETED:
+                    Long phoneID = payload.getLong();
+                    phones.remove(phoneID);
+                    phoneContacts.remove(phoneID);
+                    break;
+                case SEQUENCES:
+                    lastContactID = Math.max(lastContactID, payload.getLong());
+                    lastPhoneID = Math.max(lastPhoneID, payload.getLong());
+                    break;
+                default:
+                    throw new ServiceFailureException("Unknown record type in contact log: " + type);
+            }
+        }
+
+        /**
+         * @return contacts with their phones, phones of deleted contacts are dropped.
+         */
+        Map<Contact, List<PhoneNumber>> toContacts() {
+            Map<Long, List<PhoneNumber>> contactPhones = new LinkedHashMap<>();
+            for (Map.Entry<Long, PhoneNumber> entry : phones.entrySet()) {
+                contactPhones.computeIfAbsent(phoneContacts.get(entry.getKey()), ID -> new ArrayList<>())
+                        .add(entry.getValue());
+            }
+            Map<Contact, List<PhoneNumber>> result = new LinkedHashMap<>();
+            for (Contact contact : contacts.values()) {
+                List<PhoneNumber> contactPhoneList = contactPhones.get(contact.getID());
+                result.put(contact, contactPhoneList == null ? new ArrayList<>() : contactPhoneList);
+            }
+            return result;
+        }
+    }
+}
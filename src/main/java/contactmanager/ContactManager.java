@@ -3,7 +3,10 @@ package contactmanager;
 import common.IllegalEntityException;
 import common.ServiceFailureException;
 import common.ValidationException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * This service allows managing contacts and contact numbers
@@ -25,6 +28,36 @@ public interface ContactManager {
 	 */
 	void createContact(Contact contact);
 
+	/**
+	 * Stores all given contacts into database within a single transaction.
+	 * IDs for the new contacts are automatically generated and stored into
+	 * their ID attributes once the whole collection is committed.
+	 *
+	 * @param contacts: contacts to be created.
+	 * @throws IllegalArgumentException when contacts or any of the contacts is null.
+	 * @throws IllegalEntityException when any of the contacts has already assigned ID.
+	 * @throws ValidationException when any of the contacts breaks validation rules(first
+	 * and second names are both null, birthday is after current LocalDate future).
+	 * @throws ServiceFailureException when db operation fails, no contact is stored then.
+	 */
+	void createContacts(Collection<Contact> contacts);
+
+	/**
+	 * Stores all given contacts together with their phones into database
+	 * within a single transaction. IDs for the new contacts and phones are
+	 * automatically generated and stored into their ID attributes once the
+	 * whole list is committed. New contacts have no IDs and so no usable
+	 * hash codes yet, which is why they come as a list of pairs and not as
+	 * a map keyed by contact.
+	 *
+	 * @param contacts: contacts to be created, each paired with its phones to be created.
+	 * @throws IllegalArgumentException when contacts, any of the contacts, phone lists or phones is null.
+	 * @throws IllegalEntityException when any of the contacts or phones has already assigned ID.
+	 * @throws ValidationException when any of the contacts or phones breaks validation rules.
+	 * @throws ServiceFailureException when db operation fails, no contact nor phone is stored then.
+	 */
+	void createContactsWithPhones(List<Map.Entry<Contact, List<PhoneNumber>>> contacts);
+
 	/**
 	 * Returns contact with given ID.
 	 *
@@ -68,22 +101,149 @@ public interface ContactManager {
 	List<Contact> findAllContacts();
 
 	/**
-	 * Returns list of all contacts which name starts with name param.
+	 * Returns one page of contacts ordered by their IDs. The next page is
+	 * obtained by passing ID of the last contact of the previous page.
+	 *
+	 * @param afterID: ID of the last contact of the previous page, null for the first page.
+	 * @param limit: maximal number of contacts on the page.
+	 * @return list of at most limit contacts with ID greater than afterID.
+	 * @throws IllegalArgumentException when limit is not positive.
+	 * @throws ServiceFailureException when db operation fails.
+	 */
+	List<Contact> findContactsPage(Long afterID, int limit);
+
+	/**
+	 * Returns contacts ordered by their IDs starting at the given position,
+	 * so that pages can be read in any order, e.g. while a table is
+	 * scrolled. The contacts before the position are skipped one by one, so
+	 * the page following an already read one is faster read by
+	 * {@link #findContactsPage}.
+	 *
+	 * @param offset: number of contacts to skip.
+	 * @param limit: maximal number of contacts on the page.
+	 * @return list of at most limit contacts following the first offset contacts.
+	 * @throws IllegalArgumentException when offset is negative or limit is not positive.
+	 * @throws ServiceFailureException when db operation fails.
+	 */
+	List<Contact> findContactsAt(long offset, int limit);
+
+	/**
+	 * Returns number of all contacts in the database.
+	 *
+	 * @return number of contacts.
+	 * @throws ServiceFailureException when db operation fails.
+	 */
+	long countContacts();
+
+	/**
+	 * Returns one page of contacts ordered by surname, first name and ID
+	 * (missing names are ordered as empty ones). The next page is obtained by
+	 * passing the last contact of the previous page.
+	 *
+	 * @param after: last contact of the previous page, null for the first page.
+	 * @param limit: maximal number of contacts on the page.
+	 * @return list of at most limit contacts ordered after the given contact.
+	 * @throws IllegalArgumentException when limit is not positive.
+	 * @throws IllegalEntityException when after contact has null ID.
+	 * @throws ServiceFailureException when db operation fails.
+	 */
+	List<Contact> findContactsPageOrderedByName(Contact after, int limit);
+
+	/**
+	 * Returns all contacts in the database together with their phones,
+	 * retrieved by a single query.
+	 *
+	 * @return map of all contacts in database ordered by their IDs, each mapped
+	 * to the list of its phones (empty list for contacts without phones).
+	 * @throws ServiceFailureException when db operation fails.
+	 */
+	Map<Contact, List<PhoneNumber>> findAllContactsWithPhones();
+
+	/**
+	 * Returns lazily populated stream of all contacts in the database. Contacts
+	 * are read from the database while the stream is consumed. The stream holds
+	 * a database connection until it is fully consumed or closed, so it should
+	 * be used within try-with-resources statement.
+	 *
+	 * @return stream of all contacts in database ordered by their IDs.
+	 * @throws ServiceFailureException when db operation fails, also when
+	 * consuming the stream.
+	 */
+	Stream<Contact> streamAllContacts();
+
+	/**
+	 * Returns lazily populated stream of all contacts in the database, each
+	 * with the list of its phones, read by a single query while the stream is
+	 * consumed. Only the current contact is held in memory. Like
+	 * {@link #streamAllContacts()} the stream holds a database connection
+	 * until it is fully consumed or closed.
+	 *
+	 * @return stream of all contacts in database ordered by their IDs, each
+	 * with the list of its phones (empty list for contacts without phones).
+	 * @throws ServiceFailureException when db operation fails, also when
+	 * consuming the stream.
+	 */
+	Stream<Map.Entry<Contact, List<PhoneNumber>>> streamAllContactsWithPhones();
+
+	/**
+	 * Returns list of all contacts which first name or surname starts with name
+	 * param. The comparison ignores case and accents.
 	 *
 	 * @param name: Characters or full name by which to search for contacts.
-	 * @return list of all contacts with name starting with name param.
+	 * @return list of all contacts with first name or surname starting with name param.
 	 * @throws IllegalArgumentException when name is null.
 	 * @throws ServiceFailureException when db operation fails.
 	 */
 	List<Contact> findContactsByName(String name);
 
 	/**
-	 * Returns list of all contacts which phone starts with number.
+	 * Returns list of all contacts which phone starts with number. Only digits
+	 * of the numbers are compared, a number without digits matches no phone.
 	 *
 	 * @param number: Characters or full number by which to search for contacts.
-	 * @return list of all contacts with phone starting with number.
+	 * @return list of all contacts with phone starting with number, each contact once.
 	 * @throws IllegalArgumentException when number is null.
 	 * @throws ServiceFailureException when db operation fails.
 	 */
 	List<Contact> findContactsByNumber(String number);
+
+	/**
+	 * Returns list of all contacts which phone ends with suffix. Only digits
+	 * of the numbers are compared, a suffix without digits matches no phone.
+	 *
+	 * @param suffix: Last characters of number by which to search for contacts.
+	 * @return list of all contacts with phone ending with suffix, each contact once.
+	 * @throws IllegalArgumentException when suffix is null.
+	 * @throws ServiceFailureException when db operation fails.
+	 */
+	List<Contact> findContactsByNumberSuffix(String suffix);
+
+	/**
+	 * Returns lazily populated stream of the contacts found by
+	 * {@link #findContactsByName}, read from the database while the stream is
+	 * consumed, so that the first contacts can be shown before the others are
+	 * found. Like {@link #streamAllContacts()} the stream holds a database
+	 * connection until it is fully consumed or closed.
+	 *
+	 * @param name: Characters or full name by which to search for contacts.
+	 * @return stream of all contacts with first name or surname starting with name param.
+	 * @throws IllegalArgumentException when name is null.
+	 * @throws ServiceFailureException when db operation fails, also when
+	 * consuming the stream.
+	 */
+	Stream<Contact> streamContactsByName(String name);
+
+	/**
+	 * Returns lazily populated stream of the contacts found by
+	 * {@link #findContactsByNumber}, read from the database while the stream
+	 * is consumed. Like {@link #streamAllContacts()} the stream holds a
+	 * database connection until it is fully consumed or closed.
+	 *
+	 * @param number: Characters or full number by which to search for contacts.
+	 * @return stream of all contacts with phone starting with number, each contact once.
+	 * @throws IllegalArgumentException when number is null.
+	 * @throws ServiceFailureException when db operation fails, also when
+	 * consuming the stream.
+	 */
+	Stream<Contact> streamContactsByNumber(String number);
 }
\ No newline at end of file
@@ -6,10 +6,18 @@ import common.ValidationException;
 import javax.sql.DataSource;
 import java.sql.*;
 import java.time.Clock;
-import java.time.LocalDate;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.ResourceBundle;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,9 +31,15 @@ public class ContactManagerImpl implements ContactManager {
 
 	private static final Logger logger = LoggerFactory.getLogger(ContactManagerImpl.class.getName());
 
-	private DataSource dataSource;
+	// Number of rows sent to the DB in one JDBC batch by createContacts
+	static final int BATCH_SIZE = 1000;
+
+	// Instances are shared by servlet threads and Swing workers: all methods keep their
+	// state in local variables and the configuration set by setters is volatile.
+	private volatile DataSource dataSource;
 	private final Clock clock;
-	private String msg;
+	private volatile int fetchSize = 100;
+	private volatile ContactSearchIndex searchIndex;
 
 	public ContactManagerImpl(Clock clock) {
 		this.clock = clock;
@@ -35,11 +49,35 @@ public class ContactManagerImpl implements ContactManager {
 		this.dataSource = dataSource;
 	}
 
+	/**
+	 * Sets search index to be kept up to date with contacts stored by this manager.
+	 *
+	 * @param searchIndex: index to be updated, null for none.
+	 */
+	public void setSearchIndex(ContactSearchIndex searchIndex) {
+		this.searchIndex = searchIndex;
+	}
+
+	/**
+	 * Sets number of rows fetched from the DB at once by streamAllContacts.
+	 *
+	 * @param fetchSize: positive number of rows.
+	 * @throws IllegalArgumentException when fetchSize is not positive.
+	 */
+	public void setFetchSize(int fetchSize) {
+		if (fetchSize <= 0) {
+			String msg = "Fetch size must be positive.";
+			logger.error(msg);
+			throw new IllegalArgumentException(msg);
+		}
+		this.fetchSize = fetchSize;
+	}
+
 	public void createContact(Contact contact) {
 		checkDataSourceNotNull(dataSource, logger);
 		validateContact(contact);
 		if (contact.getID() != null) {
-			msg = "Contact ID is already set.";
+			String msg = "Contact ID is already set.";
 			logger.error(msg);
 			throw new IllegalEntityException(msg);
 		}
@@ -51,22 +89,28 @@ public class ContactManagerImpl implements ContactManager {
 			connection.setAutoCommit(false);
 
 			st = connection.prepareStatement(
-					"INSERT INTO Contact (first_name, surname, primary_email, birthday) VALUES (?,?,?,?)",
+					"INSERT INTO Contact (first_name, surname, primary_email, birthday, search_first_name, search_surname, " +
+							"sort_first_name, sort_surname) VALUES (?,?,?,?,?,?,?,?)",
 					Statement.RETURN_GENERATED_KEYS);
 			st.setString(1, contact.getFirstName());
 			st.setString(2, contact.getSurname());
 			st.setString(3, contact.getPrimaryEmail());
 			st.setDate(4, DBUtils.toSqlDate(contact.getBirthday()));
+			st.setString(5, DBUtils.toSearchKey(contact.getFirstName()));
+			st.setString(6, DBUtils.toSearchKey(contact.getSurname()));
+			st.setString(7, DBUtils.toSortKey(contact.getFirstName()));
+			st.setString(8, DBUtils.toSortKey(contact.getSurname()));
 
-			int count = st.executeUpdate();
-			DBUtils.checkUpdatesCount(count, contact, true);
-
-			Long ID = DBUtils.getId(st.getGeneratedKeys());
+			PreparedStatement insert = st;
+			Long ID = DBUtils.retryOnLockTimeout(connection, con -> {
+				DBUtils.checkUpdatesCount(insert.executeUpdate(), contact, true);
+				return DBUtils.getId(insert.getGeneratedKeys());
+			});
 			contact.setID(ID);
-			connection.commit();
+			ContactSearchIndex.commit(connection, searchIndex, ID, index -> index.putContact(contact));
 			logger.info("Contact with id " + ID.toString() + "created");
 		} catch (SQLException ex) {
-			msg = String.format("Error when inserting contact %s into DB.", contact.getFirstName());
+			String msg = String.format("Error when inserting contact %s into DB.", contact.getFirstName());
 			logger.error(msg, ex);
 			throw new ServiceFailureException(msg, ex);
 		} finally {
@@ -75,12 +119,182 @@ public class ContactManagerImpl implements ContactManager {
 		}
 	}
 
+	public void createContacts(Collection<Contact> contacts) {
+		checkDataSourceNotNull(dataSource, logger);
+		if (contacts == null) {
+			String msg = "Contacts are null.";
+			logger.error(msg);
+			throw new IllegalArgumentException(msg);
+		}
+		for (Contact contact : contacts) {
+			validateContact(contact);
+			if (contact.getID() != null) {
+				String msg = "Contact ID is already set.";
+				logger.error(msg);
+				throw new IllegalEntityException(msg);
+			}
+		}
+		if (contacts.isEmpty()) {
+			return;
+		}
+
+		Connection connection = null;
+
+		try {
+			connection = dataSource.getConnection();
+			connection.setAutoCommit(false);
+			long[] IDs = DBUtils.retryOnLockTimeout(connection, con -> insertContacts(con, contacts));
+
+			int i = 0;
+			for (Contact contact : contacts) {
+				contact.setID(IDs[i++]);
+			}
+			ContactSearchIndex.commitAll(connection, searchIndex, index -> contacts.forEach(index::putContact));
+			logger.info(String.format("Created %d contacts", IDs.length));
+		} catch (SQLException ex) {
+			String msg = String.format("Error when inserting %d contacts into DB.", contacts.size());
+			logger.error(msg, ex);
+			throw new ServiceFailureException(msg, ex);
+		} finally {
+			DBUtils.doRollbackQuietly(connection);
+			DBUtils.closeQuietly(connection);
+		}
+	}
+
+	public void createContactsWithPhones(List<Map.Entry<Contact, List<PhoneNumber>>> contacts) {
+		checkDataSourceNotNull(dataSource, logger);
+		if (contacts == null) {
+			String msg = "Contacts are null.";
+			logger.error(msg);
+			throw new IllegalArgumentException(msg);
+		}
+		List<Contact> newContacts = new ArrayList<>(contacts.size());
+		List<List<PhoneNumber>> newPhones = new ArrayList<>(contacts.size());
+		int totalPhones = 0;
+		for (Map.Entry<Contact, List<PhoneNumber>> entry : contacts) {
+			validateContact(entry.getKey());
+			if (entry.getKey().getID() != null) {
+				String msg = "Contact ID is already set.";
+				logger.error(msg);
+				throw new IllegalEntityException(msg);
+			}
+			checkPhonesOfNewContact(entry.getValue());
+			newContacts.add(entry.getKey());
+			newPhones.add(entry.getValue());
+			totalPhones += entry.getValue().size();
+		}
+		if (contacts.isEmpty()) {
+			return;
+		}
+
+		Connection connection = null;
+
+		try {
+			connection = dataSource.getConnection();
+			connection.setAutoCommit(false);
+			int phoneCount = totalPhones;
+			long[][] inserted = DBUtils.retryOnLockTimeout(connection, con -> {
+				long[] contactIDs = insertContacts(con, newContacts);
+				return new long[][]{contactIDs,
+						PhoneNumberManagerImpl.insertPhones(con, contactIDs, newPhones, phoneCount)};
+			});
+			long[] IDs = inserted[0];
+			long[] phoneIDs = inserted[1];
+
+			int i = 0;
+			int p = 0;
+			for (Map.Entry<Contact, List<PhoneNumber>> entry : contacts) {
+				entry.getKey().setID(IDs[i++]);
+				for (PhoneNumber phone : entry.getValue()) {
+					phone.setID(phoneIDs[p++]);
+				}
+			}
+			ContactSearchIndex.commitAll(connection, searchIndex, index -> {
+				for (Map.Entry<Contact, List<PhoneNumber>> entry : contacts) {
+					index.putContact(entry.getKey());
+					for (PhoneNumber phone : entry.getValue()) {
+						index.putPhone(entry.getKey().getID(), phone);
+					}
+				}
+			});
+			logger.info(String.format("Created %d contacts with %d phones", IDs.length, totalPhones));
+		} catch (SQLException ex) {
+			String msg = String.format("Error when inserting %d contacts with phones into DB.", contacts.size());
+			logger.error(msg, ex);
+			throw new ServiceFailureException(msg, ex);
+		} finally {
+			DBUtils.doRollbackQuietly(connection);
+			DBUtils.closeQuietly(connection);
+		}
+	}
+
+	/**
+	 * Inserts contacts in JDBC batches within the transaction of the connection.
+	 *
+	 * @param connection: connection with autocommit disabled.
+	 * @param contacts: validated contacts without IDs.
+	 * @return IDs of the inserted contacts in the order of the collection.
+	 */
+	private static long[] insertContacts(Connection connection, Collection<Contact> contacts) throws SQLException {
+		// Derby returns only the last generated key of a batch; while the table is locked
+		// the inserted rows are exactly those with IDs higher than the current maximum.
+		try (Statement lock = connection.createStatement()) {
+			lock.execute("LOCK TABLE Contact IN EXCLUSIVE MODE");
+		}
+		long maxId = DBUtils.getMaxId(connection, "Contact");
+
+		long[] IDs = new long[contacts.size()];
+		try (PreparedStatement st = connection.prepareStatement(
+				"INSERT INTO Contact (first_name, surname, primary_email, birthday, search_first_name, search_surname, " +
+						"sort_first_name, sort_surname) VALUES (?,?,?,?,?,?,?,?)")) {
+			int batched = 0;
+			int stored = 0;
+			for (Contact contact : contacts) {
+				st.setString(1, contact.getFirstName());
+				st.setString(2, contact.getSurname());
+				st.setString(3, contact.getPrimaryEmail());
+				st.setDate(4, DBUtils.toSqlDate(contact.getBirthday()));
+				st.setString(5, DBUtils.toSearchKey(contact.getFirstName()));
+				st.setString(6, DBUtils.toSearchKey(contact.getSurname()));
+				st.setString(7, DBUtils.toSortKey(contact.getFirstName()));
+				st.setString(8, DBUtils.toSortKey(contact.getSurname()));
+				st.addBatch();
+
+				if (++batched == BATCH_SIZE || stored + batched == IDs.length) {
+					for (int count : st.executeBatch()) {
+						DBUtils.checkUpdatesCount(count, contact, true);
+					}
+					stored += batched;
+					batched = 0;
+				}
+			}
+		}
+		DBUtils.getInsertedIds(connection, "Contact", maxId, IDs);
+		return IDs;
+	}
+
+	private static void checkPhonesOfNewContact(List<PhoneNumber> phones) {
+		if (phones == null) {
+			String msg = "Phones of new contact are null.";
+			logger.error(msg);
+			throw new IllegalArgumentException(msg);
+		}
+		for (PhoneNumber phone : phones) {
+			CheckHelpers.validatePhone(phone, logger);
+			if (phone.getID() != null) {
+				String msg = "Phone ID is already set.";
+				logger.error(msg);
+				throw new IllegalEntityException(msg);
+			}
+		}
+	}
+
 	public Contact getContact(Long ID) {
 
 		checkDataSourceNotNull(dataSource, logger);
 
 		if (ID == null) {
-			msg = "Contact ID is null.";
+			String msg = "Contact ID is null.";
 			logger.error(msg);
 			throw new IllegalArgumentException(msg);
 		}
@@ -94,7 +308,7 @@ public class ContactManagerImpl implements ContactManager {
 			statement.setLong(1, ID);
 			return executeQueryForSingleContact(statement);
 		} catch (SQLException ex) {
-			msg = String.format("Error when getting contact with ID: %s from the DB.", ID);
+			String msg = String.format("Error when getting contact with ID: %s from the DB.", ID);
 			logger.error(msg, ex);
 			throw new ServiceFailureException(msg, ex);
 		} finally {
@@ -115,19 +329,24 @@ public class ContactManagerImpl implements ContactManager {
 			connection.setAutoCommit(false);
 
 			st = connection.prepareStatement(
-					"UPDATE Contact SET first_name = ?, surname = ?, primary_email = ?, birthday = ? WHERE id = ?");
+					"UPDATE Contact SET first_name = ?, surname = ?, primary_email = ?, birthday = ?, " +
+							"search_first_name = ?, search_surname = ?, sort_first_name = ?, sort_surname = ? WHERE id = ?");
 			st.setString(1, contact.getFirstName());
 			st.setString(2, contact.getSurname());
 			st.setString(3, contact.getPrimaryEmail());
 			st.setDate(4, DBUtils.toSqlDate(contact.getBirthday()));
-			st.setLong(5, contact.getID());
+			st.setString(5, DBUtils.toSearchKey(contact.getFirstName()));
+			st.setString(6, DBUtils.toSearchKey(contact.getSurname()));
+			st.setString(7, DBUtils.toSortKey(contact.getFirstName()));
+			st.setString(8, DBUtils.toSortKey(contact.getSurname()));
+			st.setLong(9, contact.getID());
 
 			int count = st.executeUpdate();
 			DBUtils.checkUpdatesCount(count, contact, false);
-			connection.commit();
+			ContactSearchIndex.commit(connection, searchIndex, contact.getID(), index -> index.putContact(contact));
 			logger.info("Updated contact with id " + contact.toString());
 		} catch (SQLException ex) {
-			msg = String.format("Error when updating contact: %s  in the DB.", contact.getFirstName());
+			String msg = String.format("Error when updating contact: %s  in the DB.", contact.getFirstName());
 			logger.error(msg, ex);
 			throw new ServiceFailureException(msg, ex);
 		} finally {
@@ -142,26 +361,33 @@ public class ContactManagerImpl implements ContactManager {
 		checkContactIDNotNull(contact, logger);
 
 		Connection connection = null;
+		PreparedStatement phonesSt = null;
 		PreparedStatement st = null;
 
 		try {
 			connection = dataSource.getConnection();
 			connection.setAutoCommit(false);
 
+			// phones are deleted explicitly: ON DELETE CASCADE makes Derby lock the whole
+			// PhoneNumber table, which deadlocks with concurrent phone writes
+			phonesSt = connection.prepareStatement("DELETE FROM PhoneNumber WHERE contact_id = ?");
+			phonesSt.setLong(1, contact.getID());
+			phonesSt.executeUpdate();
+
 			st = connection.prepareStatement("DELETE FROM Contact WHERE id = ?");
 			st.setLong(1, contact.getID());
 
 			int count = st.executeUpdate();
 			DBUtils.checkUpdatesCount(count, contact, false);
-			connection.commit();
+			ContactSearchIndex.commit(connection, searchIndex, contact.getID(), index -> index.removeContact(contact));
 			logger.info("Deleted contact with id " + contact.toString());
 		} catch (SQLException ex) {
-			msg = String.format("Error when deleting contact: %s from the DB", contact.getFirstName());
+			String msg = String.format("Error when deleting contact: %s from the DB", contact.getFirstName());
 			logger.error(msg, ex);
 			throw new ServiceFailureException(msg, ex);
 		} finally {
 			DBUtils.doRollbackQuietly(connection);
-			DBUtils.closeQuietly(connection, st);
+			DBUtils.closeQuietly(connection, phonesSt, st);
 		}
 	}
 
@@ -178,7 +404,7 @@ public class ContactManagerImpl implements ContactManager {
 					"SELECT id, first_name, surname, primary_email, birthday FROM Contact");
 			return executeQueryForMultipleContacts(st);
 		} catch (SQLException ex) {
-			msg = "Error when getting all contacts from DB";
+			String msg = "Error when getting all contacts from DB";
 			logger.error(msg, ex);
 			throw new ServiceFailureException(msg, ex);
 		} finally {
@@ -186,6 +412,340 @@ public class ContactManagerImpl implements ContactManager {
 		}
 	}
 
+	public List<Contact> findContactsPage(Long afterID, int limit) {
+		checkDataSourceNotNull(dataSource, logger);
+		checkLimitPositive(limit);
+		Connection connection = null;
+		PreparedStatement st = null;
+
+		logger.info("Retrieving " + limit + " contacts after id " + afterID);
+
+		try {
+			connection = dataSource.getConnection();
+			st = connection.prepareStatement(
+					"SELECT id, first_name, surname, primary_email, birthday FROM Contact WHERE id > ? " +
+							"ORDER BY id FETCH FIRST ? ROWS ONLY");
+			st.setLong(1, afterID == null ? Long.MIN_VALUE : afterID);
+			st.setInt(2, limit);
+			return executeQueryForMultipleContacts(st);
+		} catch (SQLException ex) {
+			String msg = String.format("Error when getting contacts after ID: %s from DB", afterID);
+			logger.error(msg, ex);
+			throw new ServiceFailureException(msg, ex);
+		} finally {
+			DBUtils.closeQuietly(connection, st);
+		}
+	}
+
+	public List<Contact> findContactsAt(long offset, int limit) {
+		checkDataSourceNotNull(dataSource, logger);
+		checkOffsetNotNegative(offset);
+		checkLimitPositive(limit);
+		Connection connection = null;
+		PreparedStatement st = null;
+
+		logger.info("Retrieving " + limit + " contacts at offset " + offset);
+
+		try {
+			connection = dataSource.getConnection();
+			st = connection.prepareStatement(
+					"SELECT id, first_name, surname, primary_email, birthday FROM Contact " +
+							"ORDER BY id OFFSET ? ROWS FETCH NEXT ? ROWS ONLY");
+			st.setLong(1, offset);
+			st.setInt(2, limit);
+			return executeQueryForMultipleContacts(st);
+		} catch (SQLException ex) {
+			String msg = String.format("Error when getting contacts at offset: %d from DB", offset);
+			logger.error(msg, ex);
+			throw new ServiceFailureException(msg, ex);
+		} finally {
+			DBUtils.closeQuietly(connection, st);
+		}
+	}
+
+	public long countContacts() {
+		checkDataSourceNotNull(dataSource, logger);
+		Connection connection = null;
+		PreparedStatement st = null;
+
+		try {
+			connection = dataSource.getConnection();
+			st = connection.prepareStatement("SELECT COUNT(*) FROM Contact");
+			ResultSet set = st.executeQuery();
+			set.next();
+			return set.getLong(1);
+		} catch (SQLException ex) {
+			String msg = "Error when counting contacts in DB";
+			logger.error(msg, ex);
+			throw new ServiceFailureException(msg, ex);
+		} finally {
+			DBUtils.closeQuietly(connection, st);
+		}
+	}
+
+	public List<Contact> findContactsPageOrderedByName(Contact after, int limit) {
+		checkDataSourceNotNull(dataSource, logger);
+		checkLimitPositive(limit);
+		if (after != null) {
+			checkContactIDNotNull(after, logger);
+		}
+		Connection connection = null;
+		PreparedStatement st = null;
+
+		logger.info("Retrieving " + limit + " contacts ordered by name after " + after);
+
+		try {
+			connection = dataSource.getConnection();
+			if (after == null) {
+				st = connection.prepareStatement(
+						"SELECT id, first_name, surname, primary_email, birthday FROM Contact " +
+								"ORDER BY sort_surname, sort_first_name, id FETCH FIRST ? ROWS ONLY");
+				st.setInt(1, limit);
+			} else {
+				String surname = DBUtils.toSortKey(after.getSurname());
+				String firstName = DBUtils.toSortKey(after.getFirstName());
+				// the first condition gives the start key of the CONTACT_NAME_ORDER_IDX scan
+				st = connection.prepareStatement(
+						"SELECT id, first_name, surname, primary_email, birthday FROM Contact " +
+								"WHERE sort_surname >= ? AND (sort_surname > ? OR (sort_surname = ? " +
+								"AND (sort_first_name > ? OR (sort_first_name = ? AND id > ?)))) " +
+								"ORDER BY sort_surname, sort_first_name, id FETCH FIRST ? ROWS ONLY");
+				st.setString(1, surname);
+				st.setString(2, surname);
+				st.setString(3, surname);
+				st.setString(4, firstName);
+				st.setString(5, firstName);
+				st.setLong(6, after.getID());
+				st.setInt(7, limit);
+			}
+			return executeQueryForMultipleContacts(st);
+		} catch (SQLException ex) {
+			String msg = String.format("Error when getting contacts ordered by name after %s from DB", after);
+			logger.error(msg, ex);
+			throw new ServiceFailureException(msg, ex);
+		} finally {
+			DBUtils.closeQuietly(connection, st);
+		}
+	}
+
+	public Map<Contact, List<PhoneNumber>> findAllContactsWithPhones() {
+		checkDataSourceNotNull(dataSource, logger);
+		Connection connection = null;
+		PreparedStatement st = null;
+
+		logger.info("Retrieving all contacts with phones");
+
+		try {
+			connection = dataSource.getConnection();
+			st = connection.prepareStatement(
+					"SELECT c.id, c.first_name, c.surname, c.primary_email, c.birthday, " +
+							"p.id AS phone_id, p.number, p.country_code, p.phone_type FROM Contact AS c " +
+							"LEFT JOIN PhoneNumber AS p ON c.id = p.contact_id ORDER BY c.id");
+			return executeQueryForContactsWithPhones(st);
+		} catch (SQLException ex) {
+			String msg = "Error when getting all contacts with phones from DB";
+			logger.error(msg, ex);
+			throw new ServiceFailureException(msg, ex);
+		} finally {
+			DBUtils.closeQuietly(connection, st);
+		}
+	}
+
+	/**
+	 * Writes all contacts and phones to the snapshot. Both tables are locked
+	 * while they are read, so the snapshot is consistent.
+	 *
+	 * @param writer: writer of the snapshot.
+	 * @throws ServiceFailureException when the DB cannot be read or the snapshot written.
+	 */
+	void exportSnapshot(ContactSnapshot.Writer writer) {
+		checkDataSourceNotNull(dataSource, logger);
+		Connection connection = null;
+		Statement st = null;
+
+		try {
+			connection = dataSource.getConnection();
+			connection.setAutoCommit(false);
+			st = connection.createStatement();
+			st.execute("LOCK TABLE Contact IN SHARE MODE");
+			st.execute("LOCK TABLE PhoneNumber IN SHARE MODE");
+			st.setFetchSize(fetchSize);
+			writer.reserveIDs(lastIdentity(connection, "CONTACT"), lastIdentity(connection, "PHONENUMBER"));
+
+			try (ResultSet set = st.executeQuery(
+					"SELECT id, first_name, surname, primary_email, birthday FROM Contact ORDER BY id")) {
+				while (set.next()) {
+					writer.writeContact(rowToContact(set));
+				}
+			}
+			try (ResultSet set = st.executeQuery(
+					"SELECT id AS phone_id, number, country_code, phone_type, contact_id FROM PhoneNumber ORDER BY id")) {
+				while (set.next()) {
+					writer.writePhone(set.getLong("contact_id"), rowToPhoneNumber(set));
+				}
+			}
+			connection.commit();
+		} catch (SQLException ex) {
+			String msg = "Error when writing snapshot of all contacts with phones from DB";
+			logger.error(msg, ex);
+			throw new ServiceFailureException(msg, ex);
+		} finally {
+			DBUtils.doRollbackQuietly(connection);
+			DBUtils.closeQuietly(connection, st);
+		}
+	}
+
+	/**
+	 * Inserts all contacts and phones of the snapshot keeping their IDs and
+	 * restarts the identity columns after the highest IDs of the snapshot.
+	 * Nothing is inserted when the snapshot is damaged. The search index is
+	 * not updated.
+	 *
+	 * @param reader: reader of the snapshot.
+	 * @throws IllegalStateException when the DB already holds contacts.
+	 * @throws ServiceFailureException when the snapshot cannot be read or the DB written.
+	 */
+	void importSnapshot(ContactSnapshot.Reader reader) {
+		checkDataSourceNotNull(dataSource, logger);
+		Connection connection = null;
+		Statement lock = null;
+		PreparedStatement contactSt = null;
+		PreparedStatement phoneSt = null;
+
+		try {
+			connection = dataSource.getConnection();
+			connection.setAutoCommit(false);
+			lock = connection.createStatement();
+			lock.execute("LOCK TABLE Contact IN EXCLUSIVE MODE");
+			lock.execute("LOCK TABLE PhoneNumber IN EXCLUSIVE MODE");
+			if (DBUtils.getMaxId(connection, "Contact") != 0) {
+				String msg = "Snapshot can be imported only into DB without contacts.";
+				logger.error(msg);
+				throw new IllegalStateException(msg);
+			}
+
+			contactSt = connection.prepareStatement(
+					"INSERT INTO Contact (id, first_name, surname, primary_email, birthday, search_first_name, " +
+							"search_surname, sort_first_name, sort_surname) VALUES (?,?,?,?,?,?,?,?,?)");
+			int batched = 0;
+			for (Contact contact = reader.readContact(); contact != null; contact = reader.readContact()) {
+				contactSt.setLong(1, contact.getID());
+				contactSt.setString(2, contact.getFirstName());
+				contactSt.setString(3, contact.getSurname());
+				contactSt.setString(4, contact.getPrimaryEmail());
+				contactSt.setDate(5, DBUtils.toSqlDate(contact.getBirthday()));
+				contactSt.setString(6, DBUtils.toSearchKey(contact.getFirstName()));
+				contactSt.setString(7, DBUtils.toSearchKey(contact.getSurname()));
+				contactSt.setString(8, DBUtils.toSortKey(contact.getFirstName()));
+				contactSt.setString(9, DBUtils.toSortKey(contact.getSurname()));
+				contactSt.addBatch();
+				if (++batched == BATCH_SIZE) {
+					contactSt.executeBatch();
+					batched = 0;
+				}
+			}
+			contactSt.executeBatch();
+
+			phoneSt = connection.prepareStatement(
+					"INSERT INTO PhoneNumber (id, number, country_code, phone_type, contact_id, search_number, " +
+							"reversed_number) VALUES (?,?,?,?,?,?,?)");
+			batched = 0;
+			for (PhoneNumber phone = reader.readPhone(); phone != null; phone = reader.readPhone()) {
+				phoneSt.setLong(1, phone.getID());
+				phoneSt.setString(2, phone.getNumber());
+				phoneSt.setString(3, phone.getCountryCode());
+				phoneSt.setString(4, phone.getPhoneType());
+				phoneSt.setLong(5, reader.getContactID());
+				phoneSt.setString(6, DBUtils.toDigits(phone.getNumber()));
+				phoneSt.setString(7, DBUtils.toReversedDigits(phone.getNumber()));
+				phoneSt.addBatch();
+				if (++batched == BATCH_SIZE) {
+					phoneSt.executeBatch();
+					batched = 0;
+				}
+			}
+			phoneSt.executeBatch();
+
+			// explicit IDs do not advance the identity columns
+			restartIdentity(connection, "Contact", reader.getLastContactID());
+			restartIdentity(connection, "PhoneNumber", reader.getLastPhoneID());
+			connection.commit();
+		} catch (SQLException ex) {
+			String msg = "Error when importing snapshot of contacts with phones into DB.";
+			logger.error(msg, ex);
+			throw new ServiceFailureException(msg, ex);
+		} finally {
+			DBUtils.doRollbackQuietly(connection);
+			DBUtils.closeQuietly(connection, lock, contactSt, phoneSt);
+		}
+	}
+
+	private static long lastIdentity(Connection connection, String table) throws SQLException {
+		try (PreparedStatement st = connection.prepareStatement(
+				"VALUES SYSCS_UTIL.SYSCS_PEEK_AT_IDENTITY(CURRENT SCHEMA, ?)")) {
+			st.setString(1, table);
+			try (ResultSet set = st.executeQuery()) {
+				set.next();
+				return set.getLong(1) - 1;
+			}
+		}
+	}
+
+	private static void restartIdentity(Connection connection, String table, long lastID) throws SQLException {
+		long next = Math.max(lastID, DBUtils.getMaxId(connection, table)) + 1;
+		try (Statement st = connection.createStatement()) {
+			st.execute("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + next);
+		}
+	}
+
+	public Stream<Contact> streamAllContacts() {
+		checkDataSourceNotNull(dataSource, logger);
+		Connection connection = null;
+		PreparedStatement st = null;
+
+		logger.info("Streaming all contacts");
+
+		try {
+			connection = dataSource.getConnection();
+			st = connection.prepareStatement(
+					"SELECT id, first_name, surname, primary_email, birthday FROM Contact ORDER BY id",
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			st.setFetchSize(fetchSize);
+			ContactCursor cursor = new ContactCursor(connection, st, st.executeQuery());
+			return StreamSupport.stream(cursor, false).onClose(cursor::close);
+		} catch (SQLException ex) {
+			DBUtils.closeQuietly(connection, st);
+			String msg = "Error when streaming all contacts from DB";
+			logger.error(msg, ex);
+			throw new ServiceFailureException(msg, ex);
+		}
+	}
+
+	public Stream<Map.Entry<Contact, List<PhoneNumber>>> streamAllContactsWithPhones() {
+		checkDataSourceNotNull(dataSource, logger);
+		Connection connection = null;
+		PreparedStatement st = null;
+
+		logger.info("Streaming all contacts with phones");
+
+		try {
+			connection = dataSource.getConnection();
+			st = connection.prepareStatement(
+					"SELECT c.id, c.first_name, c.surname, c.primary_email, c.birthday, " +
+							"p.id AS phone_id, p.number, p.country_code, p.phone_type FROM Contact AS c " +
+							"LEFT JOIN PhoneNumber AS p ON c.id = p.contact_id ORDER BY c.id",
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			st.setFetchSize(fetchSize);
+			ContactWithPhonesCursor cursor = new ContactWithPhonesCursor(connection, st, st.executeQuery());
+			return StreamSupport.stream(cursor, false).onClose(cursor::close);
+		} catch (SQLException ex) {
+			DBUtils.closeQuietly(connection, st);
+			String msg = "Error when streaming all contacts with phones from DB";
+			logger.error(msg, ex);
+			throw new ServiceFailureException(msg, ex);
+		}
+	}
+
 	public List<Contact> findContactsByName(String name) {
 		checkDataSourceNotNull(dataSource, logger);
 		Connection connection = null;
@@ -194,19 +754,25 @@ public class ContactManagerImpl implements ContactManager {
 		logger.info("Retrieving contacts starting with '" + name + "'");
 
 		if (name == null) {
-			msg = "Name characters are null.";
+			String msg = "Name characters are null.";
 			logger.error(msg);
 			throw new IllegalArgumentException(msg);
 		}
 
 		try {
 			connection = dataSource.getConnection();
+			// UNION lets each branch be answered by a range scan of its own search index
 			st = connection.prepareStatement(
-					"SELECT id, first_name, surname, primary_email, birthday FROM Contact WHERE first_name LIKE ?");
-			st.setString(1, name + "%");
+					"SELECT id, first_name, surname, primary_email, birthday FROM Contact " +
+							"WHERE search_first_name LIKE ? ESCAPE '\\' " +
+							"UNION SELECT id, first_name, surname, primary_email, birthday FROM Contact " +
+							"WHERE search_surname LIKE ? ESCAPE '\\'");
+			String pattern = DBUtils.escapeLike(DBUtils.toSearchKey(name)) + "%";
+			st.setString(1, pattern);
+			st.setString(2, pattern);
 			return executeQueryForMultipleContacts(st);
 		} catch (SQLException ex) {
-			msg = String.format("Error when finding all contacts starting with name: %s", name);
+			String msg = String.format("Error when finding all contacts starting with name: %s", name);
 			logger.error(msg, ex);
 			throw new ServiceFailureException(msg, ex);
 		} finally {
@@ -215,27 +781,51 @@ public class ContactManagerImpl implements ContactManager {
 	}
 
 	public List<Contact> findContactsByNumber(String number) {
-		checkDataSourceNotNull(dataSource, logger);
-		Connection connection = null;
-		PreparedStatement st = null;
-
 		logger.info("Retrieving contacts with number starting with '" + number + "'");
 
 		if (number == null) {
-			msg = "Number characters are null.";
+			String msg = "Number characters are null.";
 			logger.error(msg);
 			throw new IllegalArgumentException(msg);
 		}
 
+		return findContactsByNumberColumn("search_number", DBUtils.toDigits(number));
+	}
+
+	public List<Contact> findContactsByNumberSuffix(String suffix) {
+		logger.info("Retrieving contacts with number ending with '" + suffix + "'");
+
+		if (suffix == null) {
+			String msg = "Number characters are null.";
+			logger.error(msg);
+			throw new IllegalArgumentException(msg);
+		}
+
+		return findContactsByNumberColumn("reversed_number", DBUtils.toReversedDigits(suffix));
+	}
+
+	/**
+	 * Finds contacts having a phone whose normalized number column starts with given digits.
+	 * The IN subquery makes contacts with several matching phones appear only once.
+	 * No digits would make the pattern match every phone, so they match none.
+	 */
+	private List<Contact> findContactsByNumberColumn(String column, String digits) {
+		checkDataSourceNotNull(dataSource, logger);
+		if (digits.isEmpty()) {
+			return new ArrayList<>();
+		}
+		Connection connection = null;
+		PreparedStatement st = null;
+
 		try {
 			connection = dataSource.getConnection();
 			st = connection.prepareStatement(
-					"SELECT c.id, c.first_name, c.surname, c.primary_email, c.birthday FROM Contact AS c " +
-							"JOIN PhoneNumber AS p ON c.id = p.contact_id WHERE number LIKE ?");
-			st.setString(1, number + "%");
+					"SELECT id, first_name, surname, primary_email, birthday FROM Contact WHERE id IN " +
+							"(SELECT contact_id FROM PhoneNumber WHERE " + column + " LIKE ?)");
+			st.setString(1, digits + "%");
 			return executeQueryForMultipleContacts(st);
 		} catch (SQLException ex) {
-			msg = String.format("Error when finding all contacts starting with number: %s", number);
+			String msg = String.format("Error when finding all contacts by number digits: %s", digits);
 			logger.error(msg, ex);
 			throw new ServiceFailureException(msg, ex);
 		} finally {
@@ -243,6 +833,96 @@ public class ContactManagerImpl implements ContactManager {
 		}
 	}
 
+	public Stream<Contact> streamContactsByName(String name) {
+		checkDataSourceNotNull(dataSource, logger);
+		logger.info("Streaming contacts starting with '" + name + "'");
+
+		if (name == null) {
+			String msg = "Name characters are null.";
+			logger.error(msg);
+			throw new IllegalArgumentException(msg);
+		}
+
+		// unlike UNION, UNION ALL does not sort the rows to remove duplicates, so the
+		// first ones come before the rest is found; the second branch skips contacts
+		// already found by the first one
+		String pattern = DBUtils.escapeLike(DBUtils.toSearchKey(name)) + "%";
+		return streamContacts(
+				"SELECT id, first_name, surname, primary_email, birthday FROM Contact " +
+						"WHERE search_first_name LIKE ? ESCAPE '\\' " +
+						"UNION ALL SELECT id, first_name, surname, primary_email, birthday FROM Contact " +
+						"WHERE search_surname LIKE ? ESCAPE '\\' " +
+						"AND (search_first_name IS NULL OR search_first_name NOT LIKE ? ESCAPE '\\')",
+				String.format("contacts starting with name: %s", name), pattern, pattern, pattern);
+	}
+
+	public Stream<Contact> streamContactsByNumber(String number) {
+		checkDataSourceNotNull(dataSource, logger);
+		logger.info("Streaming contacts with number starting with '" + number + "'");
+
+		if (number == null) {
+			String msg = "Number characters are null.";
+			logger.error(msg);
+			throw new IllegalArgumentException(msg);
+		}
+
+		String digits = DBUtils.toDigits(number);
+		if (digits.isEmpty()) {
+			return Stream.empty();
+		}
+		return streamContacts(
+				"SELECT id, first_name, surname, primary_email, birthday FROM Contact WHERE id IN " +
+						"(SELECT contact_id FROM PhoneNumber WHERE search_number LIKE ?)",
+				String.format("contacts by number digits: %s", digits), digits + "%");
+	}
+
+	/**
+	 * Streams contacts of the query with string parameters. The query can be
+	 * cancelled by {@link QueryCancellation} bound to the current thread, also
+	 * while the stream is consumed.
+	 *
+	 * @throws CancellationException when the query was cancelled.
+	 */
+	private Stream<Contact> streamContacts(String sql, String description, String... parameters) {
+		QueryCancellation cancellation = QueryCancellation.current();
+		Connection connection = null;
+		PreparedStatement st = null;
+
+		try {
+			connection = dataSource.getConnection();
+			st = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			st.setFetchSize(fetchSize);
+			for (int i = 0; i < parameters.length; i++) {
+				st.setString(i + 1, parameters[i]);
+			}
+			if (cancellation != null) {
+				cancellation.register(st);
+			}
+			ContactCursor cursor = new ContactCursor(connection, st, st.executeQuery(), cancellation);
+			return StreamSupport.stream(cursor, false).onClose(cursor::close);
+		} catch (SQLException ex) {
+			closeCancellable(connection, st, cancellation);
+			// error of a statement cancelled by the driver
+			if (cancellation != null) {
+				cancellation.checkCancelled();
+			}
+			String msg = "Error when streaming " + description + " from DB";
+			logger.error(msg, ex);
+			throw new ServiceFailureException(msg, ex);
+		} catch (RuntimeException ex) {
+			closeCancellable(connection, st, cancellation);
+			throw ex;
+		}
+	}
+
+	private static void closeCancellable(Connection connection, PreparedStatement st,
+										 QueryCancellation cancellation) {
+		if (cancellation != null) {
+			cancellation.unregister(st);
+		}
+		DBUtils.closeQuietly(connection, st);
+	}
+
 	/**
 	 * Validates contact
 	 *
@@ -252,17 +932,167 @@ public class ContactManagerImpl implements ContactManager {
 	 * when birthday is after current LocalDate
 	 */
 	public void validateContact(Contact contact) {
-		checkContactNotNull(contact, logger);
+		CheckHelpers.validateContact(contact, clock, logger);
+	}
+
+	static void checkLimitPositive(int limit) {
+		if (limit <= 0) {
+			String msg = "Page limit must be positive.";
+			logger.error(msg);
+			throw new IllegalArgumentException(msg);
+		}
+	}
+
+	static void checkOffsetNotNegative(long offset) {
+		if (offset < 0) {
+			String msg = "Page offset must not be negative.";
+			logger.error(msg);
+			throw new IllegalArgumentException(msg);
+		}
+	}
+
+	/**
+	 * Spliterator reading contacts from an open result set. Releases the
+	 * connection as soon as the result set is exhausted or the cursor is closed.
+	 * A cursor with {@link QueryCancellation} stops reading once it is cancelled.
+	 */
+	private static abstract class Cursor<T> extends Spliterators.AbstractSpliterator<T> {
+		private final Connection connection;
+		private final PreparedStatement st;
+		protected final ResultSet set;
+		private final QueryCancellation cancellation;
+		private boolean closed;
+		private int count;
+
+		Cursor(Connection connection, PreparedStatement st, ResultSet set) {
+			this(connection, st, set, null);
+		}
+
+		Cursor(Connection connection, PreparedStatement st, ResultSet set, QueryCancellation cancellation) {
+			super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT);
+			this.connection = connection;
+			this.st = st;
+			this.set = set;
+			this.cancellation = cancellation;
+		}
+
+		/**
+		 * @return next element read from the result set, or null when it is exhausted.
+		 */
+		protected abstract T read() throws SQLException;
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			if (closed) {
+				return false;
+			}
+			try {
+				T next = read();
+				if (cancellation != null && cancellation.isCancelled()) {
+					close();
+					cancellation.checkCancelled();
+				}
+				if (next == null) {
+					close();
+					return false;
+				}
+				count++;
+				action.accept(next);
+				return true;
+			} catch (SQLException ex) {
+				close();
+				// error of a statement cancelled by the driver
+				if (cancellation != null) {
+					cancellation.checkCancelled();
+				}
+				String msg = "Error when streaming contacts from DB";
+				logger.error(msg, ex);
+				throw new ServiceFailureException(msg, ex);
+			}
+		}
 
-		ResourceBundle bundle = ResourceBundle.getBundle("messages");
+		void close() {
+			if (!closed) {
+				closed = true;
+				try {
+					set.close();
+				} catch (SQLException ex) {
+					logger.error("Error during result set closing.", ex);
+				}
+				if (cancellation != null) {
+					cancellation.unregister(st);
+				}
+				DBUtils.closeQuietly(connection, st);
+				logger.info(String.format("Streamed %d contacts", count));
+			}
+		}
+	}
+
+	private static class ContactCursor extends Cursor<Contact> {
+
+		ContactCursor(Connection connection, PreparedStatement st, ResultSet set) {
+			super(connection, st, set);
+		}
 
-		if (contact.getFirstName() == null && contact.getSurname() == null) {
-			throw new ValidationException(bundle.getString("EMPTY_NAMES"));
+		ContactCursor(Connection connection, PreparedStatement st, ResultSet set, QueryCancellation cancellation) {
+			super(connection, st, set, cancellation);
 		}
 
-		LocalDate today = LocalDate.now(clock);
-		if (contact.getBirthday() != null && contact.getBirthday().isAfter(today)) {
-			throw new ValidationException(bundle.getString("BIRTHDAY_PAST_TODAY"));
+		@Override
+		protected Contact read() throws SQLException {
+			return set.next() ? rowToContact(set) : null;
+		}
+	}
+
+	/**
+	 * Cursor over rows of contacts joined with their phones ordered by
+	 * contact ID. Rows of one contact follow each other, the first row of the
+	 * next contact is read ahead.
+	 */
+	private static class ContactWithPhonesCursor extends Cursor<Map.Entry<Contact, List<PhoneNumber>>> {
+		private Contact next;
+		private List<PhoneNumber> nextPhones;
+		private boolean started;
+
+		ContactWithPhonesCursor(Connection connection, PreparedStatement st, ResultSet set) {
+			super(connection, st, set);
+		}
+
+		@Override
+		protected Map.Entry<Contact, List<PhoneNumber>> read() throws SQLException {
+			if (!started) {
+				started = true;
+				if (set.next()) {
+					startContact();
+				}
+			}
+			if (next == null) {
+				return null;
+			}
+			Contact contact = next;
+			List<PhoneNumber> phones = nextPhones;
+			next = null;
+			while (set.next()) {
+				if (set.getLong("id") != contact.getID()) {
+					startContact();
+					break;
+				}
+				addPhone(phones);
+			}
+			return new AbstractMap.SimpleImmutableEntry<>(contact, phones);
+		}
+
+		private void startContact() throws SQLException {
+			next = rowToContact(set);
+			nextPhones = new ArrayList<>();
+			addPhone(nextPhones);
+		}
+
+		private void addPhone(List<PhoneNumber> phones) throws SQLException {
+			set.getLong("phone_id");
+			if (!set.wasNull()) {
+				phones.add(rowToPhoneNumber(set));
+			}
 		}
 	}
 
@@ -283,17 +1113,76 @@ public class ContactManagerImpl implements ContactManager {
 		}
 	}
 
+	/**
+	 * Reads all contacts of the query. The query can be cancelled by
+	 * {@link QueryCancellation} bound to the current thread.
+	 *
+	 * @throws CancellationException when the query was cancelled.
+	 */
 	private static List<Contact> executeQueryForMultipleContacts(PreparedStatement st) throws SQLException {
+		QueryCancellation cancellation = QueryCancellation.current();
+		if (cancellation != null) {
+			cancellation.register(st);
+		}
+		try {
+			ResultSet set = st.executeQuery();
+			List<Contact> contacts = new ArrayList<>();
+
+			// Derby reads rows lazily, so leaving the loop stops the rest of the query
+			while (set.next()) {
+				if (cancellation != null) {
+					cancellation.checkCancelled();
+				}
+				contacts.add(rowToContact(set));
+			}
+			logger.info(String.format("Retrieved %d contacts", contacts.size()));
+			return contacts;
+		} catch (SQLException ex) {
+			// error of a statement cancelled by the driver
+			if (cancellation != null) {
+				cancellation.checkCancelled();
+			}
+			throw ex;
+		} finally {
+			if (cancellation != null) {
+				cancellation.unregister(st);
+			}
+		}
+	}
+
+	private static Map<Contact, List<PhoneNumber>> executeQueryForContactsWithPhones(PreparedStatement st)
+			throws SQLException {
 		ResultSet set = st.executeQuery();
-		List<Contact> contacts = new ArrayList<>();
+		Map<Contact, List<PhoneNumber>> contacts = new LinkedHashMap<>();
 
+		// rows are ordered by contact ID, so a contact's rows always follow each other
+		Contact contact = null;
+		List<PhoneNumber> phones = null;
 		while (set.next()) {
-			contacts.add(rowToContact(set));
+			if (contact == null || contact.getID() != set.getLong("id")) {
+				contact = rowToContact(set);
+				phones = new ArrayList<>();
+				contacts.put(contact, phones);
+			}
+			set.getLong("phone_id");
+			if (!set.wasNull()) {
+				phones.add(rowToPhoneNumber(set));
+			}
 		}
-		logger.info(String.format("Retrieved %d contacts", contacts.size()));
+		logger.info(String.format("Retrieved %d contacts with phones", contacts.size()));
 		return contacts;
 	}
 
+	static private PhoneNumber rowToPhoneNumber(ResultSet set) throws SQLException {
+		PhoneNumber phone = new PhoneNumber();
+		phone.setID(set.getLong("phone_id"));
+		phone.setNumber(set.getString("number"));
+		phone.setCountryCode(set.getString("country_code"));
+		phone.setPhoneType(set.getString("phone_type"));
+
+		return phone;
+	}
+
 	static private Contact rowToContact(ResultSet set) throws SQLException {
 		Contact contact = new Contact();
 		contact.setID(set.getLong("id"));
@@ -0,0 +1,397 @@
+package contactmanager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * In-memory index answering prefix searches of contacts by name and phone
+ * number and suffix searches by phone number without accessing the database.
+ * Keys are kept sorted in compact arrays of {@link PrefixIndex}, so a prefix
+ * search is a range lookup which stops once it found enough contacts. The
+ * index is loaded from the database once and then updated by
+ * {@link ContactManagerImpl} and {@link PhoneNumberManagerImpl} after each
+ * committed write. Managers commit through {@link #commit}, so that writes
+ * of the same entity update the index in the order of their commits.
+ *
+ * @author David Frankl
+ */
+public class ContactSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContactSearchIndex.class.getName());
+
+    private static final int WRITE_LOCKS = 64;
+    private static final long[] NO_PHONES = new long[0];
+
+    // commit and index update of an entity are done under the lock of its ID
+    private final ReentrantLock[] writeLocks = new ReentrantLock[WRITE_LOCKS];
+
+    private final Map<Long, Contact> contacts = new ConcurrentHashMap<>();
+    // guarded by this
+    private final Map<Long, IndexedPhone> phones = new HashMap<>();
+    // contact ID -> IDs of its phones, guarded by this
+    private final Map<Long, long[]> contactPhones = new HashMap<>();
+
+    // normalized names, entries identified by contact IDs
+    private final PrefixIndex names = new PrefixIndex();
+    // number digits, entries identified by phone IDs
+    private final PrefixIndex numbers = new PrefixIndex();
+    // reversed number digits, entries identified by phone IDs
+    private final PrefixIndex reversedNumbers = new PrefixIndex();
+
+    private static class IndexedPhone {
+        private final Long contactID;
+        private final String key;
+        private final String reversedKey;
+
+        IndexedPhone(Long contactID, String key, String reversedKey) {
+            this.contactID = contactID;
+            this.key = key;
+            this.reversedKey = reversedKey;
+        }
+    }
+
+    public ContactSearchIndex() {
+        for (int i = 0; i < WRITE_LOCKS; i++) {
+            writeLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Commits the transaction and applies its change to the index under the
+     * write lock of the ID. A concurrent write of the same row waits for the
+     * commit in the DB, and then for the lock until the change is applied,
+     * so the changes are applied in the order of their commits. Only the
+     * commit is done under the lock, never a statement waiting for DB locks.
+     *
+     * @param connection: connection of the transaction.
+     * @param index: index to be updated, null for none.
+     * @param ID: ID of the written contact, or of the phone for phone updates and removals.
+     * @param update: change of the index.
+     * @throws SQLException when the commit fails, the index is not changed then.
+     */
+    static void commit(Connection connection, ContactSearchIndex index, Long ID,
+                       Consumer<ContactSearchIndex> update) throws SQLException {
+        if (index == null) {
+            connection.commit();
+            return;
+        }
+        ReentrantLock lock = index.writeLocks[Math.floorMod(ID.hashCode(), WRITE_LOCKS)];
+        lock.lock();
+        try {
+            connection.commit();
+            update.accept(index);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Commits the transaction writing many entities and applies its change
+     * to the index under all write locks, see {@link #commit}.
+     *
+     * @param connection: connection of the transaction.
+     * @param index: index to be updated, null for none.
+     * @param update: change of the index.
+     * @throws SQLException when the commit fails, the index is not changed then.
+     */
+    static void commitAll(Connection connection, ContactSearchIndex index,
+                          Consumer<ContactSearchIndex> update) throws SQLException {
+        if (index == null) {
+            connection.commit();
+            return;
+        }
+        int locked = 0;
+        try {
+            // always locked in the same order
+            for (; locked < WRITE_LOCKS; locked++) {
+                index.writeLocks[locked].lock();
+            }
+            connection.commit();
+            update.accept(index);
+        } finally {
+            while (locked > 0) {
+                index.writeLocks[--locked].unlock();
+            }
+        }
+    }
+
+    /**
+     * Loads all contacts and phones from the database into the index. The
+     * contacts are streamed and the keys sorted at once, so neither all rows
+     * nor a node per key are held in memory.
+     *
+     * @param contactManager: manager to read contacts and phones with.
+     */
+    public synchronized void load(ContactManager contactManager) {
+        List<PrefixIndex.Entry> nameEntries = new ArrayList<>();
+        List<PrefixIndex.Entry> numberEntries = new ArrayList<>();
+        List<PrefixIndex.Entry> reversedNumberEntries = new ArrayList<>();
+        try (Stream<Map.Entry<Contact, List<PhoneNumber>>> all = contactManager.streamAllContactsWithPhones()) {
+            all.forEach(entry -> {
+                Contact contact = Contact.copyOf(entry.getKey());
+                Long ID = contact.getID();
+                Contact previous = contacts.put(ID, contact);
+                if (previous != null) {
+                    removeNames(previous);
+                }
+                addName(nameEntries, contact.getFirstName(), ID);
+                addName(nameEntries, contact.getSurname(), ID);
+                for (PhoneNumber phone : entry.getValue()) {
+                    IndexedPhone indexed = indexPhone(ID, phone);
+                    numberEntries.add(new PrefixIndex.Entry(indexed.key, phone.getID(), ID));
+                    reversedNumberEntries.add(new PrefixIndex.Entry(indexed.reversedKey, phone.getID(), ID));
+                }
+            });
+        }
+        names.addAll(nameEntries);
+        numbers.addAll(numberEntries);
+        reversedNumbers.addAll(reversedNumberEntries);
+        logger.info(String.format("Search index loaded with %d contacts and %d phones", contacts.size(), phones.size()));
+    }
+
+    /**
+     * Adds contact to the index or replaces its previous version.
+     *
+     * @param contact: stored contact.
+     */
+    public synchronized void putContact(Contact contact) {
+        Contact copy = Contact.copyOf(contact);
+        Contact previous = contacts.put(copy.getID(), copy);
+        if (previous != null) {
+            removeNames(previous);
+        }
+        putName(copy.getFirstName(), copy.getID());
+        putName(copy.getSurname(), copy.getID());
+    }
+
+    /**
+     * Removes contact and all of its phones from the index.
+     *
+     * @param contact: removed contact.
+     */
+    public synchronized void removeContact(Contact contact) {
+        Contact previous = contacts.remove(contact.getID());
+        if (previous != null) {
+            removeNames(previous);
+        }
+        long[] phoneIDs = contactPhones.remove(contact.getID());
+        if (phoneIDs != null) {
+            for (long phoneID : phoneIDs) {
+                IndexedPhone phone = phones.remove(phoneID);
+                numbers.remove(phone.key, phoneID);
+                reversedNumbers.remove(phone.reversedKey, phoneID);
+            }
+        }
+    }
+
+    /**
+     * Adds phone to the index or replaces its previous version.
+     *
+     * @param contactID: ID of the contact the phone belongs to.
+     * @param phone: stored phone.
+     */
+    public synchronized void putPhone(Long contactID, PhoneNumber phone) {
+        IndexedPhone indexed = indexPhone(contactID, phone);
+        numbers.add(indexed.key, phone.getID(), contactID);
+        reversedNumbers.add(indexed.reversedKey, phone.getID(), contactID);
+    }
+
+    /**
+     * Replaces indexed number of an already indexed phone.
+     *
+     * @param phone: updated phone.
+     */
+    public synchronized void updatePhone(PhoneNumber phone) {
+        IndexedPhone previous = phones.get(phone.getID());
+        if (previous != null) {
+            putPhone(previous.contactID, phone);
+        }
+    }
+
+    /**
+     * Removes phone from the index.
+     *
+     * @param phone: removed phone.
+     */
+    public synchronized void removePhone(PhoneNumber phone) {
+        IndexedPhone previous = phones.remove(phone.getID());
+        if (previous != null) {
+            numbers.remove(previous.key, phone.getID());
+            reversedNumbers.remove(previous.reversedKey, phone.getID());
+            removeContactPhone(previous.contactID, phone.getID());
+        }
+    }
+
+    /**
+     * Returns contacts which first name or surname starts with name, ignoring
+     * case and accents (same semantics as {@link ContactManager#findContactsByName}).
+     *
+     * @param name: Characters or full name by which to search for contacts.
+     * @return list of matching contacts ordered by the matched name.
+     * @throws IllegalArgumentException when name is null.
+     */
+    public List<Contact> findContactsByName(String name) {
+        return findContactsByName(name, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns at most limit contacts which first name or surname starts with
+     * name, see {@link #findContactsByName(String)}.
+     *
+     * @param name: Characters or full name by which to search for contacts.
+     * @param limit: maximal number of returned contacts.
+     * @return list of at most limit matching contacts ordered by the matched name.
+     * @throws IllegalArgumentException when name is null or limit is not positive.
+     */
+    public List<Contact> findContactsByName(String name, int limit) {
+        if (name == null) {
+            String msg = "Name characters are null.";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+        ContactManagerImpl.checkLimitPositive(limit);
+        return findContacts(names, DBUtils.toSearchKey(name), limit);
+    }
+
+    /**
+     * Returns contacts having a phone which digits start with digits of number
+     * (same semantics as {@link ContactManager#findContactsByNumber}).
+     *
+     * @param number: Characters or full number by which to search for contacts.
+     * @return list of matching contacts ordered by the matched number.
+     * @throws IllegalArgumentException when number is null.
+     */
+    public List<Contact> findContactsByNumber(String number) {
+        return findContactsByNumber(number, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns at most limit contacts having a phone which digits start with
+     * digits of number, see {@link #findContactsByNumber(String)}.
+     *
+     * @param number: Characters or full number by which to search for contacts.
+     * @param limit: maximal number of returned contacts.
+     * @return list of at most limit matching contacts ordered by the matched number.
+     * @throws IllegalArgumentException when number is null or limit is not positive.
+     */
+    public List<Contact> findContactsByNumber(String number, int limit) {
+        if (number == null) {
+            String msg = "Number characters are null.";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+        ContactManagerImpl.checkLimitPositive(limit);
+        return findNumbers(numbers, DBUtils.toDigits(number), limit);
+    }
+
+    /**
+     * Returns contacts having a phone which digits end with digits of suffix
+     * (same semantics as {@link ContactManager#findContactsByNumberSuffix}).
+     *
+     * @param suffix: Last characters of number by which to search for contacts.
+     * @return list of matching contacts ordered by the matched reversed number.
+     * @throws IllegalArgumentException when suffix is null.
+     */
+    public List<Contact> findContactsByNumberSuffix(String suffix) {
+        if (suffix == null) {
+            String msg = "Number characters are null.";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+        return findNumbers(reversedNumbers, DBUtils.toReversedDigits(suffix), Integer.MAX_VALUE);
+    }
+
+    private List<Contact> findNumbers(PrefixIndex keys, String digits, int limit) {
+        // no digits would match every phone
+        return digits.isEmpty() ? new ArrayList<>() : findContacts(keys, digits, limit);
+    }
+
+    private List<Contact> findContacts(PrefixIndex keys, String prefix, int limit) {
+        Set<Long> IDs = new LinkedHashSet<>();
+        keys.find(prefix, limit, IDs);
+        List<Contact> result = new ArrayList<>(IDs.size());
+        for (Long ID : IDs) {
+            Contact contact = contacts.get(ID);
+            if (contact != null) {
+                result.add(Contact.copyOf(contact));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replaces the phone in the maps of phones and removes keys of its
+     * previous version, the caller adds its new keys.
+     *
+     * @return the phone with its keys.
+     */
+    private IndexedPhone indexPhone(Long contactID, PhoneNumber phone) {
+        String key = DBUtils.toDigits(phone.getNumber());
+        IndexedPhone indexed = new IndexedPhone(contactID, key, DBUtils.toReversedDigits(phone.getNumber()));
+        IndexedPhone previous = phones.put(phone.getID(), indexed);
+        if (previous != null) {
+            numbers.remove(previous.key, phone.getID());
+            reversedNumbers.remove(previous.reversedKey, phone.getID());
+            removeContactPhone(previous.contactID, phone.getID());
+        }
+        long[] phoneIDs = contactPhones.getOrDefault(contactID, NO_PHONES);
+        phoneIDs = Arrays.copyOf(phoneIDs, phoneIDs.length + 1);
+        phoneIDs[phoneIDs.length - 1] = phone.getID();
+        contactPhones.put(contactID, phoneIDs);
+        return indexed;
+    }
+
+    private void removeContactPhone(Long contactID, long phoneID) {
+        long[] phoneIDs = contactPhones.get(contactID);
+        if (phoneIDs == null) {
+            return;
+        }
+        long[] remaining = new long[phoneIDs.length];
+        int count = 0;
+        for (long ID : phoneIDs) {
+            if (ID != phoneID) {
+                remaining[count++] = ID;
+            }
+        }
+        if (count == 0) {
+            contactPhones.remove(contactID);
+        } else {
+            contactPhones.put(contactID, Arrays.copyOf(remaining, count));
+        }
+    }
+
+    private void putName(String name, Long ID) {
+        if (name != null) {
+            names.add(DBUtils.toSearchKey(name), ID, ID);
+        }
+    }
+
+    private static void addName(List<PrefixIndex.Entry> entries, String name, Long ID) {
+        if (name != null) {
+            entries.add(new PrefixIndex.Entry(DBUtils.toSearchKey(name), ID, ID));
+        }
+    }
+
+    private void removeNames(Contact contact) {
+        if (contact.getFirstName() != null) {
+            names.remove(DBUtils.toSearchKey(contact.getFirstName()), contact.getID());
+        }
+        if (contact.getSurname() != null) {
+            names.remove(DBUtils.toSearchKey(contact.getSurname()), contact.getID());
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package contactmanager;
+
+import common.ServiceFailureException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary snapshot of all contacts and phones of a {@link StorageEngine},
+ * written when the application stops and loaded instead of the sample data
+ * when it starts again. Entities keep their IDs.
+ *
+ * The file holds a header, all contacts, all phones each with ID of its
+ * contact and a trailer with the highest IDs assigned so far, so that IDs of
+ * deleted entities are not reused, and numbers of contacts and phones, which
+ * detect a truncated file.
+ *
+ * @author David Frankl
+ */
+public class ContactSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContactSnapshot.class.getName());
+
+    private static final int MAGIC = 0x43534E50;
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final byte END = 0;
+    private static final byte CONTACT = 1;
+    private static final byte PHONE = 2;
+
+    /**
+     * Writes snapshot of the engine. The snapshot is written next to the
+     * file and then moved over it, so the previous snapshot is kept when
+     * writing fails.
+     *
+     * @param engine: engine to write contacts and phones of.
+     * @param file: path of the snapshot.
+     * @throws ServiceFailureException when the snapshot cannot be written.
+     */
+    public static void write(StorageEngine engine, Path file) {
+        long start = System.nanoTime();
+        Path written = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (Writer writer = new Writer(new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(written), BUFFER_SIZE)))) {
+                engine.exportSnapshot(writer);
+                writer.finish();
+                logger.info(String.format("Snapshot of %d contacts and %d phones written to %s in %d ms",
+                        writer.contacts, writer.phones, file,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+            }
+            Files.move(written, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            String msg = String.format("Error when writing snapshot %s.", file);
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        } finally {
+            deleteQuietly(written);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            logger.error("Error when deleting " + file, ex);
+        }
+    }
+
+    /**
+     * Loads snapshot into empty engine.
+     *
+     * @param engine: engine without any contacts.
+     * @param file: path of the snapshot.
+     * @throws ServiceFailureException when the snapshot cannot be read or is damaged.
+     */
+    public static void read(StorageEngine engine, Path file) {
+        long start = System.nanoTime();
+        try (Reader reader = new Reader(new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)))) {
+            engine.importSnapshot(reader);
+            logger.info(String.format("Snapshot of %d contacts and %d phones loaded from %s in %d ms",
+                    reader.contacts, reader.phones, file,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        } catch (IOException ex) {
+            String msg = String.format("Error when reading snapshot %s.", file);
+            logger.error(msg, ex);
+            throw new ServiceFailureException(msg, ex);
+        }
+    }
+
+    /**
+     * Writes contacts and then phones into the snapshot.
+     */
+    public static class Writer implements Closeable {
+        private final DataOutputStream out;
+        private long contacts;
+        private long phones;
+        private long lastContactID;
+        private long lastPhoneID;
+
+        Writer(DataOutputStream out) throws IOException {
+            this.out = out;
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+
+        /**
+         * @param contact: contact with ID.
+         * @throws IllegalStateException when a phone was already written.
+         * @throws ServiceFailureException when the snapshot cannot be written.
+         */
+        public void writeContact(Contact contact) {
+            if (phones > 0) {
+                throw new IllegalStateException("Contacts must be written before phones.");
+            }
+            try {
+                out.writeByte(CONTACT);
+                out.writeLong(contact.getID());
+                writeString(contact.getFirstName());
+                writeString(contact.getSurname());
+                writeString(contact.getPrimaryEmail());
+                out.writeLong(contact.getBirthday() == null ? Long.MIN_VALUE : contact.getBirthday().toEpochDay());
+                lastContactID = Math.max(lastContactID, contact.getID());
+                contacts++;
+            } catch (IOException ex) {
+                throw new ServiceFailureException("Error when writing contact to snapshot.", ex);
+            }
+        }
+
+        /**
+         * @param contactID: ID of the contact the phone belongs to.
+         * @param phone: phone with ID.
+         * @throws ServiceFailureException when the snapshot cannot be written.
+         */
+        public void writePhone(long contactID, PhoneNumber phone) {
+            try {
+                out.writeByte(PHONE);
+                out.writeLong(phone.getID());
+                out.writeLong(contactID);
+                writeString(phone.getNumber());
+                writeString(phone.getCountryCode());
+                writeString(phone.getPhoneType());
+                lastPhoneID = Math.max(lastPhoneID, phone.getID());
+                phones++;
+            } catch (IOException ex) {
+                throw new ServiceFailureException("Error when writing phone to snapshot.", ex);
+            }
+        }
+
+        /**
+         * Records the highest IDs assigned so far, when they are higher than
+         * IDs of the written entities.
+         *
+         * @param lastContactID: highest contact ID assigned so far.
+         * @param lastPhoneID: highest phone ID assigned so far.
+         */
+        public void reserveIDs(long lastContactID, long lastPhoneID) {
+            this.lastContactID = Math.max(this.lastContactID, lastContactID);
+            this.lastPhoneID = Math.max(this.lastPhoneID, lastPhoneID);
+        }
+
+        private void writeString(String value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeUTF(value);
+            }
+        }
+
+        void finish() throws IOException {
+            out.writeByte(END);
+            out.writeLong(lastContactID);
+            out.writeLong(lastPhoneID);
+            out.writeLong(contacts);
+            out.writeLong(phones);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads contacts and then phones of the snapshot.
+     */
+    public static class Reader implements Closeable {
+        private final DataInputStream in;
+        private byte next;
+        private long contacts;
+        private long phones;
+        private long contactID;
+        private long lastContactID;
+        private long lastPhoneID;
+
+        Reader(DataInputStream in) throws IOException {
+            this.in = in;
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("File is not a contact snapshot.");
+            }
+            readNext();
+        }
+
+        /**
+         * @return next contact or null when all contacts were read.
+         * @throws ServiceFailureException when the snapshot cannot be read or is damaged.
+         */
+        public Contact readContact() {
+            if (next != CONTACT) {
+                return null;
+            }
+            try {
+                Contact contact = new Contact();
+                contact.setID(in.readLong());
+                contact.setFirstName(readString());
+                contact.setSurname(readString());
+                contact.setPrimaryEmail(readString());
+                long birthday = in.readLong();
+                contact.setBirthday(birthday == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(birthday));
+                contacts++;
+                readNext();
+                return contact;
+            } catch (IOException ex) {
+                throw new ServiceFailureException("Error when reading contact from snapshot.", ex);
+            }
+        }
+
+        /**
+         * Must be called after all contacts were read.
+         *
+         * @return next phone or null when all phones were read.
+         * @throws ServiceFailureException when the snapshot cannot be read or is damaged.
+         */
+        public PhoneNumber readPhone() {
+            if (next == CONTACT) {
+                throw new IllegalStateException("Contacts must be read before phones.");
+            }
+            if (next != PHONE) {
+                return null;
+            }
+            try {
+                PhoneNumber phone = new PhoneNumber();
+                phone.setID(in.readLong());
+                contactID = in.readLong();
+                phone.setNumber(readString());
+                phone.setCountryCode(readString());
+                phone.setPhoneType(readString());
+                phones++;
+                readNext();
+                return phone;
+            } catch (IOException ex) {
+                throw new ServiceFailureException("Error when reading phone from snapshot.", ex);
+            }
+        }
+
+        /**
+         * @return ID of the contact of the phone returned by the last {@link #readPhone()}.
+         */
+        public long getContactID() {
+            return contactID;
+        }
+
+        /**
+         * @return highest contact ID assigned before the snapshot was written,
+         * known once all phones were read.
+         */
+        public long getLastContactID() {
+            return lastContactID;
+        }
+
+        /**
+         * @return highest phone ID assigned before the snapshot was written,
+         * known once all phones were read.
+         */
+        public long getLastPhoneID() {
+            return lastPhoneID;
+        }
+
+        private void readNext() throws IOException {
+            next = in.readByte();
+            if (next == END) {
+                lastContactID = in.readLong();
+                lastPhoneID = in.readLong();
+                if (in.readLong() != contacts || in.readLong() != phones) {
+                    throw new IOException("Snapshot is damaged, numbers of contacts and phones do not match.");
+                }
+            } else if (next != CONTACT && next != PHONE) {
+                throw new IOException("Snapshot is damaged, unknown record type " + next);
+            }
+        }
+
+        private String readString() throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package contactmanager;
+
+import common.ValidationException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Splits CSV file described by {@link ContactImporter.Format#CSV} into
+ * records of contacts. Fields are quoted by double quotes, which are doubled
+ * inside quoted fields, and quoted fields may span more lines. Empty fields
+ * are null.
+ *
+ * @author David Frankl
+ */
+class CsvRecordReader implements ContactImporter.RecordReader {
+
+    private static final String[] COLUMNS = {
+            "ID", "FIRST_NAME", "SURNAME", "PRIMARY_EMAIL", "BIRTHDAY", "NUMBER", "COUNTRY_CODE", "PHONE_TYPE"
+    };
+    private static final int ID = 0;
+    private static final int FIRST_NAME = 1;
+    private static final int SURNAME = 2;
+    private static final int PRIMARY_EMAIL = 3;
+    private static final int BIRTHDAY = 4;
+    private static final int NUMBER = 5;
+    private static final int COUNTRY_CODE = 6;
+    private static final int PHONE_TYPE = 7;
+
+    private final BufferedReader in;
+    // index of each known column in the rows, -1 when the file does not have it
+    private final int[] columns = new int[COLUMNS.length];
+    private long lineNumber;
+    private long rowLine;
+
+    private String[] nextRow;
+    private long nextRowLine;
+
+    /**
+     * Reads the header row.
+     *
+     * @param in: reader of the file.
+     * @throws IOException when the file cannot be read or has no header
+     * with names of the contact.
+     */
+    CsvRecordReader(BufferedReader in) throws IOException {
+        this.in = in;
+        String[] header = readRow();
+        if (header == null) {
+            throw new IOException("CSV file is empty, header row expected.");
+        }
+        if (!header[0].isEmpty() && header[0].charAt(0) == '\uFEFF') {
+            header[0] = header[0].substring(1);
+        }
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < header.length; i++) {
+            indexes.putIfAbsent(header[i].trim().toUpperCase(Locale.ROOT), i);
+        }
+        for (int i = 0; i < COLUMNS.length; i++) {
+            columns[i] = indexes.getOrDefault(COLUMNS[i], -1);
+        }
+        if (columns[FIRST_NAME] < 0 && columns[SURNAME] < 0) {
+            throw new IOException("CSV header has neither FIRST_NAME nor SURNAME column.");
+        }
+        nextRow = readRow();
+        nextRowLine = rowLine;
+    }
+
+    @Override
+    public ContactImporter.Record next() throws IOException {
+        if (nextRow == null) {
+            return null;
+        }
+        String[] first = nextRow;
+        long line = nextRowLine;
+        String id = value(first, ID);
+        List<String[]> rows = Collections.singletonList(first);
+        nextRow = readRow();
+        nextRowLine = rowLine;
+        if (id != null) {
+            while (nextRow != null && id.equals(value(nextRow, ID))) {
+                if (rows.size() == 1) {
+                    rows = new ArrayList<>(rows);
+                }
+                rows.add(nextRow);
+                nextRow = readRow();
+                nextRowLine = rowLine;
+            }
+        }
+        return new CsvRecord(rows, line);
+    }
+
+    /**
+     * @return fields of the next non-blank row or null at the end of the
+     * file; {@link #rowLine} is set to the line the row starts at.
+     */
+    private String[] readRow() throws IOException {
+        String line;
+        do {
+            line = in.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNumber++;
+        } while (line.isEmpty());
+
+        rowLine = lineNumber;
+        List<String> fields = new ArrayList<>(columns.length);
+        StringBuilder field = new StringBuilder();
+        int i = 0;
+        while (true) {
+            if (i < line.length() && line.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    int quote = line.indexOf('"', i);
+                    if (quote < 0) {
+                        field.append(line, i, line.length()).append('\n');
+                        line = in.readLine();
+                        if (line == null) {
+                            throw new IOException("Unterminated quoted field in row at line " + rowLine);
+                        }
+                        lineNumber++;
+                        i = 0;
+                    } else if (quote + 1 < line.length() && line.charAt(quote + 1) == '"') {
+                        field.append(line, i, quote + 1);
+                        i = quote + 2;
+                    } else {
+                        field.append(line, i, quote);
+                        i = quote + 1;
+                        break;
+                    }
+                }
+            }
+            // unquoted field, or characters after the closing quote kept as they are
+            int comma = line.indexOf(',', i);
+            int end = comma < 0 ? line.length() : comma;
+            field.append(line, i, end);
+            fields.add(field.toString());
+            field.setLength(0);
+            if (comma < 0) {
+                break;
+            }
+            i = comma + 1;
+        }
+        return fields.toArray(new String[fields.size()]);
+    }
+
+    private String value(String[] row, int column) {
+        int index = columns[column];
+        if (index < 0 || index >= row.length || row[index].trim().isEmpty()) {
+            return null;
+        }
+        return row[index].trim();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private class CsvRecord implements ContactImporter.Record {
+        private final List<String[]> rows;
+        private final long line;
+
+        CsvRecord(List<String[]> rows, long line) {
+            this.rows = rows;
+            this.line = line;
+        }
+
+        @Override
+        public long getLine() {
+            return line;
+        }
+
+        @Override
+        public Contact parse(List<PhoneNumber> phones, String defaultCountryCode) {
+            String[] first = rows.get(0);
+            Contact contact = new Contact();
+            contact.setFirstName(value(first, FIRST_NAME));
+            contact.setSurname(value(first, SURNAME));
+            contact.setPrimaryEmail(value(first, PRIMARY_EMAIL));
+            String birthday = value(first, BIRTHDAY);
+            if (birthday != null) {
+                try {
+                    contact.setBirthday(LocalDate.parse(birthday));
+                } catch (DateTimeParseException ex) {
+                    throw new ValidationException("Birthday " + birthday + " is not a date like 1990-12-31.");
+                }
+            }
+            for (String[] row : rows) {
+                String number = value(row, NUMBER);
+                if (number != null) {
+                    PhoneNumber phone = new PhoneNumber();
+                    phone.setNumber(number);
+                    String countryCode = value(row, COUNTRY_CODE);
+                    phone.setCountryCode(countryCode == null ? defaultCountryCode : countryCode);
+                    phone.setPhoneType(value(row, PHONE_TYPE));
+                    phones.add(phone);
+                }
+            }
+            return contact;
+        }
+    }
+}
@@ -10,9 +10,18 @@ import javax.sql.DataSource;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
+import java.text.Normalizer;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.Locale;
 import java.util.Properties;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -23,6 +32,12 @@ public class DBUtils {
 
     private static final Logger logger = Logger.getLogger(DBUtils.class.getName());
 
+    private static final String LOCK_TIMEOUT_STATE = "40XL1";
+    static final int LOCK_TIMEOUT_ATTEMPTS = 5;
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    // properties of db.properties, read by the first readDbProperties call
+    private static Properties dbProperties;
+
     /**
      * Closes connection and logs possible error.
      *
@@ -71,6 +86,46 @@ public class DBUtils {
         }
     }
 
+    /**
+     * Statements of one transaction, run again by {@link #retryOnLockTimeout}.
+     */
+    interface Transaction<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Runs inserts of a transaction and runs them again when Derby times out
+     * waiting for a lock, at most {@link #LOCK_TIMEOUT_ATTEMPTS} times. Derby
+     * gives up at once when the identity generator of a table is updated by
+     * other transactions, which happens when several threads insert the first
+     * rows of a table, and rolls the transaction back, so it can be repeated.
+     *
+     * @param connection connection of the transaction with autocommit disabled
+     * @param transaction statements of the transaction before its commit
+     * @return result of the transaction
+     * @throws SQLException when the statements fail, also when the lock
+     * timeouts go on
+     */
+    static <T> T retryOnLockTimeout(Connection connection, Transaction<T> transaction) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transaction.run(connection);
+            } catch (SQLException ex) {
+                if (!LOCK_TIMEOUT_STATE.equals(ex.getSQLState()) || attempt == LOCK_TIMEOUT_ATTEMPTS) {
+                    throw ex;
+                }
+                logger.log(Level.FINE, "Lock timeout, running the transaction again", ex);
+                connection.rollback();
+                try {
+                    Thread.sleep(attempt * 10L);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw ex;
+                }
+            }
+        }
+    }
+
     /**
      * Extract key from Result set.
      *
@@ -93,6 +148,57 @@ public class DBUtils {
         }
     }
 
+    /**
+     * Returns the highest ID stored in the table. Together with
+     * {@link #getInsertedIds} it replaces generated keys of JDBC batches, of
+     * which Derby returns only the last one.
+     *
+     * @param connection connection holding an exclusive lock on the table
+     * @param table name of the table with ID column
+     * @return the highest ID or 0 if the table is empty
+     * @throws SQLException if operation fails
+     */
+    public static long getMaxId(Connection connection, String table) throws SQLException {
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT MAX(id) FROM " + table)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * Fills IDs of rows inserted into the table after {@link #getMaxId} was
+     * called. The rows must have been inserted in one transaction holding an
+     * exclusive lock on the table, so no other rows have higher IDs and
+     * ascending IDs follow the order of insertion.
+     *
+     * @param connection connection holding an exclusive lock on the table
+     * @param table name of the table with ID column
+     * @param maxId the highest ID before the rows were inserted
+     * @param IDs array to store the IDs to
+     * @throws SQLException if operation fails or number of rows differs from length of IDs
+     */
+    public static void getInsertedIds(Connection connection, String table, long maxId, long[] IDs)
+            throws SQLException {
+        try (PreparedStatement st = connection.prepareStatement(
+                "SELECT id FROM " + table + " WHERE id > ? ORDER BY id")) {
+            st.setLong(1, maxId);
+            try (ResultSet rs = st.executeQuery()) {
+                int i = 0;
+                while (rs.next()) {
+                    if (i == IDs.length) {
+                        throw new SQLException("More rows than inserted found in table " + table);
+                    }
+                    IDs[i++] = rs.getLong(1);
+                }
+                if (i != IDs.length) {
+                    throw new SQLException(String.format("Found %d of %d inserted rows in table %s",
+                            i, IDs.length, table));
+                }
+            }
+        }
+    }
+
     /**
      * Reads SQL statements from file.
      *
@@ -179,22 +285,215 @@ public class DBUtils {
         return localDate == null ? null : Date.valueOf(localDate);
     }
 
-    public static DataSource createDatabaseWithTables(boolean withData) {
-        org.slf4j.Logger log = LoggerFactory.getLogger(Main.class);
+    /**
+     * Converts name to the form stored in sort columns, which are not null,
+     * so that ordering by them can use their index.
+     *
+     * @param text: name to be converted
+     * @return the name, or empty string if name is null
+     */
+    public static String toSortKey(String text) {
+        return text == null ? "" : text;
+    }
 
-        Properties dbProperties = new Properties();
-        try {
-            dbProperties.load(Main.class.getClassLoader().getResourceAsStream("db.properties"));
-        } catch (IOException e) {
-            log.error("Error while loading db properties", e);
-            throw new ServiceFailureException("Error while loading db properties", e);
+    /**
+     * Converts text to the normalized form stored in search columns:
+     * lower-cased with accents removed.
+     *
+     * @param text: text to be normalized
+     * @return normalized text or null if text is null
+     */
+    public static String toSearchKey(String text) {
+        if (text == null) {
+            return null;
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Converts phone number to the normalized form stored in search columns:
+     * only its digits are kept.
+     *
+     * @param number: phone number to be normalized
+     * @return digits of the number
+     */
+    public static String toDigits(String number) {
+        StringBuilder digits = new StringBuilder(number.length());
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
+
+    /**
+     * Converts phone number to its digits in reversed order, so that a search
+     * for number suffix can be done as a prefix search.
+     *
+     * @param number: phone number to be normalized
+     * @return digits of the number in reversed order
+     */
+    public static String toReversedDigits(String number) {
+        return new StringBuilder(toDigits(number)).reverse().toString();
+    }
+
+    /**
+     * Escapes wildcard characters of LIKE pattern, so that the text is
+     * matched literally when used with backslash as the ESCAPE character.
+     *
+     * @param text: text to be escaped
+     * @return escaped text
+     */
+    public static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Returns database configuration of db.properties. The file is read only
+     * once, by the first call.
+     *
+     * @return copy of the properties, which the caller may change
+     * @throws ServiceFailureException when the properties cannot be read
+     */
+    public static Properties loadDbProperties() {
+        Properties copy = new Properties();
+        copy.putAll(readDbProperties());
+        return copy;
+    }
+
+    private static synchronized Properties readDbProperties() {
+        if (dbProperties == null) {
+            org.slf4j.Logger log = LoggerFactory.getLogger(Main.class);
+
+            Properties loaded = new Properties();
+            try {
+                loaded.load(Main.class.getClassLoader().getResourceAsStream("db.properties"));
+            } catch (IOException e) {
+                log.error("Error while loading db properties", e);
+                throw new ServiceFailureException("Error while loading db properties", e);
+            }
+            dbProperties = loaded;
         }
-        BasicDataSource ds = new BasicDataSource();
+        return dbProperties;
+    }
+
+    /**
+     * Tells whether in-memory search index is enabled.
+     *
+     * @param dbProperties properties of {@link #loadDbProperties()}
+     * @return true if SEARCH_INDEX property is set to true
+     */
+    public static boolean isSearchIndexEnabled(Properties dbProperties) {
+        return Boolean.parseBoolean(dbProperties.getProperty("SEARCH_INDEX"));
+    }
+
+    /**
+     * Tells whether the contacts table reads all contacts lazily page by page.
+     *
+     * @param dbProperties properties of {@link #loadDbProperties()}
+     * @return true if LAZY_CONTACTS_TABLE property is set to true
+     */
+    public static boolean isLazyContactsTableEnabled(Properties dbProperties) {
+        return Boolean.parseBoolean(dbProperties.getProperty("LAZY_CONTACTS_TABLE"));
+    }
+
+    /**
+     * Creates connection pool configured by the properties. Properties which
+     * are not set keep defaults of {@link BasicDataSource}.
+     *
+     * @param dbProperties properties with DRIVER_CLASS, DATABASE_URL and optional POOL_* settings
+     * @param metrics receiver of the pool metrics
+     * @return the connection pool
+     * @throws IllegalArgumentException when a POOL_* property is not a valid number
+     */
+    static BasicDataSource createPool(Properties dbProperties, PoolMetrics metrics) {
+        MeteredDataSource ds = new MeteredDataSource();
+        ds.setMetrics(metrics);
         ds.setDriverClassName(dbProperties.getProperty("DRIVER_CLASS"));
         ds.setUrl(dbProperties.getProperty("DATABASE_URL"));
 
+        String value;
+        if ((value = poolProperty(dbProperties, "POOL_MAX_TOTAL")) != null) {
+            ds.setMaxTotal(parsePoolNumber("POOL_MAX_TOTAL", value));
+        }
+        if ((value = poolProperty(dbProperties, "POOL_MAX_IDLE")) != null) {
+            ds.setMaxIdle(parsePoolNumber("POOL_MAX_IDLE", value));
+        }
+        if ((value = poolProperty(dbProperties, "POOL_MIN_IDLE")) != null) {
+            ds.setMinIdle(parsePoolNumber("POOL_MIN_IDLE", value));
+        }
+        if ((value = poolProperty(dbProperties, "POOL_INITIAL_SIZE")) != null) {
+            ds.setInitialSize(parsePoolNumber("POOL_INITIAL_SIZE", value));
+        }
+        if ((value = poolProperty(dbProperties, "POOL_MAX_WAIT_MILLIS")) != null) {
+            ds.setMaxWaitMillis(parsePoolNumber("POOL_MAX_WAIT_MILLIS", value));
+        }
+        if ((value = poolProperty(dbProperties, "POOL_PREPARED_STATEMENTS")) != null) {
+            ds.setPoolPreparedStatements(Boolean.parseBoolean(value));
+        }
+        if ((value = poolProperty(dbProperties, "POOL_MAX_OPEN_PREPARED_STATEMENTS")) != null) {
+            ds.setMaxOpenPreparedStatements(parsePoolNumber("POOL_MAX_OPEN_PREPARED_STATEMENTS", value));
+        }
+        if ((value = poolProperty(dbProperties, "POOL_VALIDATION_QUERY")) != null) {
+            ds.setValidationQuery(value);
+        }
+        if ((value = poolProperty(dbProperties, "POOL_TEST_ON_BORROW")) != null) {
+            ds.setTestOnBorrow(Boolean.parseBoolean(value));
+        }
+        if ((value = poolProperty(dbProperties, "POOL_TEST_WHILE_IDLE")) != null) {
+            ds.setTestWhileIdle(Boolean.parseBoolean(value));
+        }
+        if ((value = poolProperty(dbProperties, "POOL_TIME_BETWEEN_EVICTION_RUNS_MILLIS")) != null) {
+            ds.setTimeBetweenEvictionRunsMillis(parsePoolNumber("POOL_TIME_BETWEEN_EVICTION_RUNS_MILLIS", value));
+        }
+        return ds;
+    }
+
+    private static String poolProperty(Properties dbProperties, String name) {
+        String value = dbProperties.getProperty(name);
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    private static int parsePoolNumber(String name, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(String.format("Property %s is not a number: %s", name, value), ex);
+        }
+    }
+
+    public static DataSource createDatabaseWithTables(boolean withData) {
+        return createDatabaseWithTables(withData, PoolMetrics.NONE);
+    }
+
+    /**
+     * Creates connection pool configured by db.properties and the tables.
+     *
+     * @param withData whether to fill the tables with sample data
+     * @param metrics receiver of the pool metrics
+     * @return the connection pool
+     */
+    public static DataSource createDatabaseWithTables(boolean withData, PoolMetrics metrics) {
+        return createDatabaseWithTables(loadDbProperties(), withData, metrics);
+    }
+
+    /**
+     * Creates connection pool configured by the given properties and the tables.
+     *
+     * @param dbProperties properties in the format of db.properties
+     * @param withData whether to fill the tables with sample data
+     * @param metrics receiver of the pool metrics
+     * @return the connection pool
+     */
+    public static DataSource createDatabaseWithTables(Properties dbProperties, boolean withData, PoolMetrics metrics) {
+        BasicDataSource ds = createPool(dbProperties, metrics);
+
         try {
             executeSqlScript(ds, DBUtils.class.getResource("/sql_commands/createTables.sql"));
+            executeSqlScript(ds, DBUtils.class.getResource("/sql_commands/createIndexes.sql"));
         }
         catch (SQLException ex) {
             logger.log(Level.SEVERE, "Error while e new DB", ex);
@@ -211,4 +510,203 @@ public class DBUtils {
 
         return ds;
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates connection pool configured by the properties and the tables
+     * filled with the snapshot. Indexes are created after the snapshot is
+     * inserted, which is faster than updating them with every inserted row.
+     *
+     * @param dbProperties properties in the format of db.properties
+     * @param snapshot path of the snapshot
+     * @param clock clock used for validation of birthdays
+     * @param metrics receiver of the pool metrics
+     * @return jdbc engine of the database
+     * @throws ServiceFailureException when the snapshot cannot be read
+     */
+    private static JdbcStorageEngine createDatabaseFromSnapshot(Properties dbProperties, Path snapshot, Clock clock,
+                                                                PoolMetrics metrics) {
+        BasicDataSource ds = createPool(dbProperties, metrics);
+        try {
+            executeSqlScript(ds, DBUtils.class.getResource("/sql_commands/createTables.sql"));
+        } catch (SQLException ex) {
+            logger.log(Level.SEVERE, "Error while creating new DB", ex);
+        }
+
+        JdbcStorageEngine engine = new JdbcStorageEngine(ds, clock);
+        ContactSnapshot.read(engine, snapshot);
+
+        try {
+            executeSqlScript(ds, DBUtils.class.getResource("/sql_commands/createIndexes.sql"));
+        } catch (SQLException ex) {
+            logger.log(Level.SEVERE, "Error while creating indexes of the DB", ex);
+        }
+        return engine;
+    }
+
+    /**
+     * Creates storage engine selected by STORAGE_ENGINE property of db.properties.
+     *
+     * @param withData whether to fill the storage with sample data
+     * @param clock clock used for validation of birthdays
+     * @param metrics receiver of the pool metrics, used only by the jdbc engine
+     * @return the storage engine
+     * @throws IllegalArgumentException when STORAGE_ENGINE is not a known engine
+     */
+    public static StorageEngine createStorageEngine(boolean withData, Clock clock, PoolMetrics metrics) {
+        return createStorageEngine(loadDbProperties(), withData, clock, metrics);
+    }
+
+    /**
+     * Creates storage engine selected by STORAGE_ENGINE property: "jdbc"
+     * (default) stores data in the database configured by the properties,
+     * "memory" keeps them only in memory and "log" keeps them in memory and
+     * in the append-only log file LOG_FILE. Sample data of the memory and log
+     * engines are loaded from the database created by the properties, which
+     * is closed then; the log engine is filled only when its log is empty.
+     * When SNAPSHOT_FILE is set and the file exists, the jdbc and memory
+     * engines are filled with the snapshot instead of the sample data, see
+     * {@link #writeSnapshot}.
+     *
+     * @param dbProperties properties in the format of db.properties
+     * @param withData whether to fill the storage with sample data
+     * @param clock clock used for validation of birthdays
+     * @param metrics receiver of the pool metrics, used only by the jdbc engine
+     * @return the storage engine
+     * @throws IllegalArgumentException when STORAGE_ENGINE is not a known engine
+     * or a LOG_* property is not valid
+     * @throws ServiceFailureException when the snapshot cannot be read, the
+     * file is kept then
+     */
+    public static StorageEngine createStorageEngine(Properties dbProperties, boolean withData, Clock clock,
+                                                    PoolMetrics metrics) {
+        String engine = dbProperties.getProperty("STORAGE_ENGINE", "jdbc").trim();
+        Path snapshot = snapshotFile(dbProperties);
+        if (snapshot != null && !Files.exists(snapshot)) {
+            snapshot = null;
+        }
+        switch (engine) {
+            case "jdbc":
+                if (withData && snapshot != null) {
+                    return createDatabaseFromSnapshot(dbProperties, snapshot, clock, metrics);
+                }
+                return new JdbcStorageEngine(createDatabaseWithTables(dbProperties, withData, metrics), clock);
+            case "memory":
+                InMemoryStorageEngine memory = new InMemoryStorageEngine(clock);
+                if (withData && snapshot != null) {
+                    ContactSnapshot.read(memory, snapshot);
+                } else if (withData) {
+                    loadSampleData(memory, dbProperties, clock, metrics);
+                }
+                return memory;
+            case "log":
+                LogStorageEngine log = new LogStorageEngine(
+                        Paths.get(dbProperties.getProperty("LOG_FILE", "contacts.log").trim()),
+                        Boolean.parseBoolean(dbProperties.getProperty("LOG_SYNC", "true").trim()), clock);
+                if (withData && log.getContactManager().findContactsPage(null, 1).isEmpty()) {
+                    loadSampleData(log, dbProperties, clock, metrics);
+                }
+                String interval = poolProperty(dbProperties, "LOG_COMPACTION_INTERVAL_SECONDS");
+                int seconds = interval == null ? 60 : parsePoolNumber("LOG_COMPACTION_INTERVAL_SECONDS", interval);
+                if (seconds > 0) {
+                    log.scheduleCompaction(Duration.ofSeconds(seconds));
+                }
+                return log;
+            default:
+                throw new IllegalArgumentException("Unknown STORAGE_ENGINE: " + engine);
+        }
+    }
+
+    /**
+     * Writes snapshot of the engine to SNAPSHOT_FILE of db.properties, which
+     * is loaded by {@link #createStorageEngine} when the application starts
+     * again. Nothing is written when SNAPSHOT_FILE is not set or the engine
+     * is {@link LogStorageEngine}, which keeps its data in its log.
+     *
+     * @param engine engine to write snapshot of
+     * @throws ServiceFailureException when the snapshot cannot be written
+     */
+    public static void writeSnapshot(StorageEngine engine) {
+        writeSnapshot(loadDbProperties(), engine);
+    }
+
+    /**
+     * Writes snapshot of the engine to SNAPSHOT_FILE of the properties.
+     *
+     * @param dbProperties properties in the format of db.properties
+     * @param engine engine to write snapshot of
+     * @throws ServiceFailureException when the snapshot cannot be written
+     */
+    public static void writeSnapshot(Properties dbProperties, StorageEngine engine) {
+        Path snapshot = snapshotFile(dbProperties);
+        if (snapshot != null && !(engine instanceof LogStorageEngine)) {
+            ContactSnapshot.write(engine, snapshot);
+        }
+    }
+
+    private static Path snapshotFile(Properties dbProperties) {
+        String file = poolProperty(dbProperties, "SNAPSHOT_FILE");
+        return file == null ? null : Paths.get(file);
+    }
+
+    /**
+     * Creates executor of blocking database work configured by the
+     * properties. It has DB_EXECUTOR_THREADS threads, by default as many as
+     * POOL_MAX_TOTAL connections of the pool (8 when not set, the default of
+     * {@link BasicDataSource}), and queue of DB_EXECUTOR_QUEUE_CAPACITY tasks
+     * (64 by default). DB_EXECUTOR_MODE "virtual" runs each task in its own
+     * virtual thread when Java supports them, "platform" (default) runs them
+     * on the threads.
+     *
+     * @param dbProperties properties in the format of db.properties
+     * @return the executor
+     * @throws IllegalArgumentException when a DB_EXECUTOR_* or POOL_MAX_TOTAL property is not valid
+     */
+    public static DbExecutor createDbExecutor(Properties dbProperties) {
+        String value = poolProperty(dbProperties, "DB_EXECUTOR_THREADS");
+        String poolSize = poolProperty(dbProperties, "POOL_MAX_TOTAL");
+        int threads = value != null ? parsePoolNumber("DB_EXECUTOR_THREADS", value)
+                : poolSize != null ? parsePoolNumber("POOL_MAX_TOTAL", poolSize) : 8;
+        value = poolProperty(dbProperties, "DB_EXECUTOR_QUEUE_CAPACITY");
+        int queueCapacity = value == null ? 64 : parsePoolNumber("DB_EXECUTOR_QUEUE_CAPACITY", value);
+        value = poolProperty(dbProperties, "DB_EXECUTOR_MODE");
+        DbExecutor.Mode mode;
+        try {
+            mode = value == null ? DbExecutor.Mode.PLATFORM : DbExecutor.Mode.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown DB_EXECUTOR_MODE: " + value, ex);
+        }
+        return new DbExecutor("db", mode, threads, queueCapacity);
+    }
+
+    /**
+     * Creates cache of at most CACHE_MAX_SIZE entities, which expire after
+     * CACHE_TTL_SECONDS (300 by default).
+     *
+     * @param dbProperties properties in the format of db.properties
+     * @param clock clock measuring time to live of the entities
+     * @param copier function returning copy of an entity
+     * @return the cache or null when CACHE_MAX_SIZE is not set or not positive
+     * @throws IllegalArgumentException when a CACHE_* property is not a valid number
+     */
+    public static <V> EntityCache<V> createEntityCache(Properties dbProperties, Clock clock, UnaryOperator<V> copier) {
+        String value = poolProperty(dbProperties, "CACHE_MAX_SIZE");
+        int maxSize = value == null ? 0 : parsePoolNumber("CACHE_MAX_SIZE", value);
+        if (maxSize <= 0) {
+            return null;
+        }
+        value = poolProperty(dbProperties, "CACHE_TTL_SECONDS");
+        int timeToLive = value == null ? 300 : parsePoolNumber("CACHE_TTL_SECONDS", value);
+        return new EntityCache<>(maxSize, Duration.ofSeconds(timeToLive), clock, copier);
+    }
+
+    private static void loadSampleData(InMemoryStorageEngine engine, Properties dbProperties, Clock clock,
+                                       PoolMetrics metrics) {
+        BasicDataSource ds = (BasicDataSource) createDatabaseWithTables(dbProperties, true, metrics);
+        engine.load(new JdbcStorageEngine(ds, clock).getContactManager().findAllContactsWithPhones());
+        try {
+            ds.close();
+        } catch (SQLException ex) {
+            logger.log(Level.SEVERE, "Error while closing the DB", ex);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package contactmanager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded executor of blocking database work, to which the Swing workers
+ * and the servlets submit their tasks. At most threads + queueCapacity
+ * tasks are accepted at once; further tasks are rejected at once, so
+ * callers can shed load instead of piling up waiting threads. Counts tasks
+ * and summarizes their queueing and running times in its
+ * {@link DbExecutorStatistics}.
+ *
+ * In {@link Mode#PLATFORM} mode the tasks run on a pool of threads of the
+ * given size, which is the size of the connection pool, so that the threads
+ * do not wait for connections. In {@link Mode#VIRTUAL} mode every task gets
+ * its own virtual thread and waits for a connection in the connection pool,
+ * which does not block any platform thread. Virtual threads need Java 21,
+ * the executor falls back to the platform mode on older Java.
+ *
+ * @author David Frankl
+ */
+public class DbExecutor implements Executor {
+
+    private static final Logger logger = LoggerFactory.getLogger(DbExecutor.class.getName());
+
+    /**
+     * Kind of threads running the tasks.
+     */
+    public enum Mode {
+        /**
+         * Fixed number of platform threads, extra tasks wait in the queue.
+         */
+        PLATFORM,
+        /**
+         * New virtual thread for each task. Not measured yet: embedded Derby
+         * waits for locks inside synchronized blocks, which pins the carrier
+         * threads of Java 21, so lock contention can stall all of them.
+         */
+        VIRTUAL
+    }
+
+    private final ExecutorService executor;
+    private final Mode mode;
+    private final int threads;
+    private final int queueCapacity;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final DbExecutorStatistics statistics = new DbExecutorStatistics();
+
+    /**
+     * Creates executor with platform threads.
+     *
+     * @param name: prefix of names of the threads.
+     * @param threads: maximal number of tasks run at once.
+     * @param queueCapacity: maximal number of tasks waiting for a thread, 0 for none.
+     * @throws IllegalArgumentException when threads is not positive or queueCapacity is negative.
+     */
+    public DbExecutor(String name, int threads, int queueCapacity) {
+        this(name, Mode.PLATFORM, threads, queueCapacity);
+    }
+
+    /**
+     * @param name: prefix of names of the threads.
+     * @param mode: kind of threads, {@link Mode#PLATFORM} is used when virtual threads are not supported.
+     * @param threads: number of platform threads, or number of virtual threads expected to
+     *               run at once, which is the size of the connection pool.
+     * @param queueCapacity: maximal number of accepted tasks over the threads, 0 for none.
+     * @throws IllegalArgumentException when threads is not positive or queueCapacity is negative.
+     */
+    public DbExecutor(String name, Mode mode, int threads, int queueCapacity) {
+        if (threads <= 0 || queueCapacity < 0) {
+            String msg = String.format("Invalid executor size: %d threads, queue of %d tasks.", threads, queueCapacity);
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        ExecutorService virtual = mode == Mode.VIRTUAL ? newVirtualThreadPerTaskExecutor(name) : null;
+        if (virtual != null) {
+            this.executor = virtual;
+            this.mode = Mode.VIRTUAL;
+        } else {
+            if (mode == Mode.VIRTUAL) {
+                logger.warn("Virtual threads are not supported by Java {}, using {} platform threads.",
+                        System.getProperty("java.version"), threads);
+            }
+            AtomicInteger count = new AtomicInteger();
+            // the queue is bounded by the count of pending tasks
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            pool.allowCoreThreadTimeOut(true);
+            this.executor = pool;
+            this.mode = Mode.PLATFORM;
+        }
+    }
+
+    /**
+     * @return whether this Java has virtual threads.
+     */
+    public static boolean isVirtualThreadSupported() {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor("probe");
+        if (executor == null) {
+            return false;
+        }
+        executor.shutdown();
+        return true;
+    }
+
+    /**
+     * Creates Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 1).factory())
+     * by reflection, as the application is compiled for Java 8.
+     *
+     * @return the executor or null when virtual threads are not supported.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor(String name) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            Method create = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) create.invoke(null, factory);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            // missing before Java 19, unsupported without --enable-preview on Java 19 and 20
+            logger.debug("Virtual threads are not available", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Starts or queues the task, or rejects it at once when threads +
+     * queueCapacity tasks are pending.
+     *
+     * @param task: task to be run by one of the threads.
+     * @throws RejectedExecutionException when too many tasks are pending or the executor is shut down.
+     */
+    @Override
+    public void execute(Runnable task) {
+        long queuedAt = System.nanoTime();
+        int count = pending.incrementAndGet();
+        if (count > threads + queueCapacity) {
+            pending.decrementAndGet();
+            statistics.taskRejected();
+            logger.debug("Task rejected, {} tasks pending", count - 1);
+            throw new RejectedExecutionException(String.format("Too many pending tasks: %d", count - 1));
+        }
+        try {
+            executor.execute(() -> run(task, queuedAt));
+        } catch (RejectedExecutionException ex) {
+            pending.decrementAndGet();
+            statistics.taskRejected();
+            throw ex;
+        }
+        statistics.taskSubmitted(count - threads);
+    }
+
+    private void run(Runnable task, long queuedAt) {
+        long start = System.nanoTime();
+        statistics.taskStarted(start - queuedAt);
+        boolean success = false;
+        try {
+            task.run();
+            success = true;
+        } catch (RuntimeException ex) {
+            // logged here, nobody else would see it and the thread can be reused
+            logger.error("Task failed", ex);
+        } finally {
+            statistics.taskFinished(System.nanoTime() - start, success);
+            pending.decrementAndGet();
+        }
+    }
+
+    /**
+     * Stops accepting tasks and waits for the queued and running ones.
+     *
+     * @param timeout: maximal time to wait.
+     * @param unit: unit of the timeout.
+     * @return true when all tasks finished in time.
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) {
+        executor.shutdown();
+        try {
+            return executor.awaitTermination(timeout, unit);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * @return mode actually used, which is {@link Mode#PLATFORM} when virtual threads were not supported.
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @return statistics of the tasks, updated while the executor runs.
+     */
+    public DbExecutorStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("mode=%s, threads=%d, queueCapacity=%d, %s",
+                getMode(), getThreads(), getQueueCapacity(), statistics);
+    }
+}
@@ -0,0 +1,131 @@
+package contactmanager;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of the tasks of one {@link DbExecutor}: counts of submitted,
+ * rejected and finished tasks and summaries of their queueing and running
+ * times. Growing queueing times or rejected tasks mean the executor gets
+ * more work than the database can do, like waiting times of
+ * {@link PoolStatistics} do for the connection pool.
+ *
+ * @author David Frankl
+ */
+public class DbExecutorStatistics {
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger peakQueued = new AtomicInteger();
+    private final AtomicLong totalQueueNanos = new AtomicLong();
+    private final AtomicLong maxQueueNanos = new AtomicLong();
+    private final AtomicLong totalRunNanos = new AtomicLong();
+
+    /**
+     * @param queued: number of accepted tasks over the threads, including this one.
+     */
+    void taskSubmitted(int queued) {
+        submitted.incrementAndGet();
+        peakQueued.accumulateAndGet(queued, Math::max);
+    }
+
+    void taskRejected() {
+        rejected.incrementAndGet();
+    }
+
+    /**
+     * @param queueNanos: time the task waited for a thread.
+     */
+    void taskStarted(long queueNanos) {
+        started.incrementAndGet();
+        active.incrementAndGet();
+        totalQueueNanos.addAndGet(queueNanos);
+        maxQueueNanos.accumulateAndGet(queueNanos, Math::max);
+    }
+
+    /**
+     * @param runNanos: running time of the task.
+     * @param success: false when the task threw an exception.
+     */
+    void taskFinished(long runNanos, boolean success) {
+        totalRunNanos.addAndGet(runNanos);
+        (success ? completed : failed).incrementAndGet();
+        active.decrementAndGet();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * @return number of accepted tasks which have not started yet.
+     */
+    public int getQueued() {
+        return (int) Math.max(0, submitted.get() - started.get());
+    }
+
+    /**
+     * @return number of running tasks.
+     */
+    public int getActive() {
+        return active.get();
+    }
+
+    /**
+     * @return maximal number of accepted tasks over the threads.
+     */
+    public int getPeakQueued() {
+        return peakQueued.get();
+    }
+
+    /**
+     * @return average time tasks waited in the queue, over started tasks.
+     */
+    public double getAverageQueueMillis() {
+        long count = started.get();
+        if (count == 0) {
+            return 0;
+        }
+        return totalQueueNanos.get() / (double) count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getMaxQueueMillis() {
+        return maxQueueNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @return average running time of finished tasks.
+     */
+    public double getAverageRunMillis() {
+        long finished = completed.get() + failed.get();
+        if (finished == 0) {
+            return 0;
+        }
+        return totalRunNanos.get() / (double) finished / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("submitted=%d, rejected=%d, completed=%d, failed=%d, active=%d, queued=%d, "
+                        + "peakQueued=%d, avgQueue=%.3fms, maxQueue=%.3fms, avgRun=%.3fms",
+                getSubmittedCount(), getRejectedCount(), getCompletedCount(), getFailedCount(), getActive(),
+                getQueued(), getPeakQueued(), getAverageQueueMillis(), getMaxQueueMillis(), getAverageRunMillis());
+    }
+}
@@ -0,0 +1,242 @@
+package contactmanager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded LRU cache of entities keyed by their IDs. Entries expire after
+ * configured time to live. Entities are copied when stored and when returned,
+ * so callers modifying their instances do not modify the cached ones.
+ * <p>
+ * Each invalidation increases the generation of the ID. A read-through
+ * takes the generation before reading the entity and stores it by
+ * {@link #putIfGeneration}, which stores nothing when the entity was
+ * invalidated meanwhile, as the read entity may predate the write. A new
+ * entity gets its ID by the write, so its generation cannot be taken before;
+ * it is stored by {@link #putIfCacheGeneration}, which stores nothing when
+ * any entity was invalidated meanwhile.
+ *
+ * @param <V> type of cached entity
+ * @author David Frankl
+ */
+public class EntityCache<V> {
+
+    // IDs share generations of their stripe, a shared invalidation only skips storing some reads
+    private static final int GENERATION_STRIPES = 256;
+
+    private final int maxSize;
+    private final Duration timeToLive;
+    private final Clock clock;
+    private final UnaryOperator<V> copier;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    // access ordered, so the first entry is the least recently used one
+    private final LinkedHashMap<Long, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // guarded by entries
+    private final long[] generations = new long[GENERATION_STRIPES];
+    // guarded by entries, increased with generation of any ID
+    private long cacheGeneration;
+
+    private static class Entry<V> {
+        private final V value;
+        private final Instant expiresAt;
+
+        Entry(V value, Instant expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * @param maxSize: maximal number of cached entities.
+     * @param timeToLive: time after which a cached entity expires.
+     * @param clock: clock used to measure time to live.
+     * @param copier: function returning copy of an entity.
+     * @throws IllegalArgumentException when maxSize is not positive or timeToLive is not positive.
+     */
+    public EntityCache(int maxSize, Duration timeToLive, Clock clock, UnaryOperator<V> copier) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive.");
+        }
+        if (timeToLive == null || timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new IllegalArgumentException("Cache time to live must be positive.");
+        }
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+        this.clock = clock;
+        this.copier = copier;
+    }
+
+    /**
+     * Returns copy of cached entity with given ID.
+     *
+     * @param ID: ID of the entity.
+     * @return copy of the entity or null if it is not cached or has expired.
+     */
+    public V get(Long ID) {
+        Entry<V> entry;
+        synchronized (entries) {
+            entry = entries.get(ID);
+            if (entry != null && !entry.expiresAt.isAfter(clock.instant())) {
+                entries.remove(ID);
+                evictions.incrementAndGet();
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return copier.apply(entry.value);
+    }
+
+    /**
+     * Stores copy of entity, evicting the least recently used entity when the cache is full.
+     *
+     * @param ID: ID of the entity.
+     * @param value: entity to be cached.
+     */
+    public void put(Long ID, V value) {
+        Entry<V> entry = new Entry<>(copier.apply(value), clock.instant().plus(timeToLive));
+        synchronized (entries) {
+            store(ID, entry);
+        }
+    }
+
+    /**
+     * Returns generation of the ID, to be passed to {@link #putIfGeneration}.
+     *
+     * @param ID: ID of the entity.
+     * @return current generation of the ID.
+     */
+    public long getGeneration(Long ID) {
+        synchronized (entries) {
+            return generations[stripe(ID)];
+        }
+    }
+
+    /**
+     * Stores copy of entity read from the DB, unless the entity was
+     * invalidated since the generation was taken.
+     *
+     * @param ID: ID of the entity.
+     * @param value: entity to be cached.
+     * @param generation: generation of the ID taken before the entity was read.
+     * @return whether the entity was stored.
+     */
+    public boolean putIfGeneration(Long ID, V value, long generation) {
+        Entry<V> entry = new Entry<>(copier.apply(value), clock.instant().plus(timeToLive));
+        synchronized (entries) {
+            if (generations[stripe(ID)] != generation) {
+                return false;
+            }
+            store(ID, entry);
+            return true;
+        }
+    }
+
+    /**
+     * Returns generation of the whole cache, to be passed to {@link #putIfCacheGeneration}.
+     *
+     * @return current generation of the cache.
+     */
+    public long getCacheGeneration() {
+        synchronized (entries) {
+            return cacheGeneration;
+        }
+    }
+
+    /**
+     * Stores copy of entity created in the DB, unless any entity was
+     * invalidated since the generation was taken.
+     *
+     * @param ID: ID of the entity.
+     * @param value: entity to be cached.
+     * @param generation: generation of the cache taken before the entity was written.
+     * @return whether the entity was stored.
+     */
+    public boolean putIfCacheGeneration(Long ID, V value, long generation) {
+        Entry<V> entry = new Entry<>(copier.apply(value), clock.instant().plus(timeToLive));
+        synchronized (entries) {
+            if (cacheGeneration != generation) {
+                return false;
+            }
+            store(ID, entry);
+            return true;
+        }
+    }
+
+    private void store(Long ID, Entry<V> entry) {
+        entries.put(ID, entry);
+        Iterator<Map.Entry<Long, Entry<V>>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxSize) {
+            eldest.next();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static int stripe(Long ID) {
+        return Math.floorMod(ID.hashCode(), GENERATION_STRIPES);
+    }
+
+    /**
+     * Removes entity with given ID from the cache.
+     *
+     * @param ID: ID of the entity.
+     */
+    public void invalidate(Long ID) {
+        synchronized (entries) {
+            entries.remove(ID);
+            generations[stripe(ID)]++;
+            cacheGeneration++;
+        }
+    }
+
+    /**
+     * Removes all entities from the cache.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            for (int i = 0; i < GENERATION_STRIPES; i++) {
+                generations[i]++;
+            }
+            cacheGeneration++;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("size=%d, hits=%d, misses=%d, evictions=%d",
+                size(), getHitCount(), getMissCount(), getEvictionCount());
+    }
+}
@@ -0,0 +1,85 @@
+package contactmanager;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * State of an import run by {@link ContactImporter}, passed to its progress
+ * listener after each committed batch and returned when the import finishes.
+ *
+ * @author David Frankl
+ */
+public class ImportProgress {
+
+    private final long processedRecords;
+    private final long importedContacts;
+    private final long importedPhones;
+    private final long rejectedRecords;
+    private final long resumedRecords;
+    private final List<String> errors;
+
+    ImportProgress(long processedRecords, long importedContacts, long importedPhones, long rejectedRecords,
+                   long resumedRecords, List<String> errors) {
+        this.processedRecords = processedRecords;
+        this.importedContacts = importedContacts;
+        this.importedPhones = importedPhones;
+        this.rejectedRecords = rejectedRecords;
+        this.resumedRecords = resumedRecords;
+        this.errors = Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * @return number of records of the file imported or rejected so far,
+     * including records imported before the import was resumed.
+     */
+    public long getProcessedRecords() {
+        return processedRecords;
+    }
+
+    /**
+     * @return number of contacts created by this run.
+     */
+    public long getImportedContacts() {
+        return importedContacts;
+    }
+
+    /**
+     * @return number of phones created by this run.
+     */
+    public long getImportedPhones() {
+        return importedPhones;
+    }
+
+    /**
+     * @return number of records rejected by this run as malformed or invalid.
+     */
+    public long getRejectedRecords() {
+        return rejectedRecords;
+    }
+
+    /**
+     * @return number of records skipped because they were processed before
+     * the import was resumed from its checkpoint.
+     */
+    public long getResumedRecords() {
+        return resumedRecords;
+    }
+
+    /**
+     * @return messages of the first rejected records with their line numbers.
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportProgress{" +
+                "processedRecords=" + processedRecords +
+                ", importedContacts=" + importedContacts +
+                ", importedPhones=" + importedPhones +
+                ", rejectedRecords=" + rejectedRecords +
+                ", resumedRecords=" + resumedRecords +
+                '}';
+    }
+}
@@ -0,0 +1,194 @@
+package contactmanager;
+
+import common.IllegalEntityException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static contactmanager.CheckHelpers.*;
+
+/**
+ * {@link ContactManager} of {@link InMemoryStorageEngine}. Arguments are
+ * checked and validated the same way as by {@link ContactManagerImpl}.
+ *
+ * @author David Frankl
+ */
+public class InMemoryContactManager implements ContactManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryContactManager.class.getName());
+
+    private final InMemoryStore store;
+    private final Clock clock;
+
+    InMemoryContactManager(InMemoryStore store, Clock clock) {
+        this.store = store;
+        this.clock = clock;
+    }
+
+    @Override
+    public void createContact(Contact contact) {
+        createContacts(Collections.singletonList(contact));
+    }
+
+    @Override
+    public void createContacts(Collection<Contact> contacts) {
+        if (contacts == null) {
+            String msg = "Contacts are null.";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+        for (Contact contact : contacts) {
+            validateContact(contact, clock, logger);
+            if (contact.getID() != null) {
+                String msg = "Contact ID is already set.";
+                logger.error(msg);
+                throw new IllegalEntityException(msg);
+            }
+        }
+        store.createContacts(contacts);
+    }
+
+    @Override
+    public void createContactsWithPhones(List<Map.Entry<Contact, List<PhoneNumber>>> contacts) {
+        if (contacts == null) {
+            String msg = "Contacts are null.";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+        for (Map.Entry<Contact, List<PhoneNumber>> entry : contacts) {
+            validateContact(entry.getKey(), clock, logger);
+            if (entry.getKey().getID() != null) {
+                String msg = "Contact ID is already set.";
+                logger.error(msg);
+                throw new IllegalEntityException(msg);
+            }
+            if (entry.getValue() == null) {
+                String msg = "Phones of new contact are null.";
+                logger.error(msg);
+                throw new IllegalArgumentException(msg);
+            }
+            for (PhoneNumber phone : entry.getValue()) {
+                validatePhone(phone, logger);
+                if (phone.getID() != null) {
+                    String msg = "Phone ID is already set.";
+                    logger.error(msg);
+                    throw new IllegalEntityException(msg);
+                }
+            }
+        }
+        store.createContactsWithPhones(contacts);
+    }
+
+    @Override
+    public Contact getContact(Long ID) {
+        if (ID == null) {
+            String msg = "Contact ID is null.";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+        return store.getContact(ID);
+    }
+
+    @Override
+    public void updateContact(Contact contact) {
+        validateContact(contact, clock, logger);
+        checkContactIDNotNull(contact, logger);
+        if (!store.updateContact(contact)) {
+            String msg = "Entity " + contact + " does not exist.";
+            logger.error(msg);
+            throw new IllegalEntityException(msg);
+        }
+    }
+
+    @Override
+    public void deleteContact(Contact contact) {
+        checkContactNotNull(contact, logger);
+        checkContactIDNotNull(contact, logger);
+        if (!store.deleteContact(contact.getID())) {
+            String msg = "Entity " + contact + " does not exist.";
+            logger.error(msg);
+            throw new IllegalEntityException(msg);
+        }
+    }
+
+    @Override
+    public List<Contact> findAllContacts() {
+        return store.findAllContacts();
+    }
+
+    @Override
+    public List<Contact> findContactsPage(Long afterID, int limit) {
+        ContactManagerImpl.checkLimitPositive(limit);
+        return store.findContactsPage(afterID, limit);
+    }
+
+    @Override
+    public List<Contact> findContactsAt(long offset, int limit) {
+        ContactManagerImpl.checkOffsetNotNegative(offset);
+        ContactManagerImpl.checkLimitPositive(limit);
+        return store.findContactsAt(offset, limit);
+    }
+
+    @Override
+    public long countContacts() {
+        return store.countContacts();
+    }
+
+    @Override
+    public List<Contact> findContactsPageOrderedByName(Contact after, int limit) {
+        ContactManagerImpl.checkLimitPositive(limit);
+        if (after != null) {
+            checkContactIDNotNull(after, logger);
+        }
+        return store.findContactsPageOrderedByName(after, limit);
+    }
+
+    @Override
+    public Map<Contact, List<PhoneNumber>> findAllContactsWithPhones() {
+        return store.findAllContactsWithPhones();
+    }
+
+    @Override
+    public Stream<Contact> streamAllContacts() {
+        return store.streamAllContacts();
+    }
+
+    @Override
+    public Stream<Map.Entry<Contact, List<PhoneNumber>>> streamAllContactsWithPhones() {
+        return store.streamAllContactsWithPhones();
+    }
+
+    @Override
+    public List<Contact> findContactsByName(String name) {
+        return store.getSearchIndex().findContactsByName(name);
+    }
+
+    @Override
+    public List<Contact> findContactsByNumber(String number) {
+        return store.getSearchIndex().findContactsByNumber(number);
+    }
+
+    @Override
+    public List<Contact> findContactsByNumberSuffix(String suffix) {
+        return store.getSearchIndex().findContactsByNumberSuffix(suffix);
+    }
+
+    /**
+     * Streams the found list, as the search index finds all contacts at once.
+     */
+    @Override
+    public Stream<Contact> streamContactsByName(String name) {
+        return findContactsByName(name).stream();
+    }
+
+    @Override
+    public Stream<Contact> streamContactsByNumber(String number) {
+        return findContactsByNumber(number).stream();
+    }
+}
@@ -0,0 +1,110 @@
+package contactmanager;
+
+import common.IllegalEntityException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static contactmanager.CheckHelpers.*;
+
+/**
+ * {@link PhoneNumberManager} of {@link InMemoryStorageEngine}. Arguments are
+ * checked and validated the same way as by {@link PhoneNumberManagerImpl}.
+ *
+ * @author David Frankl
+ */
+public class InMemoryPhoneNumberManager implements PhoneNumberManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryPhoneNumberManager.class.getName());
+
+    private final InMemoryStore store;
+
+    InMemoryPhoneNumberManager(InMemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public List<PhoneNumber> getPhoneNumbers(Contact contact) {
+        checkContactNotNull(contact, logger);
+        checkContactIDNotNull(contact, logger);
+        return store.getPhoneNumbers(contact.getID());
+    }
+
+    @Override
+    public PhoneNumber getPhoneNumber(Long ID) {
+        if (ID == null) {
+            String errText = "Phone ID is null.";
+            logger.error(errText);
+            throw new IllegalArgumentException(errText);
+        }
+        return store.getPhoneNumber(ID);
+    }
+
+    @Override
+    public void addPhone(Contact contact, PhoneNumber phone) {
+        validatePhone(phone, logger);
+        checkContactNotNull(contact, logger);
+        checkContactIDNotNull(contact, logger);
+        addPhones(Collections.singletonMap(contact, Collections.singletonList(phone)));
+    }
+
+    @Override
+    public void addPhones(Map<Contact, List<PhoneNumber>> phones) {
+        if (phones == null) {
+            String errText = "Phones are null.";
+            logger.error(errText);
+            throw new IllegalArgumentException(errText);
+        }
+        for (Map.Entry<Contact, List<PhoneNumber>> entry : phones.entrySet()) {
+            checkContactNotNull(entry.getKey(), logger);
+            checkContactIDNotNull(entry.getKey(), logger);
+            if (entry.getValue() == null) {
+                String errText = "Phones of contact " + entry.getKey().getID() + " are null.";
+                logger.error(errText);
+                throw new IllegalArgumentException(errText);
+            }
+            for (PhoneNumber phone : entry.getValue()) {
+                validatePhone(phone, logger);
+                if (phone.getID() != null) {
+                    String errText = "Phone ID is already set.";
+                    logger.error(errText);
+                    throw new IllegalEntityException(errText);
+                }
+            }
+        }
+        store.addPhones(phones);
+    }
+
+    @Override
+    public void removePhone(PhoneNumber phone) {
+        checkPhoneNotNull(phone, logger);
+        if (phone.getID() == null) {
+            String errText = "Phone ID is null.";
+            logger.error(errText);
+            throw new IllegalEntityException(errText);
+        }
+        if (!store.removePhone(phone.getID())) {
+            String errText = "Entity " + phone + " does not exist.";
+            logger.error(errText);
+            throw new IllegalEntityException(errText);
+        }
+    }
+
+    @Override
+    public void updatePhone(PhoneNumber phone) {
+        validatePhone(phone, logger);
+        if (phone.getID() == null) {
+            String errText = "Phone ID is null.";
+            logger.error(errText);
+            throw new IllegalEntityException(errText);
+        }
+        if (!store.updatePhone(phone)) {
+            String errText = "Entity " + phone + " does not exist.";
+            logger.error(errText);
+            throw new IllegalEntityException(errText);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package contactmanager;
+
+import common.ServiceFailureException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage engine keeping contacts and phones only in memory, in concurrent
+ * maps indexed by IDs and a {@link ContactSearchIndex} answering the name
+ * and number searches. Suitable for read-heavy nodes whose data fit in
+ * memory and for tests, the data are lost when the engine is discarded.
+ *
+ * @author David Frankl
+ */
+public class InMemoryStorageEngine implements StorageEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryStorageEngine.class.getName());
+
+    private final InMemoryStore store;
+    private final InMemoryContactManager contactManager;
+    private final InMemoryPhoneNumberManager phoneManager;
+
+    /**
+     * @param clock: clock used for validation of birthdays.
+     */
+    public InMemoryStorageEngine(Clock clock) {
+        this(new InMemoryStore(), clock);
+    }
+
+    InMemoryStorageEngine(InMemoryStore store, Clock clock) {
+        this.store = store;
+        contactManager = new InMemoryContactManager(store, clock);
+        phoneManager = new InMemoryPhoneNumberManager(store);
+    }
+
+    InMemoryStore getStore() {
+        return store;
+    }
+
+    /**
+     * Stores contacts and phones keeping their IDs, e.g. as read from another
+     * engine by {@link ContactManager#findAllContactsWithPhones()}. Entities
+     * with the same IDs are replaced, new entities get IDs higher than all
+     * loaded ones.
+     *
+     * @param contacts: contacts with assigned IDs, each mapped to its phones with assigned IDs.
+     */
+    public void load(Map<Contact, List<PhoneNumber>> contacts) {
+        store.load(contacts);
+    }
+
+    /**
+     * Writes copy of the store taken while writes wait, so the snapshot is consistent.
+     */
+    @Override
+    public void exportSnapshot(ContactSnapshot.Writer writer) {
+        store.snapshot((contacts, lastContactID, lastPhoneID) -> {
+            writer.reserveIDs(lastContactID, lastPhoneID);
+            contacts.keySet().forEach(writer::writeContact);
+            for (Map.Entry<Contact, List<PhoneNumber>> entry : contacts.entrySet()) {
+                for (PhoneNumber phone : entry.getValue()) {
+                    writer.writePhone(entry.getKey().getID(), phone);
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads the whole snapshot first and then stores it by {@link #load}.
+     */
+    @Override
+    public void importSnapshot(ContactSnapshot.Reader reader) {
+        if (!contactManager.findContactsPage(null, 1).isEmpty()) {
+            String msg = "Snapshot can be imported only into engine without contacts.";
+            logger.error(msg);
+            throw new IllegalStateException(msg);
+        }
+        Map<Long, List<PhoneNumber>> phones = new HashMap<>();
+        Map<Contact, List<PhoneNumber>> contacts = new LinkedHashMap<>();
+        for (Contact contact = reader.readContact(); contact != null; contact = reader.readContact()) {
+            List<PhoneNumber> contactPhones = new ArrayList<>();
+            phones.put(contact.getID(), contactPhones);
+            contacts.put(contact, contactPhones);
+        }
+        for (PhoneNumber phone = reader.readPhone(); phone != null; phone = reader.readPhone()) {
+            List<PhoneNumber> contactPhones = phones.get(reader.getContactID());
+            if (contactPhones == null) {
+                String msg = String.format("Snapshot is damaged, phone %d belongs to missing contact %d",
+                        phone.getID(), reader.getContactID());
+                logger.error(msg);
+                throw new ServiceFailureException(msg);
+            }
+            contactPhones.add(phone);
+        }
+        // reserved before loading, so that the log engine compacts them into its log
+        store.reserveIDs(reader.getLastContactID(), reader.getLastPhoneID());
+        load(contacts);
+    }
+
+    @Override
+    public InMemoryContactManager getContactManager() {
+        return contactManager;
+    }
+
+    @Override
+    public InMemoryPhoneNumberManager getPhoneNumberManager() {
+        return phoneManager;
+    }
+}
@@ -0,0 +1,452 @@
+package contactmanager;
+
+import common.ServiceFailureException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * Contacts and phones of {@link InMemoryStorageEngine} kept in concurrent maps
+ * indexed by IDs. Writes are serialized and change all maps and the search
+ * index as one step, reads do not lock and see each map weakly consistent,
+ * so a read running concurrently with a write may see only part of it.
+ * Stored entities are copies which are never handed out.
+ *
+ * Each write is passed to the {@link Journal} before the maps are changed,
+ * so a write the journal fails to record is not applied at all.
+ *
+ * @author David Frankl
+ */
+class InMemoryStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryStore.class.getName());
+
+    // same order as ORDER BY sort_surname, sort_first_name, id
+    private static final Comparator<Contact> NAME_ORDER = Comparator
+            .comparing((Contact contact) -> DBUtils.toSortKey(contact.getSurname()))
+            .thenComparing(contact -> DBUtils.toSortKey(contact.getFirstName()))
+            .thenComparing(Contact::getID);
+
+    private final ConcurrentNavigableMap<Long, Contact> contacts = new ConcurrentSkipListMap<>();
+    private final NavigableSet<Contact> contactsByName = new ConcurrentSkipListSet<>(NAME_ORDER);
+    private final Map<Long, StoredPhone> phones = new ConcurrentHashMap<>();
+    // contact ID -> IDs of its phones
+    private final Map<Long, Set<Long>> contactPhones = new ConcurrentHashMap<>();
+    private final ContactSearchIndex searchIndex = new ContactSearchIndex();
+    private final Journal journal;
+
+    // last assigned IDs, guarded by this
+    private long contactSequence;
+    private long phoneSequence;
+
+    /**
+     * Records writes of the store, each call being one atomic write. Called
+     * while the store is locked, in the order of the writes.
+     */
+    interface Journal {
+
+        Journal NONE = new Journal() {
+            @Override
+            public void contactsStored(List<Contact> contacts) {
+            }
+
+            @Override
+            public void contactDeleted(Long ID) {
+            }
+
+            @Override
+            public void contactsWithPhonesStored(List<Contact> contacts, Map<Long, List<PhoneNumber>> phones) {
+            }
+
+            @Override
+            public void phonesStored(Map<Long, List<PhoneNumber>> phones) {
+            }
+
+            @Override
+            public void phoneRemoved(Long ID) {
+            }
+        };
+
+        /**
+         * @param contacts: created or updated contacts with IDs.
+         */
+        void contactsStored(List<Contact> contacts);
+
+        /**
+         * @param ID: ID of deleted contact, its phones are deleted with it.
+         */
+        void contactDeleted(Long ID);
+
+        /**
+         * @param contacts: created contacts with IDs.
+         * @param phones: phones of the contacts with IDs grouped by ID of their contact.
+         */
+        void contactsWithPhonesStored(List<Contact> contacts, Map<Long, List<PhoneNumber>> phones);
+
+        /**
+         * @param phones: added or updated phones with IDs grouped by ID of their contact.
+         */
+        void phonesStored(Map<Long, List<PhoneNumber>> phones);
+
+        /**
+         * @param ID: ID of removed phone.
+         */
+        void phoneRemoved(Long ID);
+    }
+
+    /**
+     * Receives consistent copy of the whole store.
+     */
+    interface SnapshotWriter {
+
+        /**
+         * @param contacts: all contacts ordered by IDs, each mapped to its phones.
+         * @param lastContactID: highest contact ID assigned so far.
+         * @param lastPhoneID: highest phone ID assigned so far.
+         */
+        void write(Map<Contact, List<PhoneNumber>> contacts, long lastContactID, long lastPhoneID);
+    }
+
+    InMemoryStore() {
+        this(Journal.NONE);
+    }
+
+    InMemoryStore(Journal journal) {
+        this.journal = journal;
+    }
+
+    private static class StoredPhone {
+        private final Long contactID;
+        private final PhoneNumber phone;
+
+        StoredPhone(Long contactID, PhoneNumber phone) {
+            this.contactID = contactID;
+            this.phone = phone;
+        }
+    }
+
+    ContactSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * Stores contacts and assigns them new IDs.
+     */
+    synchronized void createContacts(Collection<Contact> newContacts) {
+        List<Contact> copies = new ArrayList<>(newContacts.size());
+        long ID = contactSequence;
+        for (Contact contact : newContacts) {
+            Contact copy = Contact.copyOf(contact);
+            copy.setID(++ID);
+            copies.add(copy);
+        }
+        journal.contactsStored(copies);
+        contactSequence = ID;
+
+        Iterator<Contact> stored = copies.iterator();
+        for (Contact contact : newContacts) {
+            Contact copy = stored.next();
+            contact.setID(copy.getID());
+            putContact(copy);
+        }
+    }
+
+    /**
+     * Stores contacts with their phones as one write and assigns them new IDs.
+     */
+    synchronized void createContactsWithPhones(List<Map.Entry<Contact, List<PhoneNumber>>> newContacts) {
+        List<Contact> contactCopies = new ArrayList<>(newContacts.size());
+        Map<Long, List<PhoneNumber>> phoneCopies = new LinkedHashMap<>();
+        long contactID = contactSequence;
+        long phoneID = phoneSequence;
+        for (Map.Entry<Contact, List<PhoneNumber>> entry : newContacts) {
+            Contact copy = Contact.copyOf(entry.getKey());
+            copy.setID(++contactID);
+            contactCopies.add(copy);
+            List<PhoneNumber> copies = new ArrayList<>(entry.getValue().size());
+            for (PhoneNumber phone : entry.getValue()) {
+                PhoneNumber phoneCopy = PhoneNumber.copyOf(phone);
+                phoneCopy.setID(++phoneID);
+                copies.add(phoneCopy);
+            }
+            phoneCopies.put(copy.getID(), copies);
+        }
+        journal.contactsWithPhonesStored(contactCopies, phoneCopies);
+        contactSequence = contactID;
+        phoneSequence = phoneID;
+
+        Iterator<Contact> stored = contactCopies.iterator();
+        for (Map.Entry<Contact, List<PhoneNumber>> entry : newContacts) {
+            Contact copy = stored.next();
+            entry.getKey().setID(copy.getID());
+            putContact(copy);
+            Iterator<PhoneNumber> storedPhones = phoneCopies.get(copy.getID()).iterator();
+            for (PhoneNumber phone : entry.getValue()) {
+                PhoneNumber phoneCopy = storedPhones.next();
+                phone.setID(phoneCopy.getID());
+                putPhone(copy.getID(), phoneCopy);
+            }
+        }
+    }
+
+    /**
+     * @return false if the contact does not exist.
+     */
+    synchronized boolean updateContact(Contact contact) {
+        Contact previous = contacts.get(contact.getID());
+        if (previous == null) {
+            return false;
+        }
+        Contact copy = Contact.copyOf(contact);
+        journal.contactsStored(Collections.singletonList(copy));
+        contactsByName.remove(previous);
+        putContact(copy);
+        return true;
+    }
+
+    /**
+     * Removes the contact and all of its phones.
+     *
+     * @return false if the contact does not exist.
+     */
+    synchronized boolean deleteContact(Long ID) {
+        Contact previous = contacts.get(ID);
+        if (previous == null) {
+            return false;
+        }
+        journal.contactDeleted(ID);
+        contacts.remove(ID);
+        contactsByName.remove(previous);
+        Set<Long> phoneIDs = contactPhones.remove(ID);
+        if (phoneIDs != null) {
+            for (Long phoneID : phoneIDs) {
+                phones.remove(phoneID);
+            }
+        }
+        searchIndex.removeContact(previous);
+        return true;
+    }
+
+    Contact getContact(Long ID) {
+        Contact contact = contacts.get(ID);
+        return contact == null ? null : Contact.copyOf(contact);
+    }
+
+    List<Contact> findAllContacts() {
+        return copyOf(contacts.values(), Integer.MAX_VALUE);
+    }
+
+    List<Contact> findContactsPage(Long afterID, int limit) {
+        Collection<Contact> tail = afterID == null ? contacts.values() : contacts.tailMap(afterID, false).values();
+        return copyOf(tail, limit);
+    }
+
+    List<Contact> findContactsAt(long offset, int limit) {
+        Iterator<Contact> tail = contacts.values().iterator();
+        for (long i = 0; i < offset && tail.hasNext(); i++) {
+            tail.next();
+        }
+        List<Contact> result = new ArrayList<>();
+        while (result.size() < limit && tail.hasNext()) {
+            result.add(Contact.copyOf(tail.next()));
+        }
+        return result;
+    }
+
+    long countContacts() {
+        return contacts.size();
+    }
+
+    List<Contact> findContactsPageOrderedByName(Contact after, int limit) {
+        Collection<Contact> tail = after == null ? contactsByName : contactsByName.tailSet(after, false);
+        return copyOf(tail, limit);
+    }
+
+    Map<Contact, List<PhoneNumber>> findAllContactsWithPhones() {
+        Map<Contact, List<PhoneNumber>> result = new LinkedHashMap<>();
+        for (Contact contact : contacts.values()) {
+            result.put(Contact.copyOf(contact), getPhoneNumbers(contact.getID()));
+        }
+        return result;
+    }
+
+    Stream<Contact> streamAllContacts() {
+        return contacts.values().stream().map(Contact::copyOf);
+    }
+
+    Stream<Map.Entry<Contact, List<PhoneNumber>>> streamAllContactsWithPhones() {
+        return contacts.values().stream().map(contact ->
+                new AbstractMap.SimpleImmutableEntry<>(Contact.copyOf(contact), getPhoneNumbers(contact.getID())));
+    }
+
+    /**
+     * Stores phones and assigns them new IDs. Nothing is stored if any of the
+     * contacts does not exist.
+     *
+     * @throws ServiceFailureException when any of the contacts does not exist.
+     */
+    synchronized void addPhones(Map<Contact, List<PhoneNumber>> newPhones) {
+        for (Contact contact : newPhones.keySet()) {
+            if (!contacts.containsKey(contact.getID())) {
+                String msg = String.format("Contact with ID %d does not exist.", contact.getID());
+                logger.error(msg);
+                throw new ServiceFailureException(msg);
+            }
+        }
+        Map<Long, List<PhoneNumber>> copies = new LinkedHashMap<>();
+        List<PhoneNumber> copiesInOrder = new ArrayList<>();
+        long ID = phoneSequence;
+        for (Map.Entry<Contact, List<PhoneNumber>> entry : newPhones.entrySet()) {
+            List<PhoneNumber> contactCopies = copies.computeIfAbsent(entry.getKey().getID(), key -> new ArrayList<>());
+            for (PhoneNumber phone : entry.getValue()) {
+                PhoneNumber copy = PhoneNumber.copyOf(phone);
+                copy.setID(++ID);
+                contactCopies.add(copy);
+                copiesInOrder.add(copy);
+            }
+        }
+        journal.phonesStored(copies);
+        phoneSequence = ID;
+
+        Iterator<PhoneNumber> stored = copiesInOrder.iterator();
+        for (Map.Entry<Contact, List<PhoneNumber>> entry : newPhones.entrySet()) {
+            for (PhoneNumber phone : entry.getValue()) {
+                PhoneNumber copy = stored.next();
+                phone.setID(copy.getID());
+                putPhone(entry.getKey().getID(), copy);
+            }
+        }
+    }
+
+    /**
+     * @return false if the phone does not exist.
+     */
+    synchronized boolean updatePhone(PhoneNumber phone) {
+        StoredPhone previous = phones.get(phone.getID());
+        if (previous == null) {
+            return false;
+        }
+        PhoneNumber copy = PhoneNumber.copyOf(phone);
+        journal.phonesStored(Collections.singletonMap(previous.contactID, Collections.singletonList(copy)));
+        putPhone(previous.contactID, copy);
+        return true;
+    }
+
+    /**
+     * @return false if the phone does not exist.
+     */
+    synchronized boolean removePhone(Long ID) {
+        StoredPhone previous = phones.get(ID);
+        if (previous == null) {
+            return false;
+        }
+        journal.phoneRemoved(ID);
+        phones.remove(ID);
+        Set<Long> phoneIDs = contactPhones.get(previous.contactID);
+        if (phoneIDs != null) {
+            phoneIDs.remove(ID);
+        }
+        searchIndex.removePhone(previous.phone);
+        return true;
+    }
+
+    PhoneNumber getPhoneNumber(Long ID) {
+        StoredPhone stored = phones.get(ID);
+        return stored == null ? null : PhoneNumber.copyOf(stored.phone);
+    }
+
+    List<PhoneNumber> getPhoneNumbers(Long contactID) {
+        Set<Long> phoneIDs = contactPhones.get(contactID);
+        if (phoneIDs == null) {
+            return new ArrayList<>();
+        }
+        List<PhoneNumber> result = new ArrayList<>();
+        for (Long phoneID : phoneIDs) {
+            StoredPhone stored = phones.get(phoneID);
+            if (stored != null) {
+                result.add(PhoneNumber.copyOf(stored.phone));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stores contacts and phones with already assigned IDs, replacing stored
+     * entities with the same IDs. New IDs are then assigned after the highest
+     * loaded ones. Loaded entities are not passed to the journal.
+     */
+    synchronized void load(Map<Contact, List<PhoneNumber>> loaded) {
+        for (Map.Entry<Contact, List<PhoneNumber>> entry : loaded.entrySet()) {
+            Contact contact = Contact.copyOf(entry.getKey());
+            Contact previous = contacts.get(contact.getID());
+            if (previous != null) {
+                contactsByName.remove(previous);
+            }
+            putContact(contact);
+            contactSequence = Math.max(contactSequence, contact.getID());
+            for (PhoneNumber phone : entry.getValue()) {
+                putPhone(contact.getID(), PhoneNumber.copyOf(phone));
+                phoneSequence = Math.max(phoneSequence, phone.getID());
+            }
+        }
+        logger.info(String.format("Loaded %d contacts, store holds %d contacts and %d phones",
+                loaded.size(), contacts.size(), phones.size()));
+    }
+
+    /**
+     * Makes sure new IDs are assigned after the given ones, even if entities
+     * with these IDs no longer exist.
+     */
+    synchronized void reserveIDs(long lastContactID, long lastPhoneID) {
+        contactSequence = Math.max(contactSequence, lastContactID);
+        phoneSequence = Math.max(phoneSequence, lastPhoneID);
+    }
+
+    /**
+     * Passes copy of the whole store to the writer. No write can change the
+     * store until the writer returns.
+     */
+    synchronized void snapshot(SnapshotWriter writer) {
+        writer.write(findAllContactsWithPhones(), contactSequence, phoneSequence);
+    }
+
+    private void putContact(Contact contact) {
+        contacts.put(contact.getID(), contact);
+        contactsByName.add(contact);
+        searchIndex.putContact(contact);
+    }
+
+    private void putPhone(Long contactID, PhoneNumber phone) {
+        StoredPhone previous = phones.put(phone.getID(), new StoredPhone(contactID, phone));
+        if (previous != null && !previous.contactID.equals(contactID)) {
+            contactPhones.get(previous.contactID).remove(phone.getID());
+        }
+        contactPhones.computeIfAbsent(contactID, ID -> new ConcurrentSkipListSet<>()).add(phone.getID());
+        searchIndex.putPhone(contactID, phone);
+    }
+
+    private static List<Contact> copyOf(Collection<Contact> stored, int limit) {
+        List<Contact> result = new ArrayList<>();
+        Iterator<Contact> iterator = stored.iterator();
+        while (result.size() < limit && iterator.hasNext()) {
+            result.add(Contact.copyOf(iterator.next()));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,65 @@
+package contactmanager;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+
+/**
+ * Storage engine keeping contacts and phones in a relational database
+ * accessed by {@link ContactManagerImpl} and {@link PhoneNumberManagerImpl}.
+ *
+ * @author David Frankl
+ */
+public class JdbcStorageEngine implements StorageEngine {
+
+    private final ContactManagerImpl contactManager;
+    private final PhoneNumberManagerImpl phoneManager;
+
+    /**
+     * @param dataSource: data source of the database with created tables.
+     * @param clock: clock used for validation of birthdays.
+     */
+    public JdbcStorageEngine(DataSource dataSource, Clock clock) {
+        contactManager = new ContactManagerImpl(clock);
+        contactManager.setDataSource(dataSource);
+        phoneManager = new PhoneNumberManagerImpl();
+        phoneManager.setDataSource(dataSource);
+    }
+
+    /**
+     * Sets search index to be kept up to date by both managers.
+     *
+     * @param searchIndex: index to be updated, null for none.
+     */
+    public void setSearchIndex(ContactSearchIndex searchIndex) {
+        contactManager.setSearchIndex(searchIndex);
+        phoneManager.setSearchIndex(searchIndex);
+    }
+
+    /**
+     * Reads both tables locked in share mode, so writes wait until the
+     * snapshot is written.
+     */
+    @Override
+    public void exportSnapshot(ContactSnapshot.Writer writer) {
+        contactManager.exportSnapshot(writer);
+    }
+
+    /**
+     * Inserts the entities in JDBC batches in one transaction. The search
+     * index is not updated, it should be loaded afterwards.
+     */
+    @Override
+    public void importSnapshot(ContactSnapshot.Reader reader) {
+        contactManager.importSnapshot(reader);
+    }
+
+    @Override
+    public ContactManagerImpl getContactManager() {
+        return contactManager;
+    }
+
+    @Override
+    public PhoneNumberManagerImpl getPhoneNumberManager() {
+        return phoneManager;
+    }
+}
@@ -0,0 +1,126 @@
+package contactmanager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable storage engine serving all reads from memory like
+ * {@link InMemoryStorageEngine} and recording every write to a memory-mapped
+ * append-only log file, which is replayed when the engine is created again.
+ * The log grows with every update and delete, so it is compacted from time
+ * to time by rewriting it with the current contents only.
+ *
+ * @author David Frankl
+ */
+public class LogStorageEngine extends InMemoryStorageEngine implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogStorageEngine.class.getName());
+
+    private final ContactLog log;
+    private ScheduledExecutorService compaction;
+
+    /**
+     * Opens the log file, creating it if it does not exist, and loads its contents.
+     *
+     * @param file: path of the log file.
+     * @param sync: whether each write is forced to the storage device before
+     * it is applied, so that it survives a crash of the operating system.
+     * @param clock: clock used for validation of birthdays.
+     * @throws common.ServiceFailureException when the file cannot be opened or is not a log file.
+     */
+    public LogStorageEngine(Path file, boolean sync, Clock clock) {
+        this(new ContactLog(file, sync), clock);
+    }
+
+    private LogStorageEngine(ContactLog log, Clock clock) {
+        super(new InMemoryStore(log), clock);
+        this.log = log;
+        log.replay(getStore());
+    }
+
+    /**
+     * Stores contacts and phones keeping their IDs and compacts the log to
+     * make them durable.
+     *
+     * @param contacts: contacts with assigned IDs, each mapped to its phones with assigned IDs.
+     */
+    @Override
+    public void load(Map<Contact, List<PhoneNumber>> contacts) {
+        super.load(contacts);
+        compact();
+    }
+
+    /**
+     * Rewrites the log with the current contents. Writes wait until the
+     * compaction finishes, reads are not blocked.
+     *
+     * @throws common.ServiceFailureException when the log cannot be rewritten,
+     * the previous log is kept then.
+     */
+    public void compact() {
+        getStore().snapshot(log::compact);
+    }
+
+    /**
+     * Starts compacting the log in background whenever it grows to twice its
+     * size after the previous compaction.
+     *
+     * @param interval: how often to check the size of the log.
+     */
+    public synchronized void scheduleCompaction(Duration interval) {
+        if (compaction == null) {
+            compaction = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "contact-log-compaction");
+                thread.setDaemon(true);
+                return thread;
+            });
+            compaction.scheduleWithFixedDelay(this::compactIfNeeded, interval.toMillis(), interval.toMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return number of bytes of the log holding frames.
+     */
+    public long getLogSize() {
+        return log.size();
+    }
+
+    private void compactIfNeeded() {
+        try {
+            if (log.needsCompaction()) {
+                compact();
+            }
+        } catch (RuntimeException ex) {
+            // thrown exception would cancel further runs
+            logger.error("Scheduled compaction of the contact log failed", ex);
+        }
+    }
+
+    /**
+     * Stops the compaction and closes the log. Writes fail afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        if (compaction != null) {
+            // not interrupted, interrupt would close channel of the file being written
+            compaction.shutdown();
+            try {
+                compaction.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        log.close();
+    }
+}
@@ -0,0 +1,39 @@
+package contactmanager;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Connection pool reporting time spent waiting for connections and number of
+ * active connections after each borrow to {@link PoolMetrics}.
+ *
+ * @author David Frankl
+ */
+class MeteredDataSource extends BasicDataSource {
+
+    private volatile PoolMetrics metrics = PoolMetrics.NONE;
+
+    void setMetrics(PoolMetrics metrics) {
+        this.metrics = metrics;
+        metrics.poolCreated(this);
+    }
+
+    PoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            Connection connection = super.getConnection();
+            metrics.connectionBorrowed(System.nanoTime() - start, getNumActive());
+            return connection;
+        } catch (SQLException | RuntimeException ex) {
+            metrics.borrowFailed(System.nanoTime() - start);
+            throw ex;
+        }
+    }
+}
@@ -27,6 +27,21 @@ public class PhoneNumber {
         this.phoneType = phoneNumberBuilder.phoneType;
     }
 
+    /**
+     * Returns new instance with the same attributes as given phone.
+     *
+     * @param phone: phone to be copied.
+     * @return copy of the phone.
+     */
+    public static PhoneNumber copyOf(PhoneNumber phone) {
+        return new Builder()
+                .ID(phone.ID)
+                .number(phone.number)
+                .countryCode(phone.countryCode)
+                .phoneType(phone.phoneType)
+                .build();
+    }
+
     public Long getID() {
         return ID;
     }
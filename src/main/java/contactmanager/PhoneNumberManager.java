@@ -5,6 +5,7 @@ import common.ServiceFailureException;
 import common.ValidationException;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * This service allows managing contact numbers
@@ -48,6 +49,22 @@ public interface PhoneNumberManager {
 	 */
 	void addPhone(Contact contact, PhoneNumber phone);
 
+	/**
+	 * Adds phones belonging to existing contacts into database within a single
+	 * transaction. IDs for the new phones are automatically generated and stored
+	 * into their ID attributes once all the phones are committed.
+	 *
+	 * @param phones: phones to be added to the DB grouped by contact they belong to.
+	 * @throws IllegalArgumentException when phones, any of the contacts, phone lists
+	 * or phones is null.
+	 * @throws IllegalEntityException when any of the phones has already assigned ID or
+	 * any of the contact IDs is null.
+	 * @throws ValidationException when any of the phones breaks validation rules(
+	 * number or country code are null).
+	 * @throws ServiceFailureException when db operation fails, no phone is stored then.
+	 */
+	void addPhones(Map<Contact, List<PhoneNumber>> phones);
+
 	/**
 	 * Removes the phone from the DB (and therefore from corresponding contact).
 	 *
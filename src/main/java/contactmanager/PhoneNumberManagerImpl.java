@@ -6,8 +6,9 @@ import common.ValidationException;
 import javax.sql.DataSource;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.ResourceBundle;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,13 +21,28 @@ import static contactmanager.CheckHelpers.*;
 public class PhoneNumberManagerImpl implements PhoneNumberManager {
 
 	private static final Logger logger = LoggerFactory.getLogger(PhoneNumberManagerImpl.class.getName());
-	private DataSource dataSource;
-	private String msg;
+
+	// Number of rows sent to the DB in one JDBC batch by addPhones
+	static final int BATCH_SIZE = 1000;
+
+	// Instances are shared by servlet threads and Swing workers: all methods keep their
+	// state in local variables and the configuration set by setters is volatile.
+	private volatile DataSource dataSource;
+	private volatile ContactSearchIndex searchIndex;
 
 	public void setDataSource(DataSource dataSource) {
 		this.dataSource = dataSource;
 	}
 
+	/**
+	 * Sets search index to be kept up to date with phones stored by this manager.
+	 *
+	 * @param searchIndex: index to be updated, null for none.
+	 */
+	public void setSearchIndex(ContactSearchIndex searchIndex) {
+		this.searchIndex = searchIndex;
+	}
+
 	public List<PhoneNumber> getPhoneNumbers(Contact contact) {
 		checkDataSourceNotNull(dataSource, logger);
 		Connection connection = null;
@@ -42,7 +58,7 @@ public class PhoneNumberManagerImpl implements PhoneNumberManager {
 			st.setLong(1, contact.getID());
 			return executeQueryForMultiplePhones(st);
 		} catch (SQLException ex) {
-			msg = String.format("Error when getting all phones from DB for contact %s", contact.getFirstName());
+			String msg = String.format("Error when getting all phones from DB for contact %s", contact.getFirstName());
 			logger.error(msg, ex);
 			throw new ServiceFailureException(msg, ex);
 		} finally {
@@ -68,7 +84,7 @@ public class PhoneNumberManagerImpl implements PhoneNumberManager {
 			statement.setLong(1, ID);
 			return executeQueryForSinglePhone(statement);
 		} catch (SQLException ex) {
-			msg = "Error when getting phone with ID: " + ID + " from the DB.";
+			String msg = "Error when getting phone with ID: " + ID + " from the DB.";
 			logger.error(msg, ex);
 			throw new ServiceFailureException(msg, ex);
 		} finally {
@@ -97,22 +113,28 @@ public class PhoneNumberManagerImpl implements PhoneNumberManager {
 			connection.setAutoCommit(false);
 
 			st = connection.prepareStatement(
-					"INSERT INTO PhoneNumber (number, country_code, phone_type, contact_id) VALUES (?,?,?,?)",
+					"INSERT INTO PhoneNumber (number, country_code, phone_type, contact_id, search_number, " +
+							"reversed_number) VALUES (?,?,?,?,?,?)",
 					Statement.RETURN_GENERATED_KEYS);
 			st.setString(1, phone.getNumber());
 			st.setString(2, phone.getCountryCode());
 			st.setString(3, phone.getPhoneType());
 			st.setLong(4, contact.getID());
-
-			int count = st.executeUpdate();
-			DBUtils.checkUpdatesCount(count, phone, true);
-
-			Long id = DBUtils.getId(st.getGeneratedKeys());
+			st.setString(5, DBUtils.toDigits(phone.getNumber()));
+			st.setString(6, DBUtils.toReversedDigits(phone.getNumber()));
+
+			PreparedStatement insert = st;
+			Long id = DBUtils.retryOnLockTimeout(connection, con -> {
+				DBUtils.checkUpdatesCount(insert.executeUpdate(), phone, true);
+				return DBUtils.getId(insert.getGeneratedKeys());
+			});
 			phone.setID(id);
-			connection.commit();
+			// locked by the contact, so that a concurrent delete of the contact removes the phone after it is put
+			ContactSearchIndex.commit(connection, searchIndex, contact.getID(),
+					index -> index.putPhone(contact.getID(), phone));
 			logger.info("Added phone with ID: " + phone.getID().toString());
 		} catch (SQLException ex) {
-			msg = String.format("Error when inserting %s's phone into DB.", contact.getFirstName());
+			String msg = String.format("Error when inserting %s's phone into DB.", contact.getFirstName());
 			logger.error(msg, ex);
 			throw new ServiceFailureException(msg, ex);
 		} finally {
@@ -121,6 +143,128 @@ public class PhoneNumberManagerImpl implements PhoneNumberManager {
 		}
 	}
 
+	public void addPhones(Map<Contact, List<PhoneNumber>> phones) {
+		checkDataSourceNotNull(dataSource, logger);
+		if (phones == null) {
+			String errText = "Phones are null.";
+			logger.error(errText);
+			throw new IllegalArgumentException(errText);
+		}
+
+		int total = 0;
+		for (Map.Entry<Contact, List<PhoneNumber>> entry : phones.entrySet()) {
+			checkContactNotNull(entry.getKey(), logger);
+			checkContactIDNotNull(entry.getKey(), logger);
+			if (entry.getValue() == null) {
+				String errText = "Phones of contact " + entry.getKey().getID() + " are null.";
+				logger.error(errText);
+				throw new IllegalArgumentException(errText);
+			}
+			for (PhoneNumber phone : entry.getValue()) {
+				validatePhone(phone);
+				if (phone.getID() != null) {
+					String errText = "Phone ID is already set.";
+					logger.error(errText);
+					throw new IllegalEntityException(errText);
+				}
+			}
+			total += entry.getValue().size();
+		}
+		if (total == 0) {
+			return;
+		}
+
+		long[] contactIDs = new long[phones.size()];
+		int c = 0;
+		for (Contact contact : phones.keySet()) {
+			contactIDs[c++] = contact.getID();
+		}
+
+		Connection connection = null;
+
+		try {
+			connection = dataSource.getConnection();
+			connection.setAutoCommit(false);
+			int phoneCount = total;
+			long[] IDs = DBUtils.retryOnLockTimeout(connection,
+					con -> insertPhones(con, contactIDs, phones.values(), phoneCount));
+
+			int i = 0;
+			for (List<PhoneNumber> contactPhones : phones.values()) {
+				for (PhoneNumber phone : contactPhones) {
+					phone.setID(IDs[i++]);
+				}
+			}
+			ContactSearchIndex.commitAll(connection, searchIndex, index -> {
+				for (Map.Entry<Contact, List<PhoneNumber>> entry : phones.entrySet()) {
+					for (PhoneNumber phone : entry.getValue()) {
+						index.putPhone(entry.getKey().getID(), phone);
+					}
+				}
+			});
+			logger.info(String.format("Added %d phones of %d contacts", total, phones.size()));
+		} catch (SQLException ex) {
+			String msg = String.format("Error when inserting phones of %d contacts into DB.", phones.size());
+			logger.error(msg, ex);
+			throw new ServiceFailureException(msg, ex);
+		} finally {
+			DBUtils.doRollbackQuietly(connection);
+			DBUtils.closeQuietly(connection);
+		}
+	}
+
+	/**
+	 * Inserts phones in JDBC batches within the transaction of the connection.
+	 *
+	 * @param connection: connection with autocommit disabled.
+	 * @param contactIDs: IDs of the contacts, i-th ID belongs to i-th list of phones.
+	 * @param phones: lists of validated phones without IDs.
+	 * @param total: number of all phones.
+	 * @return IDs of the inserted phones in the order of the lists.
+	 */
+	static long[] insertPhones(Connection connection, long[] contactIDs, Collection<List<PhoneNumber>> phones,
+							   int total) throws SQLException {
+		long[] IDs = new long[total];
+		if (total == 0) {
+			return IDs;
+		}
+		// Derby returns only the last generated key of a batch; while the table is locked
+		// the inserted rows are exactly those with IDs higher than the current maximum.
+		try (Statement lock = connection.createStatement()) {
+			lock.execute("LOCK TABLE PhoneNumber IN EXCLUSIVE MODE");
+		}
+		long maxId = DBUtils.getMaxId(connection, "PhoneNumber");
+
+		try (PreparedStatement st = connection.prepareStatement(
+				"INSERT INTO PhoneNumber (number, country_code, phone_type, contact_id, search_number, " +
+						"reversed_number) VALUES (?,?,?,?,?,?)")) {
+			int batched = 0;
+			int stored = 0;
+			int c = 0;
+			for (List<PhoneNumber> contactPhones : phones) {
+				st.setLong(4, contactIDs[c++]);
+				for (PhoneNumber phone : contactPhones) {
+					st.setString(1, phone.getNumber());
+					st.setString(2, phone.getCountryCode());
+					st.setString(3, phone.getPhoneType());
+					st.setString(5, DBUtils.toDigits(phone.getNumber()));
+					st.setString(6, DBUtils.toReversedDigits(phone.getNumber()));
+					st.addBatch();
+
+					if (++batched == BATCH_SIZE || stored + batched == total) {
+						for (int count : st.executeBatch()) {
+							DBUtils.checkUpdatesCount(count, phone, true);
+						}
+						stored += batched;
+						batched = 0;
+					}
+				}
+			}
+		}
+		DBUtils.getInsertedIds(connection, "PhoneNumber", maxId, IDs);
+		return IDs;
+	}
+
 	public void removePhone(PhoneNumber phone) {
 		checkDataSourceNotNull(dataSource, logger);
 		checkPhoneNotNull(phone, logger);
@@ -142,10 +286,10 @@ public class PhoneNumberManagerImpl implements PhoneNumberManager {
 
 			int count = st.executeUpdate();
 			DBUtils.checkUpdatesCount(count, phone, false);
-			connection.commit();
+			ContactSearchIndex.commit(connection, searchIndex, phone.getID(), index -> index.removePhone(phone));
 			logger.info("Removed phone with ID: " + phone.getID().toString());
 		} catch (SQLException ex) {
-			msg = "Error when deleting phone from the DB";
+			String msg = "Error when deleting phone from the DB";
 			logger.error(msg, ex);
 			throw new ServiceFailureException(msg, ex);
 		} finally {
@@ -171,18 +315,21 @@ public class PhoneNumberManagerImpl implements PhoneNumberManager {
 			connection.setAutoCommit(false);
 
 			st = connection.prepareStatement(
-					"UPDATE PhoneNumber SET number = ?, country_code = ?, phone_type = ? WHERE id = ?");
+					"UPDATE PhoneNumber SET number = ?, country_code = ?, phone_type = ?, search_number = ?, " +
+							"reversed_number = ? WHERE id = ?");
 			st.setString(1, phone.getNumber());
 			st.setString(2, phone.getCountryCode());
 			st.setString(3, phone.getPhoneType());
-			st.setLong(4, phone.getID());
+			st.setString(4, DBUtils.toDigits(phone.getNumber()));
+			st.setString(5, DBUtils.toReversedDigits(phone.getNumber()));
+			st.setLong(6, phone.getID());
 
 			int count = st.executeUpdate();
 			DBUtils.checkUpdatesCount(count, phone, false);
-			connection.commit();
+			ContactSearchIndex.commit(connection, searchIndex, phone.getID(), index -> index.updatePhone(phone));
 			logger.info("Updated phone with ID: " + phone.getID().toString());
 		} catch (SQLException ex) {
-			msg = "Error when updating phone in the DB.";
+			String msg = "Error when updating phone in the DB.";
 			logger.error(msg, ex);
 			throw new ServiceFailureException(msg, ex);
 		} finally {
@@ -199,11 +346,7 @@ public class PhoneNumberManagerImpl implements PhoneNumberManager {
 	 * @throws ValidationException if either phone number or country code is null.
 	 */
 	public void validatePhone(PhoneNumber phone) {
-		checkPhoneNotNull(phone, logger);
-
-		if (phone.getNumber() == null || phone.getCountryCode() == null) {
-			throw new ValidationException(ResourceBundle.getBundle("messages").getString("CODE_NUMBER_EMPTY"));
-		}
+		CheckHelpers.validatePhone(phone, logger);
 	}
 
 	static private PhoneNumber executeQueryForSinglePhone(PreparedStatement st) throws SQLException {
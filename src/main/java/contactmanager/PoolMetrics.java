@@ -0,0 +1,56 @@
+package contactmanager;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+
+/**
+ * Receives metrics of the connection pool created by
+ * {@link DBUtils#createDatabaseWithTables(boolean, PoolMetrics)}. Called from
+ * every thread borrowing a connection, so implementations must be thread safe
+ * and fast.
+ *
+ * @author David Frankl
+ */
+public interface PoolMetrics {
+
+    /**
+     * Metrics which ignore all events.
+     */
+    PoolMetrics NONE = new PoolMetrics() {
+        @Override
+        public void poolCreated(BasicDataSource pool) {
+        }
+
+        @Override
+        public void connectionBorrowed(long waitNanos, int numActive) {
+        }
+
+        @Override
+        public void borrowFailed(long waitNanos) {
+        }
+    };
+
+    /**
+     * Called once the pool reporting to these metrics was created. Numbers of
+     * its active and idle connections change with every borrow and return, so
+     * they are read from the pool when needed instead of being reported.
+     *
+     * @param pool: the connection pool.
+     */
+    void poolCreated(BasicDataSource pool);
+
+    /**
+     * Called after a connection was borrowed from the pool.
+     *
+     * @param waitNanos: time spent waiting for the connection.
+     * @param numActive: number of borrowed connections including this one.
+     */
+    void connectionBorrowed(long waitNanos, int numActive);
+
+    /**
+     * Called when no connection could be borrowed, typically because all of
+     * them were in use for longer than POOL_MAX_WAIT_MILLIS.
+     *
+     * @param waitNanos: time spent waiting for the connection.
+     */
+    void borrowFailed(long waitNanos);
+}
@@ -0,0 +1,98 @@
+package contactmanager;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link PoolMetrics} counting borrowed connections and summarizing waiting
+ * times. Current numbers of active and idle connections are read from the
+ * pool. Peak of active connections close to the pool size or growing waiting
+ * times mean the pool is too small for the number of threads using it.
+ *
+ * @author David Frankl
+ */
+public class PoolStatistics implements PoolMetrics {
+
+    private final AtomicLong borrowed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicInteger peakActive = new AtomicInteger();
+    private volatile BasicDataSource pool;
+
+    @Override
+    public void poolCreated(BasicDataSource pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public void connectionBorrowed(long waitNanos, int numActive) {
+        borrowed.incrementAndGet();
+        recordWait(waitNanos);
+        peakActive.accumulateAndGet(numActive, Math::max);
+    }
+
+    @Override
+    public void borrowFailed(long waitNanos) {
+        failed.incrementAndGet();
+        recordWait(waitNanos);
+    }
+
+    private void recordWait(long waitNanos) {
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    public long getBorrowedCount() {
+        return borrowed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * @return number of connections borrowed from the pool now.
+     */
+    public int getActive() {
+        BasicDataSource pool = this.pool;
+        return pool == null ? 0 : pool.getNumActive();
+    }
+
+    /**
+     * @return number of idle connections in the pool now.
+     */
+    public int getIdle() {
+        BasicDataSource pool = this.pool;
+        return pool == null ? 0 : pool.getNumIdle();
+    }
+
+    public int getPeakActive() {
+        return peakActive.get();
+    }
+
+    /**
+     * @return average time of waiting for a connection, including failed attempts.
+     */
+    public double getAverageWaitMillis() {
+        long attempts = borrowed.get() + failed.get();
+        if (attempts == 0) {
+            return 0;
+        }
+        return totalWaitNanos.get() / (double) attempts / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("borrowed=%d, failed=%d, active=%d, idle=%d, peakActive=%d, avgWait=%.3fms, maxWait=%.3fms",
+                getBorrowedCount(), getFailedCount(), getActive(), getIdle(), getPeakActive(),
+                getAverageWaitMillis(), getMaxWaitMillis());
+    }
+}
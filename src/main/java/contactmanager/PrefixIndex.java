@@ -0,0 +1,306 @@
+package contactmanager;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * Sorted multimap of search keys to contact IDs, answering prefix searches
+ * for {@link ContactSearchIndex}. An entry is a key, an entry ID telling
+ * apart entries of the same key (e.g. IDs of two phones with the same
+ * number) and the ID of the contact it belongs to.
+ * <p>
+ * Entries are kept in parallel sorted arrays instead of a node per entry: a
+ * large base and small runs of added and removed entries, which are merged
+ * into a new base once they grow over the square root of the base size, so a
+ * write copies only the small runs most of the time. Readers search the
+ * current snapshot of the runs without locking, writers are serialized by
+ * the caller.
+ *
+ * @author David Frankl
+ */
+class PrefixIndex {
+
+    private static final int MIN_DELTA = 64;
+
+    private volatile Snapshot snapshot = new Snapshot(Run.EMPTY, Run.EMPTY, Run.EMPTY);
+
+    /**
+     * Entries sorted by key and then by entry ID.
+     */
+    private static class Run {
+        static final Run EMPTY = new Run(new String[0], new long[0], new long[0]);
+
+        final String[] keys;
+        final long[] entryIDs;
+        final long[] contactIDs;
+
+        Run(String[] keys, long[] entryIDs, long[] contactIDs) {
+            this.keys = keys;
+            this.entryIDs = entryIDs;
+            this.contactIDs = contactIDs;
+        }
+
+        int size() {
+            return keys.length;
+        }
+
+        /**
+         * @return index of the entry, or -(insertion point) - 1 when it is not in the run.
+         */
+        int find(String key, long entryID) {
+            int low = 0;
+            int high = keys.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int cmp = keys[middle].compareTo(key);
+                if (cmp == 0) {
+                    cmp = Long.compare(entryIDs[middle], entryID);
+                }
+                if (cmp < 0) {
+                    low = middle + 1;
+                } else if (cmp > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -low - 1;
+        }
+
+        /**
+         * @return index of the first entry which key is not less than key.
+         */
+        int lowerBound(String key) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (keys[middle].compareTo(key) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        Run insert(int at, String key, long entryID, long contactID) {
+            int size = keys.length;
+            String[] newKeys = new String[size + 1];
+            long[] newEntryIDs = new long[size + 1];
+            long[] newContactIDs = new long[size + 1];
+            System.arraycopy(keys, 0, newKeys, 0, at);
+            System.arraycopy(entryIDs, 0, newEntryIDs, 0, at);
+            System.arraycopy(contactIDs, 0, newContactIDs, 0, at);
+            newKeys[at] = key;
+            newEntryIDs[at] = entryID;
+            newContactIDs[at] = contactID;
+            System.arraycopy(keys, at, newKeys, at + 1, size - at);
+            System.arraycopy(entryIDs, at, newEntryIDs, at + 1, size - at);
+            System.arraycopy(contactIDs, at, newContactIDs, at + 1, size - at);
+            return new Run(newKeys, newEntryIDs, newContactIDs);
+        }
+
+        Run delete(int at) {
+            int size = keys.length;
+            String[] newKeys = new String[size - 1];
+            long[] newEntryIDs = new long[size - 1];
+            long[] newContactIDs = new long[size - 1];
+            System.arraycopy(keys, 0, newKeys, 0, at);
+            System.arraycopy(entryIDs, 0, newEntryIDs, 0, at);
+            System.arraycopy(contactIDs, 0, newContactIDs, 0, at);
+            System.arraycopy(keys, at + 1, newKeys, at, size - at - 1);
+            System.arraycopy(entryIDs, at + 1, newEntryIDs, at, size - at - 1);
+            System.arraycopy(contactIDs, at + 1, newContactIDs, at, size - at - 1);
+            return new Run(newKeys, newEntryIDs, newContactIDs);
+        }
+    }
+
+    private static class Snapshot {
+        final Run base;
+        // entries not in base, or replacing removed entries of base
+        final Run added;
+        // entries of base which are not in the index any more
+        final Run removed;
+
+        Snapshot(Run base, Run added, Run removed) {
+            this.base = base;
+            this.added = added;
+            this.removed = removed;
+        }
+    }
+
+    /**
+     * Entries collected for {@link #addAll}.
+     */
+    static class Entry {
+        final String key;
+        final long entryID;
+        final long contactID;
+
+        Entry(String key, long entryID, long contactID) {
+            this.key = key;
+            this.entryID = entryID;
+            this.contactID = contactID;
+        }
+    }
+
+    private static int compare(Run first, int i, Run second, int j) {
+        int cmp = first.keys[i].compareTo(second.keys[j]);
+        return cmp != 0 ? cmp : Long.compare(first.entryIDs[i], second.entryIDs[j]);
+    }
+
+    /**
+     * Adds entry to the index or replaces the entry with the same key and entry ID.
+     *
+     * @param key: normalized search key.
+     * @param entryID: ID telling apart entries of the same key.
+     * @param contactID: ID of the contact found by the key.
+     */
+    void add(String key, long entryID, long contactID) {
+        remove(key, entryID);
+        Snapshot current = snapshot;
+        int at = -current.added.find(key, entryID) - 1;
+        publish(current.base, current.added.insert(at, key, entryID, contactID), current.removed);
+    }
+
+    /**
+     * Removes entry with given key and entry ID, if there is such one.
+     *
+     * @param key: normalized search key.
+     * @param entryID: ID telling apart entries of the same key.
+     */
+    void remove(String key, long entryID) {
+        Snapshot current = snapshot;
+        int at = current.added.find(key, entryID);
+        if (at >= 0) {
+            publish(current.base, current.added.delete(at), current.removed);
+        } else if (current.base.find(key, entryID) >= 0) {
+            at = current.removed.find(key, entryID);
+            if (at < 0) {
+                publish(current.base, current.added, current.removed.insert(-at - 1, key, entryID, 0));
+            }
+        }
+    }
+
+    /**
+     * Adds many entries at once, sorting them instead of inserting them one by one.
+     *
+     * @param entries: entries to be added, replacing entries with the same key and entry ID.
+     */
+    void addAll(Collection<Entry> entries) {
+        Entry[] sorted = entries.toArray(new Entry[0]);
+        Arrays.sort(sorted, Comparator.<Entry, String>comparing(entry -> entry.key)
+                .thenComparingLong(entry -> entry.entryID));
+        String[] keys = new String[sorted.length];
+        long[] entryIDs = new long[sorted.length];
+        long[] contactIDs = new long[sorted.length];
+        int size = 0;
+        for (Entry entry : sorted) {
+            if (size > 0 && keys[size - 1].equals(entry.key) && entryIDs[size - 1] == entry.entryID) {
+                size--;
+            }
+            keys[size] = entry.key;
+            entryIDs[size] = entry.entryID;
+            contactIDs[size] = entry.contactID;
+            size++;
+        }
+        Run run = new Run(Arrays.copyOf(keys, size), Arrays.copyOf(entryIDs, size), Arrays.copyOf(contactIDs, size));
+        Snapshot current = snapshot;
+        Run base = merge(current.base, current.removed, current.added);
+        snapshot = new Snapshot(merge(base, Run.EMPTY, run), Run.EMPTY, Run.EMPTY);
+    }
+
+    /**
+     * Adds IDs of contacts having a key which starts with prefix, in the
+     * order of the keys, until there are limit IDs in the result.
+     *
+     * @param prefix: normalized prefix of the keys.
+     * @param limit: maximal number of IDs in the result.
+     * @param result: set the contact IDs are added to.
+     */
+    void find(String prefix, int limit, Collection<Long> result) {
+        Snapshot current = snapshot;
+        Run base = current.base;
+        Run added = current.added;
+        Run removed = current.removed;
+        int i = base.lowerBound(prefix);
+        int j = added.lowerBound(prefix);
+        int r = removed.lowerBound(prefix);
+        while (result.size() < limit) {
+            boolean inBase = i < base.size() && base.keys[i].startsWith(prefix);
+            if (inBase) {
+                while (r < removed.size() && compare(removed, r, base, i) < 0) {
+                    r++;
+                }
+                if (r < removed.size() && compare(removed, r, base, i) == 0) {
+                    i++;
+                    continue;
+                }
+            }
+            boolean inAdded = j < added.size() && added.keys[j].startsWith(prefix);
+            if (inBase && (!inAdded || compare(base, i, added, j) < 0)) {
+                result.add(base.contactIDs[i++]);
+            } else if (inAdded) {
+                result.add(added.contactIDs[j++]);
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return number of entries.
+     */
+    int size() {
+        Snapshot current = snapshot;
+        return current.base.size() - current.removed.size() + current.added.size();
+    }
+
+    private void publish(Run base, Run added, Run removed) {
+        int delta = added.size() + removed.size();
+        if (delta > Math.max(MIN_DELTA, (int) Math.sqrt(base.size()))) {
+            snapshot = new Snapshot(merge(base, removed, added), Run.EMPTY, Run.EMPTY);
+        } else {
+            snapshot = new Snapshot(base, added, removed);
+        }
+    }
+
+    /**
+     * @return entries of base except the removed ones, together with the added
+     * entries, which replace entries of base with the same key and entry ID.
+     */
+    private static Run merge(Run base, Run removed, Run added) {
+        int capacity = base.size() + added.size();
+        String[] keys = new String[capacity];
+        long[] entryIDs = new long[capacity];
+        long[] contactIDs = new long[capacity];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        int r = 0;
+        while (i < base.size() || j < added.size()) {
+            if (i < base.size()) {
+                while (r < removed.size() && compare(removed, r, base, i) < 0) {
+                    r++;
+                }
+                if (r < removed.size() && compare(removed, r, base, i) == 0) {
+                    i++;
+                    continue;
+                }
+            }
+            int cmp = i == base.size() ? 1 : j == added.size() ? -1 : compare(base, i, added, j);
+            Run from = cmp < 0 ? base : added;
+            int at = cmp < 0 ? i++ : j++;
+            if (cmp == 0) {
+                i++;
+            }
+            keys[size] = from.keys[at];
+            entryIDs[size] = from.entryIDs[at];
+            contactIDs[size] = from.contactIDs[at];
+            size++;
+        }
+        return new Run(Arrays.copyOf(keys, size), Arrays.copyOf(entryIDs, size), Arrays.copyOf(contactIDs, size));
+    }
+}
@@ -0,0 +1,118 @@
+package contactmanager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.concurrent.CancellationException;
+import java.util.function.Supplier;
+
+/**
+ * Token cancelling queries of {@link ContactManagerImpl} run by another
+ * thread, e.g. searches superseded by a newer one. Queries run within
+ * {@link #call} register their statement with the token, and
+ * {@link #cancel()} cancels it by {@link Statement#cancel()}. Drivers which
+ * cannot cancel statements, like embedded Derby, stop at the next row read
+ * instead, which also stops Derby evaluating the rest of the result set.
+ * Cancelled queries throw {@link CancellationException}.
+ *
+ * @author David Frankl
+ */
+public final class QueryCancellation {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryCancellation.class.getName());
+
+    private static final ThreadLocal<QueryCancellation> CURRENT = new ThreadLocal<>();
+
+    private volatile boolean cancelled;
+    private Statement statement;
+
+    /**
+     * Runs the work with this token bound to the current thread.
+     *
+     * @param work: work running queries, typically a call of {@link ContactManager}.
+     * @return result of the work.
+     * @throws CancellationException when the token was cancelled before or during the work.
+     */
+    public <T> T call(Supplier<T> work) {
+        QueryCancellation previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            checkCancelled();
+            T result = work.get();
+            checkCancelled();
+            return result;
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Cancels the running query, if any, and all the following queries of the work.
+     */
+    public void cancel() {
+        Statement running;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            running = statement;
+        }
+        if (running != null) {
+            cancelStatement(running);
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return token bound to the current thread by {@link #call}, or null.
+     */
+    static QueryCancellation current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @throws CancellationException when the token was cancelled.
+     */
+    void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Query cancelled.");
+        }
+    }
+
+    /**
+     * Registers statement about to be executed, so that it is cancelled by {@link #cancel()}.
+     *
+     * @throws CancellationException when the token was cancelled.
+     */
+    synchronized void register(Statement st) {
+        checkCancelled();
+        statement = st;
+    }
+
+    synchronized void unregister(Statement st) {
+        if (statement == st) {
+            statement = null;
+        }
+    }
+
+    private static void cancelStatement(Statement st) {
+        try {
+            st.cancel();
+        } catch (SQLFeatureNotSupportedException ex) {
+            logger.debug("Driver cannot cancel statements, the query stops at the next row.");
+        } catch (SQLException ex) {
+            logger.warn("Error when cancelling statement", ex);
+        }
+    }
+}
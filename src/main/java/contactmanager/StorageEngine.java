@@ -0,0 +1,45 @@
+package contactmanager;
+
+/**
+ * Storage backend providing the managers of contacts and their phones. Both
+ * managers of one engine work with the same data, so phones added by the
+ * phone manager are visible to searches of the contact manager and deleting
+ * a contact removes its phones.
+ *
+ * The engine used by the applications is chosen by STORAGE_ENGINE property
+ * of db.properties, see {@link DBUtils#createStorageEngine}.
+ *
+ * @author David Frankl
+ */
+public interface StorageEngine {
+
+    /**
+     * @return manager of contacts stored by this engine.
+     */
+    ContactManager getContactManager();
+
+    /**
+     * @return manager of phones stored by this engine.
+     */
+    PhoneNumberManager getPhoneNumberManager();
+
+    /**
+     * Writes all contacts and phones with their IDs to the snapshot, see
+     * {@link ContactSnapshot}.
+     *
+     * @param writer: writer of the snapshot.
+     * @throws common.ServiceFailureException when the data cannot be read or the snapshot written.
+     */
+    void exportSnapshot(ContactSnapshot.Writer writer);
+
+    /**
+     * Stores all contacts and phones of the snapshot keeping their IDs. New
+     * entities get IDs higher than all IDs assigned before the snapshot was
+     * written.
+     *
+     * @param reader: reader of the snapshot.
+     * @throws IllegalStateException when the engine already holds contacts.
+     * @throws common.ServiceFailureException when the snapshot cannot be read or the data stored.
+     */
+    void importSnapshot(ContactSnapshot.Reader reader);
+}
@@ -0,0 +1,317 @@
+package contactmanager;
+
+import common.ValidationException;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits vCard file into records of single cards. Cards are parsed by the
+ * parser threads: folded lines are joined, quoted-printable values of vCard
+ * 2.1 are decoded as UTF-8 and escaped characters are unescaped.
+ *
+ * @author David Frankl
+ */
+class VCardRecordReader implements ContactImporter.RecordReader {
+
+    private static final Pattern INTERNATIONAL_NUMBER = Pattern.compile("^(\\+|00)(\\d{1,4})[\\s\\-./]+(.+)$");
+    private static final DateTimeFormatter BASIC_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final BufferedReader in;
+    private long lineNumber;
+
+    /**
+     * @param in: reader of the file.
+     */
+    VCardRecordReader(BufferedReader in) {
+        this.in = in;
+    }
+
+    @Override
+    public ContactImporter.Record next() throws IOException {
+        String line;
+        do {
+            line = in.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNumber++;
+        } while (!line.trim().equalsIgnoreCase("BEGIN:VCARD"));
+
+        long start = lineNumber;
+        List<String> lines = new ArrayList<>();
+        while (true) {
+            line = in.readLine();
+            if (line == null) {
+                throw new IOException("Unterminated vCard starting at line " + start);
+            }
+            lineNumber++;
+            if (line.trim().equalsIgnoreCase("END:VCARD")) {
+                return new VCardRecord(lines, start);
+            }
+            lines.add(line);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private static class VCardRecord implements ContactImporter.Record {
+        private final List<String> lines;
+        private final long line;
+
+        VCardRecord(List<String> lines, long line) {
+            this.lines = lines;
+            this.line = line;
+        }
+
+        @Override
+        public long getLine() {
+            return line;
+        }
+
+        @Override
+        public Contact parse(List<PhoneNumber> phones, String defaultCountryCode) {
+            Contact contact = new Contact();
+            String formattedName = null;
+            for (Property property : unfold(lines)) {
+                switch (property.name) {
+                    case "N":
+                        List<String> names = property.components();
+                        contact.setSurname(emptyToNull(names.get(0)));
+                        contact.setFirstName(names.size() > 1 ? emptyToNull(names.get(1)) : null);
+                        break;
+                    case "FN":
+                        formattedName = emptyToNull(property.text());
+                        break;
+                    case "EMAIL":
+                        if (contact.getPrimaryEmail() == null) {
+                            contact.setPrimaryEmail(emptyToNull(property.text()));
+                        }
+                        break;
+                    case "BDAY":
+                        contact.setBirthday(parseDate(property.text()));
+                        break;
+                    case "TEL":
+                        PhoneNumber phone = parsePhone(property, defaultCountryCode);
+                        if (phone != null) {
+                            phones.add(phone);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (contact.getFirstName() == null && contact.getSurname() == null) {
+                contact.setFirstName(formattedName);
+            }
+            return contact;
+        }
+
+        private static LocalDate parseDate(String value) {
+            String date = value.trim();
+            int time = date.indexOf('T');
+            if (time >= 0) {
+                date = date.substring(0, time);
+            }
+            try {
+                return date.indexOf('-') >= 0 ? LocalDate.parse(date) : LocalDate.parse(date, BASIC_DATE);
+            } catch (DateTimeParseException ex) {
+                throw new ValidationException("BDAY " + value + " is not a date like 1990-12-31 or 19901231.");
+            }
+        }
+
+        private static PhoneNumber parsePhone(Property property, String defaultCountryCode) {
+            String value = property.text().trim();
+            if (value.regionMatches(true, 0, "tel:", 0, 4)) {
+                value = value.substring(4).trim();
+            }
+            if (value.isEmpty()) {
+                return null;
+            }
+            PhoneNumber phone = new PhoneNumber();
+            Matcher matcher = INTERNATIONAL_NUMBER.matcher(value);
+            if (matcher.matches()) {
+                phone.setCountryCode("+" + matcher.group(2));
+                phone.setNumber(matcher.group(3).trim());
+            } else {
+                phone.setCountryCode(defaultCountryCode);
+                phone.setNumber(value);
+            }
+            for (String type : property.types()) {
+                if (!type.equals("PREF") && !type.equals("VOICE")) {
+                    phone.setPhoneType(type);
+                    break;
+                }
+            }
+            return phone;
+        }
+
+        private static String emptyToNull(String value) {
+            return value == null || value.trim().isEmpty() ? null : value.trim();
+        }
+
+        /**
+         * Joins folded lines and lines continued by a quoted-printable soft
+         * line break, and splits them into properties.
+         */
+        private static List<Property> unfold(List<String> lines) {
+            List<Property> properties = new ArrayList<>();
+            StringBuilder logical = null;
+            for (String physical : lines) {
+                if (logical != null && !physical.isEmpty()
+                        && (physical.charAt(0) == ' ' || physical.charAt(0) == '\t')) {
+                    logical.append(physical, 1, physical.length());
+                } else if (logical != null && logical.length() > 0 && logical.charAt(logical.length() - 1) == '='
+                        && isQuotedPrintable(logical)) {
+                    logical.setLength(logical.length() - 1);
+                    logical.append(physical);
+                } else {
+                    addProperty(properties, logical);
+                    logical = new StringBuilder(physical);
+                }
+            }
+            addProperty(properties, logical);
+            return properties;
+        }
+
+        private static boolean isQuotedPrintable(CharSequence line) {
+            String text = line.toString();
+            int colon = text.indexOf(':');
+            return colon >= 0 && text.substring(0, colon).toUpperCase(Locale.ROOT).contains("QUOTED-PRINTABLE");
+        }
+
+        private static void addProperty(List<Property> properties, StringBuilder logical) {
+            if (logical == null || logical.toString().trim().isEmpty()) {
+                return;
+            }
+            String text = logical.toString();
+            int colon = text.indexOf(':');
+            if (colon < 0) {
+                throw new ValidationException("vCard line " + text + " has no value.");
+            }
+            properties.add(new Property(text.substring(0, colon), text.substring(colon + 1)));
+        }
+    }
+
+    /**
+     * Property of a card with name like TEL, parameters and raw value.
+     */
+    private static class Property {
+        final String name;
+        final List<String> parameters = new ArrayList<>();
+        final String value;
+
+        Property(String nameWithParameters, String value) {
+            String[] parts = nameWithParameters.split(";");
+            String name = parts[0].trim().toUpperCase(Locale.ROOT);
+            int group = name.indexOf('.');
+            this.name = group >= 0 ? name.substring(group + 1) : name;
+            for (int i = 1; i < parts.length; i++) {
+                parameters.add(parts[i].trim());
+            }
+            boolean quotedPrintable = false;
+            for (String parameter : parameters) {
+                quotedPrintable |= parameter.toUpperCase(Locale.ROOT).endsWith("QUOTED-PRINTABLE");
+            }
+            this.value = quotedPrintable ? decodeQuotedPrintable(value) : value;
+        }
+
+        /**
+         * @return values of TYPE parameters, and of bare parameters of vCard
+         * 2.1, in upper case.
+         */
+        List<String> types() {
+            List<String> types = new ArrayList<>();
+            for (String parameter : parameters) {
+                int equals = parameter.indexOf('=');
+                String values;
+                if (equals < 0) {
+                    values = parameter;
+                } else if (parameter.substring(0, equals).trim().equalsIgnoreCase("TYPE")) {
+                    values = parameter.substring(equals + 1);
+                } else {
+                    continue;
+                }
+                for (String type : values.replace("\"", "").split(",")) {
+                    if (!type.trim().isEmpty()) {
+                        types.add(type.trim().toUpperCase(Locale.ROOT));
+                    }
+                }
+            }
+            return types;
+        }
+
+        /**
+         * @return unescaped value.
+         */
+        String text() {
+            return unescape(value);
+        }
+
+        /**
+         * @return unescaped components of structured value separated by
+         * semicolons, at least one.
+         */
+        List<String> components() {
+            List<String> components = new ArrayList<>();
+            int start = 0;
+            for (int i = 0; i < value.length(); i++) {
+                if (value.charAt(i) == '\\') {
+                    i++;
+                } else if (value.charAt(i) == ';') {
+                    components.add(unescape(value.substring(start, i)));
+                    start = i + 1;
+                }
+            }
+            components.add(unescape(value.substring(start)));
+            return components;
+        }
+
+        private static String unescape(String value) {
+            if (value.indexOf('\\') < 0) {
+                return value;
+            }
+            StringBuilder unescaped = new StringBuilder(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '\\' && i + 1 < value.length()) {
+                    c = value.charAt(++i);
+                    unescaped.append(c == 'n' || c == 'N' ? '\n' : c);
+                } else {
+                    unescaped.append(c);
+                }
+            }
+            return unescaped.toString();
+        }
+
+        private static String decodeQuotedPrintable(String value) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '=' && i + 2 < value.length()
+                        && Character.digit(value.charAt(i + 1), 16) >= 0
+                        && Character.digit(value.charAt(i + 2), 16) >= 0) {
+                    bytes.write(Character.digit(value.charAt(i + 1), 16) * 16 + Character.digit(value.charAt(i + 2), 16));
+                    i += 2;
+                } else {
+                    byte[] encoded = String.valueOf(c).getBytes(StandardCharsets.UTF_8);
+                    bytes.write(encoded, 0, encoded.length);
+                }
+            }
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
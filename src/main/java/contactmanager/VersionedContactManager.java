@@ -0,0 +1,166 @@
+package contactmanager;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Decorator of {@link ContactManager} counting successful changes of
+ * contacts, so that clients can tell whether the contacts changed since they
+ * read them, e.g. by ETag and Last-Modified HTTP headers. Changes of phones
+ * are counted by {@link VersionedPhoneNumberManager} sharing the version.
+ * Changes which go through neither decorator are not counted.
+ *
+ * @author David Frankl
+ */
+public class VersionedContactManager implements ContactManager {
+
+    private final ContactManager delegate;
+    private final Clock clock;
+    private final String instance;
+    private long version;
+    private Instant lastModified;
+
+    /**
+     * @param delegate: decorated manager.
+     * @param clock: clock giving time of the changes.
+     */
+    public VersionedContactManager(ContactManager delegate, Clock clock) {
+        this.delegate = delegate;
+        this.clock = clock;
+        this.lastModified = clock.instant();
+        // versions restart with the application, so the tag tells the runs apart
+        this.instance = Long.toHexString(lastModified.toEpochMilli());
+    }
+
+    /**
+     * @return number of changes since the decorator was created.
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return tag which differs whenever the contacts may differ, also
+     * between runs of the application.
+     */
+    public synchronized String getVersionTag() {
+        return instance + "-" + version;
+    }
+
+    /**
+     * @return time of the last change, or creation time of the decorator
+     * when there was none.
+     */
+    public synchronized Instant getLastModified() {
+        return lastModified;
+    }
+
+    synchronized void changed() {
+        version++;
+        lastModified = clock.instant();
+    }
+
+    @Override
+    public void createContact(Contact contact) {
+        delegate.createContact(contact);
+        changed();
+    }
+
+    @Override
+    public void createContacts(Collection<Contact> contacts) {
+        delegate.createContacts(contacts);
+        changed();
+    }
+
+    @Override
+    public void createContactsWithPhones(List<Map.Entry<Contact, List<PhoneNumber>>> contacts) {
+        delegate.createContactsWithPhones(contacts);
+        changed();
+    }
+
+    @Override
+    public Contact getContact(Long ID) {
+        return delegate.getContact(ID);
+    }
+
+    @Override
+    public void updateContact(Contact contact) {
+        delegate.updateContact(contact);
+        changed();
+    }
+
+    @Override
+    public void deleteContact(Contact contact) {
+        delegate.deleteContact(contact);
+        changed();
+    }
+
+    @Override
+    public List<Contact> findAllContacts() {
+        return delegate.findAllContacts();
+    }
+
+    @Override
+    public List<Contact> findContactsPage(Long afterID, int limit) {
+        return delegate.findContactsPage(afterID, limit);
+    }
+
+    @Override
+    public List<Contact> findContactsAt(long offset, int limit) {
+        return delegate.findContactsAt(offset, limit);
+    }
+
+    @Override
+    public long countContacts() {
+        return delegate.countContacts();
+    }
+
+    @Override
+    public List<Contact> findContactsPageOrderedByName(Contact after, int limit) {
+        return delegate.findContactsPageOrderedByName(after, limit);
+    }
+
+    @Override
+    public Map<Contact, List<PhoneNumber>> findAllContactsWithPhones() {
+        return delegate.findAllContactsWithPhones();
+    }
+
+    @Override
+    public Stream<Contact> streamAllContacts() {
+        return delegate.streamAllContacts();
+    }
+
+    @Override
+    public Stream<Map.Entry<Contact, List<PhoneNumber>>> streamAllContactsWithPhones() {
+        return delegate.streamAllContactsWithPhones();
+    }
+
+    @Override
+    public List<Contact> findContactsByName(String name) {
+        return delegate.findContactsByName(name);
+    }
+
+    @Override
+    public List<Contact> findContactsByNumber(String number) {
+        return delegate.findContactsByNumber(number);
+    }
+
+    @Override
+    public List<Contact> findContactsByNumberSuffix(String suffix) {
+        return delegate.findContactsByNumberSuffix(suffix);
+    }
+
+    @Override
+    public Stream<Contact> streamContactsByName(String name) {
+        return delegate.streamContactsByName(name);
+    }
+
+    @Override
+    public Stream<Contact> streamContactsByNumber(String number) {
+        return delegate.streamContactsByNumber(number);
+    }
+}
@@ -0,0 +1,60 @@
+package contactmanager;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decorator of {@link PhoneNumberManager} counting successful changes of
+ * phones as changes of their contacts in a {@link VersionedContactManager},
+ * so that the version of a contact covers its phones too.
+ *
+ * @author David Frankl
+ */
+public class VersionedPhoneNumberManager implements PhoneNumberManager {
+
+    private final PhoneNumberManager delegate;
+    private final VersionedContactManager versions;
+
+    /**
+     * @param delegate: decorated manager.
+     * @param versions: manager counting the changes.
+     */
+    public VersionedPhoneNumberManager(PhoneNumberManager delegate, VersionedContactManager versions) {
+        this.delegate = delegate;
+        this.versions = versions;
+    }
+
+    @Override
+    public List<PhoneNumber> getPhoneNumbers(Contact contact) {
+        return delegate.getPhoneNumbers(contact);
+    }
+
+    @Override
+    public PhoneNumber getPhoneNumber(Long ID) {
+        return delegate.getPhoneNumber(ID);
+    }
+
+    @Override
+    public void addPhone(Contact contact, PhoneNumber phone) {
+        delegate.addPhone(contact, phone);
+        versions.changed();
+    }
+
+    @Override
+    public void addPhones(Map<Contact, List<PhoneNumber>> phones) {
+        delegate.addPhones(phones);
+        versions.changed();
+    }
+
+    @Override
+    public void removePhone(PhoneNumber phone) {
+        delegate.removePhone(phone);
+        versions.changed();
+    }
+
+    @Override
+    public void updatePhone(PhoneNumber phone) {
+        delegate.updatePhone(phone);
+        versions.changed();
+    }
+}
@@ -0,0 +1,243 @@
+package gui;
+
+import contactmanager.Contact;
+import contactmanager.ContactManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Rows of {@link ContactsTableModel} read from the DB page by page when the
+ * table touches them. Only the {@link #MAX_PAGES} most recently used pages
+ * are kept. Pages are read on the executor and shown by the listener on the
+ * event dispatch thread, the page following a cached one is read by
+ * {@link ContactManager#findContactsPage}, any other one by
+ * {@link ContactManager#findContactsAt}. Used only on the event dispatch
+ * thread.
+ *
+ * @author David Frankl
+ */
+class ContactPages {
+
+    static final int PAGE_SIZE = 100;
+    static final int MAX_PAGES = 50;
+
+    /**
+     * Listener of pages read after they were requested by {@link #getContact}.
+     */
+    interface Listener {
+        /**
+         * @param firstRow: first row of the read page.
+         * @param lastRow: last row of the read page.
+         */
+        void rowsLoaded(int firstRow, int lastRow);
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(ContactPages.class.getName());
+
+    private final ContactManager contactManager;
+    private final Executor executor;
+    private final Listener listener;
+    private int rowCount;
+    // increased whenever cached rows move, so that pages read before are dropped
+    private long generation;
+    private final Map<Integer, Long> loading = new HashMap<>();
+    // actions waiting for pages being read, see withContact
+    private final Map<Integer, List<Runnable>> waiting = new HashMap<>();
+    private final Map<Integer, List<Contact>> pages = new LinkedHashMap<Integer, List<Contact>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Contact>> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+
+    /**
+     * @param contactManager: manager reading the pages.
+     * @param executor: executor reading the pages in background.
+     * @param rowCount: number of all contacts.
+     * @param listener: listener of read pages.
+     */
+    ContactPages(ContactManager contactManager, Executor executor, int rowCount, Listener listener) {
+        this.contactManager = contactManager;
+        this.executor = executor;
+        this.rowCount = rowCount;
+        this.listener = listener;
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns cached contact of the row, or requests its page to be read.
+     *
+     * @param row: row of the contact.
+     * @return contact of the row, or null when its page is not read yet.
+     */
+    Contact getContact(int row) {
+        int page = row / PAGE_SIZE;
+        List<Contact> contacts = pages.get(page);
+        if (contacts == null) {
+            requestPage(page);
+            return null;
+        }
+        int index = row % PAGE_SIZE;
+        return index < contacts.size() ? contacts.get(index) : null;
+    }
+
+    /**
+     * Runs the action with contact of the row, at once when its page is
+     * cached, otherwise once the page requested like by {@link #getContact}
+     * is read. The action is dropped when the page cannot be read, when rows
+     * move before it is read or when there is no such contact anymore, so
+     * that it never gets a contact of another row.
+     *
+     * @param row: row of the contact.
+     * @param action: action run on the event dispatch thread.
+     */
+    void withContact(int row, Consumer<Contact> action) {
+        Contact contact = getContact(row);
+        if (contact != null) {
+            action.accept(contact);
+            return;
+        }
+        int page = row / PAGE_SIZE;
+        if (!loading.containsKey(page)) {
+            logger.debug("Contact of row {} not found", row);
+            return;
+        }
+        waiting.computeIfAbsent(page, key -> new ArrayList<>()).add(() -> {
+            Contact read = getContact(row);
+            if (read != null) {
+                action.accept(read);
+            }
+        });
+    }
+
+    /**
+     * @param ID: ID of the contact.
+     * @return row of the cached contact with the ID, or -1 when it is not cached.
+     */
+    int findCachedRow(Long ID) {
+        for (Map.Entry<Integer, List<Contact>> entry : pages.entrySet()) {
+            List<Contact> contacts = entry.getValue();
+            for (int i = 0; i < contacts.size(); i++) {
+                if (ID.equals(contacts.get(i).getID())) {
+                    return entry.getKey() * PAGE_SIZE + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Counts contact added at the end, as new contacts get the highest IDs.
+     */
+    void rowAdded() {
+        rowCount++;
+        dropPagesFrom((rowCount - 1) / PAGE_SIZE);
+    }
+
+    /**
+     * Counts removed contact, rows following it move up.
+     *
+     * @param row: row of the removed contact, or -1 when it is not known.
+     */
+    void rowRemoved(int row) {
+        rowCount--;
+        dropPagesFrom(row < 0 ? 0 : row / PAGE_SIZE);
+    }
+
+    /**
+     * Drops all pages, pages being read are dropped once read.
+     */
+    void clear() {
+        dropPagesFrom(0);
+    }
+
+    private void dropPagesFrom(int firstPage) {
+        generation++;
+        Iterator<Integer> it = pages.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next() >= firstPage) {
+                it.remove();
+            }
+        }
+        waiting.keySet().removeIf(page -> page >= firstPage);
+    }
+
+    private void requestPage(int page) {
+        if (loading.containsKey(page)) {
+            return;
+        }
+        long requestGeneration = generation;
+        Long afterID = lastIdOfFullPage(page - 1);
+        loading.put(page, requestGeneration);
+        try {
+            executor.execute(() -> {
+                try {
+                    List<Contact> contacts = readPage(page, afterID);
+                    SwingUtilities.invokeLater(() -> pageRead(page, requestGeneration, contacts));
+                } catch (RuntimeException ex) {
+                    logger.error("Error when reading page " + page + " of contacts", ex);
+                    SwingUtilities.invokeLater(() -> pageFailed(page, requestGeneration));
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            logger.warn("Reading of page {} of contacts rejected: {}", page, ex.getMessage());
+            loading.remove(page);
+        }
+    }
+
+    private void pageRead(int page, long requestGeneration, List<Contact> contacts) {
+        loading.remove(page, requestGeneration);
+        if (requestGeneration != generation) {
+            // actions waiting now were added after the rows moved, so they need the page read again
+            if (waiting.containsKey(page)) {
+                requestPage(page);
+            }
+            return;
+        }
+        pages.put(page, contacts);
+        int firstRow = page * PAGE_SIZE;
+        int lastRow = Math.min(firstRow + contacts.size(), rowCount) - 1;
+        if (lastRow >= firstRow) {
+            listener.rowsLoaded(firstRow, lastRow);
+        }
+        List<Runnable> actions = waiting.remove(page);
+        if (actions != null) {
+            actions.forEach(Runnable::run);
+        }
+    }
+
+    private void pageFailed(int page, long requestGeneration) {
+        if (loading.remove(page, requestGeneration)) {
+            waiting.remove(page);
+        }
+    }
+
+    private Long lastIdOfFullPage(int page) {
+        List<Contact> contacts = pages.get(page);
+        if (contacts == null || contacts.size() < PAGE_SIZE) {
+            return null;
+        }
+        return contacts.get(PAGE_SIZE - 1).getID();
+    }
+
+    private List<Contact> readPage(int page, Long afterID) {
+        if (afterID != null) {
+            return contactManager.findContactsPage(afterID, PAGE_SIZE);
+        }
+        return contactManager.findContactsAt((long) page * PAGE_SIZE, PAGE_SIZE);
+    }
+}
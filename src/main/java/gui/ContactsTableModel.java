@@ -1,27 +1,62 @@
 package gui;
 
 import contactmanager.Contact;
+import contactmanager.ContactManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import javax.swing.table.AbstractTableModel;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.List;
-import java.util.Objects;
+import java.util.concurrent.Executor;
 
 
+/**
+ * Model of the contacts table. Shows either a list of contacts, e.g. the
+ * result of a search, or all contacts read lazily page by page, see
+ * {@link #setPagedContacts}.
+ */
 public class ContactsTableModel extends AbstractTableModel {
 
     private final static Logger logger = LoggerFactory.getLogger(ContactsTableModel.class);
 
     private List<Contact> contacts = new ArrayList<>();
+    private final RowIndex<Contact> rowIndex = new RowIndex<>(Contact::getID);
+    // rows read on demand, null when the list of contacts is shown
+    private ContactPages pages;
 
     public void setContacts(List<Contact> contacts) {
+        closePages();
         this.contacts = contacts;
+        rowIndex.clear();
         fireTableDataChanged();
     }
 
+    /**
+     * Shows all contacts without reading them at once. Rows are read page by
+     * page when the table paints them and show empty cells until then.
+     *
+     * @param contactManager: manager reading the contacts.
+     * @param executor: executor reading the pages in background.
+     * @param count: number of all contacts.
+     */
+    public void setPagedContacts(ContactManager contactManager, Executor executor, int count) {
+        closePages();
+        contacts = new ArrayList<>();
+        rowIndex.clear();
+        pages = new ContactPages(contactManager, executor, count, this::fireTableRowsUpdated);
+        fireTableDataChanged();
+    }
+
+    private void closePages() {
+        if (pages != null) {
+            pages.clear();
+            pages = null;
+        }
+    }
+
     private enum Column {
         FIRST_NAME(String.class, Contact::getFirstName),
         SURNAME(String.class, Contact::getSurname),
@@ -37,11 +72,10 @@ public class ContactsTableModel extends AbstractTableModel {
         }
     }
 
-    private Contact findContactWithID(Long ID) {
-        for(Contact cont : contacts) {
-            if (Objects.equals(cont.getID(), ID)) {
-                return cont;
-            }
+    private int findRowWithID(Long ID) {
+        int row = rowIndex.rowOf(contacts, ID);
+        if (row >= 0) {
+            return row;
         }
         String msg = "Contact with ID " + ID.toString() + "was not found.";
         logger.error(msg);
@@ -49,34 +83,93 @@ public class ContactsTableModel extends AbstractTableModel {
     }
 
     public void editContact(Contact editedContact) {
-        Contact contact = findContactWithID(editedContact.getID());
+        if (pages != null) {
+            int row = pages.findCachedRow(editedContact.getID());
+            if (row >= 0) {
+                copyContactData(editedContact, pages.getContact(row));
+                fireTableRowsUpdated(row, row);
+            }
+            return;
+        }
+        int row = findRowWithID(editedContact.getID());
+        copyContactData(editedContact, contacts.get(row));
+        fireTableRowsUpdated(row, row);
+    }
 
+    private static void copyContactData(Contact editedContact, Contact contact) {
         contact.setFirstName(editedContact.getFirstName());
         contact.setSurname(editedContact.getSurname());
         contact.setPrimaryEmail(editedContact.getPrimaryEmail());
         contact.setBirthday(editedContact.getBirthday());
-
-        fireTableDataChanged();
     }
 
-    public Contact getContactAt(int index) {
-        return contacts.get(index);
+    /**
+     * Runs the action with contact of the row. When the model is paged and
+     * the row was not read yet, its page is read in background and the action
+     * runs once it is read, see {@link ContactPages#withContact}.
+     *
+     * @param index: row of the contact.
+     * @param action: action run on the event dispatch thread.
+     */
+    public void withContactAt(int index, Consumer<Contact> action) {
+        if (pages != null) {
+            pages.withContact(index, action);
+            return;
+        }
+        action.accept(contacts.get(index));
     }
 
     public void addContact(Contact contact) {
+        if (pages != null) {
+            pages.rowAdded();
+            int lastRow = pages.getRowCount() - 1;
+            fireTableRowsInserted(lastRow, lastRow);
+            return;
+        }
         contacts.add(contact);
         int lastRow = contacts.size() - 1;
+        rowIndex.added(contact, lastRow);
         fireTableRowsInserted(lastRow, lastRow);
     }
 
+    /**
+     * Appends the contacts and fires one event for all their rows.
+     *
+     * @param added: contacts to be appended.
+     */
+    public void addContacts(List<Contact> added) {
+        if (added.isEmpty()) {
+            return;
+        }
+        int firstRow = contacts.size();
+        contacts.addAll(added);
+        fireTableRowsInserted(firstRow, contacts.size() - 1);
+    }
+
     public void removeContact(Contact contact) {
-        contacts.remove(contact);
-        int lastRow = contacts.size() - 1;
-        fireTableRowsDeleted(lastRow, lastRow);
+        if (pages != null) {
+            int row = pages.findCachedRow(contact.getID());
+            pages.rowRemoved(row);
+            if (row >= 0) {
+                fireTableRowsDeleted(row, row);
+            } else {
+                fireTableDataChanged();
+            }
+            return;
+        }
+        int row = rowIndex.rowOf(contacts, contact.getID());
+        if (row < 0) {
+            return;
+        }
+        contacts.remove(row);
+        rowIndex.removed(contact, row);
+        fireTableRowsDeleted(row, row);
     }
 
     public void removeAllContacts() {
+        closePages();
         contacts = new ArrayList<>();
+        rowIndex.clear();
     }
 
     @Override
@@ -86,6 +179,9 @@ public class ContactsTableModel extends AbstractTableModel {
 
     @Override
     public int getRowCount() {
+        if (pages != null) {
+            return pages.getRowCount();
+        }
         return contacts.size();
     }
 
@@ -101,7 +197,10 @@ public class ContactsTableModel extends AbstractTableModel {
 
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
-        Contact contact = contacts.get(rowIndex);
+        Contact contact = pages != null ? pages.getContact(rowIndex) : contacts.get(rowIndex);
+        if (contact == null) {
+            return null;
+        }
         return Column.values()[columnIndex].dataFunction.apply(contact);
     }
 }
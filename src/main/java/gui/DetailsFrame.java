@@ -131,7 +131,7 @@ public class DetailsFrame extends JFrame {
         setContactTextFieldsEnabled(false);
         Contact contact = getContactFromTextFields();
         try {
-            Main.getContactManager().validateContact(contact);
+            Main.validateContact(contact);
         }
         catch (ValidationException ex) {
             setContactTextFieldsEnabled(true);
@@ -140,7 +140,7 @@ public class DetailsFrame extends JFrame {
         }
 
         MainJFrame topFrame = (MainJFrame) SwingUtilities.getWindowAncestor(mainPanel);
-        new EditContactWorker(contact, topFrame, this).execute();
+        Main.execute(new EditContactWorker(contact, topFrame, this));
     }
 
     private void phoneNumberDeleteButtonPressed() {
@@ -155,7 +155,7 @@ public class DetailsFrame extends JFrame {
         PhoneNumbersTableModel model = getPhoneNumbersTableModel();
         PhoneNumber phone = model.getPhoneNumberAt(selectedRow);
 
-        new RemovePhoneNumberWorker(phone, this).execute();
+        Main.execute(new RemovePhoneNumberWorker(phone, this));
     }
 
     private void phoneNumberEditButtonPressed() {
@@ -179,7 +179,7 @@ public class DetailsFrame extends JFrame {
 
         PhoneNumber phone = getPhoneNumberFromAddForm();
         try {
-            Main.getPhoneNumberManager().validatePhone(phone);
+            Main.validatePhone(phone);
         }
         catch (ValidationException ex) {
             setPhoneNumbersButtonsEnabled(true);
@@ -189,9 +189,9 @@ public class DetailsFrame extends JFrame {
 
         if (phoneNumberUpsertButton.getText().equals(rbGui.getString("CONFIRM_EDIT"))) {
             phone.setID(phoneInEditID);
-            new EditPhoneNumberWorker(phone, this).execute();
+            Main.execute(new EditPhoneNumberWorker(phone, this));
         } else {
-            new AddPhoneNumberWorker(contact, phone, this).execute();
+            Main.execute(new AddPhoneNumberWorker(contact, phone, this));
         }
 
     }
@@ -1,18 +1,31 @@
 package gui;
 
 import contactmanager.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import javax.sql.DataSource;
+import javax.swing.*;
 import java.awt.*;
 import java.time.Clock;
+import java.util.Properties;
+import java.util.ResourceBundle;
+import java.util.concurrent.RejectedExecutionException;
 
 public class Main {
-    private static DataSource db;
-    private static ContactManagerImpl contactManager;
-    private static PhoneNumberManagerImpl phoneManager;
+    private static final Logger logger = LoggerFactory.getLogger(Main.class.getName());
+
+    private static final Clock clock = Clock.systemDefaultZone();
+    private static final Properties dbProperties = DBUtils.loadDbProperties();
+    private static StorageEngine storageEngine;
+    private static ContactManager contactManager;
+    private static PhoneNumberManager phoneNumberManager;
+    private static EntityCache<Contact> contactCache;
+    private static CachingPhoneNumberManager cachingPhoneNumberManager;
+    private static ContactSearchIndex searchIndex;
+    private static DbExecutor dbExecutor;
 
     public static void main(String[] args) {
-        db = getDB();
+        getStorageEngine();
         createUI();
     }
 
@@ -20,29 +33,128 @@ public class Main {
         EventQueue.invokeLater(MainJFrame::new);
     }
 
-    private synchronized static DataSource getDB() {
-        if (db == null) {
-            db = DBUtils.createDatabaseWithTables(true);
+    /**
+     * Returns storage engine selected in db.properties. Search index of the
+     * jdbc engine is loaded with it when enabled in db.properties, and its
+     * managers are wrapped into caching decorators when CACHE_MAX_SIZE is set.
+     */
+    private synchronized static StorageEngine getStorageEngine() {
+        if (storageEngine == null) {
+            storageEngine = DBUtils.createStorageEngine(dbProperties, true, clock, PoolMetrics.NONE);
+            Runtime.getRuntime().addShutdownHook(new Thread(Main::closeStorageEngine, "storage-engine-close"));
+            if (storageEngine instanceof JdbcStorageEngine && DBUtils.isSearchIndexEnabled(dbProperties)) {
+                JdbcStorageEngine jdbcEngine = (JdbcStorageEngine) storageEngine;
+                searchIndex = new ContactSearchIndex();
+                searchIndex.load(jdbcEngine.getContactManager());
+                jdbcEngine.setSearchIndex(searchIndex);
+            }
+            contactManager = storageEngine.getContactManager();
+            phoneNumberManager = storageEngine.getPhoneNumberManager();
+            contactCache = DBUtils.createEntityCache(dbProperties, clock, Contact::copyOf);
+            if (contactCache != null) {
+                // details of a contact are opened again and again, its phones are read from the cache
+                cachingPhoneNumberManager = new CachingPhoneNumberManager(phoneNumberManager,
+                        DBUtils.createEntityCache(dbProperties, clock, PhoneNumber::copyOf),
+                        DBUtils.createEntityCache(dbProperties, clock, CachingPhoneNumberManager::copyOf));
+                contactManager = new CachingContactManager(contactManager, contactCache, cachingPhoneNumberManager);
+                phoneNumberManager = cachingPhoneNumberManager;
+            }
         }
 
-        return db;
+        return storageEngine;
     }
 
-    public static ContactManagerImpl getContactManager() {
-        if (contactManager == null) {
-            contactManager = new ContactManagerImpl(Clock.systemDefaultZone());
-            contactManager.setDataSource(getDB());
+    /**
+     * Writes snapshot of the data to be loaded on the next start and closes
+     * the log engine. Logs statistics of the caches.
+     */
+    private static void closeStorageEngine() {
+        if (contactCache != null) {
+            logger.info("Contact cache statistics: {}", contactCache);
+            logger.info("Phone cache statistics: {}", cachingPhoneNumberManager.getCache());
+            logger.info("Cache of phones of contacts statistics: {}", cachingPhoneNumberManager.getContactPhonesCache());
+        }
+        try {
+            DBUtils.writeSnapshot(dbProperties, storageEngine);
+        } catch (RuntimeException ex) {
+            logger.error("Error when writing snapshot of the storage engine", ex);
+        }
+        if (storageEngine instanceof LogStorageEngine) {
+            ((LogStorageEngine) storageEngine).close();
         }
+    }
 
-        return contactManager;
+    /**
+     * Returns executor of the workers configured by DB_EXECUTOR_* properties of db.properties.
+     */
+    public synchronized static DbExecutor getDbExecutor() {
+        if (dbExecutor == null) {
+            dbExecutor = DBUtils.createDbExecutor(dbProperties);
+            logger.info("Workers run on {} executor with {} threads", dbExecutor.getMode(), dbExecutor.getThreads());
+        }
+        return dbExecutor;
     }
 
-    public static PhoneNumberManagerImpl getPhoneNumberManager() {
-        if (phoneManager == null) {
-            phoneManager = new PhoneNumberManagerImpl();
-            phoneManager.setDataSource(getDB());
+    /**
+     * Runs the worker on the executor of {@link #getDbExecutor()} instead of
+     * the fixed pool of {@link SwingWorker#execute()}. Tells the user to try
+     * again when too many workers are pending.
+     *
+     * @param worker: worker to be run.
+     */
+    public static void execute(SwingWorker<?, ?> worker) {
+        try {
+            getDbExecutor().execute(worker);
+        } catch (RejectedExecutionException ex) {
+            logger.warn("Worker {} rejected: {}", worker.getClass().getSimpleName(), ex.getMessage());
+            JOptionPane.showMessageDialog(null, ResourceBundle.getBundle("messages").getString("BUSY_ERROR"));
         }
+    }
+
+    /**
+     * Tells whether the contacts table reads all contacts lazily page by page,
+     * see LAZY_CONTACTS_TABLE of db.properties.
+     */
+    public static boolean isLazyContactsTableEnabled() {
+        return DBUtils.isLazyContactsTableEnabled(dbProperties);
+    }
+
+    public synchronized static ContactManager getContactManager() {
+        getStorageEngine();
+        return contactManager;
+    }
+
+    public synchronized static PhoneNumberManager getPhoneNumberManager() {
+        getStorageEngine();
+        return phoneNumberManager;
+    }
+
+    /**
+     * Returns search index loaded from the DB, or null when it is disabled in
+     * db.properties or the storage engine searches in memory itself.
+     */
+    public synchronized static ContactSearchIndex getSearchIndex() {
+        getStorageEngine();
+        return searchIndex;
+    }
+
+    /**
+     * Validates contact before it is passed to a worker.
+     *
+     * @param contact: contact to be validated.
+     * @throws common.ValidationException when the contact breaks validation rules.
+     */
+    public static void validateContact(Contact contact) {
+        CheckHelpers.validateContact(contact, clock, logger);
+    }
 
-        return phoneManager;
+    /**
+     * Validates phone before it is passed to a worker.
+     *
+     * @param phone: phone to be validated.
+     * @throws common.ValidationException when the phone breaks validation rules.
+     */
+    public static void validatePhone(PhoneNumber phone) {
+        CheckHelpers.validatePhone(phone, logger);
     }
 }
@@ -35,6 +35,7 @@ public class MainJFrame extends JFrame{
     private JButton searchByPhoneButton;
     private JButton searchByNameButton;
 
+    private SearchPipeline searchPipeline;
     private ResourceBundle rb_messages;
     private ResourceBundle rb_gui;
     public enum SearchType {NAME, PHONE}
@@ -47,8 +48,6 @@ public class MainJFrame extends JFrame{
         setLocationRelativeTo(null);
         setVisible(true);
 
-        new ContactDownloadWorker(this).execute();
-
         contactDetailsButton.addActionListener(event -> contactDetailsButtonPressed());
         contactDeleteButton.addActionListener(event -> contactDeleteButtonPressed());
         contactAddButton.addActionListener(event -> contactAddButtonPressed());
@@ -60,8 +59,14 @@ public class MainJFrame extends JFrame{
         contactsTable.getTableHeader().setReorderingAllowed(false);
         contactsTable.getTableHeader().setDefaultRenderer(new TableHeaderRenderer(contactsTable));
 
+        searchPipeline = new SearchPipeline(this, Main.isLazyContactsTableEnabled());
+        searchPipeline.loadAll();
         searchByNameButton.addActionListener(event1 -> searchByNameButtonPressed());
         searchByPhoneButton.addActionListener(event -> searchByPhoneButtonPressed());
+        searchByNameTextField.getDocument().addDocumentListener(
+                guiUtils.onTextChange(() -> searchPipeline.searchLater(searchByNameTextField.getText(), SearchType.NAME)));
+        searchByPhoneTextField.getDocument().addDocumentListener(
+                guiUtils.onTextChange(() -> searchByPhone(true)));
 
         rb_messages = ResourceBundle.getBundle("messages");
         rb_gui = ResourceBundle.getBundle("gui_names");
@@ -108,14 +113,14 @@ public class MainJFrame extends JFrame{
         }
 
         ContactsTableModel model = (ContactsTableModel) contactsTable.getModel();
-        Contact contact = model.getContactAt(selectedRow);
-
-        JPanel existingContactTab = findContactsTab(contact);
-        if (existingContactTab != null) {
-            contactsPane.setSelectedComponent(existingContactTab);
-        } else {
-            new ContactDetailsWorker(contact,this).execute();
-        }
+        model.withContactAt(selectedRow, contact -> {
+            JPanel existingContactTab = findContactsTab(contact);
+            if (existingContactTab != null) {
+                contactsPane.setSelectedComponent(existingContactTab);
+            } else {
+                Main.execute(new ContactDetailsWorker(contact,this));
+            }
+        });
     }
 
     private void contactDeleteButtonPressed() {
@@ -125,12 +130,11 @@ public class MainJFrame extends JFrame{
             return;
         }
 
-        setContactsButtonsEnabled(false);
-
         ContactsTableModel model = getContactsTableModel();
-        Contact contact = model.getContactAt(selectedRow);
-
-        new RemoveContactWorker(contact, this).execute();
+        model.withContactAt(selectedRow, contact -> {
+            setContactsButtonsEnabled(false);
+            Main.execute(new RemoveContactWorker(contact, this));
+        });
     }
 
     private void contactAddButtonPressed() {
@@ -138,7 +142,7 @@ public class MainJFrame extends JFrame{
 
         Contact contact = getContactFromAddForm();
         try {
-            Main.getContactManager().validateContact(contact);
+            Main.validateContact(contact);
         }
         catch (ValidationException ex) {
             setContactsButtonsEnabled(true);
@@ -146,21 +150,29 @@ public class MainJFrame extends JFrame{
             return;
         }
 
-        new AddContactWorker(contact,this).execute();
+        Main.execute(new AddContactWorker(contact,this));
     }
 
     private void searchByNameButtonPressed() {
-        new SearchContactWorker(searchByNameTextField.getText(), SearchType.NAME, this).execute();
+        searchPipeline.search(searchByNameTextField.getText(), SearchType.NAME);
     }
 
     private void searchByPhoneButtonPressed() {
+        searchByPhone(false);
+    }
+
+    /**
+     * @param typed: whether to wait until the user stops typing.
+     */
+    private void searchByPhone(boolean typed) {
         String phone_part = searchByPhoneTextField.getText();
+        // Return all contacts by searching for empty string by name
+        SearchType type = phone_part.equals("") ? SearchType.NAME : SearchType.PHONE;
 
-        if (phone_part.equals("")) {
-            // Return all contacts by searching for empty string by name
-            new SearchContactWorker(phone_part, SearchType.NAME, this).execute();
+        if (typed) {
+            searchPipeline.searchLater(phone_part, type);
         } else {
-            new SearchContactWorker(phone_part, SearchType.PHONE, this).execute();
+            searchPipeline.search(phone_part, type);
         }
     }
 
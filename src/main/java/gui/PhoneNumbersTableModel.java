@@ -6,7 +6,6 @@ import org.slf4j.LoggerFactory;
 import javax.swing.table.AbstractTableModel;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 import java.util.function.Function;
 
 public class PhoneNumbersTableModel extends AbstractTableModel {
@@ -14,6 +13,7 @@ public class PhoneNumbersTableModel extends AbstractTableModel {
     private final static Logger logger = LoggerFactory.getLogger(PhoneNumbersTableModel.class);
 
     private List<PhoneNumber> phones = new ArrayList<>();
+    private final RowIndex<PhoneNumber> rowIndex = new RowIndex<>(PhoneNumber::getID);
 
     private enum Column {
         COUNTRY_CODE(String.class, PhoneNumber::getCountryCode),
@@ -29,11 +29,10 @@ public class PhoneNumbersTableModel extends AbstractTableModel {
         }
     }
 
-    private PhoneNumber findPhoneNumberWithID(Long ID) {
-        for(PhoneNumber phone : phones) {
-            if (Objects.equals(phone.getID(), ID)) {
-                return phone;
-            }
+    private int findRowWithID(Long ID) {
+        int row = rowIndex.rowOf(phones, ID);
+        if (row >= 0) {
+            return row;
         }
         String msg = "Phone with ID " + ID.toString() + "was not found.";
         logger.error(msg);
@@ -41,13 +40,14 @@ public class PhoneNumbersTableModel extends AbstractTableModel {
     }
 
     public void editPhoneNumber(PhoneNumber editedPhone) {
-        PhoneNumber phone = findPhoneNumberWithID(editedPhone.getID());
+        int row = findRowWithID(editedPhone.getID());
+        PhoneNumber phone = phones.get(row);
 
         phone.setCountryCode(editedPhone.getCountryCode());
         phone.setNumber(editedPhone.getNumber());
         phone.setPhoneType(editedPhone.getPhoneType());
 
-        fireTableDataChanged();
+        fireTableRowsUpdated(row, row);
     }
 
     public PhoneNumber getPhoneNumberAt(int index) {
@@ -57,13 +57,18 @@ public class PhoneNumbersTableModel extends AbstractTableModel {
     public void addPhoneNumber(PhoneNumber phone) {
         phones.add(phone);
         int lastRow = phones.size() - 1;
+        rowIndex.added(phone, lastRow);
         fireTableRowsInserted(lastRow, lastRow);
     }
 
     public void removePhoneNumber(PhoneNumber phone) {
-        phones.remove(phone);
-        int lastRow = phones.size() - 1;
-        fireTableRowsDeleted(lastRow, lastRow);
+        int row = rowIndex.rowOf(phones, phone.getID());
+        if (row < 0) {
+            return;
+        }
+        phones.remove(row);
+        rowIndex.removed(phone, row);
+        fireTableRowsDeleted(row, row);
     }
 
     @Override
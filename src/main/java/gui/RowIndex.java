@@ -0,0 +1,74 @@
+package gui;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Index of table rows by IDs of their entities. Appended rows are indexed
+ * at once, rows following a removed one are reindexed lazily by the next
+ * lookup, so that a series of removals does not reindex the table each
+ * time. Used only on the event dispatch thread.
+ *
+ * @author David Frankl
+ */
+class RowIndex<T> {
+
+    private final Function<T, Long> idFunction;
+    private final Map<Long, Integer> rows = new HashMap<>();
+    // number of leading rows whose index entries are valid
+    private int indexedRows;
+
+    /**
+     * @param idFunction: function returning ID of the entity.
+     */
+    RowIndex(Function<T, Long> idFunction) {
+        this.idFunction = idFunction;
+    }
+
+    /**
+     * Drops the index, e.g. when the rows were replaced.
+     */
+    void clear() {
+        rows.clear();
+        indexedRows = 0;
+    }
+
+    /**
+     * @param entities: rows of the table.
+     * @param ID: ID of the entity.
+     * @return row of the entity with the ID, or -1 when there is no such row.
+     */
+    int rowOf(List<T> entities, Long ID) {
+        Integer row = rows.get(ID);
+        if (row != null && row < indexedRows) {
+            return row;
+        }
+        for (; indexedRows < entities.size(); indexedRows++) {
+            rows.put(idFunction.apply(entities.get(indexedRows)), indexedRows);
+        }
+        row = rows.get(ID);
+        return row == null ? -1 : row;
+    }
+
+    /**
+     * @param entity: entity appended to the rows.
+     * @param row: row of the entity.
+     */
+    void added(T entity, int row) {
+        if (row == indexedRows) {
+            rows.put(idFunction.apply(entity), row);
+            indexedRows++;
+        }
+    }
+
+    /**
+     * @param entity: entity removed from the rows.
+     * @param row: former row of the entity.
+     */
+    void removed(T entity, int row) {
+        rows.remove(idFunction.apply(entity));
+        indexedRows = Math.min(indexedRows, row);
+    }
+}
@@ -0,0 +1,104 @@
+package gui;
+
+import workers.ContactDownloadWorker;
+import workers.SearchContactWorker;
+
+import javax.swing.*;
+
+/**
+ * Runs loads and searches of the main frame's contacts one at a time.
+ * Typed queries wait until the user stops typing for
+ * {@link #DEBOUNCE_MILLIS}, a new search cancels the running one including
+ * its query (see {@link contactmanager.QueryCancellation}), and every
+ * search gets a sequence number, so that rows arriving after a newer search
+ * started are never shown. Used only on the event dispatch thread.
+ *
+ * @author David Frankl
+ */
+public class SearchPipeline {
+
+    static final int DEBOUNCE_MILLIS = 250;
+
+    private final MainJFrame mainJFrame;
+    private final boolean lazyContactsTable;
+    private final Timer debounceTimer;
+    private long sequence;
+    private SwingWorker<?, ?> running;
+    private Runnable cancelRunning;
+    private String pendingPart;
+    private MainJFrame.SearchType pendingType;
+
+    /**
+     * @param mainJFrame: frame showing the contacts.
+     * @param lazyContactsTable: whether loads only count the contacts and the
+     * table reads their pages when it shows them.
+     */
+    public SearchPipeline(MainJFrame mainJFrame, boolean lazyContactsTable) {
+        this.mainJFrame = mainJFrame;
+        this.lazyContactsTable = lazyContactsTable;
+        debounceTimer = new Timer(DEBOUNCE_MILLIS, event -> search(pendingPart, pendingType));
+        debounceTimer.setRepeats(false);
+    }
+
+    /**
+     * Searches after the user stops typing, each call postpones the search.
+     *
+     * @param part: typed part of name or number.
+     * @param type: kind of the search.
+     */
+    public void searchLater(String part, MainJFrame.SearchType type) {
+        pendingPart = part;
+        pendingType = type;
+        debounceTimer.restart();
+    }
+
+    /**
+     * Searches at once, cancelling the running and the postponed search.
+     *
+     * @param part: part of name or number.
+     * @param type: kind of the search.
+     */
+    public void search(String part, MainJFrame.SearchType type) {
+        debounceTimer.stop();
+        SearchContactWorker worker = new SearchContactWorker(part, type, ++sequence, this, mainJFrame);
+        start(worker, worker::cancelSearch);
+    }
+
+    /**
+     * Loads all contacts page by page, cancelling the running and the postponed search.
+     */
+    public void loadAll() {
+        debounceTimer.stop();
+        ContactDownloadWorker worker = new ContactDownloadWorker(++sequence, this, mainJFrame, lazyContactsTable);
+        start(worker, () -> worker.cancel(false));
+    }
+
+    private void start(SwingWorker<?, ?> worker, Runnable cancel) {
+        if (cancelRunning != null) {
+            cancelRunning.run();
+        }
+        running = worker;
+        cancelRunning = cancel;
+        Main.execute(worker);
+    }
+
+    /**
+     * @param sequence: sequence number of a load or search.
+     * @return whether no other load or search started after the one with the sequence number.
+     */
+    public boolean isLatest(long sequence) {
+        return sequence == this.sequence;
+    }
+
+    /**
+     * Forgets the finished worker, so that it is not cancelled by the next one.
+     *
+     * @param worker: finished load or search.
+     */
+    public void finished(SwingWorker<?, ?> worker) {
+        if (running == worker) {
+            running = null;
+            cancelRunning = null;
+        }
+    }
+}
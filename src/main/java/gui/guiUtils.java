@@ -6,6 +6,8 @@ import org.jdatepicker.impl.JDatePickerImpl;
 import org.jdatepicker.impl.UtilDateModel;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.util.Properties;
 
 public class guiUtils {
@@ -36,6 +38,30 @@ public class guiUtils {
         return new JDatePickerImpl(jDatePanel, new DateLabelFormatter());
     }
 
+    /**
+     * Creates listener running the action whenever text of a document changes.
+     *
+     * @param action: action to be run on the event dispatch thread.
+     * @return listener to be added to the document.
+     */
+    public static DocumentListener onTextChange(Runnable action) {
+        return new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                action.run();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                action.run();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // attribute changes of styled documents, not text
+            }
+        };
+    }
 
     /**
      * Constructs a string from contact's first and second name (excludes null values)
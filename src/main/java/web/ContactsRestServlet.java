@@ -0,0 +1,339 @@
+package web;
+
+import common.IllegalEntityException;
+import common.ServiceFailureException;
+import common.ValidationException;
+import contactmanager.Contact;
+import contactmanager.ContactJson;
+import contactmanager.ContactManager;
+import contactmanager.ContactSearchIndex;
+import contactmanager.PhoneNumber;
+import contactmanager.PhoneNumberManager;
+import contactmanager.VersionedContactManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * JSON REST API of contacts.
+ * <ul>
+ * <li>GET /api/contacts streams all contacts, or one page of them ordered by
+ * IDs when "after" or "limit" parameter is given; the page object has
+ * "nextAfter" when there may be more contacts.</li>
+ * <li>GET /api/contacts/{id} returns the contact with its phones.</li>
+ * <li>GET /api/contacts/search?name=... or ?number=... returns matching contacts.</li>
+ * <li>POST /api/contacts creates the contact, with phones when the body has them.</li>
+ * <li>PUT /api/contacts/{id} updates the contact, DELETE /api/contacts/{id} deletes it.</li>
+ * </ul>
+ * Responses of GET requests carry ETag and Last-Modified of the contacts and
+ * their phones, and conditional GET requests are answered by 304 Not Modified
+ * when neither changed.
+ *
+ * @author David Frankl
+ */
+@WebServlet(ContactsRestServlet.URL_MAPPING + "/*")
+public class ContactsRestServlet extends HttpServlet {
+
+    public static final String URL_MAPPING = "/api/contacts";
+    static final int MAX_PAGE_SIZE = 1000;
+
+    private static final String JSON = "application/json";
+
+    private final static Logger logger = LoggerFactory.getLogger(ContactsRestServlet.class);
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String path = request.getPathInfo();
+        logger.debug("REST GET ... {}", path);
+        try {
+            if (notModified(request, response)) {
+                return;
+            }
+            if (path == null || path.equals("/")) {
+                listContacts(request, response);
+            } else if (path.equals("/search")) {
+                searchContacts(request, response);
+            } else {
+                getContact(parseID(path), response);
+            }
+        } catch (NumberFormatException ex) {
+            sendError(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid number: " + ex.getMessage());
+        } catch (IllegalArgumentException | ValidationException ex) {
+            sendError(response, HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
+        } catch (ServiceFailureException ex) {
+            logger.error("Cannot read contacts", ex);
+            sendError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ex.getMessage());
+        }
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (request.getPathInfo() != null && !request.getPathInfo().equals("/")) {
+            sendError(response, HttpServletResponse.SC_NOT_FOUND, "Unknown resource " + request.getPathInfo());
+            return;
+        }
+        try {
+            List<PhoneNumber> phones = new ArrayList<>();
+            Contact contact = readContact(request, phones);
+            if (phones.isEmpty()) {
+                getContactManager().createContact(contact);
+            } else {
+                getContactManager().createContactsWithPhones(
+                        Collections.singletonList(new AbstractMap.SimpleImmutableEntry<>(contact, phones)));
+            }
+            response.setStatus(HttpServletResponse.SC_CREATED);
+            response.setHeader("Location", request.getContextPath() + URL_MAPPING + "/" + contact.getID());
+            writeContact(response, contact, phones);
+        } catch (ValidationException | IllegalArgumentException | IllegalEntityException ex) {
+            sendError(response, HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
+        } catch (ServiceFailureException ex) {
+            logger.error("Cannot create contact", ex);
+            sendError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ex.getMessage());
+        }
+    }
+
+    @Override
+    protected void doPut(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        try {
+            Long ID = parseID(request.getPathInfo());
+            Contact contact = readContact(request, null);
+            contact.setID(ID);
+            if (getContactManager().getContact(ID) == null) {
+                sendError(response, HttpServletResponse.SC_NOT_FOUND, "Contact " + ID + " does not exist");
+                return;
+            }
+            getContactManager().updateContact(contact);
+            writeContact(response, contact, null);
+        } catch (NumberFormatException ex) {
+            sendError(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid number: " + ex.getMessage());
+        } catch (ValidationException | IllegalArgumentException ex) {
+            sendError(response, HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
+        } catch (IllegalEntityException ex) {
+            sendError(response, HttpServletResponse.SC_NOT_FOUND, ex.getMessage());
+        } catch (ServiceFailureException ex) {
+            logger.error("Cannot update contact", ex);
+            sendError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ex.getMessage());
+        }
+    }
+
+    @Override
+    protected void doDelete(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        try {
+            Contact contact = getContactManager().getContact(parseID(request.getPathInfo()));
+            if (contact == null) {
+                sendError(response, HttpServletResponse.SC_NOT_FOUND, "Contact does not exist");
+                return;
+            }
+            getContactManager().deleteContact(contact);
+            response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+        } catch (NumberFormatException ex) {
+            sendError(response, HttpServletResponse.SC_BAD_REQUEST, "Invalid number: " + ex.getMessage());
+        } catch (IllegalArgumentException ex) {
+            sendError(response, HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
+        } catch (IllegalEntityException ex) {
+            sendError(response, HttpServletResponse.SC_NOT_FOUND, ex.getMessage());
+        } catch (ServiceFailureException ex) {
+            logger.error("Cannot delete contact", ex);
+            sendError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ex.getMessage());
+        }
+    }
+
+    /**
+     * Gets ContactManager from ServletContext, where it was stored by {@link StartListener}.
+     */
+    private ContactManager getContactManager() {
+        return (ContactManager) getServletContext().getAttribute("contactManager");
+    }
+
+    /**
+     * Gets versioned decorator of the ContactManager stored by {@link StartListener}.
+     */
+    private VersionedContactManager getVersionedContactManager() {
+        return (VersionedContactManager) getServletContext().getAttribute("versionedContactManager");
+    }
+
+    /**
+     * Gets ContactSearchIndex from ServletContext, null if the index is disabled.
+     */
+    private ContactSearchIndex getSearchIndex() {
+        return (ContactSearchIndex) getServletContext().getAttribute("searchIndex");
+    }
+
+    /**
+     * Gets PhoneNumberManager stored by {@link StartListener}, caching phones when the cache is enabled.
+     */
+    private PhoneNumberManager getPhoneNumberManager() {
+        return (PhoneNumberManager) getServletContext().getAttribute("phoneNumberManager");
+    }
+
+    /**
+     * Sets ETag and Last-Modified of the current version of the contacts,
+     * read before the contacts are, and answers 304 when the client has it.
+     * If-None-Match takes precedence over If-Modified-Since.
+     */
+    private boolean notModified(HttpServletRequest request, HttpServletResponse response) {
+        VersionedContactManager versioned = getVersionedContactManager();
+        String eTag = "\"" + versioned.getVersionTag() + "\"";
+        Instant lastModified = versioned.getLastModified();
+        response.setHeader("ETag", eTag);
+        response.setDateHeader("Last-Modified", lastModified.toEpochMilli());
+        response.setHeader("Cache-Control", "no-cache");
+
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        boolean notModified;
+        if (ifNoneMatch != null) {
+            notModified = false;
+            for (String tag : ifNoneMatch.split(",")) {
+                String trimmed = tag.trim();
+                if (trimmed.startsWith("W/")) {
+                    trimmed = trimmed.substring(2);
+                }
+                notModified |= trimmed.equals("*") || trimmed.equals(eTag);
+            }
+        } else {
+            long ifModifiedSince;
+            try {
+                ifModifiedSince = request.getDateHeader("If-Modified-Since");
+            } catch (IllegalArgumentException ex) {
+                ifModifiedSince = -1;
+            }
+            // HTTP dates have whole seconds
+            notModified = ifModifiedSince >= 0 && lastModified.getEpochSecond() <= ifModifiedSince / 1000;
+        }
+        if (notModified) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        }
+        return notModified;
+    }
+
+    /**
+     * Writes all contacts or a page of them as rows come from the database,
+     * so all contacts are never held in memory.
+     */
+    private void listContacts(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String afterString = request.getParameter("after");
+        String limitString = request.getParameter("limit");
+        boolean paged = afterString != null || limitString != null;
+        Long after = afterString == null || afterString.isEmpty() ? null : Long.valueOf(afterString);
+        int limit = limitString == null || limitString.isEmpty() ? ContactsServlet.PAGE_SIZE : Integer.parseInt(limitString);
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        if (paged) {
+            List<Contact> page = getContactManager().findContactsPage(after, limit);
+            Writer out = startJson(response);
+            out.write("{\"contacts\":");
+            writeContacts(out, page.iterator());
+            if (page.size() == limit) {
+                out.write(",\"nextAfter\":" + page.get(limit - 1).getID());
+            }
+            out.write('}');
+        } else {
+            try (Stream<Contact> contacts = getContactManager().streamAllContacts()) {
+                Iterator<Contact> iterator = contacts.iterator();
+                // reads the first row before anything is written, so a failing query still gets an error status
+                iterator.hasNext();
+                Writer out = startJson(response);
+                out.write("{\"contacts\":");
+                writeContacts(out, iterator);
+                out.write('}');
+            }
+        }
+    }
+
+    private void searchContacts(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String name = request.getParameter("name");
+        String number = request.getParameter("number");
+        if (name == null && number == null) {
+            throw new IllegalArgumentException("Missing name or number parameter");
+        }
+        ContactSearchIndex searchIndex = getSearchIndex();
+        List<Contact> contacts;
+        if (searchIndex != null) {
+            contacts = name != null ? searchIndex.findContactsByName(name) : searchIndex.findContactsByNumber(number);
+        } else {
+            contacts = name != null ? getContactManager().findContactsByName(name)
+                    : getContactManager().findContactsByNumber(number);
+        }
+        Writer out = startJson(response);
+        out.write("{\"contacts\":");
+        writeContacts(out, contacts.iterator());
+        out.write('}');
+    }
+
+    private void getContact(Long ID, HttpServletResponse response) throws IOException {
+        Contact contact = getContactManager().getContact(ID);
+        if (contact == null) {
+            sendError(response, HttpServletResponse.SC_NOT_FOUND, "Contact " + ID + " does not exist");
+            return;
+        }
+        List<PhoneNumber> phones = getPhoneNumberManager().getPhoneNumbers(contact);
+        writeContact(response, contact, phones);
+    }
+
+    private static Long parseID(String path) {
+        if (path == null || path.length() < 2) {
+            throw new IllegalArgumentException("Missing contact ID");
+        }
+        return Long.valueOf(path.substring(1));
+    }
+
+    private static Contact readContact(HttpServletRequest request, List<PhoneNumber> phones) throws IOException {
+        request.setCharacterEncoding("utf-8");
+        return ContactJson.readContact(request.getReader(), phones);
+    }
+
+    private static Writer startJson(HttpServletResponse response) throws IOException {
+        response.setContentType(JSON);
+        response.setCharacterEncoding("utf-8");
+        return response.getWriter();
+    }
+
+    private static void writeContacts(Writer out, Iterator<Contact> contacts) throws IOException {
+        out.write('[');
+        boolean first = true;
+        while (contacts.hasNext()) {
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            ContactJson.writeContact(out, contacts.next(), null);
+        }
+        out.write(']');
+    }
+
+    private static void writeContact(HttpServletResponse response, Contact contact, List<PhoneNumber> phones)
+            throws IOException {
+        ContactJson.writeContact(startJson(response), contact, phones);
+    }
+
+    /**
+     * Sends JSON error object, unless part of the response was already sent.
+     */
+    private static void sendError(HttpServletResponse response, int status, String message) throws IOException {
+        if (response.isCommitted()) {
+            logger.error("Response already committed, cannot send error: {}", message);
+            return;
+        }
+        response.reset();
+        response.setStatus(status);
+        Writer out = startJson(response);
+        out.write("{\"error\":");
+        ContactJson.writeString(out, message);
+        out.write('}');
+    }
+}
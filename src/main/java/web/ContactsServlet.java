@@ -2,9 +2,14 @@ package web;
 
 import contactmanager.Contact;
 import contactmanager.ContactManager;
+import contactmanager.ContactSearchIndex;
+import contactmanager.DbExecutor;
 import common.ServiceFailureException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -12,30 +17,126 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
- * Servlet for managing contacts.
+ * Servlet for managing contacts. Requests are handled asynchronously: the
+ * container thread only hands the request over to the {@link DbExecutor}
+ * stored by {@link StartListener}, which runs the blocking database work.
+ * When the executor's queue is full, the request is answered at once by 503
+ * Service Unavailable with Retry-After header.
  *
  * @author David Frankl
  */
-@WebServlet(ContactsServlet.URL_MAPPING + "/*")
+@WebServlet(urlPatterns = ContactsServlet.URL_MAPPING + "/*", asyncSupported = true)
 public class ContactsServlet extends HttpServlet {
 
     private static final String LIST_JSP = "/list.jsp";
     public static final String URL_MAPPING = "/contacts";
+    static final int PAGE_SIZE = 50;
+    // a short prefix matches most of the contacts, only the first ones are shown
+    static final int MAX_SEARCH_RESULTS = 200;
+
+    /**
+     * Longer than POOL_MAX_WAIT_MILLIS of db.properties, so requests time out
+     * only when the database hangs.
+     */
+    private static final long ASYNC_TIMEOUT_MILLIS = 30000;
+    private static final String RETRY_AFTER_SECONDS = "1";
+    private static final String ASYNC_CALL = ContactsServlet.class.getName() + ".asyncCall";
 
     private final static Logger logger = LoggerFactory.getLogger(ContactsServlet.class);
 
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-        logger.debug("GET ...");
-        showContactsList(request, response);
+        handleAsync(request, response, this::handleGet);
     }
 
     @Override
     protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-        //support non-ASCII characters in form
+        //support non-ASCII characters in form, before the body is read on the executor's thread
         request.setCharacterEncoding("utf-8");
+        handleAsync(request, response, this::handlePost);
+    }
+
+    /**
+     * Runs the handler on the {@link DbExecutor}, or on the container's
+     * thread when there is no executor in ServletContext.
+     */
+    private void handleAsync(HttpServletRequest request, HttpServletResponse response, Handler handler)
+            throws ServletException, IOException {
+        DbExecutor executor = getDbExecutor();
+        if (executor == null || !request.isAsyncSupported()) {
+            handler.handle(request, response);
+            return;
+        }
+        AsyncCall call = new AsyncCall(request.startAsync(request, response), ASYNC_TIMEOUT_MILLIS);
+        request.setAttribute(ASYNC_CALL, call);
+        try {
+            executor.execute(() -> call.run(handler, request, response));
+        } catch (RejectedExecutionException ex) {
+            logger.warn("Database executor is busy, rejecting {} {}", request.getMethod(), request.getRequestURI());
+            call.reject(request);
+        }
+    }
+
+    /**
+     * Forwards to the JSP, by dispatch of the async context when the request is handled asynchronously.
+     */
+    private void forwardToList(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        AsyncCall call = (AsyncCall) request.getAttribute(ASYNC_CALL);
+        if (call == null) {
+            request.getRequestDispatcher(LIST_JSP).forward(request, response);
+        } else {
+            request.removeAttribute(ASYNC_CALL);
+            call.dispatch(LIST_JSP);
+        }
+    }
+
+    /**
+     * Sends error response, through the async call when the request is handled asynchronously.
+     */
+    private void sendError(HttpServletRequest request, HttpServletResponse response, int status, String message)
+            throws IOException {
+        AsyncCall call = (AsyncCall) request.getAttribute(ASYNC_CALL);
+        if (call == null) {
+            response.sendError(status, message);
+        } else {
+            call.sendError(status, message);
+        }
+    }
+
+    /**
+     * Redirects to the list of contacts, through the async call when the request is handled asynchronously.
+     */
+    private void redirectToList(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String location = request.getContextPath() + URL_MAPPING;
+        AsyncCall call = (AsyncCall) request.getAttribute(ASYNC_CALL);
+        if (call == null) {
+            response.sendRedirect(location);
+        } else {
+            call.sendRedirect(location);
+        }
+    }
+
+    private void handleGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        String action = request.getPathInfo();
+        logger.debug("GET ... {}", action);
+        if (action == null || action.equals("/")) {
+            showContactsList(request, response);
+        } else if (action.equals("/search")) {
+            showSearchResults(request, response);
+        } else {
+            logger.error("Unknown action " + action);
+            sendError(request, response, HttpServletResponse.SC_NOT_FOUND, "Unknown action " + action);
+        }
+    }
+
+    private void handlePost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
         //action specified by pathInfo
         String action = request.getPathInfo();
         logger.debug("POST ... {}",action);
@@ -68,11 +169,11 @@ public class ContactsServlet extends HttpServlet {
 
                     //redirect-after-POST protects from multiple submission
                     logger.debug("redirecting after POST");
-                    response.sendRedirect(request.getContextPath()+URL_MAPPING);
+                    redirectToList(request, response);
                     return;
                 } catch (ServiceFailureException ex) {
                     logger.error("Cannot create contact. Please try again.", ex);
-                    response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ex.getMessage());
+                    sendError(request, response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ex.getMessage());
                     return;
                 }
             case "/delete":
@@ -81,11 +182,11 @@ public class ContactsServlet extends HttpServlet {
                     Contact contact = getContactManager().getContact(ID);
                     getContactManager().deleteContact(contact);
                     logger.debug("redirecting after POST");
-                    response.sendRedirect(request.getContextPath()+URL_MAPPING);
+                    redirectToList(request, response);
                     return;
                 } catch (ServiceFailureException ex) {
                     logger.error("Cannot delete book", ex);
-                    response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ex.getMessage());
+                    sendError(request, response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ex.getMessage());
                     return;
                 }
             case "/update":
@@ -93,7 +194,7 @@ public class ContactsServlet extends HttpServlet {
                 return;
             default:
                 logger.error("Unknown action " + action);
-                response.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown action " + action);
+                sendError(request, response, HttpServletResponse.SC_NOT_FOUND, "Unknown action " + action);
         }
     }
 
@@ -107,17 +208,222 @@ public class ContactsServlet extends HttpServlet {
     }
 
     /**
-     * Stores the list of contacts to request attribute "contacts" and forwards to the JSP to display it.
+     * Gets DbExecutor from ServletContext, where it was stored by {@link StartListener}.
+     *
+     * @return DbExecutor instance or null if requests are handled synchronously
+     */
+    private DbExecutor getDbExecutor() {
+        return (DbExecutor) getServletContext().getAttribute("dbExecutor");
+    }
+
+    /**
+     * Gets ContactSearchIndex from ServletContext, where it was stored by {@link StartListener}.
+     *
+     * @return ContactSearchIndex instance or null if the index is disabled
+     */
+    private ContactSearchIndex getSearchIndex() {
+        return (ContactSearchIndex) getServletContext().getAttribute("searchIndex");
+    }
+
+    /**
+     * Stores contacts matching "name" or "number" request parameter to request attribute "contacts"
+     * and forwards to the JSP to display them, at most {@link #MAX_SEARCH_RESULTS} of them. The search
+     * is answered by the search index when enabled.
+     */
+    private void showSearchResults(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        String name = request.getParameter("name");
+        String number = request.getParameter("number");
+        if (name == null && number == null) {
+            sendError(request, response, HttpServletResponse.SC_BAD_REQUEST, "Missing name or number parameter");
+            return;
+        }
+        try {
+            logger.debug("showing search results");
+            ContactSearchIndex searchIndex = getSearchIndex();
+            List<Contact> contacts;
+            if (searchIndex != null) {
+                contacts = name != null ? searchIndex.findContactsByName(name, MAX_SEARCH_RESULTS)
+                        : searchIndex.findContactsByNumber(number, MAX_SEARCH_RESULTS);
+            } else {
+                try (Stream<Contact> found = name != null ? getContactManager().streamContactsByName(name)
+                        : getContactManager().streamContactsByNumber(number)) {
+                    contacts = found.limit(MAX_SEARCH_RESULTS).collect(Collectors.toList());
+                }
+            }
+            request.setAttribute("contacts", contacts);
+            forwardToList(request, response);
+        } catch (ServiceFailureException ex) {
+            logger.error("Cannot search contacts", ex);
+            sendError(request, response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ex.getMessage());
+        }
+    }
+
+    /**
+     * Stores one page of contacts to request attribute "contacts" and forwards to the JSP to display it.
+     * The page starts after the contact with ID given by "after" request parameter; ID of the last
+     * contact is stored to "nextAfter" attribute when there may be more contacts.
      */
     private void showContactsList(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
         try {
             logger.debug("showing table of contacts");
-            request.setAttribute("contacts", getContactManager().findAllContacts());
-            request.getRequestDispatcher(LIST_JSP).forward(request, response);
+            String afterString = request.getParameter("after");
+            Long after = afterString == null || afterString.equals("") ? null : Long.valueOf(afterString);
+            List<Contact> contacts = getContactManager().findContactsPage(after, PAGE_SIZE);
+            request.setAttribute("contacts", contacts);
+            if (contacts.size() == PAGE_SIZE) {
+                request.setAttribute("nextAfter", contacts.get(PAGE_SIZE - 1).getID());
+            }
+            forwardToList(request, response);
+        } catch (NumberFormatException ex) {
+            logger.error("Invalid page parameter", ex);
+            sendError(request, response, HttpServletResponse.SC_BAD_REQUEST, "Invalid page parameter");
         } catch (ServiceFailureException ex) {
             logger.error("Cannot display contacts", ex);
-            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ex.getMessage());
+            sendError(request, response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ex.getMessage());
         }
     }
 
-}
\ No newline at end of file
+    @FunctionalInterface
+    interface Handler {
+        void handle(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException;
+    }
+
+    /**
+     * Request handled asynchronously. Exactly one of the handler, the
+     * rejection and the timeout completes or dispatches its context, and a
+     * handler which has not started before the timeout is not run.
+     * <p>
+     * The container recycles the request and the response once the timeout
+     * completes the context, while the handler may still be running. So the
+     * handler answers only through {@link #sendError}, {@link #sendRedirect}
+     * and {@link #dispatch}, which check under the lock of the call that it
+     * is not finished yet, and does nothing to a response which may already
+     * belong to another request.
+     */
+    static class AsyncCall implements AsyncListener {
+        private final AsyncContext async;
+        private final HttpServletResponse response;
+        private final String description;
+        // guarded by this
+        private boolean finished;
+
+        AsyncCall(AsyncContext async, long timeoutMillis) {
+            this.async = async;
+            HttpServletRequest request = (HttpServletRequest) async.getRequest();
+            response = (HttpServletResponse) async.getResponse();
+            description = request.getMethod() + " " + request.getRequestURI();
+            async.setTimeout(timeoutMillis);
+            async.addListener(this);
+        }
+
+        private synchronized boolean finish() {
+            if (finished) {
+                return false;
+            }
+            finished = true;
+            return true;
+        }
+
+        /**
+         * Dispatches the context unless the call is already finished.
+         *
+         * @param path: path of the resource rendering the response.
+         */
+        synchronized void dispatch(String path) {
+            if (finish()) {
+                async.dispatch(path);
+            }
+        }
+
+        /**
+         * Sends error response unless the call is already finished.
+         *
+         * @param status: HTTP status code.
+         * @param message: message of the error page.
+         */
+        synchronized void sendError(int status, String message) throws IOException {
+            if (!finished) {
+                response.sendError(status, message);
+            }
+        }
+
+        /**
+         * Sends redirect unless the call is already finished.
+         *
+         * @param location: URL of the redirect.
+         */
+        synchronized void sendRedirect(String location) throws IOException {
+            if (!finished) {
+                response.sendRedirect(location);
+            }
+        }
+
+        /**
+         * Answers the request rejected by the executor by 503.
+         */
+        synchronized void reject(HttpServletRequest request) throws IOException {
+            if (finish()) {
+                request.removeAttribute(ASYNC_CALL);
+                response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Server is busy, please try again later.");
+                async.complete();
+            }
+        }
+
+        void run(Handler handler, HttpServletRequest request, HttpServletResponse response) {
+            synchronized (this) {
+                if (finished) {
+                    // timed out while queued
+                    return;
+                }
+            }
+            try {
+                handler.handle(request, response);
+            } catch (ServletException | IOException | RuntimeException ex) {
+                logger.error("Error when handling " + description, ex);
+                synchronized (this) {
+                    if (!finished && !response.isCommitted()) {
+                        try {
+                            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, ex.getMessage());
+                        } catch (IOException | IllegalStateException sendEx) {
+                            logger.error("Cannot send error response", sendEx);
+                        }
+                    }
+                }
+            } finally {
+                synchronized (this) {
+                    if (finish()) {
+                        async.complete();
+                    }
+                }
+            }
+        }
+
+        @Override
+        public synchronized void onTimeout(AsyncEvent event) throws IOException {
+            if (finish()) {
+                logger.error("Request {} timed out", description);
+                HttpServletResponse response = (HttpServletResponse) event.getSuppliedResponse();
+                if (!response.isCommitted()) {
+                    response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+                    response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Request timed out.");
+                }
+                async.complete();
+            }
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            finish();
+            logger.error("Error of asynchronous request " + description, event.getThrowable());
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
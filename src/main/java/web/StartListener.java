@@ -1,7 +1,20 @@
 package web;
 
-import contactmanager.ContactManagerImpl;
+import contactmanager.CachingContactManager;
+import contactmanager.CachingPhoneNumberManager;
+import contactmanager.Contact;
+import contactmanager.ContactManager;
+import contactmanager.ContactSearchIndex;
 import contactmanager.DBUtils;
+import contactmanager.DbExecutor;
+import contactmanager.EntityCache;
+import contactmanager.JdbcStorageEngine;
+import contactmanager.PhoneNumber;
+import contactmanager.PhoneNumberManager;
+import contactmanager.PoolStatistics;
+import contactmanager.StorageEngine;
+import contactmanager.VersionedContactManager;
+import contactmanager.VersionedPhoneNumberManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -9,27 +22,113 @@ import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 import javax.servlet.annotation.WebListener;
+import java.io.Closeable;
+import java.io.IOException;
 import java.time.Clock;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 @WebListener
 public class StartListener implements ServletContextListener {
 
     private final static Logger logger = LoggerFactory.getLogger(StartListener.class);
+    private static final String[] CACHE_ATTRIBUTES = {"contactCache", "phoneCache", "contactPhonesCache"};
 
     @Override
     public void contextInitialized(ServletContextEvent ev) {
         logger.info("Web app initialised");
         ServletContext servletContext = ev.getServletContext();
-        ContactManagerImpl contactManager = new ContactManagerImpl(Clock.systemDefaultZone());
 
-        contactManager.setDataSource(DBUtils.createDatabaseWithTables(true));
+        Properties dbProperties = DBUtils.loadDbProperties();
+        PoolStatistics poolStatistics = new PoolStatistics();
+        StorageEngine storageEngine =
+                DBUtils.createStorageEngine(dbProperties, true, Clock.systemDefaultZone(), poolStatistics);
+        ContactManager contactManager = storageEngine.getContactManager();
 
-        servletContext.setAttribute("contactManager", contactManager);
-        logger.info("Contact manager created and stored to servletContext.");
+        if (storageEngine instanceof JdbcStorageEngine) {
+            servletContext.setAttribute("poolStatistics", poolStatistics);
+
+            if (DBUtils.isSearchIndexEnabled(dbProperties)) {
+                ContactSearchIndex searchIndex = new ContactSearchIndex();
+                searchIndex.load(contactManager);
+                ((JdbcStorageEngine) storageEngine).setSearchIndex(searchIndex);
+                servletContext.setAttribute("searchIndex", searchIndex);
+                logger.info("Search index created and stored to servletContext.");
+            }
+        }
+
+        PhoneNumberManager phoneNumberManager = storageEngine.getPhoneNumberManager();
+        EntityCache<Contact> contactCache =
+                DBUtils.createEntityCache(dbProperties, Clock.systemDefaultZone(), Contact::copyOf);
+        if (contactCache != null) {
+            CachingPhoneNumberManager cachingPhoneNumberManager = new CachingPhoneNumberManager(phoneNumberManager,
+                    DBUtils.createEntityCache(dbProperties, Clock.systemDefaultZone(), PhoneNumber::copyOf),
+                    DBUtils.createEntityCache(dbProperties, Clock.systemDefaultZone(), CachingPhoneNumberManager::copyOf));
+            contactManager = new CachingContactManager(contactManager, contactCache, cachingPhoneNumberManager);
+            phoneNumberManager = cachingPhoneNumberManager;
+            servletContext.setAttribute("contactCache", contactCache);
+            servletContext.setAttribute("phoneCache", cachingPhoneNumberManager.getCache());
+            servletContext.setAttribute("contactPhonesCache", cachingPhoneNumberManager.getContactPhonesCache());
+            logger.info("Contact and phone caches enabled and stored to servletContext.");
+        }
+
+        // changes made through the servlets are counted for ETags of the REST API
+        VersionedContactManager versionedContactManager =
+                new VersionedContactManager(contactManager, Clock.systemDefaultZone());
+        servletContext.setAttribute("storageEngine", storageEngine);
+        servletContext.setAttribute("versionedContactManager", versionedContactManager);
+        servletContext.setAttribute("contactManager", versionedContactManager);
+        // phones are part of a contact in the REST API, so their changes are counted too
+        servletContext.setAttribute("phoneNumberManager",
+                new VersionedPhoneNumberManager(phoneNumberManager, versionedContactManager));
+        logger.info("Contact and phone managers created and stored to servletContext.");
+
+        // blocking database work of ContactsServlet runs here instead of on the container's threads
+        DbExecutor dbExecutor = DBUtils.createDbExecutor(dbProperties);
+        servletContext.setAttribute("dbExecutor", dbExecutor);
+        servletContext.setAttribute("dbExecutorStatistics", dbExecutor.getStatistics());
+        logger.info("Database executor with {} threads and queue of {} requests stored to servletContext.",
+                dbExecutor.getThreads(), dbExecutor.getQueueCapacity());
     }
 
     @Override
     public void contextDestroyed(ServletContextEvent ev) {
         logger.info("The application closes.");
+        Object poolStatistics = ev.getServletContext().getAttribute("poolStatistics");
+        if (poolStatistics != null) {
+            logger.info("Connection pool statistics: {}", poolStatistics);
+        }
+        for (String cache : CACHE_ATTRIBUTES) {
+            Object cacheStatistics = ev.getServletContext().getAttribute(cache);
+            if (cacheStatistics != null) {
+                logger.info("Statistics of {}: {}", cache, cacheStatistics);
+            }
+        }
+        DbExecutor dbExecutor = (DbExecutor) ev.getServletContext().getAttribute("dbExecutor");
+        if (dbExecutor != null) {
+            if (!dbExecutor.shutdown(10, TimeUnit.SECONDS)) {
+                logger.error("Database executor did not finish its requests in time.");
+            }
+        }
+        Object dbExecutorStatistics = ev.getServletContext().getAttribute("dbExecutorStatistics");
+        if (dbExecutorStatistics != null) {
+            logger.info("Database executor statistics: {}", dbExecutorStatistics);
+        }
+        StorageEngine storageEngine = (StorageEngine) ev.getServletContext().getAttribute("storageEngine");
+        if (storageEngine == null) {
+            return;
+        }
+        try {
+            DBUtils.writeSnapshot(storageEngine);
+        } catch (RuntimeException ex) {
+            logger.error("Error when writing snapshot of the storage engine", ex);
+        }
+        if (storageEngine instanceof Closeable) {
+            try {
+                ((Closeable) storageEngine).close();
+            } catch (IOException ex) {
+                logger.error("Error when closing storage engine", ex);
+            }
+        }
     }
 }
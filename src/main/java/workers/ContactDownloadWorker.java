@@ -5,38 +5,104 @@ import contactmanager.ContactManager;
 import gui.ContactsTableModel;
 import gui.Main;
 import gui.MainJFrame;
+import gui.SearchPipeline;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import javax.swing.*;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.ResourceBundle;
 import java.util.concurrent.ExecutionException;
 import static contactmanager.CheckHelpers.checkMainFrameNotNull;
 
 /**
- * Worker class for getting Contact data from DB
+ * Worker class for getting Contact data from DB. Each page is published as
+ * soon as it is read, so the first rows appear before the rest is loaded.
+ * Started by {@link SearchPipeline}; stops loading when a search starts.
+ * A lazy worker, used when LAZY_CONTACTS_TABLE is enabled in db.properties,
+ * only counts the contacts and the table reads their pages when it shows them.
  */
-public class ContactDownloadWorker extends SwingWorker<List<Contact>, Void> {
+public class ContactDownloadWorker extends SwingWorker<Long, List<Contact>> {
+    private static final int PAGE_SIZE = 1000;
+
+    private long sequence;
+    private SearchPipeline pipeline;
     private MainJFrame mainJFrame;
+    private final boolean lazy;
+    // whether the first page replaced the rows, used on the EDT only
+    private boolean shown;
     private static final Logger logger = LoggerFactory.getLogger(ContactDownloadWorker.class.getName());
 
-    public ContactDownloadWorker(MainJFrame mainJFrame) {
+    public ContactDownloadWorker(long sequence, SearchPipeline pipeline, MainJFrame mainJFrame, boolean lazy) {
         checkMainFrameNotNull(mainJFrame, logger);
+
+        if (pipeline == null) {
+            String msg = "Pipeline is null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.sequence = sequence;
+        this.pipeline = pipeline;
         this.mainJFrame = mainJFrame;
+        this.lazy = lazy;
     }
 
     @Override
-    protected List<Contact> doInBackground() throws Exception {
+    protected Long doInBackground() throws Exception {
         ContactManager contactManager = Main.getContactManager();
+        if (lazy) {
+            return contactManager.countContacts();
+        }
 
-        return contactManager.findAllContacts();
+        long loaded = 0;
+        List<Contact> page = contactManager.findContactsPage(null, PAGE_SIZE);
+        // the first page replaces the rows even when there are no contacts
+        publish(page);
+        loaded += page.size();
+        while (page.size() == PAGE_SIZE && !isCancelled()) {
+            page = contactManager.findContactsPage(page.get(page.size() - 1).getID(), PAGE_SIZE);
+            publish(page);
+            loaded += page.size();
+        }
+        return loaded;
     }
 
+    /**
+     * Shows the pages, unless a search started. Pages published since the
+     * last call are added by one row insert event.
+     */
     @Override
-    protected void done() {
+    protected void process(List<List<Contact>> pages) {
+        if (isCancelled() || !pipeline.isLatest(sequence)) {
+            return;
+        }
+        List<Contact> rows = new ArrayList<>();
+        pages.forEach(rows::addAll);
         ContactsTableModel contactsTableModel = mainJFrame.getContactsTableModel();
+        if (shown) {
+            contactsTableModel.addContacts(rows);
+        } else {
+            contactsTableModel.setContacts(rows);
+            shown = true;
+        }
+    }
+
+    @Override
+    protected void done() {
+        pipeline.finished(this);
+        mainJFrame.setContactsButtonsEnabled(true);
+        if (isCancelled()) {
+            logger.debug("Loading of contacts superseded by a search");
+            return;
+        }
         try {
-            get().forEach(contactsTableModel::addContact);
+            long count = get();
+            if (lazy && pipeline.isLatest(sequence)) {
+                mainJFrame.getContactsTableModel().setPagedContacts(Main.getContactManager(), Main.getDbExecutor(),
+                        (int) Math.min(count, Integer.MAX_VALUE));
+            }
+            logger.debug("Loaded {} contacts", count);
         } catch (InterruptedException ex) {
             logger.error("Interrupted exception error.", ex);
             throw new AssertionError();
@@ -44,6 +110,5 @@ public class ContactDownloadWorker extends SwingWorker<List<Contact>, Void> {
             logger.error("Connection error", ex);
             JOptionPane.showMessageDialog(mainJFrame, ResourceBundle.getBundle("messages").getString("CONNECTION_ERROR"));
         }
-        mainJFrame.setContactsButtonsEnabled(true);
     }
 }
@@ -2,31 +2,59 @@ package workers;
 
 import contactmanager.Contact;
 import contactmanager.ContactManager;
+import contactmanager.ContactSearchIndex;
+import contactmanager.QueryCancellation;
 import gui.ContactsTableModel;
 import gui.Main;
 import gui.MainJFrame;
+import gui.SearchPipeline;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 import static contactmanager.CheckHelpers.checkMainFrameNotNull;
 
 /**
- * Worker class for getting Contact data from DB
+ * Worker class for getting Contact data from DB. Started by
+ * {@link SearchPipeline}, which cancels it when a newer search starts;
+ * its result is shown only when it is the latest search. Contacts found in
+ * the DB are published in chunks while the query reads them, so the first
+ * rows are shown before the search ends and the EDT adds a bounded number of
+ * rows at once.
  */
-public class SearchContactWorker extends SwingWorker<List<Contact>, Void> {
+public class SearchContactWorker extends SwingWorker<Integer, List<Contact>> {
+    private static final int CHUNK_SIZE = 1000;
+    private static final long PUBLISH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
     private String part;
     private MainJFrame.SearchType type;
+    private long sequence;
+    private SearchPipeline pipeline;
     private MainJFrame mainJFrame;
+    private final QueryCancellation cancellation = new QueryCancellation();
+    // whether the first chunk replaced the rows, used on the EDT only
+    private boolean shown;
     private static final Logger logger = LoggerFactory.getLogger(SearchContactWorker.class.getName());
 
 
-    public SearchContactWorker(String part, MainJFrame.SearchType type, MainJFrame mainJFrame) {
+    public SearchContactWorker(String part, MainJFrame.SearchType type, long sequence, SearchPipeline pipeline,
+                               MainJFrame mainJFrame) {
         checkMainFrameNotNull(mainJFrame, logger);
 
+        if (pipeline == null) {
+            String msg = "Pipeline is null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
         if(type == null) {
             String msg = "Type is null";
             logger.error(msg);
@@ -35,32 +63,106 @@ public class SearchContactWorker extends SwingWorker<List<Contact>, Void> {
 
         this.part = part;
         this.type = type;
+        this.sequence = sequence;
+        this.pipeline = pipeline;
         this.mainJFrame = mainJFrame;
     }
 
+    /**
+     * Cancels the worker and its running query. Not interrupting the thread,
+     * as embedded Derby treats interrupts as connection errors.
+     */
+    public void cancelSearch() {
+        cancellation.cancel();
+        cancel(false);
+    }
+
     @Override
-    protected List<Contact> doInBackground() throws Exception {
+    protected Integer doInBackground() throws Exception {
+        ContactSearchIndex searchIndex = Main.getSearchIndex();
+        if (searchIndex != null) {
+            if (type == MainJFrame.SearchType.NAME) {
+                return publishInChunks(searchIndex.findContactsByName(part).iterator());
+            } else {
+                return publishInChunks(searchIndex.findContactsByNumber(part).iterator());
+            }
+        }
+
         ContactManager contactManager = Main.getContactManager();
+        return cancellation.call(() -> {
+            try (Stream<Contact> contacts = type == MainJFrame.SearchType.NAME
+                    ? contactManager.streamContactsByName(part)
+                    : contactManager.streamContactsByNumber(part)) {
+                return publishInChunks(contacts.iterator());
+            }
+        });
+    }
 
-        if (type == MainJFrame.SearchType.NAME) {
-            return contactManager.findContactsByName(part);
+    /**
+     * Publishes contacts as they are read, in chunks of at most CHUNK_SIZE
+     * contacts. A chunk is published also when 100 ms passed
+     * since the previous one, so that rows of a slow query appear while it
+     * runs. The first chunk replaces the rows even when there are no contacts.
+     *
+     * @return number of published contacts.
+     */
+    private int publishInChunks(Iterator<Contact> contacts) {
+        List<Contact> chunk = new ArrayList<>();
+        int count = 0;
+        boolean published = false;
+        long publishedAt = System.nanoTime();
+        while (!isCancelled() && contacts.hasNext()) {
+            chunk.add(contacts.next());
+            count++;
+            if (chunk.size() == CHUNK_SIZE || System.nanoTime() - publishedAt >= PUBLISH_INTERVAL_NANOS) {
+                publish(chunk);
+                chunk = new ArrayList<>();
+                published = true;
+                publishedAt = System.nanoTime();
+            }
+        }
+        if (!published || !chunk.isEmpty()) {
+            publish(chunk);
+        }
+        return count;
+    }
+
+    /**
+     * Shows chunks of the result, unless a newer search started. Chunks
+     * published since the last call are added by one row insert event.
+     */
+    @Override
+    protected void process(List<List<Contact>> chunks) {
+        if (isCancelled() || !pipeline.isLatest(sequence)) {
+            return;
+        }
+        List<Contact> rows = new ArrayList<>();
+        chunks.forEach(rows::addAll);
+        ContactsTableModel ctmodel = mainJFrame.getContactsTableModel();
+        if (shown) {
+            ctmodel.addContacts(rows);
         } else {
-            return contactManager.findContactsByNumber(part);
+            ctmodel.setContacts(rows);
+            shown = true;
         }
     }
 
     @Override
     protected void done() {
-        ContactsTableModel ctmodel = mainJFrame.getContactsTableModel();
+        pipeline.finished(this);
+        if (isCancelled() || !pipeline.isLatest(sequence)) {
+            logger.debug("Search {} for '{}' superseded", sequence, part);
+            return;
+        }
         try {
-            List<Contact> contacts = get();
-            ctmodel.removeAllContacts();
-            contacts.forEach(ctmodel::addContact);
-            ctmodel.fireTableDataChanged();
+            logger.debug("Search {} for '{}' found {} contacts", sequence, part, get());
         } catch (InterruptedException ex) {
             logger.error("Interrupted exception error.", ex);
             throw new AssertionError();
         } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof CancellationException) {
+                return;
+            }
             logger.error("Connection error", ex);
             JOptionPane.showMessageDialog(mainJFrame, ResourceBundle.getBundle("messages").getString("CONNECTION_ERROR"));
         }
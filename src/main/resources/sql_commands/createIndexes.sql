@@ -0,0 +1,6 @@
+CREATE INDEX CONTACT_SEARCH_FIRST_NAME_IDX ON CONTACT (SEARCH_FIRST_NAME);
+CREATE INDEX CONTACT_SEARCH_SURNAME_IDX ON CONTACT (SEARCH_SURNAME);
+CREATE INDEX CONTACT_NAME_ORDER_IDX ON CONTACT (SORT_SURNAME, SORT_FIRST_NAME, ID);
+
+CREATE INDEX PHONENUMBER_SEARCH_NUMBER_IDX ON PHONENUMBER (SEARCH_NUMBER);
+CREATE INDEX PHONENUMBER_REVERSED_NUMBER_IDX ON PHONENUMBER (REVERSED_NUMBER);
@@ -1,15 +1,21 @@
 CREATE TABLE CONTACT (
-    ID BIGINT NOT NULL PRIMARY KEY GENERATED ALWAYS AS IDENTITY,
+    ID BIGINT NOT NULL PRIMARY KEY GENERATED BY DEFAULT AS IDENTITY,
     FIRST_NAME VARCHAR(255),
     SURNAME VARCHAR(255),
     PRIMARY_EMAIL VARCHAR(255),
-    BIRTHDAY DATE
+    BIRTHDAY DATE,
+    SEARCH_FIRST_NAME VARCHAR(255),
+    SEARCH_SURNAME VARCHAR(255),
+    SORT_FIRST_NAME VARCHAR(255) NOT NULL DEFAULT '',
+    SORT_SURNAME VARCHAR(255) NOT NULL DEFAULT ''
 );
 
 CREATE TABLE PHONENUMBER (
-    ID BIGINT NOT NULL PRIMARY KEY GENERATED ALWAYS AS IDENTITY,
+    ID BIGINT NOT NULL PRIMARY KEY GENERATED BY DEFAULT AS IDENTITY,
     NUMBER VARCHAR(255) NOT NULL,
     COUNTRY_CODE VARCHAR(255) NOT NULL,
     PHONE_TYPE VARCHAR(255),
-    CONTACT_ID BIGINT NOT NULL CONSTRAINT CONTACT_ID_FK REFERENCES CONTACT(ID) ON DELETE CASCADE ON UPDATE RESTRICT
-);
\ No newline at end of file
+    CONTACT_ID BIGINT NOT NULL CONSTRAINT CONTACT_ID_FK REFERENCES CONTACT(ID) ON DELETE RESTRICT ON UPDATE RESTRICT,
+    SEARCH_NUMBER VARCHAR(255) NOT NULL,
+    REVERSED_NUMBER VARCHAR(255) NOT NULL
+);
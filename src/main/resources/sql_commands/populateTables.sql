@@ -1,5 +1,6 @@
-INSERT INTO CONTACT (FIRST_NAME, SURNAME, PRIMARY_EMAIL, BIRTHDAY)
-VALUES ('Gregory', 'House', 'gregory.house@fi.muni.cz', '1958-06-11');
+INSERT INTO CONTACT (FIRST_NAME, SURNAME, PRIMARY_EMAIL, BIRTHDAY, SEARCH_FIRST_NAME, SEARCH_SURNAME,
+                     SORT_FIRST_NAME, SORT_SURNAME)
+VALUES ('Gregory', 'House', 'gregory.house@fi.muni.cz', '1958-06-11', 'gregory', 'house', 'Gregory', 'House');
 
-INSERT INTO PHONENUMBER (NUMBER, COUNTRY_CODE, PHONE_TYPE, CONTACT_ID)
-VALUES ('777777777', '00421', 'FAMILY', (SELECT ID FROM CONTACT));
\ No newline at end of file
+INSERT INTO PHONENUMBER (NUMBER, COUNTRY_CODE, PHONE_TYPE, CONTACT_ID, SEARCH_NUMBER, REVERSED_NUMBER)
+VALUES ('777777777', '00421', 'FAMILY', (SELECT ID FROM CONTACT), '777777777', '777777777');
\ No newline at end of file
@@ -3,6 +3,15 @@
 <html>
 <body>
 
+<form action="${pageContext.request.contextPath}/contacts/search" method="get">
+    Name: <input type="text" name="name" value="<c:out value='${param.name}'/>"/>
+    <input type="submit" value="Search"/>
+</form>
+<form action="${pageContext.request.contextPath}/contacts/search" method="get">
+    Number: <input type="text" name="number" value="<c:out value='${param.number}'/>"/>
+    <input type="submit" value="Search"/>
+</form>
+
 <table border="1">
     <thead>
     <tr>
@@ -23,6 +32,9 @@
         </tr>
     </c:forEach>
 </table>
+<c:if test="${not empty nextAfter}">
+    <a href="${pageContext.request.contextPath}/contacts?after=${nextAfter}">Next page</a>
+</c:if>
 
 <h2>Insert contact</h2>
 <c:if test="${not empty validation_error}">
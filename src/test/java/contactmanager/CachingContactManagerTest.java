@@ -0,0 +1,201 @@
+package contactmanager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for {@link CachingContactManager} and {@link CachingPhoneNumberManager}.
+ */
+public class CachingContactManagerTest {
+
+    private CachingContactManager contactManager;
+    private CachingPhoneNumberManager phoneManager;
+    private ContactManagerImpl contactManagerImpl;
+    private DataSource ds;
+
+    @Before
+    public void setUp() {
+        ds = DBUtils.createDatabaseWithTables(false);
+        contactManagerImpl = new ContactManagerImpl(Clock.systemDefaultZone());
+        contactManagerImpl.setDataSource(ds);
+        PhoneNumberManagerImpl phoneManagerImpl = new PhoneNumberManagerImpl();
+        phoneManagerImpl.setDataSource(ds);
+
+        EntityCache<PhoneNumber> phones = new EntityCache<>(10, Duration.ofMinutes(1),
+                Clock.systemDefaultZone(), PhoneNumber::copyOf);
+        EntityCache<Contact> contacts = new EntityCache<>(10, Duration.ofMinutes(1),
+                Clock.systemDefaultZone(), Contact::copyOf);
+        EntityCache<List<PhoneNumber>> contactPhones = new EntityCache<>(10, Duration.ofMinutes(1),
+                Clock.systemDefaultZone(), CachingPhoneNumberManager::copyOf);
+        phoneManager = new CachingPhoneNumberManager(phoneManagerImpl, phones, contactPhones);
+        contactManager = new CachingContactManager(contactManagerImpl, contacts, phoneManager);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        DBUtils.executeSqlScript(ds, DBUtils.class.getResource("/sql_commands/dropTables.sql"));
+    }
+
+    private Contact.Builder sample_house_builder() {
+        return new Contact.Builder()
+                .ID(null)
+                .firstName("Gregory")
+                .surname("House")
+                .primaryEmail("gregory.house@md.com")
+                .birthday(LocalDate.parse("2000-01-01"));
+    }
+
+    @Test
+    public void getContactFromCache() {
+        Contact c = sample_house_builder().build();
+        contactManager.createContact(c);
+
+        assertThat(contactManager.getContact(c.getID())).isEqualToComparingFieldByField(c);
+        assertThat(contactManager.getContact(c.getID())).isEqualToComparingFieldByField(c);
+        assertThat(contactManager.getCache().getHitCount()).isEqualTo(2);
+        assertThat(contactManager.getCache().getMissCount()).isZero();
+    }
+
+    @Test
+    public void updateContactInvalidatesCache() {
+        Contact c = sample_house_builder().build();
+        contactManager.createContact(c);
+
+        c.setFirstName("Lisa");
+        contactManager.updateContact(c);
+
+        assertThat(contactManager.getContact(c.getID())).isEqualToComparingFieldByField(c);
+        assertThat(contactManager.getCache().getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void readOverlappingUpdateNotCached() {
+        Contact c = sample_house_builder().build();
+        contactManager.createContact(c);
+        contactManager.getCache().invalidateAll();
+        Contact updated = Contact.copyOf(c);
+        updated.setFirstName("Lisa");
+
+        // the update commits and invalidates after the read, before the read stores its contact
+        EntityCache<Contact> cache = new EntityCache<>(10, Duration.ofMinutes(1), Clock.systemDefaultZone(),
+                Contact::copyOf);
+        CachingContactManager[] caching = new CachingContactManager[1];
+        ContactManager updatingAfterRead = (ContactManager) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ContactManager.class}, (proxy, method, args) -> {
+                    Object result;
+                    try {
+                        result = method.invoke(contactManagerImpl, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getCause();
+                    }
+                    if (method.getName().equals("getContact")) {
+                        caching[0].updateContact(updated);
+                    }
+                    return result;
+                });
+        caching[0] = new CachingContactManager(updatingAfterRead, cache, null);
+
+        assertThat(caching[0].getContact(c.getID()).getFirstName()).isEqualTo("Gregory");
+        assertThat(cache.size()).isZero();
+        assertThat(contactManager.getContact(c.getID())).isEqualToComparingFieldByField(updated);
+    }
+
+    @Test
+    public void createOverlappingInvalidationNotCached() {
+        Contact other = sample_house_builder().build();
+        contactManager.createContact(other);
+        other.setFirstName("Lisa");
+
+        // another contact is updated while the new one is created, before its ID is known
+        EntityCache<Contact> cache = new EntityCache<>(10, Duration.ofMinutes(1), Clock.systemDefaultZone(),
+                Contact::copyOf);
+        CachingContactManager[] caching = new CachingContactManager[1];
+        ContactManager updatingWhileCreating = (ContactManager) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ContactManager.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("createContact")) {
+                        caching[0].updateContact(other);
+                    }
+                    try {
+                        return method.invoke(contactManagerImpl, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getCause();
+                    }
+                });
+        caching[0] = new CachingContactManager(updatingWhileCreating, cache, null);
+
+        Contact c = sample_house_builder().surname("Cuddy").build();
+        caching[0].createContact(c);
+        assertThat(c.getID()).isNotNull();
+        assertThat(cache.size()).isZero();
+
+        caching[0].createContacts(Collections.singletonList(sample_house_builder().surname("Wilson").build()));
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void getPhoneNumbersFromCache() {
+        Contact c = sample_house_builder().build();
+        contactManager.createContact(c);
+        PhoneNumber p1 = new PhoneNumber.Builder().number("777888999").countryCode("+420").build();
+        phoneManager.addPhone(c, p1);
+
+        assertThat(phoneManager.getPhoneNumbers(c)).usingFieldByFieldElementComparator().containsExactly(p1);
+        assertThat(phoneManager.getPhoneNumbers(c)).usingFieldByFieldElementComparator().containsExactly(p1);
+        EntityCache<List<PhoneNumber>> cache = phoneManager.getContactPhonesCache();
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+
+        PhoneNumber p2 = new PhoneNumber.Builder().number("111222333").countryCode("+420").build();
+        phoneManager.addPhone(c, p2);
+        assertThat(phoneManager.getPhoneNumbers(c)).usingFieldByFieldElementComparator().containsOnly(p1, p2);
+
+        p1.setNumber("444555666");
+        phoneManager.updatePhone(p1);
+        assertThat(phoneManager.getPhoneNumbers(c)).usingFieldByFieldElementComparator().containsOnly(p1, p2);
+
+        contactManager.deleteContact(c);
+        assertThat(cache.size()).isZero();
+        assertThat(phoneManager.getPhoneNumber(p2.getID())).isNull();
+    }
+
+    @Test
+    public void deleteContactInvalidatesCache() {
+        Contact c = sample_house_builder().build();
+        contactManager.createContact(c);
+        PhoneNumber p = new PhoneNumber.Builder().number("777888999").countryCode("+420").build();
+        phoneManager.addPhone(c, p);
+
+        contactManager.deleteContact(c);
+
+        assertThat(contactManager.getContact(c.getID())).isNull();
+        assertThat(phoneManager.getPhoneNumber(p.getID())).isNull();
+    }
+
+    @Test
+    public void updatePhoneInvalidatesCache() {
+        Contact c = sample_house_builder().build();
+        contactManager.createContact(c);
+        PhoneNumber p = new PhoneNumber.Builder().number("777888999").countryCode("+420").build();
+        phoneManager.addPhone(c, p);
+
+        p.setNumber("111222333");
+        phoneManager.updatePhone(p);
+        assertThat(phoneManager.getPhoneNumber(p.getID())).isEqualToComparingFieldByField(p);
+
+        phoneManager.removePhone(p);
+        assertThat(phoneManager.getPhoneNumber(p.getID())).isNull();
+    }
+}
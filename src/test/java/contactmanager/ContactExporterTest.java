@@ -0,0 +1,192 @@
+package contactmanager;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for {@link ContactExporter} exporting from the jdbc engine,
+ * checked by importing the export by {@link ContactImporter}.
+ */
+public class ContactExporterTest {
+
+    private static final AtomicInteger databases = new AtomicInteger();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Clock clock = Clock.systemDefaultZone();
+    private StorageEngine engine;
+    private Path file;
+
+    @Before
+    public void setUp() {
+        Properties dbProperties = DBUtils.loadDbProperties();
+        dbProperties.setProperty("STORAGE_ENGINE", "jdbc");
+        dbProperties.setProperty("DATABASE_URL",
+                "jdbc:derby:memory:exportDB" + databases.incrementAndGet() + ";create=true");
+        dbProperties.remove("SNAPSHOT_FILE");
+        engine = DBUtils.createStorageEngine(dbProperties, false, clock, PoolMetrics.NONE);
+        file = folder.getRoot().toPath().resolve("contacts");
+    }
+
+    private void fill() {
+        Contact house = new Contact.Builder()
+                .firstName("Gregory \"Greg\"")
+                .surname("House, M.D.")
+                .primaryEmail("gregory.house@md.com")
+                .birthday(LocalDate.parse("2000-01-01"))
+                .build();
+        Contact cuddy = new Contact.Builder().firstName("Lisa").surname("Cuddy; Dean\\of medicine").build();
+        Contact wilson = new Contact.Builder().surname("Wilson").build();
+        engine.getContactManager().createContacts(Arrays.asList(house, cuddy, wilson));
+        engine.getPhoneNumberManager().addPhone(house,
+                new PhoneNumber.Builder().countryCode("+420").number("777 888 999").phoneType("CELL").build());
+        engine.getPhoneNumberManager().addPhone(house,
+                new PhoneNumber.Builder().countryCode("+421").number("111222333").build());
+        engine.getPhoneNumberManager().addPhone(wilson,
+                new PhoneNumber.Builder().countryCode("+1").number("(555) 123-4567").phoneType("WORK").build());
+    }
+
+    private byte[] export(ContactExporter.Format format, boolean gzip) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ContactExporter(engine.getContactManager()).export(out, format, gzip);
+        return out.toByteArray();
+    }
+
+    /**
+     * Imports the file into empty memory engine and checks it got the same
+     * contacts and phones except IDs.
+     */
+    private void assertImportedBack(ContactImporter.Format format) {
+        InMemoryStorageEngine imported = new InMemoryStorageEngine(clock);
+        new ContactImporter(imported.getContactManager(), clock).importFile(file, format);
+
+        Map<Contact, List<PhoneNumber>> expected = engine.getContactManager().findAllContactsWithPhones();
+        Map<Contact, List<PhoneNumber>> actual = imported.getContactManager().findAllContactsWithPhones();
+        assertThat(actual.keySet())
+                .usingElementComparatorIgnoringFields("ID")
+                .containsExactlyElementsOf(expected.keySet());
+        List<List<PhoneNumber>> expectedPhones = new ArrayList<>(expected.values());
+        List<List<PhoneNumber>> actualPhones = new ArrayList<>(actual.values());
+        for (int i = 0; i < expectedPhones.size(); i++) {
+            assertThat(actualPhones.get(i))
+                    .usingElementComparatorIgnoringFields("ID")
+                    .containsExactlyInAnyOrder(expectedPhones.get(i).toArray(new PhoneNumber[0]));
+        }
+    }
+
+    @Test
+    public void csvImportedBack() throws IOException {
+        fill();
+        Files.write(file, export(ContactExporter.Format.CSV, false));
+
+        assertThat(new String(Files.readAllBytes(file), StandardCharsets.UTF_8))
+                .startsWith("ID,FIRST_NAME,SURNAME,PRIMARY_EMAIL,BIRTHDAY,NUMBER,COUNTRY_CODE,PHONE_TYPE\r\n")
+                .contains(",\"Gregory \"\"Greg\"\"\",\"House, M.D.\",gregory.house@md.com,2000-01-01,");
+        assertImportedBack(ContactImporter.Format.CSV);
+    }
+
+    @Test
+    public void vCardImportedBack() throws IOException {
+        fill();
+        Files.write(file, export(ContactExporter.Format.VCARD, false));
+
+        assertThat(new String(Files.readAllBytes(file), StandardCharsets.UTF_8))
+                .contains("N:House\\, M.D.;Gregory \"Greg\";;;\r\n")
+                .contains("TEL;TYPE=CELL:+420 777 888 999\r\n");
+        assertImportedBack(ContactImporter.Format.VCARD);
+    }
+
+    @Test
+    public void longVCardLinesFolded() throws IOException {
+        StringBuilder surname = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            surname.append("House").append(i);
+        }
+        engine.getContactManager().createContact(new Contact.Builder().surname(surname.toString()).build());
+        Files.write(file, export(ContactExporter.Format.VCARD, false));
+
+        for (String line : new String(Files.readAllBytes(file), StandardCharsets.UTF_8).split("\r\n")) {
+            assertThat(line.length()).isLessThanOrEqualTo(76);
+        }
+        assertImportedBack(ContactImporter.Format.VCARD);
+    }
+
+    @Test
+    public void jsonLines() {
+        Contact contact = new Contact.Builder().firstName("Lisa").surname("Cuddy\n\"Dean\"").build();
+        engine.getContactManager().createContact(contact);
+        PhoneNumber phone = new PhoneNumber.Builder().countryCode("+420").number("777888999").build();
+        engine.getPhoneNumberManager().addPhone(contact, phone);
+        engine.getContactManager().createContact(new Contact.Builder().surname("Wilson").build());
+
+        String[] lines = new String(export(ContactExporter.Format.JSON_LINES, false), StandardCharsets.UTF_8)
+                .split("\n");
+
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).isEqualTo("{\"id\":" + contact.getID() + ",\"firstName\":\"Lisa\","
+                + "\"surname\":\"Cuddy\\n\\\"Dean\\\"\",\"primaryEmail\":null,\"birthday\":null,"
+                + "\"phones\":[{\"id\":" + phone.getID() + ",\"number\":\"777888999\",\"countryCode\":\"+420\","
+                + "\"phoneType\":null}]}");
+        assertThat(lines[1]).endsWith(",\"surname\":\"Wilson\",\"primaryEmail\":null,\"birthday\":null,\"phones\":[]}");
+    }
+
+    @Test
+    public void gzipExportHasSameContents() throws IOException {
+        fill();
+        byte[] plain = export(ContactExporter.Format.JSON_LINES, false);
+        byte[] compressed = export(ContactExporter.Format.JSON_LINES, true);
+
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            byte[] buffer = new byte[4096];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                decompressed.write(buffer, 0, read);
+            }
+        }
+        assertThat(decompressed.toByteArray()).isEqualTo(plain);
+    }
+
+    @Test
+    public void outputStreamNotClosed() {
+        AtomicInteger closed = new AtomicInteger();
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed.incrementAndGet();
+            }
+        };
+        new ContactExporter(engine.getContactManager()).export(out, ContactExporter.Format.CSV, true);
+        assertThat(closed.get()).isZero();
+    }
+
+    @Test
+    public void exportToFile() throws IOException {
+        fill();
+        long contacts = new ContactExporter(engine.getContactManager()).export(file, ContactExporter.Format.CSV, false);
+
+        assertThat(contacts).isEqualTo(3);
+        assertThat(folder.getRoot().list()).containsExactly(file.getFileName().toString());
+        assertImportedBack(ContactImporter.Format.CSV);
+    }
+}
@@ -0,0 +1,256 @@
+package contactmanager;
+
+import common.ServiceFailureException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Test class for {@link ContactImporter} storing into the memory engine.
+ */
+public class ContactImporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Clock clock = Clock.fixed(Instant.parse("2017-01-01T00:00:00Z"), ZoneId.of("UTC"));
+    private InMemoryStorageEngine engine;
+    private Path file;
+    private Path checkpoint;
+
+    @Before
+    public void setUp() {
+        engine = new InMemoryStorageEngine(clock);
+        file = folder.getRoot().toPath().resolve("contacts");
+        checkpoint = folder.getRoot().toPath().resolve("contacts.checkpoint");
+    }
+
+    private void write(String... lines) throws IOException {
+        Files.write(file, String.join("\r\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private ContactImporter importer(ContactManager contactManager) {
+        ContactImporter importer = new ContactImporter(contactManager, clock);
+        importer.setBatchSize(2);
+        importer.setParallelism(2);
+        importer.setDefaultCountryCode("+420");
+        return importer;
+    }
+
+    private Map<Contact, List<PhoneNumber>> stored() {
+        return engine.getContactManager().findAllContactsWithPhones();
+    }
+
+    private List<PhoneNumber> phonesOf(String surname) {
+        for (Map.Entry<Contact, List<PhoneNumber>> entry : stored().entrySet()) {
+            if (surname.equals(entry.getKey().getSurname())) {
+                return entry.getValue();
+            }
+        }
+        throw new AssertionError("No contact " + surname);
+    }
+
+    @Test
+    public void importCsvGroupsRowsOfContact() throws IOException {
+        write("\uFEFFid,First_Name,SURNAME,primary_email,birthday,number,country_code,phone_type,note",
+                "1,Gregory,House,gregory.house@md.com,2000-01-01,777888999,,CELL,\"first, \"\"quoted\"\"\"",
+                "1,Gregory,House,gregory.house@md.com,2000-01-01,111222333,+421,WORK,",
+                "",
+                "2,Lisa,\"Cuddy\",,,,,,\"more",
+                "lines\"",
+                "3,,Wilson,,,444555666,,,");
+
+        ImportProgress progress = importer(engine.getContactManager()).importFile(file, ContactImporter.Format.CSV);
+
+        assertThat(progress.getProcessedRecords()).isEqualTo(3);
+        assertThat(progress.getImportedContacts()).isEqualTo(3);
+        assertThat(progress.getImportedPhones()).isEqualTo(3);
+        assertThat(progress.getRejectedRecords()).isZero();
+        assertThat(stored().keySet())
+                .extracting(Contact::getFirstName, Contact::getSurname, Contact::getPrimaryEmail, Contact::getBirthday)
+                .containsExactlyInAnyOrder(
+                        tuple("Gregory", "House", "gregory.house@md.com", LocalDate.parse("2000-01-01")),
+                        tuple("Lisa", "Cuddy", null, null),
+                        tuple(null, "Wilson", null, null));
+        assertThat(phonesOf("House"))
+                .extracting(PhoneNumber::getCountryCode, PhoneNumber::getNumber, PhoneNumber::getPhoneType)
+                .containsExactlyInAnyOrder(tuple("+420", "777888999", "CELL"), tuple("+421", "111222333", "WORK"));
+        assertThat(phonesOf("Cuddy")).isEmpty();
+    }
+
+    @Test
+    public void importCsvWithoutIdColumn() throws IOException {
+        write("SURNAME,NUMBER", "House,777888999", "House,111222333");
+
+        ImportProgress progress = importer(engine.getContactManager()).importFile(file, ContactImporter.Format.CSV);
+
+        assertThat(progress.getImportedContacts()).isEqualTo(2);
+        assertThat(stored().values()).allSatisfy(phones -> assertThat(phones).hasSize(1));
+    }
+
+    @Test
+    public void importVCard() throws IOException {
+        write("BEGIN:VCARD",
+                "VERSION:3.0",
+                "N:House;Gregory;;;",
+                "FN:Gregory House",
+                "EMAIL;TYPE=INTERNET:gregory.house@md.com",
+                "EMAIL:house@example.com",
+                "BDAY:20000101",
+                "TEL;TYPE=pref,cell:+420 777 888",
+                " 999",
+                "item1.TEL;TYPE=WORK:tel:00421-111222333",
+                "TEL:222333444",
+                "END:VCARD",
+                "begin:vcard",
+                "VERSION:2.1",
+                "N;CHARSET=UTF-8;ENCODING=QUOTED-PRINTABLE:Cudd=C3=BD;Lisa\\, M.D.",
+                "TEL;HOME;VOICE:555666777",
+                "end:vcard",
+                "BEGIN:VCARD",
+                "VERSION:4.0",
+                "FN:James Wilson",
+                "BDAY:2001-02-03T10:00:00Z",
+                "END:VCARD");
+
+        ImportProgress progress = importer(engine.getContactManager()).importFile(file, ContactImporter.Format.VCARD);
+
+        assertThat(progress.getImportedContacts()).isEqualTo(3);
+        assertThat(progress.getImportedPhones()).isEqualTo(4);
+        assertThat(stored().keySet())
+                .extracting(Contact::getFirstName, Contact::getSurname, Contact::getPrimaryEmail, Contact::getBirthday)
+                .containsExactlyInAnyOrder(
+                        tuple("Gregory", "House", "gregory.house@md.com", LocalDate.parse("2000-01-01")),
+                        tuple("Lisa, M.D.", "Cudd\u00fd", null, null),
+                        tuple("James Wilson", null, null, LocalDate.parse("2001-02-03")));
+        assertThat(phonesOf("House"))
+                .extracting(PhoneNumber::getCountryCode, PhoneNumber::getNumber, PhoneNumber::getPhoneType)
+                .containsExactlyInAnyOrder(
+                        tuple("+420", "777 888999", "CELL"),
+                        tuple("+421", "111222333", "WORK"),
+                        tuple("+420", "222333444", null));
+        assertThat(phonesOf("Cudd\u00fd"))
+                .extracting(PhoneNumber::getCountryCode, PhoneNumber::getNumber, PhoneNumber::getPhoneType)
+                .containsExactly(tuple("+420", "555666777", "HOME"));
+    }
+
+    @Test
+    public void invalidRecordsRejected() throws IOException {
+        write("ID,FIRST_NAME,SURNAME,BIRTHDAY,NUMBER,COUNTRY_CODE",
+                "1,Gregory,House,2000-01-01,777888999,+420",
+                "2,Lisa,Cuddy,01.01.2001,,",
+                "3,,,,111222333,+420",
+                "4,James,Wilson,2100-01-01,,",
+                "5,Allison,Cameron,,222333444,");
+        ContactImporter importer = importer(engine.getContactManager());
+        importer.setDefaultCountryCode(null);
+
+        ImportProgress progress = importer.importFile(file, ContactImporter.Format.CSV);
+
+        assertThat(progress.getProcessedRecords()).isEqualTo(5);
+        assertThat(progress.getImportedContacts()).isEqualTo(1);
+        assertThat(progress.getRejectedRecords()).isEqualTo(4);
+        assertThat(progress.getErrors()).hasSize(4);
+        assertThat(progress.getErrors().get(0)).startsWith("Record at line 3 rejected").contains("01.01.2001");
+        assertThat(progress.getErrors().get(3)).startsWith("Record at line 6 rejected");
+        assertThat(stored().keySet()).extracting(Contact::getSurname).containsExactly("House");
+    }
+
+    @Test
+    public void progressReportedAfterEachBatch() throws IOException {
+        write("SURNAME", "House", "Cuddy", "Wilson", "Cameron", "Chase");
+        List<Long> processed = new ArrayList<>();
+        ContactImporter importer = importer(engine.getContactManager());
+        importer.setParallelism(1);
+        importer.setMaxPendingBatches(1);
+        importer.setProgressListener(progress -> processed.add(progress.getProcessedRecords()));
+
+        importer.importFile(file, ContactImporter.Format.CSV);
+
+        assertThat(processed).containsExactly(2L, 4L, 5L);
+    }
+
+    @Test
+    public void failedImportResumedFromCheckpoint() throws IOException {
+        write("SURNAME", "House", "Cuddy", "Wilson", "Cameron", "Chase");
+        AtomicInteger batches = new AtomicInteger();
+        ContactManager failing = new InMemoryContactManager(engine.getStore(), clock) {
+            @Override
+            public void createContactsWithPhones(List<Map.Entry<Contact, List<PhoneNumber>>> contacts) {
+                if (batches.incrementAndGet() == 2) {
+                    throw new ServiceFailureException("Disk full");
+                }
+                super.createContactsWithPhones(contacts);
+            }
+        };
+        ContactImporter importer = importer(failing);
+        importer.setCheckpointFile(checkpoint);
+
+        assertThatThrownBy(() -> importer.importFile(file, ContactImporter.Format.CSV))
+                .isInstanceOf(ServiceFailureException.class)
+                .hasMessage("Disk full");
+        assertThat(stored().keySet()).extracting(Contact::getSurname).containsExactlyInAnyOrder("House", "Cuddy");
+        assertThat(checkpoint).exists();
+
+        ImportProgress progress = importer.importFile(file, ContactImporter.Format.CSV);
+
+        assertThat(progress.getResumedRecords()).isEqualTo(2);
+        assertThat(progress.getProcessedRecords()).isEqualTo(5);
+        assertThat(progress.getImportedContacts()).isEqualTo(3);
+        assertThat(stored().keySet()).extracting(Contact::getSurname)
+                .containsExactlyInAnyOrder("House", "Cuddy", "Wilson", "Cameron", "Chase");
+        assertThat(checkpoint).doesNotExist();
+    }
+
+    @Test
+    public void checkpointOfChangedFileIgnored() throws IOException {
+        write("SURNAME", "House", "Cuddy");
+        Files.write(checkpoint, ("file=" + file.toAbsolutePath().toString().replace("\\", "\\\\")
+                + "\nsize=1\nlastModified=0\nrecords=2\n").getBytes(StandardCharsets.ISO_8859_1));
+        ContactImporter importer = importer(engine.getContactManager());
+        importer.setCheckpointFile(checkpoint);
+
+        ImportProgress progress = importer.importFile(file, ContactImporter.Format.CSV);
+
+        assertThat(progress.getResumedRecords()).isZero();
+        assertThat(progress.getImportedContacts()).isEqualTo(2);
+    }
+
+    @Test
+    public void malformedFileFailsImport() throws IOException {
+        write("SURNAME,NUMBER", "House,777888999", "Cuddy,111222333", "\"Wilson,444555666");
+        ContactImporter importer = importer(engine.getContactManager());
+        importer.setBatchSize(1);
+
+        assertThatThrownBy(() -> importer.importFile(file, ContactImporter.Format.CSV))
+                .isInstanceOf(ServiceFailureException.class)
+                .hasRootCauseInstanceOf(IOException.class);
+        assertThat(stored().keySet()).extracting(Contact::getSurname).containsExactly("House");
+
+        write("BEGIN:VCARD", "N:House;Gregory", "TEL:777888999");
+        assertThatThrownBy(() -> importer.importFile(file, ContactImporter.Format.VCARD))
+                .isInstanceOf(ServiceFailureException.class);
+
+        write("NAME,NUMBER", "House,777888999");
+        assertThatThrownBy(() -> importer.importFile(file, ContactImporter.Format.CSV))
+                .isInstanceOf(ServiceFailureException.class);
+    }
+}
@@ -0,0 +1,85 @@
+package contactmanager;
+
+import common.ValidationException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Test class for {@link ContactJson}.
+ */
+public class ContactJsonTest {
+
+    private static String write(Contact contact, List<PhoneNumber> phones) throws IOException {
+        StringBuilder out = new StringBuilder();
+        ContactJson.writeContact(out, contact, phones);
+        return out.toString();
+    }
+
+    private static Contact read(String json, List<PhoneNumber> phones) throws IOException {
+        return ContactJson.readContact(new StringReader(json), phones);
+    }
+
+    @Test
+    public void writtenContactReadBack() throws IOException {
+        Contact contact = new Contact.Builder()
+                .ID(7L)
+                .firstName("Gregory \"Greg\"")
+                .surname("House\\\n\t\u0001\u2028")
+                .birthday(LocalDate.parse("2000-01-01"))
+                .build();
+        PhoneNumber phone = new PhoneNumber.Builder().ID(9L).countryCode("+420").number("777888999").build();
+
+        String json = write(contact, Arrays.asList(phone));
+        assertThat(json).isEqualTo("{\"id\":7,\"firstName\":\"Gregory \\\"Greg\\\"\","
+                + "\"surname\":\"House\\\\\\n\\t\\u0001\\u2028\",\"primaryEmail\":null,\"birthday\":\"2000-01-01\","
+                + "\"phones\":[{\"id\":9,\"number\":\"777888999\",\"countryCode\":\"+420\",\"phoneType\":null}]}");
+
+        List<PhoneNumber> phones = new ArrayList<>();
+        Contact read = read(json, phones);
+        assertThat(read.getID()).isNull();
+        assertThat(read).isEqualToIgnoringGivenFields(contact, "ID");
+        assertThat(phones)
+                .extracting(PhoneNumber::getID, PhoneNumber::getCountryCode, PhoneNumber::getNumber)
+                .containsExactly(tuple(null, "+420", "777888999"));
+    }
+
+    @Test
+    public void readContactIgnoresUnknownFields() throws IOException {
+        Contact contact = read(" {\"surname\" : \"Wilson\", \"tags\": [1, -2.5e3, true, false, {\"a\": null}],"
+                + "\"phones\": [{\"number\": \"1\"}]}\n", null);
+
+        assertThat(contact.getSurname()).isEqualTo("Wilson");
+        assertThat(contact.getFirstName()).isNull();
+    }
+
+    @Test
+    public void readMalformedContact() {
+        for (String json : Arrays.asList("", "[]", "{\"surname\":\"House\"", "{\"surname\":\"House\"} x",
+                "{\"surname\":1}", "{\"birthday\":\"01.01.2000\"}", "{\"phones\":{}}", "{\"surname\":\"\\x\"}",
+                "{'surname':'House'}")) {
+            assertThatThrownBy(() -> read(json, new ArrayList<>()))
+                    .as(json)
+                    .isInstanceOf(ValidationException.class);
+        }
+    }
+
+    @Test
+    public void readDeeplyNestedJson() {
+        StringBuilder json = new StringBuilder("{\"a\":");
+        for (int i = 0; i < 10000; i++) {
+            json.append('[');
+        }
+        assertThatThrownBy(() -> read(json.toString(), null))
+                .isInstanceOf(ValidationException.class);
+    }
+}
@@ -0,0 +1,804 @@
+package contactmanager;
+
+import common.IllegalEntityException;
+import common.ValidationException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.time.*;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests of {@link ContactManager} contract which every {@link StorageEngine}
+ * must pass.
+ *
+ * Created by David Frankl on 15-Mar-17.
+ */
+public abstract class ContactManagerContractTest {
+
+    protected ContactManager contactManager;
+    protected PhoneNumberManager phoneManager;
+
+    // Clock mock object set to always return date as 01-01-2017
+    private final static LocalDate NOW = LocalDate.of(2017, 1, 1);
+
+    private static Instant prepareClockMock(LocalDate now) {
+        return now.atStartOfDay().toInstant(ZoneOffset.UTC);
+    }
+
+    /**
+     * Creates empty storage engine to be tested.
+     *
+     * @param clock: clock the engine validates birthdays with.
+     */
+    protected abstract StorageEngine createStorageEngine(Clock clock);
+
+    /**
+     * Releases resources of the engine created by {@link #createStorageEngine}.
+     */
+    protected void destroyStorageEngine() throws SQLException {
+    }
+
+    @Before
+    public void setUp() {
+        StorageEngine engine = createStorageEngine(Clock.fixed(prepareClockMock(NOW), ZoneId.of("UTC")));
+        contactManager = engine.getContactManager();
+        phoneManager = engine.getPhoneNumberManager();
+
+        prepareTestSharedData();
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        destroyStorageEngine();
+    }
+
+    protected Contact.Builder sample_house_builder() {
+        return new Contact.Builder()
+                .ID(null)
+                .firstName("Gregory")
+                .surname("House")
+                .primaryEmail("gregory.house@md.com")
+                .birthday(LocalDate.parse("2000-01-01"));
+    }
+
+    protected Contact.Builder sample_cuddy_builder() {
+        return new Contact.Builder()
+                .ID(null)
+                .firstName("Lisa")
+                .surname("Cuddy")
+                .primaryEmail("lisa.cuddy@md.com")
+                .birthday(LocalDate.parse("2001-01-01"));
+    }
+
+    protected PhoneNumber.Builder sample_czk_phone_builder() {
+        return new PhoneNumber.Builder()
+                .ID(null)
+                .countryCode("+420")
+                .number("777888999")
+                .phoneType("Family");
+    }
+
+    // Prepare test data
+    private Contact contactWithNullID, contactWithID, contactNotInDB,
+            contactWithNullNames, contactBorfAfterCurrentLocalTime;
+
+    private void prepareTestSharedData() {
+        contactWithID = sample_house_builder().ID(1L).build();
+        contactWithNullID = sample_house_builder().build();
+        contactWithNullNames = sample_house_builder().firstName(null).surname(null).build();
+        contactBorfAfterCurrentLocalTime = sample_house_builder().birthday(LocalDate.MAX).build();
+        contactNotInDB = sample_house_builder().ID(-1L).build();
+        assertThat(contactManager.getContact(contactNotInDB.getID())).isNull();
+    }
+
+    @Test
+    public void createContact() {
+        Contact contact = sample_house_builder().build();
+        contactManager.createContact(contact);
+
+        Long contactID = contact.getID();
+        assertThat(contactID).isNotNull();
+
+        assertThat(contactManager.getContact(contactID))
+                .isNotSameAs(contact)
+                .isEqualToComparingFieldByField(contact);
+    }
+
+    @Test
+    public void createContactWithNullBirthday() {
+        Contact contact = sample_house_builder().birthday(null).build();
+        contactManager.createContact(contact);
+
+        Long contactID = contact.getID();
+        assertThat(contactID).isNotNull();
+
+        assertThat(contactManager.getContact(contactID))
+                .isNotSameAs(contact)
+                .isEqualToComparingFieldByField(contact);
+    }
+
+    @Test
+    public void createContactWithID() {
+        assertThatThrownBy(() -> contactManager.createContact(contactWithID))
+                .isInstanceOf(IllegalEntityException.class);
+    }
+
+    @Test
+    public void createNullContact() {
+        assertThatThrownBy(() -> contactManager.createContact(null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void createContactWithNullNames() {
+        assertThatThrownBy(() -> contactManager.createContact(contactWithNullNames))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    public void createContactBornAfterCurrentLocalTime() {
+        assertThatThrownBy(() -> contactManager.createContact(contactBorfAfterCurrentLocalTime))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    public void createContacts() {
+        Contact c1 = sample_house_builder().build();
+        Contact c2 = sample_cuddy_builder().build();
+        contactManager.createContacts(Arrays.asList(c1, c2));
+
+        assertThat(c1.getID()).isNotNull();
+        assertThat(c2.getID()).isNotNull().isNotEqualTo(c1.getID());
+
+        assertThat(contactManager.getContact(c1.getID()))
+                .isEqualToComparingFieldByField(c1);
+        assertThat(contactManager.getContact(c2.getID()))
+                .isEqualToComparingFieldByField(c2);
+    }
+
+    @Test
+    public void createContactsInMoreBatches() {
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < ContactManagerImpl.BATCH_SIZE + 2; i++) {
+            contacts.add(sample_house_builder().firstName("Gregory" + i).build());
+        }
+        contactManager.createContacts(contacts);
+
+        for (Contact contact : contacts) {
+            assertThat(contactManager.getContact(contact.getID()))
+                    .isEqualToComparingFieldByField(contact);
+        }
+    }
+
+    @Test
+    public void createNullContacts() {
+        assertThatThrownBy(() -> contactManager.createContacts(null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void createContactsWithID() {
+        Contact contact = sample_cuddy_builder().build();
+        assertThatThrownBy(() -> contactManager.createContacts(Arrays.asList(contact, contactWithID)))
+                .isInstanceOf(IllegalEntityException.class);
+        assertThat(contact.getID()).isNull();
+        assertThat(contactManager.findAllContacts()).isEmpty();
+    }
+
+    @Test
+    public void createContactsWithNullNames() {
+        assertThatThrownBy(() -> contactManager.createContacts(Arrays.asList(contactWithNullID, contactWithNullNames)))
+                .isInstanceOf(ValidationException.class);
+        assertThat(contactManager.findAllContacts()).isEmpty();
+    }
+
+    @Test
+    public void createContactsWithPhones() {
+        Contact c1 = sample_house_builder().build();
+        Contact c2 = sample_cuddy_builder().build();
+        PhoneNumber p1 = sample_czk_phone_builder().build();
+        PhoneNumber p2 = sample_czk_phone_builder().number("111222333").build();
+        contactManager.createContactsWithPhones(Arrays.asList(
+                new AbstractMap.SimpleImmutableEntry<>(c1, Arrays.asList(p1, p2)),
+                new AbstractMap.SimpleImmutableEntry<>(c2, Collections.emptyList())));
+
+        assertThat(c1.getID()).isNotNull();
+        assertThat(c2.getID()).isNotNull().isNotEqualTo(c1.getID());
+        assertThat(p1.getID()).isNotNull();
+        assertThat(p2.getID()).isNotNull().isNotEqualTo(p1.getID());
+
+        Map<Contact, List<PhoneNumber>> stored = contactManager.findAllContactsWithPhones();
+        assertThat(stored.keySet())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(c1, c2);
+        assertThat(stored.get(c1))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(p1, p2);
+        assertThat(stored.get(c2)).isEmpty();
+        assertThat(contactManager.findContactsByNumber("111222"))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(c1);
+    }
+
+    @Test
+    public void createContactsWithPhonesInMoreBatches() {
+        List<Map.Entry<Contact, List<PhoneNumber>>> contacts = new ArrayList<>();
+        for (int i = 0; i < ContactManagerImpl.BATCH_SIZE + 2; i++) {
+            contacts.add(new AbstractMap.SimpleImmutableEntry<>(sample_house_builder().firstName("Gregory" + i).build(),
+                    Arrays.asList(sample_czk_phone_builder().number("777" + i).build(),
+                            sample_czk_phone_builder().number("888" + i).build())));
+        }
+        contactManager.createContactsWithPhones(contacts);
+
+        for (Map.Entry<Contact, List<PhoneNumber>> entry : contacts) {
+            assertThat(contactManager.getContact(entry.getKey().getID()))
+                    .isEqualToComparingFieldByField(entry.getKey());
+            assertThat(phoneManager.getPhoneNumbers(entry.getKey()))
+                    .usingFieldByFieldElementComparator()
+                    .containsOnly(entry.getValue().toArray(new PhoneNumber[0]));
+        }
+    }
+
+    @Test
+    public void createNullContactsWithPhones() {
+        assertThatThrownBy(() -> contactManager.createContactsWithPhones(null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void createContactsWithInvalidPhone() {
+        Contact contact = sample_house_builder().build();
+        PhoneNumber phone = sample_czk_phone_builder().build();
+        List<Map.Entry<Contact, List<PhoneNumber>>> contacts = Arrays.asList(
+                new AbstractMap.SimpleImmutableEntry<>(contact, Collections.singletonList(phone)),
+                new AbstractMap.SimpleImmutableEntry<>(sample_cuddy_builder().build(),
+                        Collections.singletonList(sample_czk_phone_builder().number(null).build())));
+        assertThatThrownBy(() -> contactManager.createContactsWithPhones(contacts))
+                .isInstanceOf(ValidationException.class);
+        assertThat(contact.getID()).isNull();
+        assertThat(phone.getID()).isNull();
+        assertThat(contactManager.findAllContacts()).isEmpty();
+    }
+
+    @Test
+    public void getContactWithNullID() {
+        assertThatThrownBy(() -> contactManager.getContact(null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void updateContact() {
+        Contact contactForUpdate = sample_house_builder().build();
+        Contact anotherContact = sample_house_builder().firstName("Lisa").build();
+        contactManager.createContact(contactForUpdate);
+        contactManager.createContact(anotherContact);
+
+        contactForUpdate.setFirstName("New Name");
+        contactManager.updateContact(contactForUpdate);
+
+        assertThat(contactManager.getContact(contactForUpdate.getID()))
+                .isEqualToComparingFieldByField(contactForUpdate);
+
+        assertThat(contactManager.getContact(anotherContact.getID()))
+                .isEqualToComparingFieldByField(anotherContact);
+    }
+
+    @Test
+    public void updateNullContact() {
+        assertThatThrownBy(() -> contactManager.updateContact(null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void updateContactWithNullID() {
+        assertThatThrownBy(() -> contactManager.updateContact(contactWithNullID))
+                .isInstanceOf(IllegalEntityException.class);
+    }
+
+    @Test
+    public void updateContactWithNullNames() {
+        assertThatThrownBy(() -> contactManager.updateContact(contactWithNullNames))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    public void updateContactNotInDB() {
+        assertThatThrownBy(() -> contactManager.updateContact(contactNotInDB))
+                .isInstanceOf(IllegalEntityException.class);
+    }
+
+    @Test
+    public void updateBornAfterCurrentLocalTime() {
+        assertThatThrownBy(() -> contactManager.updateContact(contactBorfAfterCurrentLocalTime))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    public void deleteContact() {
+        Contact contact = sample_house_builder().build();
+
+        contactManager.createContact(contact);
+        assertThat(contactManager.getContact(contact.getID())).isNotNull();
+
+        contactManager.deleteContact(contact);
+        assertThat(contactManager.getContact(contact.getID())).isNull();
+    }
+
+    @Test
+    public void deleteNullContact() {
+        assertThatThrownBy(() -> contactManager.deleteContact(null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void deleteContactWithNullID() {
+        assertThatThrownBy(() -> contactManager.deleteContact(contactWithNullID))
+                .isInstanceOf(IllegalEntityException.class);
+    }
+
+    @Test
+    public void deleteContactNotInDB() {
+        assertThatThrownBy(() -> contactManager.deleteContact(contactNotInDB))
+                .isInstanceOf(IllegalEntityException.class);
+    }
+
+    @Test
+    public void findAllContacts() {
+        Contact c1 = sample_cuddy_builder().build();
+        Contact c2 = sample_house_builder().build();
+
+        assertThat(contactManager.findAllContacts()).isEmpty();
+
+        contactManager.createContact(c1);
+        contactManager.createContact(c2);
+
+        assertThat(contactManager.findAllContacts())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(c1,c2);
+    }
+
+    @Test
+    public void findContactsPage() {
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Contact contact = sample_house_builder().firstName("Gregory" + i).build();
+            contactManager.createContact(contact);
+            contacts.add(contact);
+        }
+
+        List<Contact> page = contactManager.findContactsPage(null, 2);
+        assertThat(page)
+                .usingFieldByFieldElementComparator()
+                .containsExactly(contacts.get(0), contacts.get(1));
+
+        page = contactManager.findContactsPage(page.get(1).getID(), 2);
+        assertThat(page)
+                .usingFieldByFieldElementComparator()
+                .containsExactly(contacts.get(2), contacts.get(3));
+
+        page = contactManager.findContactsPage(page.get(1).getID(), 2);
+        assertThat(page)
+                .usingFieldByFieldElementComparator()
+                .containsExactly(contacts.get(4));
+
+        assertThat(contactManager.findContactsPage(page.get(0).getID(), 2)).isEmpty();
+    }
+
+    @Test
+    public void findContactsPageOrderedByName() {
+        Contact c1 = sample_house_builder().firstName("Mr").surname("Hat").build();
+        Contact c2 = sample_house_builder().firstName("Randy").surname("Marsh").build();
+        Contact c3 = sample_house_builder().firstName("Stan").surname("Marsh").build();
+        Contact c4 = sample_house_builder().firstName("Randy").surname("Marsh").build();
+        Contact c5 = sample_house_builder().firstName("Towelie").surname(null).build();
+
+        contactManager.createContacts(Arrays.asList(c1, c2, c3, c4, c5));
+
+        List<Contact> page = contactManager.findContactsPageOrderedByName(null, 2);
+        assertThat(page)
+                .usingFieldByFieldElementComparator()
+                .containsExactly(c5, c1);
+
+        page = contactManager.findContactsPageOrderedByName(page.get(1), 2);
+        assertThat(page)
+                .usingFieldByFieldElementComparator()
+                .containsExactly(c2, c4);
+
+        page = contactManager.findContactsPageOrderedByName(page.get(1), 2);
+        assertThat(page)
+                .usingFieldByFieldElementComparator()
+                .containsExactly(c3);
+    }
+
+    @Test
+    public void findContactsPageOrderedByNameWithNullNames() {
+        Contact noSurname1 = sample_house_builder().firstName("Zed").surname(null).build();
+        Contact noFirstName = sample_house_builder().firstName(null).surname("Adams").build();
+        Contact noSurname2 = sample_house_builder().firstName("Amy").surname(null).build();
+        Contact adams = sample_house_builder().firstName("Amy").surname("Adams").build();
+        Contact noSurname3 = sample_house_builder().firstName("Zed").surname(null).build();
+
+        contactManager.createContacts(Arrays.asList(noSurname1, noFirstName, noSurname2, adams, noSurname3));
+
+        List<Contact> found = new ArrayList<>();
+        List<Contact> page = contactManager.findContactsPageOrderedByName(null, 1);
+        while (!page.isEmpty()) {
+            found.addAll(page);
+            page = contactManager.findContactsPageOrderedByName(page.get(0), 1);
+        }
+        assertThat(found)
+                .usingFieldByFieldElementComparator()
+                .containsExactly(noSurname2, noSurname1, noSurname3, noFirstName, adams);
+    }
+
+    @Test
+    public void findContactsPageWithNonPositiveLimit() {
+        assertThatThrownBy(() -> contactManager.findContactsPage(null, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> contactManager.findContactsPageOrderedByName(null, -1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void findContactsAt() {
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Contact contact = sample_house_builder().firstName("Gregory" + i).build();
+            contactManager.createContact(contact);
+            contacts.add(contact);
+        }
+
+        assertThat(contactManager.countContacts()).isEqualTo(5);
+        assertThat(contactManager.findContactsAt(3, 2))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(contacts.get(3), contacts.get(4));
+        assertThat(contactManager.findContactsAt(1, 2))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(contacts.get(1), contacts.get(2));
+        assertThat(contactManager.findContactsAt(4, 2))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(contacts.get(4));
+        assertThat(contactManager.findContactsAt(5, 2)).isEmpty();
+    }
+
+    @Test
+    public void findContactsAtWithWrongArguments() {
+        assertThat(contactManager.countContacts()).isZero();
+        assertThatThrownBy(() -> contactManager.findContactsAt(-1, 2))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> contactManager.findContactsAt(0, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void findContactsPageOrderedByNameAfterContactWithNullID() {
+        assertThatThrownBy(() -> contactManager.findContactsPageOrderedByName(contactWithNullID, 10))
+                .isInstanceOf(IllegalEntityException.class);
+    }
+
+    @Test
+    public void findAllContactsWithPhones() {
+        assertThat(contactManager.findAllContactsWithPhones()).isEmpty();
+
+        Contact c1 = sample_house_builder().build();
+        Contact c2 = sample_cuddy_builder().build();
+        contactManager.createContact(c1);
+        contactManager.createContact(c2);
+
+        PhoneNumber p1 = sample_czk_phone_builder().build();
+        PhoneNumber p2 = sample_czk_phone_builder().number("111222333").build();
+        phoneManager.addPhone(c1, p1);
+        phoneManager.addPhone(c1, p2);
+
+        Map<Contact, List<PhoneNumber>> contacts = contactManager.findAllContactsWithPhones();
+        assertThat(contacts.keySet())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(c1, c2);
+        assertThat(contacts.get(c1))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(p1, p2);
+        assertThat(contacts.get(c2)).isEmpty();
+    }
+
+    @Test
+    public void streamAllContacts() {
+        Contact c1 = sample_cuddy_builder().build();
+        Contact c2 = sample_house_builder().build();
+
+        try (Stream<Contact> contacts = contactManager.streamAllContacts()) {
+            assertThat(contacts.count()).isZero();
+        }
+
+        contactManager.createContact(c1);
+        contactManager.createContact(c2);
+
+        try (Stream<Contact> contacts = contactManager.streamAllContacts()) {
+            assertThat(contacts.collect(Collectors.toList()))
+                    .usingFieldByFieldElementComparator()
+                    .containsExactly(c1, c2);
+        }
+    }
+
+    @Test
+    public void streamAllContactsAbandoned() {
+        contactManager.createContact(sample_cuddy_builder().build());
+        contactManager.createContact(sample_house_builder().build());
+
+        for (int i = 0; i < 100; i++) {
+            try (Stream<Contact> contacts = contactManager.streamAllContacts()) {
+                assertThat(contacts.findFirst()).isPresent();
+            }
+        }
+    }
+
+    @Test
+    public void streamAllContactsWithPhones() {
+        try (Stream<Map.Entry<Contact, List<PhoneNumber>>> contacts = contactManager.streamAllContactsWithPhones()) {
+            assertThat(contacts.count()).isZero();
+        }
+
+        Contact c1 = sample_house_builder().build();
+        Contact c2 = sample_cuddy_builder().build();
+        Contact c3 = sample_house_builder().firstName("Wilson").build();
+        contactManager.createContacts(Arrays.asList(c1, c2, c3));
+        PhoneNumber p1 = sample_czk_phone_builder().build();
+        PhoneNumber p2 = sample_czk_phone_builder().number("111222333").build();
+        PhoneNumber p3 = sample_czk_phone_builder().number("444555666").build();
+        phoneManager.addPhone(c1, p1);
+        phoneManager.addPhone(c1, p2);
+        phoneManager.addPhone(c3, p3);
+
+        List<Map.Entry<Contact, List<PhoneNumber>>> streamed;
+        try (Stream<Map.Entry<Contact, List<PhoneNumber>>> contacts = contactManager.streamAllContactsWithPhones()) {
+            streamed = contacts.collect(Collectors.toList());
+        }
+        assertThat(streamed)
+                .extracting(Map.Entry::getKey)
+                .usingFieldByFieldElementComparator()
+                .containsExactly(c1, c2, c3);
+        assertThat(streamed.get(0).getValue())
+                .usingFieldByFieldElementComparator()
+                .containsOnly(p1, p2);
+        assertThat(streamed.get(1).getValue()).isEmpty();
+        assertThat(streamed.get(2).getValue())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(p3);
+    }
+
+    @Test
+    public void streamAllContactsWithPhonesAbandoned() {
+        Contact contact = sample_house_builder().build();
+        contactManager.createContact(contact);
+        phoneManager.addPhone(contact, sample_czk_phone_builder().build());
+        phoneManager.addPhone(contact, sample_czk_phone_builder().number("111222333").build());
+
+        for (int i = 0; i < 100; i++) {
+            try (Stream<Map.Entry<Contact, List<PhoneNumber>>> contacts = contactManager.streamAllContactsWithPhones()) {
+                assertThat(contacts.findFirst()).isPresent();
+            }
+        }
+    }
+
+    @Test
+    public void findContactsByName() {
+        assertThat(contactManager.findAllContacts()).isEmpty();
+
+        String searched_name = "Randy";
+
+        Contact c1 = sample_house_builder().firstName(searched_name).surname("Marsh").build();
+        Contact c2 = sample_house_builder().firstName(searched_name).surname("Broflovski").build();
+        Contact c3 = sample_house_builder().firstName("Mr").surname("Hat").build();
+
+        contactManager.createContact(c1);
+        contactManager.createContact(c2);
+        contactManager.createContact(c3);
+
+        assertThat(contactManager.findContactsByName(searched_name))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(c1, c2);
+    }
+
+    @Test
+    public void findContactsByNameMatchesSurname() {
+        Contact c1 = sample_house_builder().firstName("Randy").surname("Marsh").build();
+        Contact c2 = sample_house_builder().firstName("Marvin").surname("Marsh").build();
+        Contact c3 = sample_house_builder().firstName(null).surname("Marvin").build();
+        Contact c4 = sample_house_builder().firstName("Mr").surname("Hat").build();
+
+        contactManager.createContacts(Arrays.asList(c1, c2, c3, c4));
+
+        assertThat(contactManager.findContactsByName("Mar"))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(c1, c2, c3);
+    }
+
+    @Test
+    public void findContactsByNameIgnoresCaseAndAccents() {
+        Contact c1 = sample_house_builder().firstName("\u0160imon").surname("\u010Cerm\u00E1k").build();
+        Contact c2 = sample_house_builder().firstName("Simona").surname("Novak").build();
+        Contact c3 = sample_house_builder().firstName("Mr").surname("Hat").build();
+
+        contactManager.createContact(c1);
+        contactManager.createContact(c2);
+        contactManager.createContact(c3);
+
+        assertThat(contactManager.findContactsByName("SIM"))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(c1, c2);
+        assertThat(contactManager.findContactsByName("cerm"))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(c1);
+
+        c3.setSurname("\u010Capek");
+        contactManager.updateContact(c3);
+        assertThat(contactManager.findContactsByName("cap"))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(c3);
+    }
+
+    @Test
+    public void findContactsByNameWithWildcards() {
+        Contact c1 = sample_house_builder().firstName("Mr").surname("Hat").build();
+        contactManager.createContact(c1);
+
+        assertThat(contactManager.findContactsByName("%")).isEmpty();
+        assertThat(contactManager.findContactsByName("M_")).isEmpty();
+    }
+
+    @Test
+    public void findContactsByNullName() {
+        assertThatThrownBy(() -> contactManager.findContactsByName(null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void findContactsByNumber() {
+        assertThat(contactManager.findAllContacts()).isEmpty();
+
+        Contact c1 = sample_house_builder().build();
+        Contact c2 = sample_cuddy_builder().build();
+        Contact c3 = sample_house_builder().firstName("Wilson").build();
+
+        contactManager.createContact(c1);
+        contactManager.createContact(c2);
+        contactManager.createContact(c3);
+
+        String phoneNumberStartsWith = "777";
+
+        PhoneNumber p1 = sample_czk_phone_builder().number(phoneNumberStartsWith + "123456").build();
+        PhoneNumber p2 = sample_czk_phone_builder().number(phoneNumberStartsWith + "456789").build();
+        PhoneNumber p3 = sample_czk_phone_builder().number("888" + "123456").build();
+
+        phoneManager.addPhone(c1, p1);
+        phoneManager.addPhone(c2, p2);
+        phoneManager.addPhone(c3, p3);
+
+        assertThat(contactManager.findContactsByNumber(phoneNumberStartsWith))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(c1, c2);
+    }
+
+    @Test
+    public void findContactsByNumberWithMoreMatchingPhones() {
+        Contact c1 = sample_house_builder().build();
+        Contact c2 = sample_cuddy_builder().build();
+        contactManager.createContact(c1);
+        contactManager.createContact(c2);
+
+        phoneManager.addPhone(c1, sample_czk_phone_builder().number("777 123 456").build());
+        phoneManager.addPhone(c1, sample_czk_phone_builder().number("777-456-789").build());
+        phoneManager.addPhone(c2, sample_czk_phone_builder().number("888123456").build());
+
+        assertThat(contactManager.findContactsByNumber("777"))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(c1);
+        assertThat(contactManager.findContactsByNumber("777 12"))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(c1);
+    }
+
+    @Test
+    public void findContactsByNumberWithoutDigits() {
+        Contact c1 = sample_house_builder().build();
+        contactManager.createContact(c1);
+        phoneManager.addPhone(c1, sample_czk_phone_builder().number("777 123 456").build());
+
+        assertThat(contactManager.findContactsByNumber("abc")).isEmpty();
+        assertThat(contactManager.findContactsByNumber("+")).isEmpty();
+        assertThat(contactManager.findContactsByNumber("")).isEmpty();
+        assertThat(contactManager.findContactsByNumberSuffix("-")).isEmpty();
+    }
+
+    @Test
+    public void streamContactsByName() {
+        Contact c1 = sample_house_builder().firstName("Randy").surname("Marsh").build();
+        Contact c2 = sample_house_builder().firstName("Marvin").surname("Marsh").build();
+        Contact c3 = sample_house_builder().firstName(null).surname("Marvin").build();
+        Contact c4 = sample_house_builder().firstName("Mr").surname("Hat").build();
+        contactManager.createContacts(Arrays.asList(c1, c2, c3, c4));
+
+        try (Stream<Contact> contacts = contactManager.streamContactsByName("mar")) {
+            assertThat(contacts.collect(Collectors.toList()))
+                    .usingFieldByFieldElementComparator()
+                    .containsOnly(c1, c2, c3)
+                    .hasSize(3);
+        }
+        try (Stream<Contact> contacts = contactManager.streamContactsByName("%")) {
+            assertThat(contacts.count()).isZero();
+        }
+        assertThatThrownBy(() -> contactManager.streamContactsByName(null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void streamContactsByNumber() {
+        Contact c1 = sample_house_builder().build();
+        Contact c2 = sample_cuddy_builder().build();
+        contactManager.createContact(c1);
+        contactManager.createContact(c2);
+        phoneManager.addPhone(c1, sample_czk_phone_builder().number("777 123 456").build());
+        phoneManager.addPhone(c1, sample_czk_phone_builder().number("777-456-789").build());
+        phoneManager.addPhone(c2, sample_czk_phone_builder().number("888123456").build());
+
+        try (Stream<Contact> contacts = contactManager.streamContactsByNumber("777")) {
+            assertThat(contacts.collect(Collectors.toList()))
+                    .usingFieldByFieldElementComparator()
+                    .containsExactly(c1);
+        }
+        try (Stream<Contact> contacts = contactManager.streamContactsByNumber("abc")) {
+            assertThat(contacts.count()).isZero();
+        }
+        assertThatThrownBy(() -> contactManager.streamContactsByNumber(null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void findContactsByNumberSuffix() {
+        Contact c1 = sample_house_builder().build();
+        Contact c2 = sample_cuddy_builder().build();
+        Contact c3 = sample_house_builder().firstName("Wilson").build();
+        contactManager.createContacts(Arrays.asList(c1, c2, c3));
+
+        PhoneNumber p1 = sample_czk_phone_builder().number("777 123 456").build();
+        PhoneNumber p2 = sample_czk_phone_builder().number("888123456").build();
+        PhoneNumber p3 = sample_czk_phone_builder().number("999654321").build();
+        phoneManager.addPhone(c1, p1);
+        phoneManager.addPhone(c2, p2);
+        phoneManager.addPhone(c3, p3);
+
+        assertThat(contactManager.findContactsByNumberSuffix("3456"))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(c1, c2);
+
+        p2.setNumber("888123457");
+        phoneManager.updatePhone(p2);
+        assertThat(contactManager.findContactsByNumberSuffix("3456"))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(c1);
+    }
+
+    @Test
+    public void findContactsByNullNumberSuffix() {
+        assertThatThrownBy(() -> contactManager.findContactsByNumberSuffix(null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void findContactsByNullNumber() {
+        assertThatThrownBy(() -> contactManager.findContactsByNumber(null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,291 @@
+package contactmanager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for {@link ContactSearchIndex}.
+ */
+public class ContactSearchIndexTest {
+
+    private static final String SLOW_WRITER = "slow-writer";
+    private static final long COMMIT_DELAY_MILLIS = 200;
+
+    private ContactManagerImpl contactManager;
+    private PhoneNumberManagerImpl phoneManager;
+    private ContactSearchIndex searchIndex;
+    private DataSource ds;
+
+    @Before
+    public void setUp() {
+        ds = DBUtils.createDatabaseWithTables(false);
+        contactManager = new ContactManagerImpl(Clock.systemDefaultZone());
+        contactManager.setDataSource(ds);
+        phoneManager = new PhoneNumberManagerImpl();
+        phoneManager.setDataSource(ds);
+        searchIndex = new ContactSearchIndex();
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        DBUtils.executeSqlScript(ds, DBUtils.class.getResource("/sql_commands/dropTables.sql"));
+    }
+
+    private Contact.Builder sample_house_builder() {
+        return new Contact.Builder()
+                .ID(null)
+                .firstName("Gregory")
+                .surname("House")
+                .primaryEmail("gregory.house@md.com")
+                .birthday(LocalDate.parse("2000-01-01"));
+    }
+
+    private PhoneNumber.Builder sample_czk_phone_builder() {
+        return new PhoneNumber.Builder()
+                .ID(null)
+                .countryCode("+420")
+                .number("777888999")
+                .phoneType("Family");
+    }
+
+    private void useSearchIndex() {
+        contactManager.setSearchIndex(searchIndex);
+        phoneManager.setSearchIndex(searchIndex);
+    }
+
+    @Test
+    public void load() {
+        Contact c1 = sample_house_builder().build();
+        Contact c2 = sample_house_builder().firstName("Lisa").surname("Cuddy").build();
+        contactManager.createContact(c1);
+        contactManager.createContact(c2);
+        PhoneNumber p = sample_czk_phone_builder().build();
+        phoneManager.addPhone(c2, p);
+
+        searchIndex.load(contactManager);
+
+        assertThat(searchIndex.findContactsByName("cud"))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(c2);
+        assertThat(searchIndex.findContactsByNumber("777 88"))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(c2);
+        assertThat(searchIndex.findContactsByName(""))
+                .usingFieldByFieldElementComparator()
+                .containsOnly(c1, c2);
+    }
+
+    @Test
+    public void contactWritesUpdateIndex() {
+        useSearchIndex();
+        Contact c = sample_house_builder().build();
+        contactManager.createContact(c);
+
+        assertThat(searchIndex.findContactsByName("Greg"))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(c);
+
+        c.setFirstName("Lisa");
+        contactManager.updateContact(c);
+        assertThat(searchIndex.findContactsByName("Greg")).isEmpty();
+        assertThat(searchIndex.findContactsByName("lis"))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(c);
+
+        contactManager.deleteContact(c);
+        assertThat(searchIndex.findContactsByName("lis")).isEmpty();
+        assertThat(searchIndex.findContactsByName("hou")).isEmpty();
+    }
+
+    @Test
+    public void phoneWritesUpdateIndex() {
+        useSearchIndex();
+        Contact c = sample_house_builder().build();
+        contactManager.createContact(c);
+        PhoneNumber p1 = sample_czk_phone_builder().build();
+        PhoneNumber p2 = sample_czk_phone_builder().number("777111222").build();
+        phoneManager.addPhone(c, p1);
+        phoneManager.addPhone(c, p2);
+
+        assertThat(searchIndex.findContactsByNumber("777"))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(c);
+
+        p1.setNumber("888999000");
+        phoneManager.updatePhone(p1);
+        assertThat(searchIndex.findContactsByNumber("7778")).isEmpty();
+        assertThat(searchIndex.findContactsByNumber("888"))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(c);
+        assertThat(searchIndex.findContactsByNumberSuffix("9000"))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(c);
+        assertThat(searchIndex.findContactsByNumberSuffix("8999")).isEmpty();
+
+        phoneManager.removePhone(p2);
+        assertThat(searchIndex.findContactsByNumber("777")).isEmpty();
+        assertThat(searchIndex.findContactsByNumberSuffix("222")).isEmpty();
+
+        contactManager.deleteContact(c);
+        assertThat(searchIndex.findContactsByNumber("888")).isEmpty();
+        assertThat(searchIndex.findContactsByNumberSuffix("000")).isEmpty();
+    }
+
+    @Test
+    public void findContactsWithLimit() {
+        useSearchIndex();
+        Contact c1 = sample_house_builder().surname("Adams").build();
+        Contact c2 = sample_house_builder().surname("Baker").build();
+        Contact c3 = sample_house_builder().surname("Clark").build();
+        contactManager.createContact(c3);
+        contactManager.createContact(c1);
+        contactManager.createContact(c2);
+
+        assertThat(searchIndex.findContactsByName("", 2))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(c1, c2);
+        assertThat(searchIndex.findContactsByName("greg", 2)).hasSize(2);
+        assertThatThrownBy(() -> searchIndex.findContactsByName("greg", 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void manyWritesKeepIndexConsistent() {
+        for (long ID = 1; ID <= 500; ID++) {
+            searchIndex.putContact(sample_house_builder().ID(ID).surname("Name" + ID).build());
+            searchIndex.putPhone(ID, sample_czk_phone_builder().ID(ID).number("777" + ID).build());
+        }
+        for (long ID = 1; ID <= 500; ID += 2) {
+            searchIndex.removeContact(sample_house_builder().ID(ID).build());
+        }
+        for (long ID = 2; ID <= 500; ID += 4) {
+            searchIndex.updatePhone(sample_czk_phone_builder().ID(ID).number("888" + ID).build());
+        }
+
+        assertThat(searchIndex.findContactsByName("name")).hasSize(250);
+        assertThat(searchIndex.findContactsByName("name1")).extracting(Contact::getID)
+                .containsOnly(10L, 12L, 14L, 16L, 18L, 100L, 102L, 104L, 106L, 108L, 110L, 112L, 114L, 116L,
+                        118L, 120L, 122L, 124L, 126L, 128L, 130L, 132L, 134L, 136L, 138L, 140L, 142L, 144L,
+                        146L, 148L, 150L, 152L, 154L, 156L, 158L, 160L, 162L, 164L, 166L, 168L, 170L, 172L,
+                        174L, 176L, 178L, 180L, 182L, 184L, 186L, 188L, 190L, 192L, 194L, 196L, 198L);
+        assertThat(searchIndex.findContactsByNumber("777")).hasSize(125);
+        assertThat(searchIndex.findContactsByNumber("888")).hasSize(125);
+        assertThat(searchIndex.findContactsByNumberSuffix("2")).extracting(Contact::getID)
+                .containsOnly(2L, 12L, 22L, 32L, 42L, 52L, 62L, 72L, 82L, 92L, 102L, 112L, 122L, 132L, 142L,
+                        152L, 162L, 172L, 182L, 192L, 202L, 212L, 222L, 232L, 242L, 252L, 262L, 272L, 282L,
+                        292L, 302L, 312L, 322L, 332L, 342L, 352L, 362L, 372L, 382L, 392L, 402L, 412L, 422L,
+                        432L, 442L, 452L, 462L, 472L, 482L, 492L);
+    }
+
+    @Test
+    public void updateStalledAfterCommitDoesNotRestoreDeletedContact() throws Exception {
+        useSearchIndex();
+        Contact c = sample_house_builder().build();
+        contactManager.createContact(c);
+        CountDownLatch committed = new CountDownLatch(1);
+        contactManager.setDataSource(slowCommitDataSource(committed));
+
+        Contact updated = Contact.copyOf(c);
+        updated.setSurname("Wilson");
+        Thread updater = new Thread(() -> contactManager.updateContact(updated), SLOW_WRITER);
+        updater.start();
+        assertThat(committed.await(5, TimeUnit.SECONDS)).isTrue();
+        contactManager.deleteContact(c);
+        updater.join();
+
+        assertThat(contactManager.getContact(c.getID())).isNull();
+        assertThat(searchIndex.findContactsByName("wil")).isEmpty();
+        assertThat(searchIndex.findContactsByName("greg")).isEmpty();
+    }
+
+    @Test
+    public void updateStalledAfterCommitDoesNotOverwriteLaterUpdate() throws Exception {
+        useSearchIndex();
+        Contact c = sample_house_builder().build();
+        contactManager.createContact(c);
+        CountDownLatch committed = new CountDownLatch(1);
+        contactManager.setDataSource(slowCommitDataSource(committed));
+
+        Contact first = Contact.copyOf(c);
+        first.setSurname("Wilson");
+        Thread updater = new Thread(() -> contactManager.updateContact(first), SLOW_WRITER);
+        updater.start();
+        assertThat(committed.await(5, TimeUnit.SECONDS)).isTrue();
+        Contact second = Contact.copyOf(c);
+        second.setSurname("Cuddy");
+        contactManager.updateContact(second);
+        updater.join();
+
+        assertThat(contactManager.getContact(c.getID()).getSurname()).isEqualTo("Cuddy");
+        assertThat(searchIndex.findContactsByName("wil")).isEmpty();
+        assertThat(searchIndex.findContactsByName("cud"))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(second);
+    }
+
+    /**
+     * Data source whose connections stall the {@link #SLOW_WRITER} thread
+     * right after its commit, before the manager updates the index.
+     */
+    private DataSource slowCommitDataSource(CountDownLatch committed) {
+        return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(ds, method, args);
+                    if (!(result instanceof Connection)) {
+                        return result;
+                    }
+                    Connection connection = (Connection) result;
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                            (connectionProxy, connectionMethod, connectionArgs) -> {
+                                Object value = invoke(connection, connectionMethod, connectionArgs);
+                                if (connectionMethod.getName().equals("commit")
+                                        && Thread.currentThread().getName().equals(SLOW_WRITER)) {
+                                    committed.countDown();
+                                    Thread.sleep(COMMIT_DELAY_MILLIS);
+                                }
+                                return value;
+                            });
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    @Test
+    public void findContactsByNullName() {
+        assertThatThrownBy(() -> searchIndex.findContactsByName(null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void findContactsByNullNumber() {
+        assertThatThrownBy(() -> searchIndex.findContactsByNumber(null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void findContactsByNullNumberSuffix() {
+        assertThatThrownBy(() -> searchIndex.findContactsByNumberSuffix(null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
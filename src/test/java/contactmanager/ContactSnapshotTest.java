@@ -0,0 +1,253 @@
+package contactmanager;
+
+import common.ServiceFailureException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for {@link ContactSnapshot} written and loaded by the jdbc and
+ * memory storage engines.
+ */
+public class ContactSnapshotTest {
+
+    private static final AtomicInteger databases = new AtomicInteger();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+    private final Clock clock = Clock.systemDefaultZone();
+
+    @Before
+    public void setUp() throws IOException {
+        file = folder.getRoot().toPath().resolve("contacts.snapshot");
+    }
+
+    private Properties dbProperties(String engine) {
+        Properties dbProperties = DBUtils.loadDbProperties();
+        dbProperties.setProperty("STORAGE_ENGINE", engine);
+        dbProperties.setProperty("DATABASE_URL",
+                "jdbc:derby:memory:snapshotDB" + databases.incrementAndGet() + ";create=true");
+        dbProperties.setProperty("SNAPSHOT_FILE", file.toString());
+        return dbProperties;
+    }
+
+    private JdbcStorageEngine jdbcEngine() {
+        return (JdbcStorageEngine) DBUtils.createStorageEngine(dbProperties("jdbc"), false, clock, PoolMetrics.NONE);
+    }
+
+    private static Contact contact(String firstName, String surname) {
+        return new Contact.Builder()
+                .firstName(firstName)
+                .surname(surname)
+                .primaryEmail(firstName.toLowerCase() + "@md.com")
+                .birthday(LocalDate.parse("2000-01-01"))
+                .build();
+    }
+
+    private static PhoneNumber phone(String number) {
+        return new PhoneNumber.Builder()
+                .countryCode("+420")
+                .number(number)
+                .phoneType("Work")
+                .build();
+    }
+
+    /**
+     * Fills the engine with contacts and phones, the contact and phone with
+     * the highest IDs are deleted.
+     */
+    private static void fill(StorageEngine engine) {
+        Contact house = contact("Gregory", "House");
+        Contact cuddy = contact("Lisa", "Cuddy");
+        Contact surnameOnly = new Contact.Builder().surname("Wilson").build();
+        Contact deleted = contact("Deleted", "Contact");
+        engine.getContactManager().createContacts(Arrays.asList(house, cuddy, surnameOnly, deleted));
+        PhoneNumber noType = new PhoneNumber.Builder().countryCode("+421").number("901 222 333").build();
+        engine.getPhoneNumberManager().addPhone(house, phone("777888999"));
+        engine.getPhoneNumberManager().addPhone(house, noType);
+        engine.getPhoneNumberManager().addPhone(cuddy, phone("111222333"));
+        PhoneNumber deletedPhone = phone("444555666");
+        engine.getPhoneNumberManager().addPhone(cuddy, deletedPhone);
+        engine.getPhoneNumberManager().removePhone(deletedPhone);
+        engine.getContactManager().deleteContact(deleted);
+    }
+
+    private static void assertSameContents(Map<Contact, List<PhoneNumber>> actual,
+                                           Map<Contact, List<PhoneNumber>> expected) {
+        assertThat(actual.keySet())
+                .usingFieldByFieldElementComparator()
+                .containsExactlyElementsOf(expected.keySet());
+        for (Map.Entry<Contact, List<PhoneNumber>> entry : expected.entrySet()) {
+            assertThat(actual.get(entry.getKey()))
+                    .usingFieldByFieldElementComparator()
+                    .containsExactlyInAnyOrder(entry.getValue().toArray(new PhoneNumber[0]));
+        }
+    }
+
+    /**
+     * Checks that new entities of the engine get IDs after the deleted ones.
+     */
+    private static void assertIDsNotReused(StorageEngine engine, Map<Contact, List<PhoneNumber>> expected) {
+        long deletedContactID = expected.keySet().stream().mapToLong(Contact::getID).max().getAsLong() + 1;
+        long deletedPhoneID = expected.values().stream().flatMap(List::stream)
+                .mapToLong(PhoneNumber::getID).max().getAsLong() + 1;
+        Contact contact = contact("Allison", "Cameron");
+        engine.getContactManager().createContact(contact);
+        PhoneNumber phone = phone("999888777");
+        engine.getPhoneNumberManager().addPhone(contact, phone);
+        assertThat(contact.getID()).isGreaterThan(deletedContactID);
+        assertThat(phone.getID()).isGreaterThan(deletedPhoneID);
+    }
+
+    @Test
+    public void jdbcRoundTrip() {
+        JdbcStorageEngine engine = jdbcEngine();
+        fill(engine);
+        Map<Contact, List<PhoneNumber>> expected = engine.getContactManager().findAllContactsWithPhones();
+        ContactSnapshot.write(engine, file);
+
+        JdbcStorageEngine loaded = jdbcEngine();
+        ContactSnapshot.read(loaded, file);
+        assertSameContents(loaded.getContactManager().findAllContactsWithPhones(), expected);
+        assertThat(loaded.getContactManager().findContactsByName("greg"))
+                .extracting(Contact::getSurname)
+                .containsExactly("House");
+        assertThat(loaded.getContactManager().findContactsByNumber("111"))
+                .extracting(Contact::getSurname)
+                .containsExactly("Cuddy");
+        assertIDsNotReused(loaded, expected);
+    }
+
+    @Test
+    public void memoryRoundTrip() {
+        InMemoryStorageEngine engine = new InMemoryStorageEngine(clock);
+        fill(engine);
+        Map<Contact, List<PhoneNumber>> expected = engine.getContactManager().findAllContactsWithPhones();
+        ContactSnapshot.write(engine, file);
+
+        InMemoryStorageEngine loaded = new InMemoryStorageEngine(clock);
+        ContactSnapshot.read(loaded, file);
+        assertSameContents(loaded.getContactManager().findAllContactsWithPhones(), expected);
+        assertIDsNotReused(loaded, expected);
+    }
+
+    @Test
+    public void snapshotMovesBetweenEngines() {
+        JdbcStorageEngine engine = jdbcEngine();
+        fill(engine);
+        Map<Contact, List<PhoneNumber>> expected = engine.getContactManager().findAllContactsWithPhones();
+        ContactSnapshot.write(engine, file);
+
+        InMemoryStorageEngine memory = new InMemoryStorageEngine(clock);
+        ContactSnapshot.read(memory, file);
+        assertSameContents(memory.getContactManager().findAllContactsWithPhones(), expected);
+    }
+
+    @Test
+    public void emptySnapshot() {
+        ContactSnapshot.write(jdbcEngine(), file);
+
+        JdbcStorageEngine loaded = jdbcEngine();
+        ContactSnapshot.read(loaded, file);
+        assertThat(loaded.getContactManager().findAllContacts()).isEmpty();
+    }
+
+    @Test
+    public void importIntoEngineWithContacts() {
+        ContactSnapshot.write(new InMemoryStorageEngine(clock), file);
+
+        JdbcStorageEngine jdbc = jdbcEngine();
+        jdbc.getContactManager().createContact(contact("Gregory", "House"));
+        assertThatThrownBy(() -> ContactSnapshot.read(jdbc, file))
+                .isInstanceOf(IllegalStateException.class);
+
+        InMemoryStorageEngine memory = new InMemoryStorageEngine(clock);
+        memory.getContactManager().createContact(contact("Gregory", "House"));
+        assertThatThrownBy(() -> ContactSnapshot.read(memory, file))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void truncatedSnapshotNotLoaded() throws IOException {
+        JdbcStorageEngine engine = jdbcEngine();
+        fill(engine);
+        ContactSnapshot.write(engine, file);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(raf.length() - 20);
+        }
+
+        JdbcStorageEngine jdbc = jdbcEngine();
+        assertThatThrownBy(() -> ContactSnapshot.read(jdbc, file))
+                .isInstanceOf(ServiceFailureException.class);
+        assertThat(jdbc.getContactManager().findAllContacts()).isEmpty();
+
+        InMemoryStorageEngine memory = new InMemoryStorageEngine(clock);
+        assertThatThrownBy(() -> ContactSnapshot.read(memory, file))
+                .isInstanceOf(ServiceFailureException.class);
+        assertThat(memory.getContactManager().findAllContacts()).isEmpty();
+    }
+
+    @Test
+    public void notSnapshotFile() throws IOException {
+        Files.write(file, "CREATE TABLE CONTACT".getBytes("UTF-8"));
+
+        assertThatThrownBy(() -> ContactSnapshot.read(new InMemoryStorageEngine(clock), file))
+                .isInstanceOf(ServiceFailureException.class);
+    }
+
+    @Test
+    public void failedWriteKeepsPreviousSnapshot() throws IOException {
+        InMemoryStorageEngine engine = new InMemoryStorageEngine(clock);
+        fill(engine);
+        ContactSnapshot.write(engine, file);
+        byte[] previous = Files.readAllBytes(file);
+
+        JdbcStorageEngine closed = new JdbcStorageEngine(new org.apache.commons.dbcp2.BasicDataSource(), clock);
+        assertThatThrownBy(() -> ContactSnapshot.write(closed, file))
+                .isInstanceOf(ServiceFailureException.class);
+        assertThat(Files.readAllBytes(file)).isEqualTo(previous);
+        assertThat(folder.getRoot().list()).containsExactly(file.getFileName().toString());
+    }
+
+    @Test
+    public void createdEnginesLoadSnapshotInsteadOfSampleData() {
+        InMemoryStorageEngine engine = new InMemoryStorageEngine(clock);
+        fill(engine);
+        Map<Contact, List<PhoneNumber>> expected = engine.getContactManager().findAllContactsWithPhones();
+        DBUtils.writeSnapshot(dbProperties("memory"), engine);
+
+        for (String name : Arrays.asList("jdbc", "memory")) {
+            StorageEngine loaded = DBUtils.createStorageEngine(dbProperties(name), true, clock, PoolMetrics.NONE);
+            assertSameContents(loaded.getContactManager().findAllContactsWithPhones(), expected);
+        }
+    }
+
+    @Test
+    public void snapshotNotWrittenWhenDisabled() {
+        Properties dbProperties = dbProperties("memory");
+        dbProperties.setProperty("SNAPSHOT_FILE", "");
+        DBUtils.writeSnapshot(dbProperties, new InMemoryStorageEngine(clock));
+        assertThat(file).doesNotExist();
+
+        StorageEngine sample = DBUtils.createStorageEngine(dbProperties, true, clock, PoolMetrics.NONE);
+        assertThat(sample.getContactManager().findAllContacts()).isNotEmpty();
+    }
+}
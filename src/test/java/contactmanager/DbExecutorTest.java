@@ -0,0 +1,206 @@
+package contactmanager;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for {@link DbExecutor}.
+ */
+public class DbExecutorTest {
+
+    private DbExecutor executor;
+
+    @After
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdown(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void tasksRunAndCounted() throws InterruptedException {
+        executor = new DbExecutor("test", 2, 10);
+        CountDownLatch done = new CountDownLatch(5);
+        for (int i = 0; i < 5; i++) {
+            executor.execute(done::countDown);
+        }
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(executor.shutdown(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(executor.getStatistics().getSubmittedCount()).isEqualTo(5);
+        assertThat(executor.getStatistics().getCompletedCount()).isEqualTo(5);
+        assertThat(executor.getStatistics().getRejectedCount()).isZero();
+        assertThat(executor.getStatistics().getFailedCount()).isZero();
+        assertThat(executor.getStatistics().getQueued()).isZero();
+    }
+
+    @Test
+    public void fullQueueRejectsAtOnce() throws InterruptedException {
+        executor = new DbExecutor("test", 1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        executor.execute(() -> { });
+
+        assertThatThrownBy(() -> executor.execute(() -> { }))
+                .isInstanceOf(RejectedExecutionException.class);
+        assertThat(executor.getStatistics().getActive()).isEqualTo(1);
+        assertThat(executor.getStatistics().getQueued()).isEqualTo(1);
+        assertThat(executor.getStatistics().getPeakQueued()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(executor.shutdown(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(executor.getStatistics().getSubmittedCount()).isEqualTo(2);
+        assertThat(executor.getStatistics().getRejectedCount()).isEqualTo(1);
+        assertThat(executor.getStatistics().getCompletedCount()).isEqualTo(2);
+        assertThat(executor.getStatistics().getAverageRunMillis()).isPositive();
+        assertThat(executor.getStatistics().getMaxQueueMillis()).isPositive();
+    }
+
+    @Test
+    public void noQueueRejectsWhenAllThreadsBusy() throws InterruptedException {
+        executor = new DbExecutor("test", 1, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        assertThatThrownBy(() -> executor.execute(() -> { }))
+                .isInstanceOf(RejectedExecutionException.class);
+        release.countDown();
+    }
+
+    @Test
+    public void failedTaskCounted() {
+        executor = new DbExecutor("test", 1, 1);
+        executor.execute(() -> {
+            throw new IllegalStateException("test failure");
+        });
+
+        assertThat(executor.shutdown(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(executor.getStatistics().getFailedCount()).isEqualTo(1);
+        assertThat(executor.getStatistics().getCompletedCount()).isZero();
+        assertThat(executor.toString()).contains("failed=1");
+    }
+
+    @Test
+    public void shutDownExecutorRejects() {
+        executor = new DbExecutor("test", 1, 1);
+        executor.shutdown(5, TimeUnit.SECONDS);
+
+        assertThatThrownBy(() -> executor.execute(() -> { }))
+                .isInstanceOf(RejectedExecutionException.class);
+        assertThat(executor.getStatistics().getRejectedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void invalidSize() {
+        assertThatThrownBy(() -> new DbExecutor("test", 0, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new DbExecutor("test", 1, -1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void sizedByConnectionPool() {
+        Properties dbProperties = new Properties();
+        dbProperties.setProperty("POOL_MAX_TOTAL", "3");
+        dbProperties.setProperty("DB_EXECUTOR_QUEUE_CAPACITY", "7");
+        executor = DBUtils.createDbExecutor(dbProperties);
+
+        assertThat(executor.getThreads()).isEqualTo(3);
+        assertThat(executor.getQueueCapacity()).isEqualTo(7);
+    }
+
+    @Test
+    public void sizeOverridesConnectionPool() {
+        Properties dbProperties = new Properties();
+        dbProperties.setProperty("POOL_MAX_TOTAL", "3");
+        dbProperties.setProperty("DB_EXECUTOR_THREADS", "2");
+        executor = DBUtils.createDbExecutor(dbProperties);
+
+        assertThat(executor.getThreads()).isEqualTo(2);
+        assertThat(executor.getQueueCapacity()).isEqualTo(64);
+    }
+
+    @Test
+    public void invalidSizeProperty() {
+        Properties dbProperties = new Properties();
+        dbProperties.setProperty("DB_EXECUTOR_QUEUE_CAPACITY", "many");
+
+        assertThatThrownBy(() -> DBUtils.createDbExecutor(dbProperties))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("DB_EXECUTOR_QUEUE_CAPACITY");
+    }
+
+    @Test
+    public void virtualModeFallsBackWhenUnsupported() throws InterruptedException {
+        executor = new DbExecutor("test", DbExecutor.Mode.VIRTUAL, 2, 10);
+        CountDownLatch done = new CountDownLatch(10);
+        for (int i = 0; i < 5; i++) {
+            executor.execute(done::countDown);
+        }
+
+        assertThat(executor.getMode()).isEqualTo(DbExecutor.isVirtualThreadSupported()
+                ? DbExecutor.Mode.VIRTUAL : DbExecutor.Mode.PLATFORM);
+        for (int i = 5; i < 10; i++) {
+            executor.execute(done::countDown);
+        }
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void virtualModeBoundedByPendingTasks() throws InterruptedException {
+        executor = new DbExecutor("test", DbExecutor.Mode.VIRTUAL, 2, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 3; i++) {
+            executor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        assertThatThrownBy(() -> executor.execute(() -> { }))
+                .isInstanceOf(RejectedExecutionException.class);
+        release.countDown();
+        assertThat(executor.shutdown(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(executor.getStatistics().getCompletedCount()).isEqualTo(3);
+        assertThat(executor.getStatistics().getRejectedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void modeProperty() {
+        Properties dbProperties = new Properties();
+        dbProperties.setProperty("DB_EXECUTOR_MODE", "platform");
+        executor = DBUtils.createDbExecutor(dbProperties);
+        assertThat(executor.getMode()).isEqualTo(DbExecutor.Mode.PLATFORM);
+
+        dbProperties.setProperty("DB_EXECUTOR_MODE", "threads");
+        assertThatThrownBy(() -> DBUtils.createDbExecutor(dbProperties))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("DB_EXECUTOR_MODE");
+    }
+}
@@ -0,0 +1,143 @@
+package contactmanager;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for {@link EntityCache}.
+ */
+public class EntityCacheTest {
+
+    private static class MovableClock extends Clock {
+        private Instant now = Instant.parse("2017-01-01T00:00:00Z");
+
+        void move(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private MovableClock clock;
+    private EntityCache<Contact> cache;
+
+    @Before
+    public void setUp() {
+        clock = new MovableClock();
+        cache = new EntityCache<>(2, Duration.ofMinutes(1), clock, Contact::copyOf);
+    }
+
+    private Contact contact(long ID) {
+        return new Contact.Builder().ID(ID).firstName("Gregory" + ID).build();
+    }
+
+    @Test
+    public void getReturnsCopy() {
+        Contact c = contact(1);
+        cache.put(1L, c);
+        c.setFirstName("Changed");
+
+        Contact cached = cache.get(1L);
+        assertThat(cached).isNotSameAs(c);
+        assertThat(cached.getFirstName()).isEqualTo("Gregory1");
+        assertThat(cache.get(2L)).isNull();
+
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        cache.put(1L, contact(1));
+        cache.put(2L, contact(2));
+        cache.get(1L);
+        cache.put(3L, contact(3));
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get(2L)).isNull();
+        assertThat(cache.get(1L)).isNotNull();
+        assertThat(cache.get(3L)).isNotNull();
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void expiresAfterTimeToLive() {
+        cache.put(1L, contact(1));
+        clock.move(Duration.ofSeconds(59));
+        assertThat(cache.get(1L)).isNotNull();
+
+        clock.move(Duration.ofSeconds(1));
+        assertThat(cache.get(1L)).isNull();
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void invalidate() {
+        cache.put(1L, contact(1));
+        cache.put(2L, contact(2));
+        cache.invalidate(1L);
+        assertThat(cache.get(1L)).isNull();
+
+        cache.invalidateAll();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void putIfGenerationSkipsInvalidatedEntity() {
+        long generation = cache.getGeneration(1L);
+        cache.invalidate(1L);
+        assertThat(cache.putIfGeneration(1L, contact(1), generation)).isFalse();
+        assertThat(cache.get(1L)).isNull();
+
+        generation = cache.getGeneration(1L);
+        cache.invalidate(2L);
+        assertThat(cache.putIfGeneration(1L, contact(1), generation)).isTrue();
+        assertThat(cache.get(1L)).isNotNull();
+
+        generation = cache.getGeneration(1L);
+        cache.invalidateAll();
+        assertThat(cache.putIfGeneration(1L, contact(1), generation)).isFalse();
+    }
+
+    @Test
+    public void putIfCacheGenerationSkipsAfterAnyInvalidation() {
+        long generation = cache.getCacheGeneration();
+        cache.invalidate(2L);
+        assertThat(cache.putIfCacheGeneration(1L, contact(1), generation)).isFalse();
+        assertThat(cache.get(1L)).isNull();
+
+        generation = cache.getCacheGeneration();
+        cache.put(2L, contact(2));
+        assertThat(cache.putIfCacheGeneration(1L, contact(1), generation)).isTrue();
+        assertThat(cache.get(1L)).isNotNull();
+        assertThat(cache.toString()).contains("size=2", "hits=1", "misses=1");
+    }
+
+    @Test
+    public void createWithNonPositiveSize() {
+        assertThatThrownBy(() -> new EntityCache<>(0, Duration.ofMinutes(1), clock, Contact::copyOf))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,99 @@
+package contactmanager;
+
+import org.junit.Test;
+
+import java.time.Clock;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for {@link InMemoryContactManager}.
+ */
+public class InMemoryContactManagerTest extends ContactManagerContractTest {
+
+    private InMemoryStorageEngine engine;
+
+    @Override
+    protected StorageEngine createStorageEngine(Clock clock) {
+        engine = new InMemoryStorageEngine(clock);
+        return engine;
+    }
+
+    @Test
+    public void returnedContactsAreCopies() {
+        Contact contact = sample_house_builder().build();
+        contactManager.createContact(contact);
+        contact.setFirstName("Changed");
+
+        Contact stored = contactManager.getContact(contact.getID());
+        assertThat(stored.getFirstName()).isEqualTo("Gregory");
+        stored.setSurname("Changed");
+        assertThat(contactManager.getContact(contact.getID()).getSurname()).isEqualTo("House");
+    }
+
+    @Test
+    public void load() {
+        Contact c1 = sample_house_builder().ID(5L).build();
+        Contact c2 = sample_cuddy_builder().ID(7L).build();
+        PhoneNumber p = sample_czk_phone_builder().ID(3L).build();
+        Map<Contact, List<PhoneNumber>> contacts = new LinkedHashMap<>();
+        contacts.put(c1, Collections.singletonList(p));
+        contacts.put(c2, Collections.emptyList());
+        engine.load(contacts);
+
+        assertThat(contactManager.getContact(5L)).isEqualToComparingFieldByField(c1);
+        assertThat(phoneManager.getPhoneNumbers(c1))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(p);
+        assertThat(contactManager.findContactsByNumber(p.getNumber()))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(c1);
+
+        Contact created = sample_house_builder().build();
+        contactManager.createContact(created);
+        assertThat(created.getID()).isEqualTo(8L);
+        PhoneNumber added = sample_czk_phone_builder().build();
+        phoneManager.addPhone(created, added);
+        assertThat(added.getID()).isEqualTo(4L);
+    }
+
+    @Test
+    public void selectedByProperties() {
+        Properties dbProperties = new Properties();
+        dbProperties.setProperty("STORAGE_ENGINE", "memory");
+        assertThat(DBUtils.createStorageEngine(dbProperties, false, Clock.systemDefaultZone(), PoolMetrics.NONE))
+                .isInstanceOf(InMemoryStorageEngine.class);
+
+        dbProperties.setProperty("STORAGE_ENGINE", "cloud");
+        assertThatThrownBy(() -> DBUtils.createStorageEngine(dbProperties, false, Clock.systemDefaultZone(),
+                PoolMetrics.NONE))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("cloud");
+    }
+
+    @Test
+    public void filledWithSampleData() {
+        Properties dbProperties = DBUtils.loadDbProperties();
+        dbProperties.remove("SNAPSHOT_FILE");
+        dbProperties.setProperty("STORAGE_ENGINE", "jdbc");
+        dbProperties.setProperty("DATABASE_URL", "jdbc:derby:memory:jdbcSampleDB;create=true");
+        ContactManager expected = DBUtils.createStorageEngine(dbProperties, true, Clock.systemDefaultZone(),
+                PoolMetrics.NONE).getContactManager();
+
+        dbProperties.setProperty("STORAGE_ENGINE", "memory");
+        dbProperties.setProperty("DATABASE_URL", "jdbc:derby:memory:memorySampleDB;create=true");
+        ContactManager loaded = DBUtils.createStorageEngine(dbProperties, true, Clock.systemDefaultZone(),
+                PoolMetrics.NONE).getContactManager();
+
+        assertThat(loaded.findAllContacts())
+                .isNotEmpty()
+                .usingFieldByFieldElementComparator()
+                .containsExactlyElementsOf(expected.findAllContacts());
+    }
+}
@@ -0,0 +1,14 @@
+package contactmanager;
+
+import java.time.Clock;
+
+/**
+ * Test class for {@link InMemoryPhoneNumberManager}.
+ */
+public class InMemoryPhoneNumberManagerTest extends PhoneNumberManagerContractTest {
+
+    @Override
+    protected StorageEngine createStorageEngine(Clock clock) {
+        return new InMemoryStorageEngine(clock);
+    }
+}
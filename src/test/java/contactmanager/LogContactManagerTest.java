@@ -0,0 +1,189 @@
+package contactmanager;
+
+import common.ServiceFailureException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Clock;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for {@link LogStorageEngine} running the contact manager contract
+ * and checking that the log survives reopening.
+ */
+public class LogContactManagerTest extends ContactManagerContractTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private LogStorageEngine engine;
+
+    @Override
+    protected StorageEngine createStorageEngine(Clock clock) {
+        try {
+            file = folder.newFile("contacts.log");
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        engine = new LogStorageEngine(file.toPath(), false, clock);
+        return engine;
+    }
+
+    @Override
+    protected void destroyStorageEngine() {
+        engine.close();
+    }
+
+    private LogStorageEngine reopen() {
+        engine.close();
+        engine = new LogStorageEngine(file.toPath(), false, Clock.systemDefaultZone());
+        return engine;
+    }
+
+    private static void assertSameContents(Map<Contact, List<PhoneNumber>> actual,
+                                           Map<Contact, List<PhoneNumber>> expected) {
+        assertThat(actual.keySet())
+                .usingFieldByFieldElementComparator()
+                .containsExactlyElementsOf(expected.keySet());
+        for (Map.Entry<Contact, List<PhoneNumber>> entry : expected.entrySet()) {
+            assertThat(actual.get(entry.getKey()))
+                    .usingFieldByFieldElementComparator()
+                    .containsExactlyElementsOf(entry.getValue());
+        }
+    }
+
+    @Test
+    public void reopenRestoresContactsAndPhones() {
+        Contact c1 = sample_house_builder().build();
+        Contact c2 = sample_cuddy_builder().build();
+        Contact c3 = sample_house_builder().firstName("Wilson").build();
+        contactManager.createContacts(Arrays.asList(c1, c2, c3));
+        PhoneNumber p1 = sample_czk_phone_builder().build();
+        PhoneNumber p2 = sample_czk_phone_builder().number("111222333").build();
+        PhoneNumber p3 = sample_czk_phone_builder().number("444555666").build();
+        phoneManager.addPhone(c1, p1);
+        phoneManager.addPhone(c1, p2);
+        phoneManager.addPhone(c3, p3);
+
+        c2.setSurname("House");
+        contactManager.updateContact(c2);
+        p1.setNumber("999888777");
+        phoneManager.updatePhone(p1);
+        phoneManager.removePhone(p2);
+        contactManager.deleteContact(c3);
+        Map<Contact, List<PhoneNumber>> expected = contactManager.findAllContactsWithPhones();
+
+        ContactManager reopened = reopen().getContactManager();
+        assertSameContents(reopened.findAllContactsWithPhones(), expected);
+        assertThat(expected.get(c1))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(p1);
+        assertThat(reopened.findContactsByNumber("999"))
+                .usingFieldByFieldElementComparator()
+                .containsExactly(c1);
+
+        Contact created = sample_house_builder().build();
+        reopened.createContact(created);
+        assertThat(created.getID()).isGreaterThan(c3.getID());
+        PhoneNumber added = sample_czk_phone_builder().build();
+        engine.getPhoneNumberManager().addPhone(created, added);
+        assertThat(added.getID()).isGreaterThan(p3.getID());
+    }
+
+    @Test
+    public void reopenRestoresContactsCreatedWithPhones() {
+        contactManager.createContactsWithPhones(Arrays.asList(
+                new AbstractMap.SimpleImmutableEntry<>(sample_house_builder().build(),
+                        Arrays.asList(sample_czk_phone_builder().build(),
+                                sample_czk_phone_builder().number("111222333").build())),
+                new AbstractMap.SimpleImmutableEntry<>(sample_cuddy_builder().build(), Collections.emptyList())));
+        Map<Contact, List<PhoneNumber>> expected = contactManager.findAllContactsWithPhones();
+
+        assertSameContents(reopen().getContactManager().findAllContactsWithPhones(), expected);
+    }
+
+    @Test
+    public void compactionKeepsContents() {
+        Contact contact = sample_house_builder().build();
+        contactManager.createContact(contact);
+        phoneManager.addPhone(contact, sample_czk_phone_builder().build());
+        for (int i = 0; i < 1000; i++) {
+            contact.setFirstName("Gregory" + i);
+            contactManager.updateContact(contact);
+        }
+        long size = engine.getLogSize();
+
+        engine.compact();
+        assertThat(engine.getLogSize()).isLessThan(size / 100);
+        contactManager.createContact(sample_cuddy_builder().build());
+        Map<Contact, List<PhoneNumber>> expected = contactManager.findAllContactsWithPhones();
+
+        assertSameContents(reopen().getContactManager().findAllContactsWithPhones(), expected);
+    }
+
+    @Test
+    public void tornFrameIgnored() throws IOException {
+        Contact contact = sample_house_builder().build();
+        contactManager.createContact(contact);
+        long size = engine.getLogSize();
+        engine.close();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(size);
+            raf.writeInt(100);
+            raf.writeInt(12345);
+            raf.write(new byte[20]);
+        }
+        ContactManager reopened = reopen().getContactManager();
+        assertThat(reopened.findAllContacts())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(contact);
+
+        Contact created = sample_cuddy_builder().build();
+        reopened.createContact(created);
+        assertThat(reopen().getContactManager().findAllContacts())
+                .usingFieldByFieldElementComparator()
+                .containsExactly(contact, created);
+    }
+
+    @Test
+    public void loadIsDurable() {
+        Contact contact = sample_house_builder().ID(10L).build();
+        engine.load(Collections.singletonMap(contact, Collections.emptyList()));
+
+        assertThat(reopen().getContactManager().getContact(10L))
+                .isEqualToComparingFieldByField(contact);
+    }
+
+    @Test
+    public void openFileWhichIsNotLog() throws IOException {
+        File other = folder.newFile("other.txt");
+        Files.write(other.toPath(), "not a log".getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> new LogStorageEngine(other.toPath(), false, Clock.systemDefaultZone()))
+                .isInstanceOf(ServiceFailureException.class);
+        assertThat(other.length()).isEqualTo(9);
+    }
+
+    @Test
+    public void writeToClosedEngine() {
+        engine.close();
+        assertThatThrownBy(() -> contactManager.createContact(sample_house_builder().build()))
+                .isInstanceOf(ServiceFailureException.class);
+        assertThat(contactManager.findAllContacts()).isEmpty();
+    }
+}
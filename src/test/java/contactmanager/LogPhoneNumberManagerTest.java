@@ -0,0 +1,33 @@
+package contactmanager;
+
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.time.Clock;
+
+/**
+ * Test class for {@link LogStorageEngine} running the phone manager contract.
+ */
+public class LogPhoneNumberManagerTest extends PhoneNumberManagerContractTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LogStorageEngine engine;
+
+    @Override
+    protected StorageEngine createStorageEngine(Clock clock) {
+        try {
+            engine = new LogStorageEngine(folder.newFile("phones.log").toPath(), false, clock);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return engine;
+    }
+
+    @Override
+    protected void destroyStorageEngine() {
+        engine.close();
+    }
+}
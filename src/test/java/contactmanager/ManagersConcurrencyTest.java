@@ -0,0 +1,156 @@
+package contactmanager;
+
+import common.IllegalEntityException;
+import common.ValidationException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Stress test calling methods of a single {@link ContactManagerImpl} and
+ * {@link PhoneNumberManagerImpl} instance from many threads at once. The
+ * tables are empty when the threads start, so their first inserts contend
+ * for the identity generators of the tables.
+ */
+public class ManagersConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 50;
+
+    private ContactManagerImpl contactManager;
+    private PhoneNumberManagerImpl phoneManager;
+    private DataSource ds;
+
+    @Before
+    public void setUp() {
+        ds = DBUtils.createDatabaseWithTables(false);
+        contactManager = new ContactManagerImpl(Clock.systemDefaultZone());
+        contactManager.setDataSource(ds);
+        phoneManager = new PhoneNumberManagerImpl();
+        phoneManager.setDataSource(ds);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        DBUtils.executeSqlScript(ds, DBUtils.class.getResource("/sql_commands/dropTables.sql"));
+    }
+
+    /**
+     * Creates, reads, updates and deletes contacts and phones of its own,
+     * returns contact which is left in the DB.
+     */
+    private Contact exerciseManagers(int thread) {
+        String name = "Thread" + thread + "_";
+        Contact kept = null;
+        for (int round = 0; round < ROUNDS; round++) {
+            Contact contact = new Contact.Builder()
+                    .firstName(name + round)
+                    .surname("House")
+                    .birthday(LocalDate.parse("2000-01-01"))
+                    .build();
+            contactManager.createContact(contact);
+            assertThat(contactManager.getContact(contact.getID())).isEqualToComparingFieldByField(contact);
+
+            PhoneNumber phone = new PhoneNumber.Builder()
+                    .number(thread + "00" + round)
+                    .countryCode("+420")
+                    .build();
+            phoneManager.addPhone(contact, phone);
+            phone.setPhoneType("Work");
+            phoneManager.updatePhone(phone);
+            assertThat(phoneManager.getPhoneNumbers(contact))
+                    .usingFieldByFieldElementComparator()
+                    .containsExactly(phone);
+
+            contact.setSurname("Wilson");
+            contactManager.updateContact(contact);
+            assertThat(contactManager.findContactsByName(name + round))
+                    .usingFieldByFieldElementComparator()
+                    .containsExactly(contact);
+
+            // failing calls must report their own error, not one of another thread
+            Contact withID = contact;
+            assertThatThrownBy(() -> contactManager.createContact(withID))
+                    .isInstanceOf(IllegalEntityException.class)
+                    .hasMessage("Contact ID is already set.");
+            assertThatThrownBy(() -> phoneManager.addPhone(withID, new PhoneNumber()))
+                    .isInstanceOf(ValidationException.class);
+
+            if (round == ROUNDS - 1) {
+                kept = contact;
+            } else {
+                phoneManager.removePhone(phone);
+                contactManager.deleteContact(contact);
+                assertThat(contactManager.getContact(contact.getID())).isNull();
+            }
+        }
+        return kept;
+    }
+
+    @Test
+    public void concurrentCrud() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Callable<Contact>> tasks = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int threadNumber = thread;
+                tasks.add(() -> exerciseManagers(threadNumber));
+            }
+
+            List<Contact> kept = new ArrayList<>();
+            for (Future<Contact> result : executor.invokeAll(tasks)) {
+                kept.add(result.get());
+            }
+
+            assertThat(contactManager.findAllContacts())
+                    .usingFieldByFieldElementComparator()
+                    .containsOnlyElementsOf(kept)
+                    .hasSize(THREADS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void concurrentBatchInserts() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Callable<List<Contact>>> tasks = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int threadNumber = thread;
+                tasks.add(() -> {
+                    List<Contact> contacts = new ArrayList<>();
+                    for (int i = 0; i < 100; i++) {
+                        contacts.add(new Contact.Builder().firstName("Batch" + threadNumber + "_" + i).build());
+                    }
+                    contactManager.createContacts(contacts);
+                    contactManager.createContact(new Contact.Builder().firstName("Single" + threadNumber).build());
+                    return contacts;
+                });
+            }
+
+            for (Future<List<Contact>> result : executor.invokeAll(tasks)) {
+                for (Contact contact : result.get()) {
+                    assertThat(contactManager.getContact(contact.getID())).isEqualToComparingFieldByField(contact);
+                }
+            }
+            assertThat(contactManager.findAllContacts()).hasSize(THREADS * 101);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package contactmanager;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.apache.commons.dbcp2.DelegatingStatement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for pool configuration of {@link DBUtils#createPool} and {@link PoolStatistics}.
+ */
+public class PoolMetricsTest {
+
+    private Properties dbProperties;
+    private PoolStatistics statistics;
+    private BasicDataSource ds;
+
+    @Before
+    public void setUp() {
+        dbProperties = DBUtils.loadDbProperties();
+        statistics = new PoolStatistics();
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        if (ds != null) {
+            ds.close();
+        }
+    }
+
+    @Test
+    public void poolConfiguredFromProperties() {
+        dbProperties.setProperty("POOL_MAX_TOTAL", "3");
+        dbProperties.setProperty("POOL_MAX_IDLE", "2");
+        dbProperties.setProperty("POOL_MIN_IDLE", "1");
+        dbProperties.setProperty("POOL_MAX_WAIT_MILLIS", "250");
+        dbProperties.setProperty("POOL_PREPARED_STATEMENTS", "true");
+        dbProperties.setProperty("POOL_VALIDATION_QUERY", "VALUES 1");
+        dbProperties.setProperty("POOL_TEST_ON_BORROW", "true");
+        ds = DBUtils.createPool(dbProperties, statistics);
+
+        assertThat(ds.getMaxTotal()).isEqualTo(3);
+        assertThat(ds.getMaxIdle()).isEqualTo(2);
+        assertThat(ds.getMinIdle()).isEqualTo(1);
+        assertThat(ds.getMaxWaitMillis()).isEqualTo(250);
+        assertThat(ds.isPoolPreparedStatements()).isTrue();
+        assertThat(ds.getValidationQuery()).isEqualTo("VALUES 1");
+        assertThat(ds.getTestOnBorrow()).isTrue();
+    }
+
+    @Test
+    public void preparedStatementsPooled() throws SQLException {
+        dbProperties.setProperty("POOL_MAX_TOTAL", "1");
+        dbProperties.setProperty("POOL_PREPARED_STATEMENTS", "true");
+        ds = DBUtils.createPool(dbProperties, statistics);
+
+        Statement first;
+        try (Connection c = ds.getConnection();
+             PreparedStatement st = c.prepareStatement("VALUES 1")) {
+            first = ((DelegatingStatement) st).getInnermostDelegate();
+        }
+        try (Connection c = ds.getConnection();
+             PreparedStatement st = c.prepareStatement("VALUES 1")) {
+            assertThat(((DelegatingStatement) st).getInnermostDelegate()).isSameAs(first);
+        }
+    }
+
+    @Test
+    public void missingPropertiesKeepDefaults() {
+        Properties minimal = new Properties();
+        minimal.setProperty("DRIVER_CLASS", dbProperties.getProperty("DRIVER_CLASS"));
+        minimal.setProperty("DATABASE_URL", dbProperties.getProperty("DATABASE_URL"));
+        ds = DBUtils.createPool(minimal, statistics);
+
+        assertThat(ds.getMaxTotal()).isEqualTo(new BasicDataSource().getMaxTotal());
+        assertThat(ds.isPoolPreparedStatements()).isFalse();
+    }
+
+    @Test
+    public void invalidNumber() {
+        dbProperties.setProperty("POOL_MAX_TOTAL", "many");
+        assertThatThrownBy(() -> DBUtils.createPool(dbProperties, statistics))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("POOL_MAX_TOTAL");
+    }
+
+    @Test
+    public void borrowedConnectionsRecorded() throws SQLException {
+        ds = DBUtils.createPool(dbProperties, statistics);
+
+        try (Connection c1 = ds.getConnection(); Connection c2 = ds.getConnection()) {
+            assertThat(c1).isNotSameAs(c2);
+            assertThat(statistics.getActive()).isEqualTo(2);
+        }
+        try (Connection c3 = ds.getConnection()) {
+            assertThat(c3.isClosed()).isFalse();
+            assertThat(statistics.getActive()).isEqualTo(1);
+            assertThat(statistics.getIdle()).isEqualTo(1);
+        }
+
+        assertThat(statistics.getBorrowedCount()).isEqualTo(3);
+        assertThat(statistics.getFailedCount()).isZero();
+        assertThat(statistics.getPeakActive()).isEqualTo(2);
+        assertThat(statistics.getActive()).isZero();
+        assertThat(statistics.getIdle()).isEqualTo(2);
+    }
+
+    @Test
+    public void exhaustedPoolRecorded() throws SQLException {
+        dbProperties.setProperty("POOL_MAX_TOTAL", "1");
+        dbProperties.setProperty("POOL_MAX_WAIT_MILLIS", "50");
+        ds = DBUtils.createPool(dbProperties, statistics);
+
+        try (Connection c = ds.getConnection()) {
+            assertThat(c.isClosed()).isFalse();
+            assertThatThrownBy(ds::getConnection).isInstanceOf(SQLException.class);
+        }
+
+        assertThat(statistics.getBorrowedCount()).isEqualTo(1);
+        assertThat(statistics.getFailedCount()).isEqualTo(1);
+        assertThat(statistics.getMaxWaitMillis()).isGreaterThanOrEqualTo(50);
+    }
+}
@@ -0,0 +1,188 @@
+package contactmanager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for {@link QueryCancellation} of {@link ContactManagerImpl} queries.
+ */
+public class QueryCancellationTest {
+
+    private static final int CONTACTS = 50;
+
+    private DataSource ds;
+    private ContactManagerImpl contactManager;
+    private final QueryCancellation cancellation = new QueryCancellation();
+
+    @Before
+    public void setUp() {
+        ds = DBUtils.createDatabaseWithTables(false);
+        contactManager = new ContactManagerImpl(Clock.systemDefaultZone());
+        contactManager.setDataSource(ds);
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < CONTACTS; i++) {
+            contacts.add(new Contact.Builder().firstName("Gregory").surname("House" + i).build());
+        }
+        contactManager.createContacts(contacts);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        DBUtils.executeSqlScript(ds, DBUtils.class.getResource("/sql_commands/dropTables.sql"));
+    }
+
+    @Test
+    public void notCancelledQueryReturnsResult() {
+        List<Contact> contacts = cancellation.call(() -> contactManager.findContactsByName("house"));
+
+        assertThat(contacts).hasSize(CONTACTS);
+        assertThat(QueryCancellation.current()).isNull();
+    }
+
+    @Test
+    public void cancelledBeforeQuery() {
+        cancellation.cancel();
+
+        assertThatThrownBy(() -> cancellation.call(() -> contactManager.findContactsByName("house")))
+                .isInstanceOf(CancellationException.class);
+        assertThat(QueryCancellation.current()).isNull();
+    }
+
+    @Test
+    public void cancelledWhileReadingRows() {
+        AtomicInteger rowsRead = new AtomicInteger();
+        AtomicInteger statementsCancelled = new AtomicInteger();
+        contactManager.setDataSource(cancellingDataSource(rowsRead, statementsCancelled));
+
+        assertThatThrownBy(() -> cancellation.call(() -> contactManager.findContactsByName("house")))
+                .isInstanceOf(CancellationException.class);
+        assertThat(statementsCancelled.get()).isEqualTo(1);
+        assertThat(rowsRead.get()).isLessThan(CONTACTS);
+
+        // the connection was returned to the pool and unbound queries are not affected
+        contactManager.setDataSource(ds);
+        assertThat(contactManager.findContactsByName("house")).hasSize(CONTACTS);
+    }
+
+    @Test
+    public void streamCancelledWhileConsumed() {
+        AtomicInteger rowsRead = new AtomicInteger();
+        AtomicInteger statementsCancelled = new AtomicInteger();
+        contactManager.setDataSource(cancellingDataSource(rowsRead, statementsCancelled));
+        List<Contact> consumed = new ArrayList<>();
+
+        assertThatThrownBy(() -> cancellation.call(() -> {
+            try (Stream<Contact> contacts = contactManager.streamContactsByName("house")) {
+                contacts.forEach(consumed::add);
+            }
+            return null;
+        })).isInstanceOf(CancellationException.class);
+        assertThat(statementsCancelled.get()).isEqualTo(1);
+        assertThat(consumed).hasSize(1);
+        assertThat(rowsRead.get()).isEqualTo(2);
+
+        contactManager.setDataSource(ds);
+        try (Stream<Contact> contacts = contactManager.streamContactsByName("house")) {
+            assertThat(contacts.count()).isEqualTo(CONTACTS);
+        }
+    }
+
+    @Test
+    public void cancelOfUnsupportingDriverIgnored() {
+        AtomicInteger cancelled = new AtomicInteger();
+        cancellation.register(statementProxy(cancelled));
+
+        cancellation.cancel();
+        cancellation.cancel();
+        assertThat(cancellation.isCancelled()).isTrue();
+        assertThat(cancelled.get()).isEqualTo(1);
+    }
+
+    /**
+     * Data source of the database whose result sets cancel the token after
+     * the second row and whose statements count their cancellations.
+     */
+    private DataSource cancellingDataSource(AtomicInteger rowsRead, AtomicInteger statementsCancelled) {
+        return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(ds, method, args);
+                    if (!(result instanceof Connection)) {
+                        return result;
+                    }
+                    Connection connection = (Connection) result;
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                            (connectionProxy, connectionMethod, connectionArgs) -> {
+                                Object statement = invoke(connection, connectionMethod, connectionArgs);
+                                if (!(statement instanceof PreparedStatement)) {
+                                    return statement;
+                                }
+                                return cancellingStatement((PreparedStatement) statement, rowsRead,
+                                        statementsCancelled);
+                            });
+                });
+    }
+
+    private PreparedStatement cancellingStatement(PreparedStatement st, AtomicInteger rowsRead,
+                                                  AtomicInteger statementsCancelled) {
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("cancel")) {
+                        statementsCancelled.incrementAndGet();
+                    }
+                    Object result = invoke(st, method, args);
+                    if (!(result instanceof ResultSet)) {
+                        return result;
+                    }
+                    ResultSet set = (ResultSet) result;
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ResultSet.class},
+                            (setProxy, setMethod, setArgs) -> {
+                                if (setMethod.getName().equals("next") && rowsRead.incrementAndGet() == 2) {
+                                    cancellation.cancel();
+                                }
+                                return invoke(set, setMethod, setArgs);
+                            });
+                });
+    }
+
+    /**
+     * Statement whose cancel is not supported, like that of embedded Derby.
+     */
+    private PreparedStatement statementProxy(AtomicInteger cancelled) {
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("cancel")) {
+                        cancelled.incrementAndGet();
+                        throw new SQLFeatureNotSupportedException("cancel");
+                    }
+                    return null;
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package contactmanager;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for {@link VersionedContactManager} and {@link VersionedPhoneNumberManager}
+ * decorating the memory engine.
+ */
+public class VersionedContactManagerTest {
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2017-01-01T00:00:00Z"));
+    private VersionedContactManager contactManager;
+    private VersionedPhoneNumberManager phoneManager;
+
+    @Before
+    public void setUp() {
+        InMemoryStorageEngine engine = new InMemoryStorageEngine(clock);
+        contactManager = new VersionedContactManager(engine.getContactManager(), clock);
+        phoneManager = new VersionedPhoneNumberManager(engine.getPhoneNumberManager(), contactManager);
+    }
+
+    private static Contact contact(String surname) {
+        return new Contact.Builder().surname(surname).build();
+    }
+
+    @Test
+    public void changesIncreaseVersion() {
+        String tag = contactManager.getVersionTag();
+        assertThat(contactManager.getVersion()).isZero();
+        assertThat(contactManager.getLastModified()).isEqualTo(clock.instant());
+
+        Contact house = contact("House");
+        clock.now = Instant.parse("2017-01-02T00:00:00Z");
+        contactManager.createContact(house);
+        contactManager.createContacts(Arrays.asList(contact("Cuddy"), contact("Wilson")));
+        contactManager.createContactsWithPhones(Collections.singletonList(
+                new AbstractMap.SimpleImmutableEntry<>(contact("Chase"), Collections.emptyList())));
+        house.setFirstName("Gregory");
+        contactManager.updateContact(house);
+        clock.now = Instant.parse("2017-01-03T00:00:00Z");
+        contactManager.deleteContact(house);
+
+        assertThat(contactManager.getVersion()).isEqualTo(5);
+        assertThat(contactManager.getVersionTag()).isNotEqualTo(tag);
+        assertThat(contactManager.getLastModified()).isEqualTo(Instant.parse("2017-01-03T00:00:00Z"));
+    }
+
+    @Test
+    public void readsAndFailedChangesKeepVersion() {
+        contactManager.createContact(contact("House"));
+        String tag = contactManager.getVersionTag();
+
+        contactManager.findAllContacts();
+        contactManager.findContactsByName("Hou");
+        assertThatThrownBy(() -> contactManager.createContact(contact(null)))
+                .isInstanceOf(common.ValidationException.class);
+
+        assertThat(contactManager.getVersionTag()).isEqualTo(tag);
+    }
+
+    @Test
+    public void phoneChangesIncreaseVersion() {
+        Contact house = contact("House");
+        contactManager.createContact(house);
+        String tag = contactManager.getVersionTag();
+
+        PhoneNumber phone = new PhoneNumber.Builder().number("777888999").countryCode("+420").build();
+        clock.now = Instant.parse("2017-01-02T00:00:00Z");
+        phoneManager.addPhone(house, phone);
+        phoneManager.getPhoneNumbers(house);
+        assertThat(contactManager.getVersion()).isEqualTo(2);
+        assertThat(contactManager.getVersionTag()).isNotEqualTo(tag);
+        assertThat(contactManager.getLastModified()).isEqualTo(Instant.parse("2017-01-02T00:00:00Z"));
+
+        phone.setNumber("111222333");
+        phoneManager.updatePhone(phone);
+        phoneManager.removePhone(phone);
+        assertThat(contactManager.getVersion()).isEqualTo(4);
+    }
+
+    private static class MutableClock extends Clock {
+        Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package web;
+
+import org.junit.Test;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for {@link ContactsServlet.AsyncCall} timing out while its
+ * handler runs. The container is simulated by a context firing the timeout
+ * after the timeout set by the call, unless the context was completed.
+ */
+public class ContactsServletAsyncCallTest {
+
+    private static final long TIMEOUT_MILLIS = 50;
+
+    private final Map<String, Object> attributes = new HashMap<>();
+    private final List<String> responseCalls = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> dispatched = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger completed = new AtomicInteger();
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private final HttpServletRequest request = request();
+    private final HttpServletResponse response = response();
+
+    @Test
+    public void handlerSlowerThanTimeoutCannotAnswer() {
+        ContactsServlet.AsyncCall call = new ContactsServlet.AsyncCall(asyncContext(), TIMEOUT_MILLIS);
+        AtomicBoolean handled = new AtomicBoolean();
+
+        call.run((handledRequest, handledResponse) -> {
+            awaitFinished();
+
+            call.sendRedirect("/contacts");
+            call.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown action");
+            call.dispatch("/list.jsp");
+            handled.set(true);
+        }, request, response);
+
+        assertThat(handled.get()).isTrue();
+        assertThat(responseCalls).containsExactly("setHeader Retry-After", "sendError 503");
+        assertThat(dispatched).isEmpty();
+        assertThat(completed.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void handlerQueuedLongerThanTimeoutNotRun() {
+        ContactsServlet.AsyncCall call = new ContactsServlet.AsyncCall(asyncContext(), TIMEOUT_MILLIS);
+        awaitFinished();
+        AtomicBoolean handled = new AtomicBoolean();
+
+        call.run((handledRequest, handledResponse) -> handled.set(true), request, response);
+
+        assertThat(handled.get()).isFalse();
+        assertThat(responseCalls).containsExactly("setHeader Retry-After", "sendError 503");
+        assertThat(completed.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void handlerFasterThanTimeoutCompletes() throws Exception {
+        ContactsServlet.AsyncCall call = new ContactsServlet.AsyncCall(asyncContext(), TIMEOUT_MILLIS);
+
+        call.run((handledRequest, handledResponse) -> call.sendRedirect("/contacts"), request, response);
+        Thread.sleep(2 * TIMEOUT_MILLIS);
+
+        assertThat(responseCalls).containsExactly("sendRedirect /contacts");
+        assertThat(completed.get()).isEqualTo(1);
+    }
+
+    private void awaitFinished() {
+        try {
+            assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+
+    /**
+     * Context firing the timeout to its listener, as the container does when
+     * the context is not completed in time.
+     */
+    private AsyncContext asyncContext() {
+        AtomicInteger timeout = new AtomicInteger();
+        return (AsyncContext) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{AsyncContext.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getRequest":
+                            return request;
+                        case "getResponse":
+                            return response;
+                        case "dispatch":
+                            dispatched.add((String) args[0]);
+                            return null;
+                        case "setTimeout":
+                            timeout.set(((Long) args[0]).intValue());
+                            return null;
+                        case "addListener":
+                            AsyncListener listener = (AsyncListener) args[0];
+                            AsyncEvent event = new AsyncEvent((AsyncContext) proxy, request, response);
+                            new Thread(() -> fireTimeout(listener, event, timeout.get())).start();
+                            return null;
+                        case "complete":
+                            completed.incrementAndGet();
+                            finished.countDown();
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private void fireTimeout(AsyncListener listener, AsyncEvent event, long timeoutMillis) {
+        try {
+            Thread.sleep(timeoutMillis);
+            if (completed.get() == 0) {
+                listener.onTimeout(event);
+            }
+        } catch (Exception ex) {
+            throw new AssertionError(ex);
+        }
+    }
+
+    private HttpServletRequest request() {
+        return (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getMethod":
+                            return "GET";
+                        case "getRequestURI":
+                            return ContactsServlet.URL_MAPPING;
+                        case "getAttribute":
+                            return attributes.get((String) args[0]);
+                        case "setAttribute":
+                            attributes.put((String) args[0], args[1]);
+                            return null;
+                        case "removeAttribute":
+                            attributes.remove((String) args[0]);
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private HttpServletResponse response() {
+        return (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "isCommitted":
+                            return false;
+                        default:
+                            responseCalls.add(method.getName() + " " + args[0]);
+                            return null;
+                    }
+                });
+    }
+}